@@ -0,0 +1,56 @@
+package benchmarks;
+
+import generator.IterationGrid;
+import generator.IterationGridReceiver;
+import generator.MandelbrotNumber;
+import generator.MandelbrotSetReceiver;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Receives the results of a generator and lets the benchmark thread wait for
+ * them, so that an asynchronous generation could be measured as a whole.
+ */
+public class AwaitingReceiver implements MandelbrotSetReceiver,
+		IterationGridReceiver {
+	private volatile CountDownLatch latch;
+	private volatile Object result;
+
+	/**
+	 * Has to be called before every generation that is awaited.
+	 */
+	public void prepare() {
+		prepare(1);
+	}
+
+	/**
+	 * Has to be called before the specified number of concurrent generations
+	 * that are awaited together.
+	 */
+	public void prepare(int expectedResults) {
+		this.result = null;
+		this.latch = new CountDownLatch(expectedResults);
+	}
+
+	/**
+	 * Waits for the generations started after the last prepare call and
+	 * returns the result of the last one.
+	 */
+	public Object await() throws InterruptedException {
+		this.latch.await();
+		return this.result;
+	}
+
+	@Override
+	public void receiveSet(List<MandelbrotNumber> numbers) {
+		this.result = numbers;
+		this.latch.countDown();
+	}
+
+	@Override
+	public void receiveGrid(IterationGrid grid) {
+		this.result = grid;
+		this.latch.countDown();
+	}
+}
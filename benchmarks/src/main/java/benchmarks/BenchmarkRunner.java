@@ -0,0 +1,34 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected on the command line with the standard JMH
+ * options. Unless another result format is requested, the results are
+ * written as JSON, so that they could be compared between builds.
+ */
+public class BenchmarkRunner {
+	private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws RunnerException,
+			CommandLineOptionException {
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.parent(commandLineOptions);
+
+		if (!commandLineOptions.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!commandLineOptions.getResult().hasValue()) {
+			options.result(DEFAULT_RESULT_FILE);
+		}
+
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,116 @@
+package benchmarks;
+
+import generator.ExecutionMode;
+import generator.IterationGridReceiver;
+import generator.MandelbrotSetGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cache.TileCache;
+
+/**
+ * Measures the throughput of many concurrent small tile requests with each
+ * execution mode of {@link MandelbrotSetGenerator}. With the disk cache, the
+ * first invocation fills the cache and the later ones mostly read it, which
+ * makes the requests bound by I/O rather than by computation. In JVMs older
+ * than Java 21, including the Java 17 the project is built for,
+ * VIRTUAL_THREADS measures the bounded pool of platform threads that stands
+ * in for virtual threads, so it has to be run on Java 21 or later to measure
+ * virtual threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 2, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ConcurrentTileBenchmark {
+	private static final int REQUESTS = 1024;
+
+	@Param
+	public ExecutionMode executionMode;
+
+	@Param({ "false", "true" })
+	public boolean diskCache;
+
+	@Param({ "32" })
+	public int tileSize;
+
+	@Param({ "1000" })
+	public int maxIterations;
+
+	private AwaitingReceiver receiver;
+	private MandelbrotSetGenerator generator;
+	private File cacheDirectory;
+
+	// the lowest zoom level with at least as many tiles as requests
+	private int zoom;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		if (this.executionMode.usesPlatformThreadFallback()) {
+			System.err.printf("Virtual threads are not available, %s is"
+					+ " measured with at most %d platform threads.%n",
+					this.executionMode, ExecutionMode.FALLBACK_MAXIMUM_THREADS);
+		}
+
+		this.receiver = new AwaitingReceiver();
+		this.generator = new MandelbrotSetGenerator(Runtime.getRuntime()
+				.availableProcessors(), this.maxIterations,
+				(IterationGridReceiver) this.receiver, this.executionMode);
+
+		if (this.diskCache) {
+			this.cacheDirectory = Files.createTempDirectory("tiles").toFile();
+			// a small memory tier, so that most hits are read from disk
+			this.generator.setTileCache(new TileCache(16, this.cacheDirectory));
+		}
+
+		while (1L << (2 * this.zoom) < REQUESTS) {
+			++this.zoom;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.generator.shutdown();
+
+		if (this.cacheDirectory != null) {
+			for (File file : this.cacheDirectory.listFiles()) {
+				file.delete();
+			}
+			this.cacheDirectory.delete();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(REQUESTS)
+	public Object generateTiles() throws InterruptedException {
+		this.receiver.prepare(REQUESTS);
+
+		long tilesAlongAxis = 1L << this.zoom;
+		for (int request = 0; request < REQUESTS; ++request) {
+			this.generator.generateTile(request % tilesAlongAxis, request
+					/ tilesAlongAxis, this.zoom, this.tileSize);
+		}
+
+		return this.receiver.await();
+	}
+}
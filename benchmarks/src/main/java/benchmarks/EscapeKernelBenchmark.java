@@ -0,0 +1,129 @@
+package benchmarks;
+
+import generator.DoubleDoubleEscapeIterationsComputer;
+import generator.EscapeIterationsComputer;
+import generator.EscapeTimeKernel;
+import generator.EscapeTimeKernels;
+import generator.FloatEscapeIterationsComputer;
+import generator.KernelPrecision;
+import generator.PerturbationEscapeIterationsComputer;
+import generator.Viewport;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the escape-time kernels on their own, without any scheduling, by
+ * computing every row of the whole set at a small resolution. Only the
+ * kernels whose arithmetic resolves the whole set at its full zoom are
+ * measured, see {@link KernelIterationCostBenchmark} for the deeper ones.
+ *
+ * Only the scalar double kernel checks periodicity, so the periodicity check
+ * is measured on its own with -p kernelName=scalar -p periodicityCheck=true.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EscapeKernelBenchmark {
+	@Param({ EscapeIterationsComputer.KERNEL_NAME, "vector",
+			FloatEscapeIterationsComputer.KERNEL_NAME, "vector-float" })
+	public String kernelName;
+
+	@Param({ "1000", "10000" })
+	public int maxIterations;
+
+	@Param({ "256" })
+	public int resolution;
+
+	@Param({ "false", "true" })
+	public boolean smooth;
+
+	@Param({ "false", "true" })
+	public boolean interiorCheck;
+
+	@Param({ "false" })
+	public boolean periodicityCheck;
+
+	private EscapeTimeKernel kernel;
+	private Viewport viewport;
+	private int[] iterations;
+	private float[] smoothIterations;
+
+	@Setup
+	public void setUp() {
+		this.kernel = createKernel(this.kernelName, this.maxIterations,
+				this.interiorCheck, this.periodicityCheck);
+		this.viewport = Viewport.forWholeSet(this.resolution, this.resolution);
+		this.iterations = new int[this.viewport.getPixelCount()];
+		this.smoothIterations = this.smooth ? new float[this.viewport
+				.getPixelCount()] : null;
+	}
+
+	/* default */static EscapeTimeKernel createKernel(String kernelName,
+			int maxIterations) {
+		return createKernel(kernelName, maxIterations, false, false);
+	}
+
+	/* default */static EscapeTimeKernel createKernel(String kernelName,
+			int maxIterations, boolean interiorCheck, boolean periodicityCheck) {
+		if (EscapeIterationsComputer.KERNEL_NAME.equals(kernelName)) {
+			return new EscapeIterationsComputer(maxIterations, interiorCheck,
+					periodicityCheck);
+		} else if (periodicityCheck) {
+			throw new IllegalStateException(String.format(
+					"The %s kernel does not check periodicity.", kernelName));
+		} else if (FloatEscapeIterationsComputer.KERNEL_NAME.equals(kernelName)) {
+			return new FloatEscapeIterationsComputer(maxIterations,
+					interiorCheck);
+		}
+
+		EscapeTimeKernel kernel = EscapeTimeKernels.createForPrecision(
+				getPrecision(kernelName), maxIterations, interiorCheck, false);
+		if (!kernel.getName().equals(kernelName)) {
+			throw new IllegalStateException(String.format(
+					"The %s kernel is not available.", kernelName));
+		}
+
+		return kernel;
+	}
+
+	/* default */static KernelPrecision getPrecision(String kernelName) {
+		if (kernelName.endsWith(FloatEscapeIterationsComputer.KERNEL_NAME)) {
+			return KernelPrecision.FLOAT;
+		} else if (DoubleDoubleEscapeIterationsComputer.KERNEL_NAME
+				.equals(kernelName)) {
+			return KernelPrecision.DOUBLE_DOUBLE;
+		} else if (PerturbationEscapeIterationsComputer.KERNEL_NAME
+				.equals(kernelName)) {
+			return KernelPrecision.PERTURBATION;
+		}
+
+		return KernelPrecision.DOUBLE;
+	}
+
+	@Benchmark
+	public int[] computeRows() {
+		int width = this.viewport.getWidth();
+
+		for (int pixelY = 0; pixelY < this.viewport.getHeight(); ++pixelY) {
+			this.kernel.computeRow(this.viewport, pixelY, 0, width,
+					this.iterations, this.smoothIterations, pixelY * width);
+		}
+
+		return this.iterations;
+	}
+}
@@ -0,0 +1,111 @@
+package benchmarks;
+
+import generator.IterationGridReceiver;
+import generator.MandelbrotSetGenerator;
+import generator.MandelbrotSetReceiver;
+import generator.Viewport;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a whole generation with each mode of {@link MandelbrotSetGenerator}
+ * across thread counts. The generator and its threads are created once per
+ * trial, so thread creation is not part of the measurement. The interior
+ * and periodicity checks apply to the kernels of every mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class GeneratorModeBenchmark {
+	public enum GenerationMode {
+		PIXELS, ITERATION_COMPUTING, PIXEL_GRID, WORK_STEALING, RECTANGLE_FILL
+	}
+
+	@Param
+	public GenerationMode mode;
+
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	@Param({ "1000" })
+	public int maxIterations;
+
+	@Param({ "0.01" })
+	public double precision;
+
+	@Param({ "false", "true" })
+	public boolean interiorCheck;
+
+	@Param({ "false", "true" })
+	public boolean periodicityCheck;
+
+	private AwaitingReceiver receiver;
+	private MandelbrotSetGenerator generator;
+	private Viewport viewport;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.receiver = new AwaitingReceiver();
+		this.viewport = Viewport.forPrecision(this.precision);
+
+		if (this.mode == GenerationMode.PIXELS
+				|| this.mode == GenerationMode.ITERATION_COMPUTING) {
+			this.generator = new MandelbrotSetGenerator(this.threads,
+					this.maxIterations, (MandelbrotSetReceiver) this.receiver);
+		} else {
+			this.generator = new MandelbrotSetGenerator(this.threads,
+					this.maxIterations, (IterationGridReceiver) this.receiver);
+		}
+		this.generator.setInteriorChecks(this.interiorCheck,
+				this.periodicityCheck);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.generator.shutdown();
+	}
+
+	@Benchmark
+	public Object generate() throws InterruptedException {
+		this.receiver.prepare();
+
+		switch (this.mode) {
+		case PIXELS:
+			this.generator.generatePixels(this.viewport);
+			break;
+		case ITERATION_COMPUTING:
+			this.generator
+					.generateNumbersUsingThreadsForIterationComputing(this.viewport);
+			break;
+		case PIXEL_GRID:
+			this.generator.generatePixelGrid(this.viewport);
+			break;
+		case WORK_STEALING:
+			this.generator.generatePixelGridUsingWorkStealing(this.viewport,
+					MandelbrotSetGenerator.DEFAULT_MINIMUM_TILE_SIZE);
+			break;
+		case RECTANGLE_FILL:
+			this.generator.generatePixelGridUsingRectangleFill(this.viewport);
+			break;
+		}
+
+		return this.receiver.await();
+	}
+}
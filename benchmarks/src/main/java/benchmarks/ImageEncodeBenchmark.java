@@ -0,0 +1,94 @@
+package benchmarks;
+
+import generator.IterationGrid;
+import generator.IterationGridReceiver;
+import generator.MandelbrotSetGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import visualizer.MandelbrotFractalVisualizer;
+
+/**
+ * Measures the steps of the visualizer that follow the generation - colouring
+ * the canvas from a grid and encoding the canvas as a PNG image.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ImageEncodeBenchmark {
+	@Param({ "1280" })
+	public int width;
+
+	@Param({ "1024" })
+	public int height;
+
+	@Param({ "1000" })
+	public int maxIterations;
+
+	private IterationGrid grid;
+	private MandelbrotFractalVisualizer visualizer;
+
+	@Setup
+	public void setUp() throws InterruptedException {
+		AwaitingReceiver receiver = new AwaitingReceiver();
+		MandelbrotSetGenerator generator = new MandelbrotSetGenerator(Runtime
+				.getRuntime().availableProcessors(), this.maxIterations,
+				(IterationGridReceiver) receiver);
+
+		receiver.prepare();
+		generator.generatePixelGrid(this.height, this.width);
+		this.grid = (IterationGrid) receiver.await();
+		generator.shutdown();
+
+		this.visualizer = new MandelbrotFractalVisualizer();
+		this.visualizer.paintGrid(this.grid);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.visualizer.shutdown();
+	}
+
+	@Benchmark
+	public MandelbrotFractalVisualizer paint() {
+		this.visualizer.paintGrid(this.grid);
+		return this.visualizer;
+	}
+
+	@Benchmark
+	public MandelbrotFractalVisualizer encode() throws IOException {
+		this.visualizer.writeImage(OutputStream.nullOutputStream());
+		return this.visualizer;
+	}
+
+	/**
+	 * Encodes the same canvas with the single-threaded ImageIO writer, for
+	 * comparison with the parallel encoder of the visualizer.
+	 */
+	@Benchmark
+	public MandelbrotFractalVisualizer encodeWithImageIO() throws IOException {
+		ImageIO.write(this.visualizer.getCanvas(), "png",
+				OutputStream.nullOutputStream());
+		return this.visualizer;
+	}
+}
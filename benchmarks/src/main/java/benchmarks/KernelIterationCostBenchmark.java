@@ -0,0 +1,123 @@
+package benchmarks;
+
+import generator.DoubleDoubleEscapeIterationsComputer;
+import generator.EscapeIterationsComputer;
+import generator.EscapeTimeKernel;
+import generator.FloatEscapeIterationsComputer;
+import generator.KernelPrecision;
+import generator.PerturbationEscapeIterationsComputer;
+import generator.Viewport;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of a single iteration of every kernel, each at a zoom
+ * of the range it is chosen for by {@link KernelPrecision}. The viewports
+ * are centered on the same point of the seahorse valley, but their escape
+ * iterations differ, so the rows per second are not comparable - the
+ * iterations secondary result is, and its inverse is the time an iteration
+ * takes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class KernelIterationCostBenchmark {
+	private static final String CENTER_REAL_PART = "-0.743643887037158704752191506114774";
+	private static final String CENTER_IMAGINARY_PART = "0.131825904205311970493132056385139";
+
+	@Param({ FloatEscapeIterationsComputer.KERNEL_NAME, "vector-float",
+			EscapeIterationsComputer.KERNEL_NAME, "vector",
+			DoubleDoubleEscapeIterationsComputer.KERNEL_NAME,
+			PerturbationEscapeIterationsComputer.KERNEL_NAME })
+	public String kernelName;
+
+	@Param({ "2000" })
+	public int maxIterations;
+
+	@Param({ "128" })
+	public int resolution;
+
+	/**
+	 * Counts the iterations computed during a measurement, which JMH reports
+	 * per unit of time.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class IterationCounter {
+		public long iterations;
+
+		@Setup(Level.Iteration)
+		public void clean() {
+			this.iterations = 0;
+		}
+	}
+
+	private EscapeTimeKernel kernel;
+	private Viewport viewport;
+	private int[] iterations;
+	private int row;
+
+	@Setup
+	public void setUp() {
+		this.kernel = EscapeKernelBenchmark.createKernel(this.kernelName,
+				this.maxIterations);
+		this.viewport = new Viewport(new BigDecimal(CENTER_REAL_PART),
+				new BigDecimal(CENTER_IMAGINARY_PART),
+				getStep(EscapeKernelBenchmark.getPrecision(this.kernelName)),
+				this.resolution, this.resolution);
+		this.iterations = new int[this.resolution];
+	}
+
+	/**
+	 * Returns a step well inside the range of the precision.
+	 */
+	private static double getStep(KernelPrecision precision) {
+		switch (precision) {
+		case FLOAT:
+			return 1e-3;
+		case DOUBLE_DOUBLE:
+			return 1e-20;
+		case PERTURBATION:
+			return 1e-32;
+		default:
+			return 1e-8;
+		}
+	}
+
+	/**
+	 * Computes a single row, so that slow kernels still complete many
+	 * operations per measurement.
+	 */
+	@Benchmark
+	public int[] computeRow(IterationCounter counter) {
+		this.kernel.computeRow(this.viewport, this.row, 0, this.resolution,
+				this.iterations, null, 0);
+		this.row = (this.row + 1) % this.resolution;
+
+		long rowIterations = 0;
+		for (int pixelIterations : this.iterations) {
+			rowIterations += pixelIterations;
+		}
+		counter.iterations += rowIterations;
+
+		return this.iterations;
+	}
+}
@@ -0,0 +1,72 @@
+package benchmarks;
+
+import generator.MandelbrotSetGenerator;
+import generator.MandelbrotSetReceiver;
+import generator.Viewport;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the column strip mode of {@link MandelbrotSetGenerator} across
+ * thread counts and strip widths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SubsetGranularityBenchmark {
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	// 1/4, 1/8, 1/16, 1/32 and 1/128 of the set per thread, when the default
+	// precision is used
+	@Param({ "87", "43", "21", "10", "2" })
+	public int realPartIterations;
+
+	@Param({ "1000" })
+	public int maxIterations;
+
+	@Param({ "0.01" })
+	public double precision;
+
+	private AwaitingReceiver receiver;
+	private MandelbrotSetGenerator generator;
+	private Viewport viewport;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.receiver = new AwaitingReceiver();
+		this.viewport = Viewport.forPrecision(this.precision);
+		this.generator = new MandelbrotSetGenerator(this.threads,
+				this.maxIterations, (MandelbrotSetReceiver) this.receiver);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.generator.shutdown();
+	}
+
+	@Benchmark
+	public Object generate() throws InterruptedException {
+		this.receiver.prepare();
+		this.generator.generateNumbersUsingThreadsForGeneratingSubseths(
+				this.viewport, this.realPartIterations);
+		return this.receiver.await();
+	}
+}
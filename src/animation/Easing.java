@@ -0,0 +1,44 @@
+package animation;
+
+/**
+ * Maps the elapsed fraction of an animation to the fraction of the way from
+ * its start to its end. The zoom of a {@link ZoomAnimation} is interpolated
+ * exponentially, so a linear easing zooms at a constant rate.
+ */
+public enum Easing {
+	LINEAR {
+		@Override
+		public double apply(double time) {
+			return time;
+		}
+	},
+
+	/**
+	 * Starts and stops gradually, with the smoothstep polynomial.
+	 */
+	EASE_IN_OUT {
+		@Override
+		public double apply(double time) {
+			return time * time * (3 - 2 * time);
+		}
+	},
+
+	EASE_IN {
+		@Override
+		public double apply(double time) {
+			return time * time;
+		}
+	},
+
+	EASE_OUT {
+		@Override
+		public double apply(double time) {
+			return time * (2 - time);
+		}
+	};
+
+	/**
+	 * Returns the progress at the specified time. Both are between 0 and 1.
+	 */
+	public abstract double apply(double time);
+}
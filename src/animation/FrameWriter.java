@@ -0,0 +1,23 @@
+package animation;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import visualizer.PixelRowSource;
+
+/**
+ * Writes the frames of an animation, in order, to some destination.
+ */
+public interface FrameWriter extends Closeable {
+	/**
+	 * Writes a frame. The rows of the source are read before the method
+	 * returns.
+	 *
+	 * @param frame
+	 *            - the number of the frame, counted from 0
+	 * @param source
+	 *            - the colours of the frame
+	 */
+	public void writeFrame(int frame, PixelRowSource source)
+			throws IOException;
+}
@@ -0,0 +1,59 @@
+package animation;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import visualizer.ParallelPngEncoder;
+import visualizer.PixelRowSource;
+
+/**
+ * Writes every frame to its own PNG file, numbered so that the files are
+ * sorted in the order of the frames, e.g. frame00042.png.
+ */
+public class PngSequenceWriter implements FrameWriter {
+	private File directory;
+	private String prefix;
+
+	private ParallelPngEncoder encoder;
+
+	/**
+	 * Creates a writer that encodes the frames on the specified number of
+	 * threads.
+	 *
+	 * @param directory
+	 *            - the directory the files are written to, created if needed
+	 * @param prefix
+	 *            - the beginning of the file names, before the frame number
+	 * @param threads
+	 *            - the number of threads that compress each frame
+	 */
+	public PngSequenceWriter(File directory, String prefix, int threads) {
+		this.directory = directory;
+		this.prefix = prefix;
+		this.encoder = new ParallelPngEncoder(threads);
+	}
+
+	@Override
+	public void writeFrame(int frame, PixelRowSource source)
+			throws IOException {
+		if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+			throw new IOException("Failed to create directory "
+					+ this.directory);
+		}
+
+		File file = new File(this.directory, String.format("%s%05d.png",
+				this.prefix, frame));
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			this.encoder.encode(source, channel);
+		}
+	}
+
+	@Override
+	public void close() {
+		this.encoder.shutdown();
+	}
+}
@@ -0,0 +1,55 @@
+package animation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import visualizer.PixelRowSource;
+
+/**
+ * Writes the frames one after another as raw 8-bit RGB pixels, row by row,
+ * without any header. The stream could be piped to a video encoder, for
+ * example {@code ffmpeg -f rawvideo -pix_fmt rgb24 -s WxH -r 30 -i - out.mp4}.
+ */
+public class RawRgbStreamWriter implements FrameWriter {
+	private static final int BYTES_PER_PIXEL = 3;
+
+	private WritableByteChannel channel;
+
+	private int[] row;
+	private ByteBuffer rowBytes;
+
+	public RawRgbStreamWriter(WritableByteChannel channel) {
+		this.channel = channel;
+	}
+
+	@Override
+	public void writeFrame(int frame, PixelRowSource source)
+			throws IOException {
+		int width = source.getWidth();
+		if (this.row == null || this.row.length != width) {
+			this.row = new int[width];
+			this.rowBytes = ByteBuffer.allocateDirect(width * BYTES_PER_PIXEL);
+		}
+
+		for (int pixelY = 0; pixelY < source.getHeight(); ++pixelY) {
+			source.readRow(pixelY, this.row);
+
+			this.rowBytes.clear();
+			for (int color : this.row) {
+				this.rowBytes.put((byte) (color >> 16))
+						.put((byte) (color >> 8)).put((byte) color);
+			}
+			this.rowBytes.flip();
+
+			while (this.rowBytes.hasRemaining()) {
+				this.channel.write(this.rowBytes);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+}
@@ -0,0 +1,425 @@
+package animation;
+
+import engine.RenderEngine;
+import engine.RenderJob;
+import generator.EscapeTimeKernels;
+import generator.IterationGrid;
+import generator.Viewport;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import visualizer.CyclicPaletteMapper;
+import visualizer.PixelRowSource;
+
+/**
+ * A sequence of frames that zooms from one viewport to another. The pixel
+ * spacing changes exponentially with the eased time, and the center moves
+ * in proportion to it, so the end center approaches the middle of the frames
+ * at the same rate as they zoom in.
+ *
+ * Frames are not generated one by one. Consecutive frames are grouped so
+ * that each group fits into a keyframe with at most
+ * {@link #KEYFRAME_OVERSAMPLING} times the resolution of a frame along each
+ * axis, whose pixels are as fine as those of the finest frame of the group.
+ * Only the keyframes are generated and every frame is resampled from its
+ * keyframe, so a zoom of many frames per doubling computes a fraction of the
+ * pixels it shows. The next keyframes are generated by a
+ * {@link RenderEngine} while the frames of the current one are resampled and
+ * written.
+ */
+public class ZoomAnimation {
+	public static final int KEYFRAME_OVERSAMPLING = 2;
+
+	// the keyframes that are generated ahead of the one being written
+	private static final int KEYFRAMES_IN_FLIGHT = 2;
+
+	private int frameCount;
+	private int width;
+	private int height;
+
+	// the end center, to which the centers of all frames and keyframes are
+	// relative, so that they keep their precision in deep zooms
+	private BigDecimal endCenterRealPart;
+	private BigDecimal endCenterImaginaryPart;
+
+	private double[] frameSteps;
+	private double[] frameRealPartOffsets;
+	private double[] frameImaginaryPartOffsets;
+
+	private CyclicPaletteMapper palette = new CyclicPaletteMapper();
+
+	private int keyframeCount;
+	private long computedPixelCount;
+	private double framesPerSecond;
+
+	/**
+	 * Creates an animation between two viewports with the same resolution and
+	 * square pixels.
+	 *
+	 * @param start
+	 *            - the first frame
+	 * @param end
+	 *            - the last frame
+	 * @param frameCount
+	 *            - the number of frames, including the first and the last one
+	 * @param easing
+	 *            - the progress of the zoom over time
+	 */
+	public ZoomAnimation(Viewport start, Viewport end, int frameCount,
+			Easing easing) {
+		if (start.getWidth() != end.getWidth()
+				|| start.getHeight() != end.getHeight()) {
+			throw new IllegalArgumentException(
+					"The viewports must have the same resolution.");
+		}
+		if (frameCount <= 0) {
+			throw new IllegalArgumentException("Invalid frame count "
+					+ frameCount + ".");
+		}
+
+		this.frameCount = frameCount;
+		this.width = start.getWidth();
+		this.height = start.getHeight();
+
+		this.endCenterRealPart = getCenterRealPart(end);
+		this.endCenterImaginaryPart = getCenterImaginaryPart(end);
+
+		double startRealPartOffset = getCenterRealPart(start).subtract(
+				this.endCenterRealPart).doubleValue();
+		double startImaginaryPartOffset = getCenterImaginaryPart(start)
+				.subtract(this.endCenterImaginaryPart).doubleValue();
+		double startStep = start.getRealPartStep();
+		double endStep = end.getRealPartStep();
+
+		this.frameSteps = new double[frameCount];
+		this.frameRealPartOffsets = new double[frameCount];
+		this.frameImaginaryPartOffsets = new double[frameCount];
+
+		for (int frame = 0; frame < frameCount; ++frame) {
+			double progress = easing.apply(frameCount > 1 ? (double) frame
+					/ (frameCount - 1) : 0);
+			double step = startStep * Math.pow(endStep / startStep, progress);
+
+			// the fraction of the way from the end center to the start one
+			double centerFraction = startStep != endStep ? (step - endStep)
+					/ (startStep - endStep) : 1 - progress;
+
+			this.frameSteps[frame] = step;
+			this.frameRealPartOffsets[frame] = startRealPartOffset
+					* centerFraction;
+			this.frameImaginaryPartOffsets[frame] = startImaginaryPartOffset
+					* centerFraction;
+		}
+	}
+
+	private static BigDecimal getCenterRealPart(Viewport viewport) {
+		return viewport.getReferenceRealPart().add(
+				new BigDecimal(viewport.getRealPartOffset(viewport
+						.getWidth() / 2.0)), MathContext.UNLIMITED);
+	}
+
+	private static BigDecimal getCenterImaginaryPart(Viewport viewport) {
+		return viewport.getReferenceImaginaryPart().add(
+				new BigDecimal(viewport.getImaginaryPartOffset(viewport
+						.getHeight() / 2.0)), MathContext.UNLIMITED);
+	}
+
+	/**
+	 * Returns the viewport that the specified frame shows.
+	 */
+	public Viewport getFrameViewport(int frame) {
+		return createViewport(this.frameRealPartOffsets[frame],
+				this.frameImaginaryPartOffsets[frame], this.frameSteps[frame],
+				this.width, this.height);
+	}
+
+	private Viewport createViewport(double realPartOffset,
+			double imaginaryPartOffset, double step, int width, int height) {
+		return new Viewport(this.endCenterRealPart.add(new BigDecimal(
+				realPartOffset), MathContext.UNLIMITED),
+				this.endCenterImaginaryPart.add(new BigDecimal(
+						imaginaryPartOffset), MathContext.UNLIMITED), step,
+				width, height);
+	}
+
+	/**
+	 * Generates the keyframes on the engine and writes every frame.
+	 *
+	 * @param engine
+	 *            - the engine that generates the keyframes
+	 * @param maxIterations
+	 *            - maximum iterations applied to each number
+	 * @param writer
+	 *            - the destination of the frames, which is not closed
+	 */
+	public void render(RenderEngine engine, int maxIterations,
+			FrameWriter writer) throws IOException, InterruptedException,
+			ExecutionException {
+		List<Keyframe> keyframes = createKeyframes();
+		Queue<RenderJob> pendingJobs = new ArrayDeque<RenderJob>();
+		int submittedKeyframes = 0;
+
+		this.keyframeCount = keyframes.size();
+		this.computedPixelCount = 0;
+		long startTime = System.nanoTime();
+
+		try {
+			for (Keyframe keyframe : keyframes) {
+				while (submittedKeyframes < keyframes.size()
+						&& pendingJobs.size() <= KEYFRAMES_IN_FLIGHT) {
+					Viewport viewport = keyframes.get(submittedKeyframes++).viewport;
+					pendingJobs.add(engine.submit(viewport, EscapeTimeKernels
+							.createForViewport(viewport, maxIterations, true,
+									false), true, 0, TimeUnit.NANOSECONDS));
+				}
+
+				IterationGrid grid = pendingJobs.poll().get();
+				this.computedPixelCount += grid.getViewport().getPixelCount();
+				int[] colors = getColors(grid);
+
+				for (int frame = keyframe.firstFrame; frame < keyframe.lastFrame; ++frame) {
+					writer.writeFrame(frame,
+							createFrameSource(keyframe, colors, frame));
+				}
+			}
+		} finally {
+			for (RenderJob job : pendingJobs) {
+				job.cancel(false);
+			}
+		}
+
+		this.framesPerSecond = this.frameCount * 1e9
+				/ (System.nanoTime() - startTime);
+	}
+
+	/**
+	 * Groups the frames greedily into keyframes.
+	 */
+	private List<Keyframe> createKeyframes() {
+		List<Keyframe> keyframes = new ArrayList<Keyframe>();
+		int firstFrame = 0;
+
+		while (firstFrame < this.frameCount) {
+			Keyframe keyframe = new Keyframe(firstFrame);
+			while (keyframe.lastFrame < this.frameCount
+					&& keyframe.canInclude(keyframe.lastFrame)) {
+				keyframe.include(keyframe.lastFrame);
+			}
+
+			keyframe.createViewport();
+			keyframes.add(keyframe);
+			firstFrame = keyframe.lastFrame;
+		}
+
+		return keyframes;
+	}
+
+	private int[] getColors(IterationGrid grid) {
+		PixelRowSource source = this.palette.createRowSource(grid);
+		int[] colors = new int[grid.getWidth() * grid.getHeight()];
+		int[] row = new int[grid.getWidth()];
+
+		for (int pixelY = 0; pixelY < grid.getHeight(); ++pixelY) {
+			source.readRow(pixelY, row);
+			System.arraycopy(row, 0, colors, pixelY * row.length, row.length);
+		}
+
+		return colors;
+	}
+
+	/**
+	 * Returns a source of the colours of a frame, bilinearly interpolated
+	 * from the colours of its keyframe while the rows are read.
+	 */
+	private PixelRowSource createFrameSource(final Keyframe keyframe,
+			final int[] colors, int frame) {
+		final int keyframeWidth = keyframe.viewport.getWidth();
+		final double scale = this.frameSteps[frame] / keyframe.step;
+
+		// the keyframe coordinates of the frame pixel (0, 0)
+		final double originX = (this.frameRealPartOffsets[frame] - keyframe.realPartOffset)
+				/ keyframe.step
+				+ keyframeWidth
+				/ 2.0
+				- this.width
+				/ 2.0
+				* scale;
+		final double originY = (this.frameImaginaryPartOffsets[frame] - keyframe.imaginaryPartOffset)
+				/ keyframe.step
+				+ keyframe.viewport.getHeight()
+				/ 2.0
+				- this.height
+				/ 2.0
+				* scale;
+
+		return new PixelRowSource() {
+			@Override
+			public int getWidth() {
+				return ZoomAnimation.this.width;
+			}
+
+			@Override
+			public int getHeight() {
+				return ZoomAnimation.this.height;
+			}
+
+			@Override
+			public void readRow(int pixelY, int[] rgb) {
+				double keyframeY = originY + pixelY * scale;
+				int top = (int) keyframeY;
+				double fractionY = keyframeY - top;
+				int topRow = top * keyframeWidth;
+				int bottomRow = topRow + keyframeWidth;
+
+				for (int pixelX = 0; pixelX < rgb.length; ++pixelX) {
+					double keyframeX = originX + pixelX * scale;
+					int left = (int) keyframeX;
+					double fractionX = keyframeX - left;
+
+					rgb[pixelX] = interpolate(
+							interpolate(colors[topRow + left], colors[topRow
+									+ left + 1], fractionX),
+							interpolate(colors[bottomRow + left],
+									colors[bottomRow + left + 1], fractionX),
+							fractionY);
+				}
+			}
+		};
+	}
+
+	private static int interpolate(int from, int to, double fraction) {
+		int red = interpolateChannel(from >> 16, to >> 16, fraction);
+		int green = interpolateChannel(from >> 8, to >> 8, fraction);
+		int blue = interpolateChannel(from, to, fraction);
+
+		return red << 16 | green << 8 | blue;
+	}
+
+	private static int interpolateChannel(int from, int to, double fraction) {
+		from &= 0xff;
+		to &= 0xff;
+		return (int) (from + (to - from) * fraction + 0.5);
+	}
+
+	/**
+	 * Returns the number of keyframes generated by the last render.
+	 */
+	public int getKeyframeCount() {
+		return this.keyframeCount;
+	}
+
+	/**
+	 * Returns the number of pixels iterated by the last render. Generating
+	 * every frame would iterate getFrameCount() times the pixels of a frame.
+	 */
+	public long getComputedPixelCount() {
+		return this.computedPixelCount;
+	}
+
+	/**
+	 * Returns the number of frames written per second by the last render,
+	 * including the generation of the keyframes.
+	 */
+	public double getFramesPerSecond() {
+		return this.framesPerSecond;
+	}
+
+	public int getFrameCount() {
+		return this.frameCount;
+	}
+
+	/**
+	 * A consecutive range of frames and the viewport they are resampled from.
+	 */
+	private class Keyframe {
+		private int firstFrame;
+		private int lastFrame;
+
+		// the region covered by the frames, relative to the end center
+		private double minRealPartOffset = Double.POSITIVE_INFINITY;
+		private double maxRealPartOffset = Double.NEGATIVE_INFINITY;
+		private double minImaginaryPartOffset = Double.POSITIVE_INFINITY;
+		private double maxImaginaryPartOffset = Double.NEGATIVE_INFINITY;
+
+		private double step = Double.POSITIVE_INFINITY;
+		private double maxFrameStep;
+
+		private double realPartOffset;
+		private double imaginaryPartOffset;
+		private Viewport viewport;
+
+		private Keyframe(int firstFrame) {
+			this.firstFrame = firstFrame;
+			this.lastFrame = firstFrame;
+			include(firstFrame);
+		}
+
+		/**
+		 * Checks whether the frame could be added without making the
+		 * keyframe coarser than the frame or larger than the oversampling
+		 * allows.
+		 */
+		private boolean canInclude(int frame) {
+			double step = Math.min(this.step, frameSteps[frame]);
+			double maxFrameStep = Math.max(this.maxFrameStep,
+					frameSteps[frame]);
+			double realPartExtent = ZoomAnimation.this.width / 2.0 * frameSteps[frame];
+			double imaginaryPartExtent = ZoomAnimation.this.height / 2.0 * frameSteps[frame];
+
+			double width = Math.max(this.maxRealPartOffset,
+					frameRealPartOffsets[frame] + realPartExtent)
+					- Math.min(this.minRealPartOffset,
+							frameRealPartOffsets[frame] - realPartExtent);
+			double height = Math.max(this.maxImaginaryPartOffset,
+					frameImaginaryPartOffsets[frame] + imaginaryPartExtent)
+					- Math.min(this.minImaginaryPartOffset,
+							frameImaginaryPartOffsets[frame]
+									- imaginaryPartExtent);
+
+			return maxFrameStep <= KEYFRAME_OVERSAMPLING * step
+					&& width <= KEYFRAME_OVERSAMPLING * ZoomAnimation.this.width * step
+					&& height <= KEYFRAME_OVERSAMPLING * ZoomAnimation.this.height * step;
+		}
+
+		private void include(int frame) {
+			double realPartExtent = ZoomAnimation.this.width / 2.0 * frameSteps[frame];
+			double imaginaryPartExtent = ZoomAnimation.this.height / 2.0 * frameSteps[frame];
+
+			this.minRealPartOffset = Math.min(this.minRealPartOffset,
+					frameRealPartOffsets[frame] - realPartExtent);
+			this.maxRealPartOffset = Math.max(this.maxRealPartOffset,
+					frameRealPartOffsets[frame] + realPartExtent);
+			this.minImaginaryPartOffset = Math.min(this.minImaginaryPartOffset,
+					frameImaginaryPartOffsets[frame] - imaginaryPartExtent);
+			this.maxImaginaryPartOffset = Math.max(this.maxImaginaryPartOffset,
+					frameImaginaryPartOffsets[frame] + imaginaryPartExtent);
+
+			this.step = Math.min(this.step, frameSteps[frame]);
+			this.maxFrameStep = Math.max(this.maxFrameStep, frameSteps[frame]);
+			this.lastFrame = frame + 1;
+		}
+
+		private void createViewport() {
+			this.realPartOffset = (this.minRealPartOffset + this.maxRealPartOffset) / 2;
+			this.imaginaryPartOffset = (this.minImaginaryPartOffset + this.maxImaginaryPartOffset) / 2;
+
+			// a margin of a pixel on each side for the interpolation
+			int width = (int) Math.ceil((this.maxRealPartOffset - this.minRealPartOffset)
+					/ this.step) + 2;
+			int height = (int) Math.ceil((this.maxImaginaryPartOffset - this.minImaginaryPartOffset)
+					/ this.step) + 2;
+
+			this.viewport = ZoomAnimation.this.createViewport(
+					this.realPartOffset, this.imaginaryPartOffset, this.step,
+					width, height);
+		}
+	}
+}
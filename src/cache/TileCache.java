@@ -0,0 +1,391 @@
+package cache;
+
+import generator.IterationGrid;
+import generator.Viewport;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A two-tier cache of generated tiles. The memory tier keeps a bounded number
+ * of the least recently used tiles. The optional disk tier keeps the tiles
+ * that were put into the cache as memory-mapped files of escape iterations,
+ * so tiles evicted from memory, or generated by a previous run, are loaded
+ * without computing them again. Once its files exceed the disk capacity, the
+ * least recently used ones are deleted, by their last-modified times, which
+ * are renewed whenever a file is read.
+ *
+ * A disk file consists of the width and the height of the tile followed by
+ * its escape iterations in row-major order, all as big-endian ints. The tile
+ * of a smooth key is followed by its continuous escape values in the same
+ * order, as big-endian floats.
+ */
+public class TileCache {
+	/**
+	 * The number of bytes the tile files of the disk tier could take up by
+	 * default.
+	 */
+	public static final long DEFAULT_DISK_CAPACITY_BYTES = 1L << 30;
+
+	private static final int HEADER_INTS = 2;
+
+	private static final String TILE_FILE_SUFFIX = ".iter";
+
+	private Map<TileKey, IterationGrid> memoryTier;
+	private File directory;
+
+	private long diskCapacityBytes;
+
+	// the size of the tile files, kept up to date as they are written and
+	// recounted when they are evicted
+	private AtomicLong diskBytes = new AtomicLong();
+	private final Object diskEvictionLock = new Object();
+
+	private AtomicLong hitCount = new AtomicLong();
+	private AtomicLong diskHitCount = new AtomicLong();
+	private AtomicLong missCount = new AtomicLong();
+	private AtomicLong evictionCount = new AtomicLong();
+	private AtomicLong diskEvictionCount = new AtomicLong();
+
+	/**
+	 * Creates a cache that keeps tiles only in memory.
+	 *
+	 * @param memoryCapacity
+	 *            - the maximum number of tiles kept in memory
+	 */
+	public TileCache(int memoryCapacity) {
+		this(memoryCapacity, null);
+	}
+
+	/**
+	 * Creates a cache that keeps tiles in memory and in the specified
+	 * directory, whose tile files could take up
+	 * {@link #DEFAULT_DISK_CAPACITY_BYTES}.
+	 *
+	 * @param memoryCapacity
+	 *            - the maximum number of tiles kept in memory
+	 * @param directory
+	 *            - the directory of the disk tier, created if missing, or null
+	 *            for no disk tier
+	 */
+	public TileCache(int memoryCapacity, File directory) {
+		this(memoryCapacity, directory, DEFAULT_DISK_CAPACITY_BYTES);
+	}
+
+	/**
+	 * Creates a cache that keeps tiles in memory and in the specified
+	 * directory. The tile files already in the directory count towards the
+	 * disk capacity.
+	 *
+	 * @param memoryCapacity
+	 *            - the maximum number of tiles kept in memory
+	 * @param directory
+	 *            - the directory of the disk tier, created if missing, or null
+	 *            for no disk tier
+	 * @param diskCapacityBytes
+	 *            - the number of bytes the tile files could take up
+	 */
+	public TileCache(final int memoryCapacity, File directory,
+			long diskCapacityBytes) {
+		// access order makes the eldest entry the least recently used one
+		this.memoryTier = new LinkedHashMap<TileKey, IterationGrid>(16, 0.75f,
+				true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<TileKey, IterationGrid> eldest) {
+				if (size() > memoryCapacity) {
+					TileCache.this.evictionCount.incrementAndGet();
+					return true;
+				}
+
+				return false;
+			}
+		};
+
+		this.directory = directory;
+		this.diskCapacityBytes = diskCapacityBytes;
+		if (directory != null) {
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IllegalArgumentException(
+						"Cannot create the directory " + directory + ".");
+			}
+
+			this.diskBytes.set(countDiskBytes(listTileFiles()));
+			evictFromDisk();
+		}
+	}
+
+	/**
+	 * Returns the cached tile or null if the tile is not in any tier. A tile
+	 * found on disk is moved into the memory tier.
+	 */
+	public IterationGrid get(TileKey key) {
+		IterationGrid grid;
+		synchronized (this.memoryTier) {
+			grid = this.memoryTier.get(key);
+		}
+
+		if (grid != null) {
+			this.hitCount.incrementAndGet();
+			return grid;
+		}
+
+		grid = readFromDisk(key);
+		if (grid == null) {
+			this.missCount.incrementAndGet();
+			return null;
+		}
+
+		synchronized (this.memoryTier) {
+			this.memoryTier.put(key, grid);
+		}
+
+		this.hitCount.incrementAndGet();
+		this.diskHitCount.incrementAndGet();
+		return grid;
+	}
+
+	/**
+	 * Puts a generated tile into the memory tier and writes it to the disk
+	 * tier. The grid should not be modified afterwards.
+	 */
+	public void put(TileKey key, IterationGrid grid) {
+		synchronized (this.memoryTier) {
+			this.memoryTier.put(key, grid);
+		}
+
+		writeToDisk(key, grid);
+	}
+
+	private IterationGrid readFromDisk(TileKey key) {
+		if (this.directory == null) {
+			return null;
+		}
+
+		File file = new File(this.directory, key.getFileName());
+		if (!file.isFile()) {
+			return null;
+		}
+
+		// the file becomes the most recently used one
+		file.setLastModified(System.currentTimeMillis());
+
+		try (RandomAccessFile input = new RandomAccessFile(file, "r");
+				FileChannel channel = input.getChannel()) {
+			MappedByteBuffer bytes = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			IntBuffer buffer = bytes.asIntBuffer();
+
+			int tileSize = key.getTileSize();
+			int pixelCount = tileSize * tileSize;
+			int width = buffer.get();
+			int height = buffer.get();
+			if (width != tileSize || height != tileSize
+					|| buffer.remaining() != (key.isSmooth() ? 2 : 1)
+							* pixelCount) {
+				Logger.getLogger("TileCache").log(Level.WARNING,
+						"Ignoring the malformed tile file " + file + ".");
+				return null;
+			}
+
+			Viewport viewport = Viewport.forTile(key.getTileX(),
+					key.getTileY(), key.getZoom(), tileSize);
+			IterationGrid grid = new IterationGrid(viewport,
+					key.getMaxIterations(), key.isSmooth());
+			buffer.get(grid.getIterations());
+			if (key.isSmooth()) {
+				bytes.position(4 * (HEADER_INTS + pixelCount));
+				bytes.asFloatBuffer().get(grid.getSmoothIterations());
+			}
+
+			return grid;
+		} catch (IOException e) {
+			Logger.getLogger("TileCache").log(Level.WARNING,
+					"Failed to read the tile file " + file + ".", e);
+			return null;
+		}
+	}
+
+	private void writeToDisk(TileKey key, IterationGrid grid) {
+		if (this.directory == null) {
+			return;
+		}
+
+		File file = new File(this.directory, key.getFileName());
+		File temporaryFile = new File(this.directory, key.getFileName()
+				+ "." + Thread.currentThread().getId() + ".tmp");
+		int[] iterations = grid.getIterations();
+		float[] smoothIterations = key.isSmooth() ? grid
+				.getSmoothIterations() : null;
+		long pixelCount = iterations.length;
+		long fileBytes = 4L * (HEADER_INTS + (smoothIterations != null ? 2 : 1)
+				* pixelCount);
+		long replacedBytes = file.length();
+
+		// the tile is written under another name and then renamed, so that
+		// a reader never maps a partially written file
+		try {
+			try (RandomAccessFile output = new RandomAccessFile(
+					temporaryFile, "rw");
+					FileChannel channel = output.getChannel()) {
+				MappedByteBuffer buffer = channel.map(
+						FileChannel.MapMode.READ_WRITE, 0, fileBytes);
+				buffer.asIntBuffer().put(grid.getWidth())
+						.put(grid.getHeight()).put(iterations);
+				if (smoothIterations != null) {
+					buffer.position((int) (4L * (HEADER_INTS + pixelCount)));
+					buffer.asFloatBuffer().put(smoothIterations);
+				}
+				buffer.force();
+			}
+
+			Files.move(temporaryFile.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Logger.getLogger("TileCache").log(Level.WARNING,
+					"Failed to write the tile file " + file + ".", e);
+			temporaryFile.delete();
+			return;
+		}
+
+		if (this.diskBytes.addAndGet(fileBytes - replacedBytes)
+				> this.diskCapacityBytes) {
+			evictFromDisk();
+		}
+	}
+
+	/**
+	 * Deletes the least recently used tile files until the rest fit into the
+	 * disk capacity. The files are listed again, so that files deleted or
+	 * written meanwhile are counted correctly.
+	 */
+	private void evictFromDisk() {
+		synchronized (this.diskEvictionLock) {
+			File[] files = listTileFiles();
+			long bytes = countDiskBytes(files);
+			if (bytes <= this.diskCapacityBytes) {
+				this.diskBytes.set(bytes);
+				return;
+			}
+
+			final long[] lastModifiedTimes = new long[files.length];
+			Integer[] order = new Integer[files.length];
+			for (int index = 0; index < files.length; ++index) {
+				lastModifiedTimes[index] = files[index].lastModified();
+				order[index] = index;
+			}
+			// the times are read once, as reads renew them while sorting
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer first, Integer second) {
+					return Long.compare(lastModifiedTimes[first],
+							lastModifiedTimes[second]);
+				}
+			});
+
+			for (int index = 0; index < order.length
+					&& bytes > this.diskCapacityBytes; ++index) {
+				File file = files[order[index]];
+				long fileBytes = file.length();
+				if (file.delete()) {
+					bytes -= fileBytes;
+					this.diskEvictionCount.incrementAndGet();
+				}
+			}
+
+			this.diskBytes.set(bytes);
+		}
+	}
+
+	private File[] listTileFiles() {
+		File[] files = this.directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.getName().endsWith(TILE_FILE_SUFFIX)
+						&& file.isFile();
+			}
+		});
+
+		return files != null ? files : new File[0];
+	}
+
+	private static long countDiskBytes(File[] files) {
+		long bytes = 0;
+		for (File file : files) {
+			bytes += file.length();
+		}
+		return bytes;
+	}
+
+	/**
+	 * Removes every tile from the memory tier. The disk tier is kept.
+	 */
+	public void clearMemory() {
+		synchronized (this.memoryTier) {
+			this.memoryTier.clear();
+		}
+	}
+
+	public int getMemoryTileCount() {
+		synchronized (this.memoryTier) {
+			return this.memoryTier.size();
+		}
+	}
+
+	/**
+	 * Returns the number of tiles found in any tier.
+	 */
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	/**
+	 * Returns the number of tiles that were found only in the disk tier.
+	 */
+	public long getDiskHitCount() {
+		return this.diskHitCount.get();
+	}
+
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	/**
+	 * Returns the number of tiles evicted from the memory tier.
+	 */
+	public long getEvictionCount() {
+		return this.evictionCount.get();
+	}
+
+	/**
+	 * Returns the number of tile files deleted from the disk tier to keep it
+	 * within its capacity.
+	 */
+	public long getDiskEvictionCount() {
+		return this.diskEvictionCount.get();
+	}
+
+	/**
+	 * Returns the number of bytes the tile files of the disk tier take up.
+	 */
+	public long getDiskBytes() {
+		return this.diskBytes.get();
+	}
+}
@@ -0,0 +1,161 @@
+package cache;
+
+/**
+ * Identifies a generated tile - its position in the tile pyramid and
+ * everything that changes the escape iterations computed for it.
+ */
+public class TileKey {
+	private long tileX;
+	private long tileY;
+	private int zoom;
+	private int tileSize;
+
+	private int maxIterations;
+	private String kernelName;
+	private boolean interiorCheck;
+	private boolean periodicityCheck;
+	private boolean smooth;
+	private boolean symmetry;
+
+	/**
+	 * Creates the key of a tile.
+	 *
+	 * @param tileX
+	 *            - the column of the tile
+	 * @param tileY
+	 *            - the row of the tile
+	 * @param zoom
+	 *            - the zoom level of the tile
+	 * @param tileSize
+	 *            - the number of pixels along each side of the tile
+	 * @param maxIterations
+	 *            - the maximum iterations the tile is computed with
+	 * @param kernelName
+	 *            - the name of the kernel the tile is computed with
+	 * @param interiorCheck
+	 *            - whether the kernel recognizes the main cardioid and the
+	 *            period-2 bulb
+	 * @param periodicityCheck
+	 *            - whether the kernel recognizes periodic orbits
+	 * @param smooth
+	 *            - whether the tile stores continuous escape values
+	 * @param symmetry
+	 *            - whether rows mirrored about the real axis are copied
+	 *            instead of computed
+	 */
+	public TileKey(long tileX, long tileY, int zoom, int tileSize,
+			int maxIterations, String kernelName, boolean interiorCheck,
+			boolean periodicityCheck, boolean smooth, boolean symmetry) {
+		this.tileX = tileX;
+		this.tileY = tileY;
+		this.zoom = zoom;
+		this.tileSize = tileSize;
+		this.maxIterations = maxIterations;
+		this.kernelName = kernelName;
+		this.interiorCheck = interiorCheck;
+		this.periodicityCheck = periodicityCheck;
+		this.smooth = smooth;
+		this.symmetry = symmetry;
+	}
+
+	public long getTileX() {
+		return this.tileX;
+	}
+
+	public long getTileY() {
+		return this.tileY;
+	}
+
+	public int getZoom() {
+		return this.zoom;
+	}
+
+	public int getTileSize() {
+		return this.tileSize;
+	}
+
+	public int getMaxIterations() {
+		return this.maxIterations;
+	}
+
+	public String getKernelName() {
+		return this.kernelName;
+	}
+
+	public boolean isInteriorCheck() {
+		return this.interiorCheck;
+	}
+
+	public boolean isPeriodicityCheck() {
+		return this.periodicityCheck;
+	}
+
+	public boolean isSmooth() {
+		return this.smooth;
+	}
+
+	public boolean isSymmetry() {
+		return this.symmetry;
+	}
+
+	/**
+	 * Returns the name of the file the tile is stored in by the disk tier of
+	 * a {@link TileCache}. The options are encoded as one letter each, in
+	 * the order interior check, periodicity check, smooth and symmetry, and
+	 * are replaced with an underscore when disabled.
+	 */
+	public String getFileName() {
+		return String.format("%d_%d_%d_%d_%d_%s_%s.iter", this.zoom,
+				this.tileX, this.tileY, this.tileSize, this.maxIterations,
+				this.kernelName, getOptions());
+	}
+
+	private String getOptions() {
+		return new StringBuilder(4).append(this.interiorCheck ? 'i' : '_')
+				.append(this.periodicityCheck ? 'p' : '_')
+				.append(this.smooth ? 's' : '_')
+				.append(this.symmetry ? 'm' : '_').toString();
+	}
+
+	@Override
+	public int hashCode() {
+		int result = Long.hashCode(this.tileX);
+		result = 31 * result + Long.hashCode(this.tileY);
+		result = 31 * result + this.zoom;
+		result = 31 * result + this.tileSize;
+		result = 31 * result + this.maxIterations;
+		result = 31 * result + this.kernelName.hashCode();
+		result = 31 * result + Boolean.hashCode(this.interiorCheck);
+		result = 31 * result + Boolean.hashCode(this.periodicityCheck);
+		result = 31 * result + Boolean.hashCode(this.smooth);
+		result = 31 * result + Boolean.hashCode(this.symmetry);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof TileKey)) {
+			return false;
+		}
+
+		TileKey other = (TileKey) obj;
+		return this.tileX == other.tileX && this.tileY == other.tileY
+				&& this.zoom == other.zoom && this.tileSize == other.tileSize
+				&& this.maxIterations == other.maxIterations
+				&& this.kernelName.equals(other.kernelName)
+				&& this.interiorCheck == other.interiorCheck
+				&& this.periodicityCheck == other.periodicityCheck
+				&& this.smooth == other.smooth
+				&& this.symmetry == other.symmetry;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d/%d/%d (%d pixels, %d iterations, %s, %s)",
+				this.zoom, this.tileX, this.tileY, this.tileSize,
+				this.maxIterations, this.kernelName, getOptions());
+	}
+}
@@ -0,0 +1,92 @@
+package distributed;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Starts {@link TileWorker}s as separate JVMs on this machine, with the class
+ * path of the running JVM, for example to test a {@link TileCoordinator}
+ * without other machines.
+ */
+public class LocalWorkerLauncher implements Closeable {
+	private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+	private List<Process> processes = new ArrayList<Process>();
+
+	/**
+	 * Starts the workers, which connect to a coordinator on localhost.
+	 *
+	 * @param workers
+	 *            - the number of worker processes
+	 * @param threadsPerWorker
+	 *            - the number of threads of each worker
+	 * @param port
+	 *            - the port of the coordinator
+	 */
+	public LocalWorkerLauncher(int workers, int threadsPerWorker, int port)
+			throws IOException {
+		String java = System.getProperty("java.home") + File.separator
+				+ "bin" + File.separator + "java";
+
+		List<String> command = new ArrayList<String>();
+		command.add(java);
+		// the workers use the vectorized kernel if the coordinator could
+		if (ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+			command.add("--add-modules");
+			command.add(VECTOR_MODULE);
+		}
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(TileWorker.class.getName());
+		command.add("localhost");
+		command.add(Integer.toString(port));
+		command.add(Integer.toString(threadsPerWorker));
+
+		try {
+			for (int worker = 0; worker < workers; ++worker) {
+				this.processes.add(new ProcessBuilder(command).inheritIO()
+						.start());
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Kills a worker at once, as if its machine failed, and waits for it to
+	 * exit. The coordinator gives the tiles the worker had to the others.
+	 *
+	 * @param worker
+	 *            - the index of the worker, in the order they were started
+	 */
+	public void killWorker(int worker) throws InterruptedException {
+		this.processes.get(worker).destroyForcibly().waitFor();
+	}
+
+	/**
+	 * Kills the workers that are still running and waits for them to exit.
+	 */
+	@Override
+	public void close() {
+		for (Process process : this.processes) {
+			process.destroy();
+		}
+
+		for (Process process : this.processes) {
+			try {
+				process.waitFor();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	public int getWorkerCount() {
+		return this.processes.size();
+	}
+}
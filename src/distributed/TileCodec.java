@@ -0,0 +1,115 @@
+package distributed;
+
+import generator.IterationGrid;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encodes the escape iterations of a tile compactly for the connection
+ * between a {@link TileCoordinator} and its workers. Every pixel is stored
+ * as the difference from the previous pixel of its row, as a zig-zag
+ * variable-length integer, so the long runs of equal and close iterations
+ * take a byte or less after deflating. The continuous escape values, if any,
+ * follow as raw floats.
+ */
+final class TileCodec {
+	private TileCodec() {
+	}
+
+	/**
+	 * Encodes every pixel of the grid.
+	 */
+	static byte[] encode(IterationGrid grid) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+		try (DataOutputStream output = new DataOutputStream(
+				new DeflaterOutputStream(bytes, deflater, 8192))) {
+			int[] iterations = grid.getIterations();
+			for (int pixelY = 0; pixelY < grid.getHeight(); ++pixelY) {
+				int previous = 0;
+				for (int index = grid.getIndex(0, pixelY); index < grid
+						.getIndex(0, pixelY + 1); ++index) {
+					writeVariableLength(output, iterations[index] - previous);
+					previous = iterations[index];
+				}
+			}
+
+			if (grid.isSmooth()) {
+				for (float smoothIterations : grid.getSmoothIterations()) {
+					output.writeFloat(smoothIterations);
+				}
+			}
+		} finally {
+			deflater.end();
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes a tile into the grid, which has to have the resolution and the
+	 * smoothness of the encoded one.
+	 */
+	static void decode(byte[] encoded, IterationGrid grid) throws IOException {
+		try (DataInputStream input = new DataInputStream(
+				new InflaterInputStream(new ByteArrayInputStream(encoded)))) {
+			int[] iterations = grid.getIterations();
+			for (int pixelY = 0; pixelY < grid.getHeight(); ++pixelY) {
+				int previous = 0;
+				for (int index = grid.getIndex(0, pixelY); index < grid
+						.getIndex(0, pixelY + 1); ++index) {
+					previous += readVariableLength(input);
+					iterations[index] = previous;
+				}
+			}
+
+			if (grid.isSmooth()) {
+				float[] smoothIterations = grid.getSmoothIterations();
+				for (int index = 0; index < smoothIterations.length; ++index) {
+					smoothIterations[index] = input.readFloat();
+				}
+			}
+		}
+	}
+
+	private static void writeVariableLength(OutputStream output, int value)
+			throws IOException {
+		// zig-zag, so that small negative differences are short too
+		int bits = (value << 1) ^ (value >> 31);
+
+		while ((bits & ~0x7f) != 0) {
+			output.write(bits & 0x7f | 0x80);
+			bits >>>= 7;
+		}
+		output.write(bits);
+	}
+
+	private static int readVariableLength(InputStream input)
+			throws IOException {
+		int bits = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int next = input.read();
+			if (next < 0) {
+				throw new EOFException();
+			}
+
+			bits |= (next & 0x7f) << shift;
+			if ((next & 0x80) == 0) {
+				return (bits >>> 1) ^ -(bits & 1);
+			}
+		}
+
+		throw new IOException("Malformed tile.");
+	}
+}
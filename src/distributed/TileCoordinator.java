@@ -0,0 +1,561 @@
+package distributed;
+
+import generator.IterationGrid;
+import generator.Viewport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Renders viewports on {@link TileWorker} processes connected over TCP. A
+ * render is split into square tiles, which are kept in a single queue. Every
+ * worker takes the next tile from the queue whenever it has fewer than two
+ * tiles per thread in progress, so the faster workers take more tiles and no
+ * worker is left idle while tiles are waiting.
+ *
+ * A tile is given to another worker when its worker disconnects, or when it
+ * is not returned within the tile timeout, in which case the first result
+ * that arrives is used. A render fails after a tile was given out
+ * {@link #MAXIMUM_TILE_ATTEMPTS} times.
+ *
+ * Workers could connect and disconnect at any time, also during a render.
+ */
+public class TileCoordinator implements Closeable {
+	public static final int DEFAULT_TILE_SIZE = 128;
+
+	public static final int MAXIMUM_TILE_ATTEMPTS = 3;
+
+	private static final int TILES_IN_FLIGHT_PER_THREAD = 2;
+
+	private static final long DEFAULT_TILE_TIMEOUT_NANOS = TimeUnit.SECONDS
+			.toNanos(60);
+
+	private static final long TIMEOUT_CHECK_MILLIS = 100;
+
+	private static final int HANDSHAKE_TIMEOUT_MILLIS = 10000;
+
+	// enough for the reference point of any practical deep zoom
+	private static final int VIEWPORT_BUFFER_SIZE = 64 * 1024;
+
+	private static final Logger LOGGER = Logger.getLogger("TileCoordinator");
+
+	private ServerSocket serverSocket;
+	private int tileSize;
+	private long tileTimeoutNanos = DEFAULT_TILE_TIMEOUT_NANOS;
+
+	// guards the workers and the current render
+	private final Object lock = new Object();
+	private List<WorkerConnection> workers = new ArrayList<WorkerConnection>();
+	private Render currentRender;
+	private int renderCount;
+	private boolean isClosed;
+
+	private List<WorkerStatistics> workerStatistics = new ArrayList<WorkerStatistics>();
+
+	public TileCoordinator(int port) throws IOException {
+		this(port, DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Creates a coordinator that accepts workers on the specified port.
+	 *
+	 * @param port
+	 *            - the port to listen on, or 0 for any free port
+	 * @param tileSize
+	 *            - the side of the tiles the renders are split into
+	 */
+	public TileCoordinator(int port, int tileSize) throws IOException {
+		this.serverSocket = new ServerSocket(port);
+		this.tileSize = tileSize;
+
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				acceptWorkers();
+			}
+		}, "TileCoordinator-acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	/**
+	 * Sets the time after which a tile that was not returned is given to
+	 * another worker.
+	 */
+	public void setTileTimeout(long timeout, TimeUnit unit) {
+		this.tileTimeoutNanos = unit.toNanos(timeout);
+	}
+
+	/**
+	 * Returns the port the coordinator accepts workers on.
+	 */
+	public int getPort() {
+		return this.serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Returns the number of workers that are connected.
+	 */
+	public int getWorkerCount() {
+		synchronized (this.lock) {
+			return this.workers.size();
+		}
+	}
+
+	/**
+	 * Renders the viewport on the workers and waits until every tile is
+	 * returned. Renders are not concurrent, a render waits for the previous
+	 * one to finish. If no worker is connected, the render waits for one.
+	 *
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 * @param maxIterations
+	 *            - maximum iterations applied to each number
+	 * @param smooth
+	 *            - whether the grid stores continuous escape values
+	 * @throws IOException
+	 *             if a tile could not be rendered by any worker
+	 */
+	public synchronized IterationGrid render(Viewport viewport,
+			int maxIterations, boolean smooth) throws IOException,
+			InterruptedException {
+		Render render;
+		long startTime = System.nanoTime();
+
+		synchronized (this.lock) {
+			if (this.isClosed) {
+				throw new IOException("The coordinator is closed.");
+			}
+
+			render = new Render(++this.renderCount, viewport, maxIterations,
+					smooth);
+			this.currentRender = render;
+			this.workerStatistics = new ArrayList<WorkerStatistics>();
+			for (WorkerConnection worker : this.workers) {
+				worker.startRender();
+			}
+			this.lock.notifyAll();
+
+			try {
+				while (render.completedTileCount < render.tileCount
+						&& render.failure == null) {
+					if (this.isClosed) {
+						throw new IOException("The coordinator is closed.");
+					}
+
+					this.lock.wait(TIMEOUT_CHECK_MILLIS);
+					render.retryExpiredTiles(System.nanoTime());
+				}
+			} finally {
+				this.currentRender = null;
+				for (WorkerConnection worker : this.workers) {
+					worker.inProgressTiles.clear();
+				}
+			}
+
+			long renderNanos = System.nanoTime() - startTime;
+			for (WorkerStatistics statistics : this.workerStatistics) {
+				statistics.setRenderNanos(renderNanos);
+			}
+		}
+
+		if (render.failure != null) {
+			throw render.failure;
+		}
+
+		return render.grid;
+	}
+
+	/**
+	 * Returns the work done by every worker that took part in the last
+	 * render, including the ones that disconnected.
+	 */
+	public List<WorkerStatistics> getWorkerStatistics() {
+		synchronized (this.lock) {
+			return new ArrayList<WorkerStatistics>(this.workerStatistics);
+		}
+	}
+
+	private void acceptWorkers() {
+		while (true) {
+			Socket socket;
+			try {
+				socket = this.serverSocket.accept();
+			} catch (IOException e) {
+				// the server socket is closed
+				return;
+			}
+
+			try {
+				socket.setTcpNoDelay(true);
+				new WorkerConnection(socket).start();
+			} catch (IOException e) {
+				LOGGER.log(Level.WARNING, "Rejected a worker from "
+						+ socket.getRemoteSocketAddress() + ".", e);
+				closeQuietly(socket);
+			}
+		}
+	}
+
+	/**
+	 * Disconnects the workers, which makes them stop, and fails the render in
+	 * progress.
+	 */
+	@Override
+	public void close() throws IOException {
+		List<WorkerConnection> workers;
+
+		synchronized (this.lock) {
+			this.isClosed = true;
+			workers = new ArrayList<WorkerConnection>(this.workers);
+			this.lock.notifyAll();
+		}
+
+		this.serverSocket.close();
+		for (WorkerConnection worker : workers) {
+			closeQuietly(worker.socket);
+		}
+	}
+
+	private static void closeQuietly(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// nothing left to release
+		}
+	}
+
+	/**
+	 * The tiles of a render and their progress, guarded by the lock of the
+	 * coordinator.
+	 */
+	private class Render {
+		private int id;
+		private IterationGrid grid;
+		private int maxIterations;
+		private boolean smooth;
+
+		private int tilesAlongX;
+		private int tileCount;
+		private int completedTileCount;
+
+		private ArrayDeque<Integer> pendingTiles = new ArrayDeque<Integer>();
+		private boolean[] completedTiles;
+		private int[] attempts;
+
+		// the time each tile was given out, or 0 if it is pending
+		private long[] dispatchTimes;
+		private WorkerConnection[] assignedWorkers;
+
+		private IOException failure;
+
+		private Render(int id, Viewport viewport, int maxIterations,
+				boolean smooth) {
+			this.id = id;
+			this.grid = new IterationGrid(viewport, maxIterations, smooth);
+			this.maxIterations = maxIterations;
+			this.smooth = smooth;
+
+			this.tilesAlongX = (viewport.getWidth() + tileSize - 1) / tileSize;
+			int tilesAlongY = (viewport.getHeight() + tileSize - 1)
+					/ tileSize;
+			this.tileCount = this.tilesAlongX * tilesAlongY;
+
+			this.completedTiles = new boolean[this.tileCount];
+			this.attempts = new int[this.tileCount];
+			this.dispatchTimes = new long[this.tileCount];
+			this.assignedWorkers = new WorkerConnection[this.tileCount];
+			for (int tile = 0; tile < this.tileCount; ++tile) {
+				this.pendingTiles.add(tile);
+			}
+		}
+
+		private Viewport getTileViewport(int tile) {
+			int firstPixelX = tile % this.tilesAlongX * tileSize;
+			int firstPixelY = tile / this.tilesAlongX * tileSize;
+
+			return this.grid.getViewport().getSubViewport(firstPixelX,
+					firstPixelY,
+					Math.min(tileSize, this.grid.getWidth() - firstPixelX),
+					Math.min(tileSize, this.grid.getHeight() - firstPixelY));
+		}
+
+		private int takeTile(WorkerConnection worker) {
+			int tile = this.pendingTiles.poll();
+			this.dispatchTimes[tile] = System.nanoTime();
+			this.assignedWorkers[tile] = worker;
+			++this.attempts[tile];
+			return tile;
+		}
+
+		/**
+		 * Puts a tile that was given out back into the queue, in front of the
+		 * tiles that were not given out yet.
+		 */
+		private void retryTile(int tile) {
+			if (this.completedTiles[tile] || this.dispatchTimes[tile] == 0) {
+				return;
+			}
+
+			this.assignedWorkers[tile].statistics.addLostTiles(1);
+			this.dispatchTimes[tile] = 0;
+
+			if (this.attempts[tile] >= MAXIMUM_TILE_ATTEMPTS) {
+				this.failure = new IOException("Tile " + tile + " failed "
+						+ this.attempts[tile] + " times.");
+			} else {
+				this.pendingTiles.addFirst(tile);
+			}
+			lock.notifyAll();
+		}
+
+		private void retryExpiredTiles(long now) {
+			for (int tile = 0; tile < this.tileCount; ++tile) {
+				if (this.dispatchTimes[tile] != 0
+						&& now - this.dispatchTimes[tile] > tileTimeoutNanos) {
+					retryTile(tile);
+				}
+			}
+		}
+
+		private void completeTile(int tile, IterationGrid tileGrid) {
+			if (this.completedTiles[tile]) {
+				return;
+			}
+
+			Viewport viewport = tileGrid.getViewport();
+			int firstPixelX = tile % this.tilesAlongX * tileSize;
+			int firstPixelY = tile / this.tilesAlongX * tileSize;
+
+			for (int pixelY = 0; pixelY < viewport.getHeight(); ++pixelY) {
+				int index = this.grid.getIndex(firstPixelX, firstPixelY
+						+ pixelY);
+				System.arraycopy(tileGrid.getIterations(),
+						tileGrid.getIndex(0, pixelY), this.grid.getIterations(),
+						index, viewport.getWidth());
+				if (this.smooth) {
+					System.arraycopy(tileGrid.getSmoothIterations(),
+							tileGrid.getIndex(0, pixelY),
+							this.grid.getSmoothIterations(), index,
+							viewport.getWidth());
+				}
+			}
+
+			this.completedTiles[tile] = true;
+			this.dispatchTimes[tile] = 0;
+			++this.completedTileCount;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * A connected worker, served by a thread that sends it tiles and a thread
+	 * that receives its results.
+	 */
+	private class WorkerConnection {
+		private Socket socket;
+		private DataInputStream input;
+		private DataOutputStream output;
+		private int threads;
+		private ByteBuffer viewportBuffer = ByteBuffer
+				.allocate(VIEWPORT_BUFFER_SIZE);
+
+		// guarded by the lock of the coordinator
+		private Set<Integer> inProgressTiles = new HashSet<Integer>();
+		private WorkerStatistics statistics;
+		private boolean isDisconnected;
+
+		private WorkerConnection(Socket socket) throws IOException {
+			this.socket = socket;
+			this.input = new DataInputStream(new BufferedInputStream(
+					socket.getInputStream()));
+			this.output = new DataOutputStream(new BufferedOutputStream(
+					socket.getOutputStream()));
+
+			// the handshake is read on the accepting thread, which must not
+			// be blocked by a client that is not a worker
+			socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+			if (this.input.readInt() != TileProtocol.HELLO_SIGNATURE
+					|| this.input.readInt() != TileProtocol.PROTOCOL_VERSION) {
+				throw new IOException("Not a compatible worker.");
+			}
+			this.threads = Math.max(this.input.readInt(), 1);
+			socket.setSoTimeout(0);
+		}
+
+		private void start() {
+			synchronized (lock) {
+				workers.add(this);
+				if (currentRender != null) {
+					startRender();
+				}
+			}
+
+			String name = "TileCoordinator-" + this.socket.getPort();
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					sendTiles();
+				}
+			}, name + "-sender").start();
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					receiveTiles();
+				}
+			}, name + "-receiver").start();
+		}
+
+		/**
+		 * Starts collecting the statistics of the current render.
+		 */
+		private void startRender() {
+			this.statistics = new WorkerStatistics(this.socket
+					.getRemoteSocketAddress().toString(), this.threads);
+			workerStatistics.add(this.statistics);
+		}
+
+		private void sendTiles() {
+			try {
+				while (true) {
+					Render render;
+					int tile;
+
+					synchronized (lock) {
+						while (!this.isDisconnected && !isClosed
+								&& !canTakeTile()) {
+							lock.wait();
+						}
+
+						if (this.isDisconnected || isClosed) {
+							return;
+						}
+
+						render = currentRender;
+						tile = render.takeTile(this);
+						this.inProgressTiles.add(tile);
+					}
+
+					ByteBuffer viewport = this.viewportBuffer;
+					viewport.clear();
+					render.getTileViewport(tile).writeTo(viewport);
+
+					this.output.writeByte(TileProtocol.TILE);
+					this.output.writeInt(render.id);
+					this.output.writeInt(tile);
+					this.output.writeInt(render.maxIterations);
+					this.output.writeBoolean(render.smooth);
+					this.output.writeInt(viewport.position());
+					this.output.write(viewport.array(), 0, viewport.position());
+					this.output.flush();
+				}
+			} catch (IOException e) {
+				disconnect(e);
+			} catch (InterruptedException e) {
+				disconnect(null);
+			}
+		}
+
+		private boolean canTakeTile() {
+			return currentRender != null
+					&& !currentRender.pendingTiles.isEmpty()
+					&& this.inProgressTiles.size() < TILES_IN_FLIGHT_PER_THREAD
+							* this.threads;
+		}
+
+		private void receiveTiles() {
+			try {
+				while (true) {
+					if (this.input.readByte() != TileProtocol.RESULT) {
+						throw new IOException("Unexpected message.");
+					}
+
+					int renderId = this.input.readInt();
+					int tile = this.input.readInt();
+					long computeNanos = this.input.readLong();
+					byte[] encoded = new byte[TileWorker
+							.readLength(this.input)];
+					this.input.readFully(encoded);
+
+					Render render;
+					synchronized (lock) {
+						render = currentRender;
+					}
+					if (render == null || render.id != renderId) {
+						// a late result of a previous render
+						continue;
+					}
+					if (tile < 0 || tile >= render.tileCount) {
+						throw new IOException("Invalid tile " + tile + ".");
+					}
+
+					IterationGrid tileGrid = new IterationGrid(
+							render.getTileViewport(tile), render.maxIterations,
+							render.smooth);
+					TileCodec.decode(encoded, tileGrid);
+
+					synchronized (lock) {
+						this.inProgressTiles.remove(tile);
+						if (render == currentRender) {
+							if (!render.completedTiles[tile]) {
+								this.statistics.addTile(tileGrid.getViewport()
+										.getPixelCount(), computeNanos);
+							}
+							render.completeTile(tile, tileGrid);
+						}
+						lock.notifyAll();
+					}
+				}
+			} catch (IOException e) {
+				disconnect(e);
+			}
+		}
+
+		/**
+		 * Closes the connection and puts the tiles the worker had in progress
+		 * back into the queue.
+		 */
+		private void disconnect(IOException cause) {
+			synchronized (lock) {
+				if (this.isDisconnected) {
+					return;
+				}
+				this.isDisconnected = true;
+				workers.remove(this);
+
+				if (currentRender != null) {
+					for (int tile : this.inProgressTiles) {
+						if (currentRender.assignedWorkers[tile] == this) {
+							currentRender.retryTile(tile);
+						}
+					}
+				}
+				this.inProgressTiles.clear();
+				lock.notifyAll();
+			}
+
+			if (cause != null && !isClosed
+					&& !(cause instanceof SocketException)) {
+				LOGGER.log(Level.WARNING, "Lost the worker at "
+						+ this.socket.getRemoteSocketAddress() + ".", cause);
+			}
+			closeQuietly(this.socket);
+		}
+	}
+}
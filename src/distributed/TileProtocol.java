@@ -0,0 +1,28 @@
+package distributed;
+
+/**
+ * The messages exchanged between a {@link TileCoordinator} and its
+ * {@link TileWorker}s, all written with DataOutputStream.
+ *
+ * A worker starts with HELLO_SIGNATURE, PROTOCOL_VERSION and the number of
+ * its threads. Then the coordinator sends TILE messages - the render id, the
+ * tile id, the maximum iterations, whether the continuous escape values are
+ * needed, and the length and the bytes of the viewport of the tile. The
+ * worker answers each with a RESULT message - the render id, the tile id,
+ * the nanoseconds it spent computing the tile, and the length and the bytes
+ * of the tile encoded by {@link TileCodec}. Either side ends the session by
+ * closing the connection.
+ */
+final class TileProtocol {
+	static final int HELLO_SIGNATURE = 0x4d53474e;
+	static final int PROTOCOL_VERSION = 1;
+
+	static final byte TILE = 1;
+	static final byte RESULT = 2;
+
+	// the longest message accepted, to fail fast on a corrupt stream
+	static final int MAXIMUM_PAYLOAD_LENGTH = 256 * 1024 * 1024;
+
+	private TileProtocol() {
+	}
+}
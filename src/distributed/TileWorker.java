@@ -0,0 +1,185 @@
+package distributed;
+
+import generator.EscapeTimeKernel;
+import generator.EscapeTimeKernels;
+import generator.IterationGrid;
+import generator.KernelPrecision;
+import generator.Viewport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A process that computes tiles for a {@link TileCoordinator}. The worker
+ * connects to the coordinator, computes the tiles it is sent on its threads
+ * and sends each one back as soon as it is done. It stops when the
+ * coordinator closes the connection.
+ */
+public class TileWorker {
+	private static final Logger LOGGER = Logger.getLogger("TileWorker");
+
+	private int threads;
+
+	// the kernels are reused between the tiles of a render, so that the
+	// perturbation kernel computes the reference orbit of a render once, and
+	// dropped when the tiles of the next render arrive
+	private Map<String, EscapeTimeKernel> kernels = new HashMap<String, EscapeTimeKernel>();
+	private int kernelRenderId;
+
+	public TileWorker(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Connects to a coordinator and computes its tiles until it closes the
+	 * connection.
+	 */
+	public void run(String host, int port) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+
+		try (Socket socket = new Socket(host, port)) {
+			socket.setTcpNoDelay(true);
+			DataInputStream input = new DataInputStream(
+					new BufferedInputStream(socket.getInputStream()));
+			final DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(socket.getOutputStream()));
+
+			output.writeInt(TileProtocol.HELLO_SIGNATURE);
+			output.writeInt(TileProtocol.PROTOCOL_VERSION);
+			output.writeInt(this.threads);
+			output.flush();
+
+			while (true) {
+				byte type;
+				try {
+					type = input.readByte();
+				} catch (EOFException e) {
+					return;
+				}
+
+				if (type != TileProtocol.TILE) {
+					throw new IOException("Unexpected message " + type + ".");
+				}
+
+				final int renderId = input.readInt();
+				final int tileId = input.readInt();
+				final int maxIterations = input.readInt();
+				final boolean smooth = input.readBoolean();
+				byte[] viewportBytes = new byte[readLength(input)];
+				input.readFully(viewportBytes);
+				final Viewport viewport = Viewport.readFrom(ByteBuffer
+						.wrap(viewportBytes));
+				startRender(renderId);
+
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						computeTile(renderId, tileId, viewport,
+								maxIterations, smooth, output);
+					}
+				});
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void computeTile(int renderId, int tileId, Viewport viewport,
+			int maxIterations, boolean smooth, DataOutputStream output) {
+		long startTime = System.nanoTime();
+		IterationGrid tile = new IterationGrid(viewport, maxIterations, smooth);
+		EscapeTimeKernel kernel = getKernel(viewport, maxIterations);
+
+		for (int pixelY = 0; pixelY < viewport.getHeight(); ++pixelY) {
+			kernel.computeRow(viewport, pixelY, 0, viewport.getWidth(),
+					tile.getIterations(), tile.getSmoothIterations(),
+					tile.getIndex(0, pixelY));
+		}
+		long computeNanos = System.nanoTime() - startTime;
+
+		try {
+			byte[] encoded = TileCodec.encode(tile);
+
+			synchronized (output) {
+				output.writeByte(TileProtocol.RESULT);
+				output.writeInt(renderId);
+				output.writeInt(tileId);
+				output.writeLong(computeNanos);
+				output.writeInt(encoded.length);
+				output.write(encoded);
+				output.flush();
+			}
+		} catch (IOException e) {
+			// the coordinator gives the tile to another worker
+			LOGGER.log(Level.WARNING, "Failed to send tile " + tileId + ".", e);
+		}
+	}
+
+	/**
+	 * Drops the kernels of the previous render when the first tile of another
+	 * one arrives. The tiles of the previous render that are still computed
+	 * keep the kernels they already have.
+	 */
+	private void startRender(int renderId) {
+		synchronized (this.kernels) {
+			if (renderId != this.kernelRenderId) {
+				this.kernels.clear();
+				this.kernelRenderId = renderId;
+			}
+		}
+	}
+
+	private EscapeTimeKernel getKernel(Viewport viewport, int maxIterations) {
+		String key = KernelPrecision.forViewport(viewport) + "-"
+				+ maxIterations;
+
+		synchronized (this.kernels) {
+			EscapeTimeKernel kernel = this.kernels.get(key);
+			if (kernel == null) {
+				kernel = EscapeTimeKernels.createForViewport(viewport,
+						maxIterations, true, false);
+				this.kernels.put(key, kernel);
+			}
+
+			return kernel;
+		}
+	}
+
+	/* default */static int readLength(DataInputStream input)
+			throws IOException {
+		int length = input.readInt();
+		if (length < 0 || length > TileProtocol.MAXIMUM_PAYLOAD_LENGTH) {
+			throw new IOException("Invalid message length " + length + ".");
+		}
+
+		return length;
+	}
+
+	/**
+	 * Starts a worker with the arguments: the host and the port of the
+	 * coordinator, and optionally the number of threads, which defaults to
+	 * the number of processors.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: TileWorker host port [threads]");
+			System.exit(1);
+		}
+
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime
+				.getRuntime().availableProcessors();
+		new TileWorker(threads).run(args[0], Integer.parseInt(args[1]));
+	}
+}
@@ -0,0 +1,88 @@
+package distributed;
+
+/**
+ * The work done by a single worker during a render of a
+ * {@link TileCoordinator}.
+ */
+public class WorkerStatistics {
+	private String address;
+	private int threads;
+
+	private int completedTileCount;
+	private long pixelCount;
+	private long computeNanos;
+	private int lostTileCount;
+
+	private long renderNanos;
+
+	/* default */WorkerStatistics(String address, int threads) {
+		this.address = address;
+		this.threads = threads;
+	}
+
+	/* default */void addTile(int pixelCount, long computeNanos) {
+		++this.completedTileCount;
+		this.pixelCount += pixelCount;
+		this.computeNanos += computeNanos;
+	}
+
+	/* default */void addLostTiles(int lostTileCount) {
+		this.lostTileCount += lostTileCount;
+	}
+
+	/* default */void setRenderNanos(long renderNanos) {
+		this.renderNanos = renderNanos;
+	}
+
+	/**
+	 * Returns the remote address of the worker.
+	 */
+	public String getAddress() {
+		return this.address;
+	}
+
+	public int getThreads() {
+		return this.threads;
+	}
+
+	public int getCompletedTileCount() {
+		return this.completedTileCount;
+	}
+
+	public long getPixelCount() {
+		return this.pixelCount;
+	}
+
+	/**
+	 * Returns the time the threads of the worker spent computing its tiles,
+	 * summed over the threads.
+	 */
+	public long getComputeNanos() {
+		return this.computeNanos;
+	}
+
+	/**
+	 * Returns the number of tiles that were given to the worker but had to be
+	 * given to another one, because the worker disconnected or did not
+	 * return them in time.
+	 */
+	public int getLostTileCount() {
+		return this.lostTileCount;
+	}
+
+	/**
+	 * Returns the number of pixels the worker computed per second of the
+	 * render.
+	 */
+	public double getPixelsPerSecond() {
+		return this.renderNanos > 0 ? this.pixelCount * 1e9 / this.renderNanos
+				: 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s (%d threads): %d tiles, %.0f pixels/s, %d lost",
+				this.address, this.threads, this.completedTileCount,
+				getPixelsPerSecond(), this.lostTileCount);
+	}
+}
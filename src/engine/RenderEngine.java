@@ -0,0 +1,179 @@
+package engine;
+
+import generator.EscapeTimeKernel;
+import generator.EscapeTimeKernels;
+import generator.IterationGrid;
+import generator.Viewport;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * A long-lived renderer that computes any number of concurrent
+ * {@link RenderJob}s on a shared set of worker threads. Every job is split
+ * into square tiles and the workers take the tiles of the active jobs in
+ * turns, so a large job does not hold back the jobs submitted after it.
+ * 
+ * Unlike {@link generator.MandelbrotSetGenerator}, the engine is meant to be
+ * created once and shut down when the application stops.
+ */
+public class RenderEngine {
+	public static final int DEFAULT_TILE_SIZE = 64;
+
+	// the jobs with tiles that are not started yet, in the order they get
+	// their next tile
+	private ArrayDeque<RenderJob> activeJobs = new ArrayDeque<RenderJob>();
+	private boolean isShutdown;
+
+	private List<Thread> workers = new ArrayList<Thread>();
+	private int tileSize;
+
+	public RenderEngine(int workerThreads) {
+		this(workerThreads, DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Creates an engine and starts its workers.
+	 * 
+	 * @param workerThreads
+	 *            - the number of threads that compute tiles
+	 * @param tileSize
+	 *            - the side of the tiles the jobs are split into
+	 */
+	public RenderEngine(int workerThreads, int tileSize) {
+		this.tileSize = tileSize;
+
+		for (int worker = 0; worker < workerThreads; ++worker) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					runWorker();
+				}
+			}, "RenderEngine-worker-" + worker);
+			this.workers.add(thread);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Submits a job that generates the specified viewport with the kernel
+	 * suitable for it.
+	 */
+	public RenderJob submit(Viewport viewport, int maxIterations) {
+		return submit(viewport, EscapeTimeKernels.createForViewport(viewport,
+				maxIterations, false, false), false, 0, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Submits a job that generates the specified viewport.
+	 * 
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 * @param kernel
+	 *            - the kernel the tiles are computed with
+	 * @param smooth
+	 *            - whether the grid stores continuous escape values
+	 * @param timeout
+	 *            - the time after which the job is completed with a
+	 *            TimeoutException if it is not done, or 0 for no deadline
+	 * @param unit
+	 *            - the unit of the timeout
+	 */
+	public RenderJob submit(Viewport viewport, EscapeTimeKernel kernel,
+			boolean smooth, long timeout, TimeUnit unit) {
+		final RenderJob job = new RenderJob(new IterationGrid(viewport,
+				kernel.getMaxIterations(), smooth), kernel, this.tileSize);
+
+		// cancellation and timeouts complete the job, which removes the
+		// tiles that are not started yet
+		job.whenComplete(new BiConsumer<IterationGrid, Throwable>() {
+			@Override
+			public void accept(IterationGrid grid, Throwable failure) {
+				removeJob(job);
+			}
+		});
+
+		if (timeout > 0) {
+			job.orTimeout(timeout, unit);
+		}
+
+		synchronized (this.activeJobs) {
+			if (this.isShutdown) {
+				throw new IllegalStateException("The engine is shut down.");
+			}
+
+			this.activeJobs.add(job);
+			this.activeJobs.notify();
+		}
+
+		return job;
+	}
+
+	private void removeJob(RenderJob job) {
+		synchronized (this.activeJobs) {
+			job.dropPendingTiles();
+			this.activeJobs.remove(job);
+		}
+	}
+
+	private void runWorker() {
+		while (true) {
+			RenderJob job;
+			int tile;
+
+			synchronized (this.activeJobs) {
+				while (this.activeJobs.isEmpty() && !this.isShutdown) {
+					try {
+						this.activeJobs.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+
+				if (this.isShutdown) {
+					return;
+				}
+
+				// the job goes to the back of the queue, so that every
+				// active job gets a tile in turn
+				job = this.activeJobs.poll();
+				tile = job.takeTile();
+				if (job.hasPendingTiles()) {
+					this.activeJobs.add(job);
+				}
+			}
+
+			job.computeTile(tile);
+		}
+	}
+
+	/**
+	 * Returns the number of jobs that have tiles that are not started yet.
+	 */
+	public int getQueuedJobCount() {
+		synchronized (this.activeJobs) {
+			return this.activeJobs.size();
+		}
+	}
+
+	/**
+	 * Stops the workers once they finish their current tiles and cancels the
+	 * jobs that have tiles that are not started yet.
+	 */
+	public void shutdown() {
+		List<RenderJob> queuedJobs;
+
+		synchronized (this.activeJobs) {
+			this.isShutdown = true;
+			queuedJobs = new ArrayList<RenderJob>(this.activeJobs);
+			this.activeJobs.notifyAll();
+		}
+
+		for (RenderJob job : queuedJobs) {
+			job.cancel(false);
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package engine;
+
+import generator.EscapeTimeKernel;
+import generator.IterationGrid;
+import generator.Viewport;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A render submitted to a {@link RenderEngine}. The job completes with the
+ * generated grid once all of its tiles are computed. Cancelling the job, or
+ * the expiry of its deadline, drops the tiles that have not been started.
+ */
+public class RenderJob extends CompletableFuture<IterationGrid> {
+	private IterationGrid grid;
+	private EscapeTimeKernel kernel;
+
+	private int tileSize;
+	private int tilesAlongX;
+	private int tileCount;
+
+	// guarded by the queue of the engine
+	private int nextTile;
+
+	private AtomicInteger completedTiles = new AtomicInteger();
+
+	/* default */RenderJob(IterationGrid grid, EscapeTimeKernel kernel,
+			int tileSize) {
+		this.grid = grid;
+		this.kernel = kernel;
+		this.tileSize = tileSize;
+
+		this.tilesAlongX = (grid.getWidth() + tileSize - 1) / tileSize;
+		int tilesAlongY = (grid.getHeight() + tileSize - 1) / tileSize;
+		this.tileCount = this.tilesAlongX * tilesAlongY;
+	}
+
+	/* default */boolean hasPendingTiles() {
+		return this.nextTile < this.tileCount;
+	}
+
+	/* default */int takeTile() {
+		return this.nextTile++;
+	}
+
+	/* default */void dropPendingTiles() {
+		this.nextTile = this.tileCount;
+	}
+
+	/**
+	 * Computes a tile and completes the job if it was the last one.
+	 */
+	/* default */void computeTile(int tile) {
+		if (isDone()) {
+			return;
+		}
+
+		int firstPixelX = tile % this.tilesAlongX * this.tileSize;
+		int firstPixelY = tile / this.tilesAlongX * this.tileSize;
+		int lastPixelX = Math.min(firstPixelX + this.tileSize,
+				this.grid.getWidth());
+		int lastPixelY = Math.min(firstPixelY + this.tileSize,
+				this.grid.getHeight());
+		Viewport viewport = this.grid.getViewport();
+
+		try {
+			for (int pixelY = firstPixelY; pixelY < lastPixelY; ++pixelY) {
+				this.kernel.computeRow(viewport, pixelY, firstPixelX,
+						lastPixelX, this.grid.getIterations(),
+						this.grid.getSmoothIterations(),
+						this.grid.getIndex(firstPixelX, pixelY));
+			}
+		} catch (RuntimeException e) {
+			completeExceptionally(e);
+			return;
+		}
+
+		// the atomic counter also publishes the tiles to the completing thread
+		if (this.completedTiles.incrementAndGet() == this.tileCount) {
+			complete(this.grid);
+		}
+	}
+
+	public Viewport getViewport() {
+		return this.grid.getViewport();
+	}
+
+	public EscapeTimeKernel getKernel() {
+		return this.kernel;
+	}
+
+	public int getTileCount() {
+		return this.tileCount;
+	}
+
+	public int getCompletedTileCount() {
+		return this.completedTiles.get();
+	}
+}
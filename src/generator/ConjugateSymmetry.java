@@ -0,0 +1,107 @@
+package generator;
+
+/**
+ * The rows of a {@link Viewport} that are mirror images of other rows of it
+ * about the real axis. The Mandelbrot set is symmetric about the real axis -
+ * a point and its complex conjugate have the same escape iterations - so
+ * these rows are copied from their mirror rows instead of being iterated.
+ *
+ * The mirrored rows are a single band from the first mirrored row inclusive
+ * to the last mirrored row exclusive, and their mirror rows all lie above
+ * the band. Every other row of the viewport has to be computed.
+ */
+class ConjugateSymmetry {
+	// the distance in pixels between a mirrored point and the conjugate of
+	// the point it is copied from, that is considered the same point
+	private static final double ROW_SUM_TOLERANCE = 1e-6;
+
+	private int rowSum;
+	private int firstMirroredRow;
+	private int lastMirroredRow;
+
+	private ConjugateSymmetry(int rowSum, int firstMirroredRow,
+			int lastMirroredRow) {
+		this.rowSum = rowSum;
+		this.firstMirroredRow = firstMirroredRow;
+		this.lastMirroredRow = lastMirroredRow;
+	}
+
+	/**
+	 * Returns the symmetry of the viewport, or null if none of its rows are
+	 * mirror images of other rows - if the viewport does not straddle the
+	 * real axis, or its pixels are not placed symmetrically about it.
+	 */
+	public static ConjugateSymmetry forViewport(Viewport viewport) {
+		double rowSum = viewport.getConjugateRowSum();
+		if (Double.isNaN(rowSum) || rowSum < 0
+				|| rowSum > 2.0 * viewport.getHeight()) {
+			return null;
+		}
+
+		long roundedRowSum = Math.round(rowSum);
+		if (Math.abs(rowSum - roundedRowSum) > ROW_SUM_TOLERANCE) {
+			return null;
+		}
+
+		// row y is copied from the row rowSum - y above it, when both are in
+		// the viewport
+		int firstMirroredRow = (int) (roundedRowSum / 2 + 1);
+		int lastMirroredRow = (int) Math.min(roundedRowSum + 1,
+				viewport.getHeight());
+		if (firstMirroredRow >= lastMirroredRow) {
+			return null;
+		}
+
+		return new ConjugateSymmetry((int) roundedRowSum, firstMirroredRow,
+				lastMirroredRow);
+	}
+
+	public int getFirstMirroredRow() {
+		return this.firstMirroredRow;
+	}
+
+	public int getLastMirroredRow() {
+		return this.lastMirroredRow;
+	}
+
+	public int getMirroredRowCount() {
+		return this.lastMirroredRow - this.firstMirroredRow;
+	}
+
+	public boolean isMirrored(int pixelY) {
+		return pixelY >= this.firstMirroredRow && pixelY < this.lastMirroredRow;
+	}
+
+	/**
+	 * Returns the row whose points are the conjugates of the points of the
+	 * specified row.
+	 */
+	public int getMirrorRow(int pixelY) {
+		return this.rowSum - pixelY;
+	}
+
+	/**
+	 * Copies every mirrored row of the grid from its mirror row.
+	 */
+	public void mirror(IterationGrid grid) {
+		for (int pixelY = this.firstMirroredRow; pixelY < this.lastMirroredRow; ++pixelY) {
+			copyRow(grid, getMirrorRow(pixelY), grid, pixelY);
+		}
+	}
+
+	/**
+	 * Copies a row of a grid to a row of another grid of the same width.
+	 */
+	public static void copyRow(IterationGrid source, int sourceRow,
+			IterationGrid target, int targetRow) {
+		int width = target.getWidth();
+		System.arraycopy(source.getIterations(), source.getIndex(0, sourceRow),
+				target.getIterations(), target.getIndex(0, targetRow), width);
+		if (target.isSmooth()) {
+			System.arraycopy(source.getSmoothIterations(),
+					source.getIndex(0, sourceRow),
+					target.getSmoothIterations(),
+					target.getIndex(0, targetRow), width);
+		}
+	}
+}
@@ -0,0 +1,198 @@
+package generator;
+
+import java.math.BigDecimal;
+
+/**
+ * Computes escape iterations with double-double arithmetic, where every
+ * number is the unevaluated sum of a high and a low double that together
+ * carry about 106 bits, enough to tell apart the pixels of viewports whose
+ * step is above {@link MandelbrotSetGenerator#PERTURBATION_ZOOM_STEP}.
+ * Unlike perturbation, every pixel is iterated on its own, so no reference
+ * orbit is computed and no pixel could be glitched.
+ *
+ * The pairs are kept in local primitive variables and the error-free
+ * products are computed with fused multiply-adds, so the iterating neither
+ * allocates nor touches a BigDecimal. Only the reference point of the
+ * viewport is split into two doubles once per row. Periodicity checking is
+ * not supported.
+ */
+public class DoubleDoubleEscapeIterationsComputer implements EscapeTimeKernel {
+	public static final String KERNEL_NAME = "double-double";
+
+	private static final double BAILOUT_NUMBER = 1 << 16;
+
+	private int maxIterations;
+
+	private boolean interiorCheck;
+
+	public DoubleDoubleEscapeIterationsComputer(int maxIterations,
+			boolean interiorCheck) {
+		this.maxIterations = maxIterations;
+		this.interiorCheck = interiorCheck;
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY) {
+		return computeEscapeIterations(viewport, pixelX, pixelY, null, 0);
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY, float[] smoothIterations, int index) {
+		BigDecimal referenceRealPart = viewport.getReferenceRealPart();
+		BigDecimal referenceImaginaryPart = viewport
+				.getReferenceImaginaryPart();
+		double realHigh = referenceRealPart.doubleValue();
+		double imaginaryHigh = referenceImaginaryPart.doubleValue();
+		double[] squaredModulus = smoothIterations != null ? new double[1]
+				: null;
+
+		int iterations = computeEscapeIterations(realHigh,
+				getLowPart(referenceRealPart, realHigh),
+				viewport.getRealPartOffset(pixelX), imaginaryHigh,
+				getLowPart(referenceImaginaryPart, imaginaryHigh),
+				viewport.getImaginaryPartOffset(pixelY), squaredModulus);
+
+		if (smoothIterations != null) {
+			smoothIterations[index] = EscapeIterationsComputer
+					.getSmoothIterations(iterations, squaredModulus[0],
+							this.maxIterations);
+		}
+
+		return iterations;
+	}
+
+	@Override
+	public void computeRow(Viewport viewport, int pixelY, int fromPixelX,
+			int toPixelX, int[] iterations, float[] smoothIterations,
+			int offset) {
+		BigDecimal referenceRealPart = viewport.getReferenceRealPart();
+		BigDecimal referenceImaginaryPart = viewport
+				.getReferenceImaginaryPart();
+		double realHigh = referenceRealPart.doubleValue();
+		double realLow = getLowPart(referenceRealPart, realHigh);
+		double imaginaryHigh = referenceImaginaryPart.doubleValue();
+		double imaginaryLow = getLowPart(referenceImaginaryPart, imaginaryHigh);
+		double imaginaryPartOffset = viewport.getImaginaryPartOffset(pixelY);
+		double[] squaredModulus = smoothIterations != null ? new double[1]
+				: null;
+
+		for (int pixelX = fromPixelX; pixelX < toPixelX; ++pixelX) {
+			int pixelIterations = computeEscapeIterations(realHigh, realLow,
+					viewport.getRealPartOffset(pixelX), imaginaryHigh,
+					imaginaryLow, imaginaryPartOffset, squaredModulus);
+			iterations[offset] = pixelIterations;
+
+			if (smoothIterations != null) {
+				smoothIterations[offset] = EscapeIterationsComputer
+						.getSmoothIterations(pixelIterations,
+								squaredModulus[0], this.maxIterations);
+			}
+			++offset;
+		}
+	}
+
+	/**
+	 * Returns the part of the number that its nearest double misses.
+	 */
+	private static double getLowPart(BigDecimal number, double high) {
+		return number.subtract(new BigDecimal(high)).doubleValue();
+	}
+
+	/**
+	 * Computes the escape iterations of the number that is the sum of a
+	 * double-double reference point and a double offset from it, and stores
+	 * the squared modulus of the first point of its orbit that escaped into
+	 * the first element of squaredModulus, if it is not null.
+	 */
+	private int computeEscapeIterations(double referenceRealHigh,
+			double referenceRealLow, double realPartOffset,
+			double referenceImaginaryHigh, double referenceImaginaryLow,
+			double imaginaryPartOffset, double[] squaredModulus) {
+		// c = reference + offset, with the sum of the high parts kept exact
+		double cx = referenceRealHigh + realPartOffset;
+		double cxLow = twoSumError(referenceRealHigh, realPartOffset, cx)
+				+ referenceRealLow;
+		double cy = referenceImaginaryHigh + imaginaryPartOffset;
+		double cyLow = twoSumError(referenceImaginaryHigh,
+				imaginaryPartOffset, cy) + referenceImaginaryLow;
+		double sum = cx + cxLow;
+		cxLow -= sum - cx;
+		cx = sum;
+		sum = cy + cyLow;
+		cyLow -= sum - cy;
+		cy = sum;
+
+		if (this.interiorCheck
+				&& EscapeIterationsComputer.isInMainCardioidOrBulb(cx, cy)) {
+			return this.maxIterations;
+		}
+
+		double x = 0;
+		double xLow = 0;
+		double y = 0;
+		double yLow = 0;
+		int iterations = 0;
+
+		for (; iterations < this.maxIterations; ++iterations) {
+			// x^2, y^2 and xy, each as an exact product of the high parts
+			// plus the cross terms
+			double xSquare = x * x;
+			double xSquareLow = Math.fma(x, x, -xSquare) + 2 * x * xLow;
+			double ySquare = y * y;
+			double ySquareLow = Math.fma(y, y, -ySquare) + 2 * y * yLow;
+
+			if (xSquare + ySquare > BAILOUT_NUMBER) {
+				break;
+			}
+
+			double xy = x * y;
+			double xyLow = Math.fma(x, y, -xy) + x * yLow + xLow * y;
+
+			// x' = x^2 - y^2 + cx
+			double high = xSquare - ySquare;
+			double low = twoSumError(xSquare, -ySquare, high) + xSquareLow
+					- ySquareLow;
+			sum = high + cx;
+			low += twoSumError(high, cx, sum) + cxLow;
+			double newX = sum + low;
+			double newXLow = low - (newX - sum);
+
+			// y' = 2xy + cy
+			high = 2 * xy;
+			sum = high + cy;
+			low = twoSumError(high, cy, sum) + 2 * xyLow + cyLow;
+			y = sum + low;
+			yLow = low - (y - sum);
+
+			x = newX;
+			xLow = newXLow;
+		}
+
+		if (squaredModulus != null) {
+			squaredModulus[0] = x * x + y * y;
+		}
+
+		return iterations;
+	}
+
+	/**
+	 * Returns the rounding error of the double sum of a and b, so that a + b
+	 * equals sum plus the error exactly.
+	 */
+	private static double twoSumError(double a, double b, double sum) {
+		double bVirtual = sum - a;
+		return (a - (sum - bVirtual)) + (b - bVirtual);
+	}
+
+	@Override
+	public String getName() {
+		return KERNEL_NAME;
+	}
+
+	@Override
+	public int getMaxIterations() {
+		return this.maxIterations;
+	}
+}
@@ -1,31 +1,217 @@
 package generator;
 
-public class EscapeIterationsComputer {
+/**
+ * Computes the escape iterations of complex numbers one at a time. Instances
+ * keep no state between computations, so a single computer could be shared
+ * by all threads of a generation.
+ */
+public class EscapeIterationsComputer implements EscapeTimeKernel {
+	public static final String KERNEL_NAME = "scalar";
+
 	private static double BAILOUT_NUMBER = 1 << 16;
 
+	private static final double LOG_2 = Math.log(2);
+
+	private static final double PERIODICITY_TOLERANCE = 1e-12;
+	private static final int INITIAL_PERIODICITY_CHECK_PERIOD = 8;
+
 	private int maxIterations;
 
+	private boolean interiorCheck;
+	private boolean periodicityCheck;
+
 	public EscapeIterationsComputer(int maxIterations) {
+		this(maxIterations, false, false);
+	}
+
+	/**
+	 * Creates a computer that could skip iterating numbers that are known to
+	 * belong to the set.
+	 *
+	 * @param maxIterations
+	 *            - maximum iterations applied to each number
+	 * @param interiorCheck
+	 *            - whether numbers inside the main cardioid and the period-2
+	 *            bulb are given the maximum iterations without iterating
+	 * @param periodicityCheck
+	 *            - whether the iterating stops with the maximum iterations
+	 *            once the orbit of a number is detected to be periodic
+	 */
+	public EscapeIterationsComputer(int maxIterations, boolean interiorCheck,
+			boolean periodicityCheck) {
 		this.maxIterations = maxIterations;
+		this.interiorCheck = interiorCheck;
+		this.periodicityCheck = periodicityCheck;
 	}
 
 	public void computeEscapeIterations(MandelbrotNumber number) {
+		number.setIterations(computeEscapeIterations(number.getRealPart(),
+				number.getImaginaryPart()));
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY) {
+		return computeEscapeIterations(viewport.getRealPart(pixelX),
+				viewport.getImaginaryPart(pixelY));
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY, float[] smoothIterations, int index) {
+		if (smoothIterations == null) {
+			return computeEscapeIterations(viewport, pixelX, pixelY);
+		}
+
+		double[] squaredModulus = new double[1];
+		int iterations = computeEscapeIterations(viewport.getRealPart(pixelX),
+				viewport.getImaginaryPart(pixelY), squaredModulus);
+		smoothIterations[index] = getSmoothIterations(iterations,
+				squaredModulus[0], this.maxIterations);
+
+		return iterations;
+	}
+
+	@Override
+	public void computeRow(Viewport viewport, int pixelY, int fromPixelX,
+			int toPixelX, int[] iterations, float[] smoothIterations,
+			int offset) {
+		double imaginaryPart = viewport.getImaginaryPart(pixelY);
+		double[] squaredModulus = smoothIterations != null ? new double[1]
+				: null;
+
+		for (int pixelX = fromPixelX; pixelX < toPixelX; ++pixelX) {
+			int pixelIterations = computeEscapeIterations(
+					viewport.getRealPart(pixelX), imaginaryPart,
+					squaredModulus);
+			iterations[offset] = pixelIterations;
+
+			if (smoothIterations != null) {
+				smoothIterations[offset] = getSmoothIterations(
+						pixelIterations, squaredModulus[0], this.maxIterations);
+			}
+			++offset;
+		}
+	}
+
+	public int computeEscapeIterations(double realPart, double imaginaryPart) {
+		return computeEscapeIterations(realPart, imaginaryPart, null);
+	}
+
+	/**
+	 * Computes the escape iterations of a number and stores the squared
+	 * modulus of the first point of its orbit that escaped into the first
+	 * element of squaredModulus, if it is not null.
+	 */
+	private int computeEscapeIterations(double realPart,
+			double imaginaryPart, double[] squaredModulus) {
+		if (this.interiorCheck
+				&& isInMainCardioidOrBulb(realPart, imaginaryPart)) {
+			return this.maxIterations;
+		}
+
 		double x = 0;
 		double y = 0;
 		int iterations = 0;
 
+		// Brent's cycle detection - the orbit is compared with a point saved
+		// at every power of two iterations
+		double savedX = 0;
+		double savedY = 0;
+		int checkPeriod = INITIAL_PERIODICITY_CHECK_PERIOD;
+		int iterationsSinceSave = 0;
+
 		for (; iterations < this.maxIterations && !isBailout(x, y); ++iterations) {
-			double newX = x * x - y * y + number.getRealPart();
-			double newY = 2 * x * y + number.getImaginaryPart();
+			double newX = x * x - y * y + realPart;
+			double newY = 2 * x * y + imaginaryPart;
 
 			x = newX;
 			y = newY;
+
+			if (this.periodicityCheck) {
+				if (Math.abs(x - savedX) < PERIODICITY_TOLERANCE
+						&& Math.abs(y - savedY) < PERIODICITY_TOLERANCE) {
+					return this.maxIterations;
+				}
+
+				if (++iterationsSinceSave == checkPeriod) {
+					savedX = x;
+					savedY = y;
+					iterationsSinceSave = 0;
+					checkPeriod <<= 1;
+				}
+			}
+		}
+
+		if (squaredModulus != null) {
+			squaredModulus[0] = x * x + y * y;
 		}
 
-		number.setIterations(iterations);
+		return iterations;
+	}
+
+	/**
+	 * Returns the continuous escape value of a number, that grows smoothly
+	 * between the points where the escape iterations change. Numbers that did
+	 * not escape are given the maximum iterations.
+	 *
+	 * @param iterations
+	 *            - the escape iterations of the number
+	 * @param squaredModulus
+	 *            - the squared modulus of the first point of its orbit that
+	 *            escaped
+	 * @param maxIterations
+	 *            - maximum iterations applied to the number
+	 */
+	public static float getSmoothIterations(int iterations,
+			double squaredModulus, int maxIterations) {
+		if (iterations >= maxIterations) {
+			return maxIterations;
+		}
+
+		// log(log|z|) / log 2 grows by one with every iteration once the
+		// orbit is far enough to be dominated by squaring
+		return (float) (iterations + 1 - Math.log(Math.log(squaredModulus) / 2)
+				/ LOG_2);
 	}
 
 	private boolean isBailout(double x, double y) {
 		return x * x + y * y > BAILOUT_NUMBER;
 	}
+
+	/**
+	 * Checks with the closed forms of the main cardioid and the period-2 bulb
+	 * whether the number belongs to one of them.
+	 */
+	public static boolean isInMainCardioidOrBulb(double realPart,
+			double imaginaryPart) {
+		double imaginarySquare = imaginaryPart * imaginaryPart;
+
+		double shiftedRealPart = realPart - 0.25;
+		double q = shiftedRealPart * shiftedRealPart + imaginarySquare;
+		if (q * (q + shiftedRealPart) <= imaginarySquare / 4) {
+			return true;
+		}
+
+		double bulbRealPart = realPart + 1;
+		return bulbRealPart * bulbRealPart + imaginarySquare <= 1.0 / 16;
+	}
+
+	@Override
+	public String getName() {
+		return KERNEL_NAME;
+	}
+
+	@Override
+	public int getMaxIterations() {
+		return this.maxIterations;
+	}
+
+	public boolean isInteriorCheckEnabled() {
+		return this.interiorCheck;
+	}
+
+	public boolean isPeriodicityCheckEnabled() {
+		return this.periodicityCheck;
+	}
 }
@@ -0,0 +1,45 @@
+package generator;
+
+/**
+ * Computes the escape iterations of the pixels of a {@link Viewport}.
+ * Implementations keep no state between computations, so a single kernel
+ * could be shared by all threads of a generation.
+ */
+public interface EscapeTimeKernel {
+	/**
+	 * Returns a short name of the kernel, that identifies the arithmetic it
+	 * uses.
+	 */
+	public String getName();
+
+	public int getMaxIterations();
+
+	/**
+	 * Computes the escape iterations of a single point of the viewport. The
+	 * coordinates may lie between pixels.
+	 */
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY);
+
+	/**
+	 * Computes the escape iterations of a single point of the viewport, and
+	 * stores its continuous escape value into smoothIterations at the
+	 * specified index, if the array is not null. The coordinates may lie
+	 * between pixels.
+	 */
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY, float[] smoothIterations, int index);
+
+	/**
+	 * Computes the escape iterations of the pixels from fromPixelX inclusive
+	 * to toPixelX exclusive of a row of the viewport, and stores them in
+	 * consecutive elements of the iterations array starting at offset. If
+	 * smoothIterations is not null, the continuous escape values of the
+	 * pixels, as defined by
+	 * {@link EscapeIterationsComputer#getSmoothIterations(int, double, int)},
+	 * are stored in it at the same indices.
+	 */
+	public void computeRow(Viewport viewport, int pixelY, int fromPixelX,
+			int toPixelX, int[] iterations, float[] smoothIterations,
+			int offset);
+}
@@ -0,0 +1,160 @@
+package generator;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates the fastest {@link EscapeTimeKernel} that is available in the
+ * running JVM.
+ */
+public class EscapeTimeKernels {
+	private static final String VECTOR_KERNEL_CLASS_NAME = "generator.VectorEscapeIterationsComputer";
+	private static final String VECTOR_FLOAT_KERNEL_CLASS_NAME = "generator.VectorFloatEscapeIterationsComputer";
+
+	private static final Logger LOGGER = Logger.getLogger("Kernels");
+
+	private static volatile Boolean isVectorKernelAvailable;
+
+	private EscapeTimeKernels() {
+	}
+
+	/**
+	 * Creates a kernel with the specified options. The vectorized kernel is
+	 * used when the jdk.incubator.vector module is available and periodicity
+	 * checking is not requested, and the scalar one otherwise.
+	 * 
+	 * @param maxIterations
+	 *            - maximum iterations applied to each number
+	 * @param interiorCheck
+	 *            - whether numbers inside the main cardioid and the period-2
+	 *            bulb are recognized with their closed form
+	 * @param periodicityCheck
+	 *            - whether numbers with a periodic orbit are recognized while
+	 *            iterating
+	 */
+	public static EscapeTimeKernel createBestAvailable(int maxIterations,
+			boolean interiorCheck, boolean periodicityCheck) {
+		if (!periodicityCheck && isVectorKernelAvailable()) {
+			EscapeTimeKernel vectorKernel = createVectorKernel(
+					VECTOR_KERNEL_CLASS_NAME, maxIterations, interiorCheck);
+			if (vectorKernel != null) {
+				return vectorKernel;
+			}
+		}
+
+		return new EscapeIterationsComputer(maxIterations, interiorCheck,
+				periodicityCheck);
+	}
+
+	/**
+	 * Creates a float kernel with the specified options - the vectorized one
+	 * when the jdk.incubator.vector module is available, and the scalar one
+	 * otherwise.
+	 * 
+	 * @param maxIterations
+	 *            - maximum iterations applied to each number
+	 * @param interiorCheck
+	 *            - whether numbers inside the main cardioid and the period-2
+	 *            bulb are recognized with their closed form
+	 */
+	public static EscapeTimeKernel createFloat(int maxIterations,
+			boolean interiorCheck) {
+		if (isVectorKernelAvailable()) {
+			EscapeTimeKernel vectorKernel = createVectorKernel(
+					VECTOR_FLOAT_KERNEL_CLASS_NAME, maxIterations,
+					interiorCheck);
+			if (vectorKernel != null) {
+				return vectorKernel;
+			}
+		}
+
+		return new FloatEscapeIterationsComputer(maxIterations, interiorCheck);
+	}
+
+	/**
+	 * Creates a kernel with the arithmetic of the specified precision. Float
+	 * kernels do not check periodicity, so a double kernel is created instead
+	 * of a float one when periodicity checking is requested.
+	 * 
+	 * @param precision
+	 *            - the arithmetic of the kernel
+	 * @param maxIterations
+	 *            - maximum iterations applied to each number
+	 * @param interiorCheck
+	 *            - whether numbers inside the main cardioid and the period-2
+	 *            bulb are recognized with their closed form
+	 * @param periodicityCheck
+	 *            - whether numbers with a periodic orbit are recognized while
+	 *            iterating
+	 */
+	public static EscapeTimeKernel createForPrecision(
+			KernelPrecision precision, int maxIterations,
+			boolean interiorCheck, boolean periodicityCheck) {
+		switch (precision) {
+		case FLOAT:
+			if (!periodicityCheck) {
+				return createFloat(maxIterations, interiorCheck);
+			}
+			break;
+		case DOUBLE_DOUBLE:
+			return new DoubleDoubleEscapeIterationsComputer(maxIterations,
+					interiorCheck);
+		case PERTURBATION:
+			return new PerturbationEscapeIterationsComputer(maxIterations);
+		default:
+			break;
+		}
+
+		return createBestAvailable(maxIterations, interiorCheck,
+				periodicityCheck);
+	}
+
+	/**
+	 * Creates a kernel suitable for the specified viewport, with the
+	 * arithmetic {@link KernelPrecision#forViewport(Viewport)} chooses from
+	 * its step.
+	 * 
+	 * @param viewport
+	 *            - the viewport to be generated with the kernel
+	 * @param maxIterations
+	 *            - maximum iterations applied to each number
+	 * @param interiorCheck
+	 *            - whether numbers inside the main cardioid and the period-2
+	 *            bulb are recognized with their closed form
+	 * @param periodicityCheck
+	 *            - whether numbers with a periodic orbit are recognized while
+	 *            iterating
+	 */
+	public static EscapeTimeKernel createForViewport(Viewport viewport,
+			int maxIterations, boolean interiorCheck, boolean periodicityCheck) {
+		return createForPrecision(KernelPrecision.forViewport(viewport),
+				maxIterations, interiorCheck, periodicityCheck);
+	}
+
+	public static boolean isVectorKernelAvailable() {
+		if (isVectorKernelAvailable == null) {
+			isVectorKernelAvailable = createVectorKernel(
+					VECTOR_KERNEL_CLASS_NAME, 1, false) != null;
+		}
+
+		return isVectorKernelAvailable;
+	}
+
+	private static EscapeTimeKernel createVectorKernel(String className,
+			int maxIterations, boolean interiorCheck) {
+		// the vector kernels are loaded reflectively, so that this class links
+		// even when the incubator module is not added to the JVM
+		try {
+			return (EscapeTimeKernel) Class
+					.forName(className)
+					.getConstructor(int.class, boolean.class)
+					.newInstance(maxIterations, interiorCheck);
+		} catch (ReflectiveOperationException e) {
+			LOGGER.log(Level.FINE, "The vector kernel is not available.", e);
+		} catch (LinkageError e) {
+			LOGGER.log(Level.FINE, "The vector kernel is not available.", e);
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,93 @@
+package generator;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Specifies the threads a {@link MandelbrotSetGenerator} runs its work on.
+ */
+public enum ExecutionMode {
+	/**
+	 * Both the escape iterations and the orchestration of the generations -
+	 * awaiting passes, cache reads and writes, and delivering results - run
+	 * on a single pool of the maximum threads of the generator.
+	 */
+	PLATFORM_THREADS,
+
+	/**
+	 * The escape iterations run on a pool of the maximum threads of the
+	 * generator, while the orchestration runs on a virtual thread per task,
+	 * so that many concurrent generations blocked on I/O do not hold back the
+	 * computing threads. When the JVM has no virtual threads, the tasks run
+	 * on a pool of at most {@link #FALLBACK_MAXIMUM_THREADS} platform threads
+	 * instead, and further tasks wait in its queue. This is the case on Java
+	 * 17, which the project is built for, so there this mode only differs
+	 * from {@link #PLATFORM_THREADS} by the separate, larger pool for the
+	 * orchestration; see {@link #usesPlatformThreadFallback()}.
+	 * 
+	 * Virtual threads do not keep the JVM running, so the application has to
+	 * wait for the results it needs.
+	 */
+	VIRTUAL_THREADS;
+
+	/**
+	 * The maximum platform threads of the executor that stands in for
+	 * virtual threads in JVMs older than Java 21. Every platform thread
+	 * reserves its own stack, so unlike virtual threads they are bounded.
+	 */
+	public static final int FALLBACK_MAXIMUM_THREADS = 256;
+
+	private static final long FALLBACK_KEEP_ALIVE_SECONDS = 60;
+
+	private static final Logger LOGGER = Logger.getLogger("ExecutionMode");
+
+	/**
+	 * Creates an executor that starts a virtual thread per task, or a pool of
+	 * at most {@link #FALLBACK_MAXIMUM_THREADS} platform threads in JVMs
+	 * older than Java 21. Idle threads of the pool are stopped.
+	 */
+	public static ExecutorService createThreadPerTaskExecutor() {
+		// looked up reflectively, so that the sources still compile for 17
+		try {
+			return (ExecutorService) Executors.class.getMethod(
+					"newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			LOGGER.log(Level.WARNING, String.format(
+					"Virtual threads are not available, using a pool of at"
+							+ " most %d platform threads instead.",
+					FALLBACK_MAXIMUM_THREADS));
+
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(
+					FALLBACK_MAXIMUM_THREADS, FALLBACK_MAXIMUM_THREADS,
+					FALLBACK_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>());
+			executor.allowCoreThreadTimeOut(true);
+			return executor;
+		}
+	}
+
+	/**
+	 * Checks whether this mode runs on the pool of platform threads that
+	 * stands in for virtual threads in the running JVM.
+	 */
+	public boolean usesPlatformThreadFallback() {
+		return this == VIRTUAL_THREADS && !areVirtualThreadsAvailable();
+	}
+
+	/**
+	 * Checks whether the running JVM supports virtual threads.
+	 */
+	public static boolean areVirtualThreadsAvailable() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package generator;
+
+/**
+ * Computes the escape iterations of the pixels of a viewport one at a time
+ * with single precision floats. A float resolves about a ten millionth of
+ * the size of the set, which is plenty for viewports whose step is above
+ * {@link MandelbrotSetGenerator#FLOAT_ZOOM_STEP}. Periodicity checking is
+ * not supported.
+ */
+public class FloatEscapeIterationsComputer implements EscapeTimeKernel {
+	public static final String KERNEL_NAME = "float";
+
+	private static final float BAILOUT_NUMBER = 1 << 16;
+
+	private int maxIterations;
+
+	private boolean interiorCheck;
+
+	public FloatEscapeIterationsComputer(int maxIterations,
+			boolean interiorCheck) {
+		this.maxIterations = maxIterations;
+		this.interiorCheck = interiorCheck;
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY) {
+		return computeEscapeIterations(viewport.getRealPart(pixelX),
+				viewport.getImaginaryPart(pixelY), null);
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY, float[] smoothIterations, int index) {
+		if (smoothIterations == null) {
+			return computeEscapeIterations(viewport, pixelX, pixelY);
+		}
+
+		double[] squaredModulus = new double[1];
+		int iterations = computeEscapeIterations(viewport.getRealPart(pixelX),
+				viewport.getImaginaryPart(pixelY), squaredModulus);
+		smoothIterations[index] = EscapeIterationsComputer
+				.getSmoothIterations(iterations, squaredModulus[0],
+						this.maxIterations);
+
+		return iterations;
+	}
+
+	@Override
+	public void computeRow(Viewport viewport, int pixelY, int fromPixelX,
+			int toPixelX, int[] iterations, float[] smoothIterations,
+			int offset) {
+		double imaginaryPart = viewport.getImaginaryPart(pixelY);
+		double[] squaredModulus = smoothIterations != null ? new double[1]
+				: null;
+
+		for (int pixelX = fromPixelX; pixelX < toPixelX; ++pixelX) {
+			int pixelIterations = computeEscapeIterations(
+					viewport.getRealPart(pixelX), imaginaryPart,
+					squaredModulus);
+			iterations[offset] = pixelIterations;
+
+			if (smoothIterations != null) {
+				smoothIterations[offset] = EscapeIterationsComputer
+						.getSmoothIterations(pixelIterations,
+								squaredModulus[0], this.maxIterations);
+			}
+			++offset;
+		}
+	}
+
+	/**
+	 * Computes the escape iterations of a number and stores the squared
+	 * modulus of the first point of its orbit that escaped into the first
+	 * element of squaredModulus, if it is not null.
+	 */
+	private int computeEscapeIterations(double realPart,
+			double imaginaryPart, double[] squaredModulus) {
+		if (this.interiorCheck
+				&& EscapeIterationsComputer.isInMainCardioidOrBulb(realPart,
+						imaginaryPart)) {
+			return this.maxIterations;
+		}
+
+		float c = (float) realPart;
+		float d = (float) imaginaryPart;
+		float x = 0;
+		float y = 0;
+		float xSquare = 0;
+		float ySquare = 0;
+		int iterations = 0;
+
+		for (; iterations < this.maxIterations
+				&& xSquare + ySquare <= BAILOUT_NUMBER; ++iterations) {
+			y = 2 * x * y + d;
+			x = xSquare - ySquare + c;
+			xSquare = x * x;
+			ySquare = y * y;
+		}
+
+		if (squaredModulus != null) {
+			squaredModulus[0] = xSquare + ySquare;
+		}
+
+		return iterations;
+	}
+
+	@Override
+	public String getName() {
+		return KERNEL_NAME;
+	}
+
+	@Override
+	public int getMaxIterations() {
+		return this.maxIterations;
+	}
+}
@@ -0,0 +1,64 @@
+package generator;
+
+/**
+ * The state of a single generation of an {@link IterationGrid} whose bands
+ * of rows are computed by separate {@link PixelRowsGeneratorRunnable}s, so
+ * that generations that overlap do not count each other's bands.
+ */
+class GridGeneration {
+	private IterationGrid grid;
+	private String kernelName;
+	private long startNanos;
+	private ConjugateSymmetry symmetry;
+
+	private int expectedBandCount;
+	private int finishedBandCount;
+
+	/**
+	 * Creates the state of a generation.
+	 *
+	 * @param grid
+	 *            - the grid the bands are computed into
+	 * @param kernelName
+	 *            - the name of the kernel the bands are computed with
+	 * @param startNanos
+	 *            - the time the generation was started at
+	 * @param symmetry
+	 *            - the mirrored rows of the grid, or null if there are none
+	 * @param expectedBandCount
+	 *            - the number of bands the grid is computed in
+	 */
+	public GridGeneration(IterationGrid grid, String kernelName,
+			long startNanos, ConjugateSymmetry symmetry, int expectedBandCount) {
+		this.grid = grid;
+		this.kernelName = kernelName;
+		this.startNanos = startNanos;
+		this.symmetry = symmetry;
+		this.expectedBandCount = expectedBandCount;
+	}
+
+	public IterationGrid getGrid() {
+		return this.grid;
+	}
+
+	public String getKernelName() {
+		return this.kernelName;
+	}
+
+	public long getStartNanos() {
+		return this.startNanos;
+	}
+
+	public ConjugateSymmetry getSymmetry() {
+		return this.symmetry;
+	}
+
+	/**
+	 * Counts a computed band and returns whether it was the last one. The
+	 * lock also publishes the rows written by the other threads to the
+	 * thread that finishes the last band.
+	 */
+	public synchronized boolean bandIsFinished() {
+		return ++this.finishedBandCount == this.expectedBandCount;
+	}
+}
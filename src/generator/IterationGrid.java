@@ -0,0 +1,139 @@
+package generator;
+
+/**
+ * The escape iterations of every pixel of a {@link Viewport}, stored in a
+ * single row-major array instead of a {@link MandelbrotNumber} and a
+ * {@link Pixel} object per point.
+ */
+public class IterationGrid {
+	private Viewport viewport;
+
+	private int maxIterations;
+
+	private int[] iterations;
+	private float[] smoothIterations;
+
+	private Supersamples supersamples;
+
+	/**
+	 * Creates an empty grid for the specified viewport.
+	 *
+	 * @param viewport
+	 *            - the viewport whose pixels will be stored in the grid
+	 * @param maxIterations
+	 *            - the maximum iterations the grid is computed with
+	 */
+	public IterationGrid(Viewport viewport, int maxIterations) {
+		this(viewport, maxIterations, false);
+	}
+
+	/**
+	 * Creates an empty grid for the specified viewport, that could also store
+	 * the continuous escape values of the pixels.
+	 *
+	 * @param viewport
+	 *            - the viewport whose pixels will be stored in the grid
+	 * @param maxIterations
+	 *            - the maximum iterations the grid is computed with
+	 * @param smooth
+	 *            - whether the grid stores continuous escape values
+	 */
+	public IterationGrid(Viewport viewport, int maxIterations, boolean smooth) {
+		this.viewport = viewport;
+		this.maxIterations = maxIterations;
+		this.iterations = new int[viewport.getPixelCount()];
+		this.smoothIterations = smooth ? new float[viewport.getPixelCount()]
+				: null;
+	}
+
+	/**
+	 * Creates a grid for the specified viewport from already computed
+	 * iterations.
+	 *
+	 * @param viewport
+	 *            - the viewport whose pixels are stored in the grid
+	 * @param maxIterations
+	 *            - the maximum iterations the grid was computed with
+	 * @param iterations
+	 *            - the iterations of the pixels in row-major order
+	 */
+	public IterationGrid(Viewport viewport, int maxIterations, int[] iterations) {
+		if (iterations.length != viewport.getPixelCount()) {
+			throw new IllegalArgumentException(String.format(
+					"Expected %d iterations, got %d.",
+					viewport.getPixelCount(), iterations.length));
+		}
+
+		this.viewport = viewport;
+		this.maxIterations = maxIterations;
+		this.iterations = iterations;
+	}
+
+	public Viewport getViewport() {
+		return this.viewport;
+	}
+
+	public int getWidth() {
+		return this.viewport.getWidth();
+	}
+
+	public int getHeight() {
+		return this.viewport.getHeight();
+	}
+
+	public int getMaxIterations() {
+		return this.maxIterations;
+	}
+
+	/* default */void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	public int getIndex(int pixelX, int pixelY) {
+		return pixelY * this.viewport.getWidth() + pixelX;
+	}
+
+	public int getIterations(int pixelX, int pixelY) {
+		return this.iterations[getIndex(pixelX, pixelY)];
+	}
+
+	public void setIterations(int pixelX, int pixelY, int iterations) {
+		this.iterations[getIndex(pixelX, pixelY)] = iterations;
+	}
+
+	/**
+	 * Returns the backing array of the grid. The iterations for pixel (x, y)
+	 * are stored at index y * width + x.
+	 */
+	public int[] getIterations() {
+		return this.iterations;
+	}
+
+	public boolean isSmooth() {
+		return this.smoothIterations != null;
+	}
+
+	public float getSmoothIterations(int pixelX, int pixelY) {
+		return this.smoothIterations[getIndex(pixelX, pixelY)];
+	}
+
+	/**
+	 * Returns the backing array of the continuous escape values, with the same
+	 * layout as the iterations, or null if the grid does not store them.
+	 */
+	public float[] getSmoothIterations() {
+		return this.smoothIterations;
+	}
+
+	/**
+	 * Returns the sub-samples of the pixels on the edges of the grid, or null
+	 * if it was not supersampled.
+	 */
+	public Supersamples getSupersamples() {
+		return this.supersamples;
+	}
+
+	/* default */void setSupersamples(Supersamples supersamples) {
+		this.supersamples = supersamples;
+	}
+}
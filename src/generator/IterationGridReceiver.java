@@ -0,0 +1,5 @@
+package generator;
+
+public interface IterationGridReceiver {
+	public void receiveGrid(IterationGrid grid);
+}
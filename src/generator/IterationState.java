@@ -0,0 +1,552 @@
+package generator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An {@link IterationGrid} together with the orbits of its pixels that have
+ * not escaped within its maximum iterations. Only those pixels are kept, in
+ * parallel primitive arrays, so continuing the grid to a higher maximum
+ * iterates them on from the point where they stopped, instead of iterating
+ * every pixel again from zero. Continuing gives exactly the iterations that
+ * generating the grid with the higher maximum would give.
+ *
+ * The orbits are iterated with doubles, so the state is meant for viewports
+ * whose step is above {@link MandelbrotSetGenerator#DEEP_ZOOM_STEP}.
+ *
+ * A state could be saved to a file and loaded in another process, so that a
+ * long render could be continued after a restart. The file starts with a
+ * header of a signature, the format version, the viewport, the iterations,
+ * the flags and the number of pending pixels, followed by the escape
+ * iterations of the grid, its
+ * continuous escape values if it has them, and the indices and the orbit
+ * points of the pending pixels, all big-endian.
+ */
+public class IterationState {
+	private static final double BAILOUT_NUMBER = 1 << 16;
+
+	private static final int PIXELS_PER_TASK = 4096;
+
+	private static final int FILE_SIGNATURE = 0x4d495453;
+	private static final int FILE_VERSION = 1;
+
+	private static final int FILE_BUFFER_SIZE = 1 << 20;
+
+	private static final byte FLAG_SMOOTH = 1;
+	private static final byte FLAG_CONJUGATE_SYMMETRY = 2;
+
+	private IterationGrid grid;
+
+	// the iterations every pending pixel has been iterated to
+	private int iterations;
+
+	// the pending pixels, as indices into the grid, and their last orbit
+	// points, in the first pendingPixelCount elements
+	private int pendingPixelCount;
+	private int[] pixelIndices;
+	private double[] realParts;
+	private double[] imaginaryParts;
+
+	private long resumedPixelCount;
+
+	// the rows copied from their mirror rows after every continuation, or
+	// null if every row is iterated
+	private ConjugateSymmetry symmetry;
+
+	/**
+	 * Creates a state with every pixel of the viewport pending at zero
+	 * iterations.
+	 *
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 * @param smooth
+	 *            - whether the grid stores continuous escape values
+	 * @param interiorCheck
+	 *            - whether the pixels inside the main cardioid and the period-2
+	 *            bulb are never iterated
+	 */
+	public IterationState(Viewport viewport, boolean smooth,
+			boolean interiorCheck) {
+		this(viewport, smooth, interiorCheck, false);
+	}
+
+	/**
+	 * Creates a state with every pixel of the viewport pending at zero
+	 * iterations, except the pixels of the rows that are mirror images of
+	 * other rows about the real axis, if conjugate symmetry is used. Those
+	 * rows are copied from their mirror rows after every continuation.
+	 *
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 * @param smooth
+	 *            - whether the grid stores continuous escape values
+	 * @param interiorCheck
+	 *            - whether the pixels inside the main cardioid and the period-2
+	 *            bulb are never iterated
+	 * @param conjugateSymmetry
+	 *            - whether the mirrored rows are copied instead of iterated
+	 */
+	public IterationState(Viewport viewport, boolean smooth,
+			boolean interiorCheck, boolean conjugateSymmetry) {
+		this.grid = new IterationGrid(viewport, 0, smooth);
+		this.symmetry = conjugateSymmetry ? ConjugateSymmetry
+				.forViewport(viewport) : null;
+
+		int pixelCount = viewport.getPixelCount();
+		this.pixelIndices = new int[pixelCount];
+		this.realParts = new double[pixelCount];
+		this.imaginaryParts = new double[pixelCount];
+
+		for (int pixelY = 0; pixelY < viewport.getHeight(); ++pixelY) {
+			if (this.symmetry != null && this.symmetry.isMirrored(pixelY)) {
+				continue;
+			}
+
+			double imaginaryPart = viewport.getImaginaryPart(pixelY);
+
+			for (int pixelX = 0; pixelX < viewport.getWidth(); ++pixelX) {
+				// the interior pixels stay at the maximum iterations of the
+				// grid without being pending
+				if (interiorCheck
+						&& EscapeIterationsComputer.isInMainCardioidOrBulb(
+								viewport.getRealPart(pixelX), imaginaryPart)) {
+					continue;
+				}
+
+				this.pixelIndices[this.pendingPixelCount++] = this.grid
+						.getIndex(pixelX, pixelY);
+			}
+		}
+	}
+
+	private IterationState(IterationGrid grid, int iterations,
+			int pendingPixelCount, long resumedPixelCount,
+			boolean conjugateSymmetry) {
+		this.grid = grid;
+		this.symmetry = conjugateSymmetry ? ConjugateSymmetry.forViewport(grid
+				.getViewport()) : null;
+		this.iterations = iterations;
+		this.pendingPixelCount = pendingPixelCount;
+		this.resumedPixelCount = resumedPixelCount;
+
+		this.pixelIndices = new int[pendingPixelCount];
+		this.realParts = new double[pendingPixelCount];
+		this.imaginaryParts = new double[pendingPixelCount];
+	}
+
+	/**
+	 * Iterates the pending pixels until they escape or reach the specified
+	 * iterations, which become the maximum iterations of the grid. The
+	 * continuations of a state are not concurrent, a continuation waits for
+	 * the previous one to finish.
+	 *
+	 * @param maxIterations
+	 *            - the new maximum iterations, ignored if not higher than the
+	 *            current ones
+	 * @param pool
+	 *            - the pool the pending pixels are iterated on
+	 * @return the number of pixels that escaped
+	 */
+	public synchronized int continueTo(int maxIterations, ForkJoinPool pool) {
+		if (maxIterations <= this.iterations) {
+			return 0;
+		}
+
+		if (this.iterations > 0) {
+			this.resumedPixelCount += this.pendingPixelCount;
+		}
+
+		// the pixels that did not escape are marked with the new maximum
+		// first, the escaped ones are overwritten while iterating
+		raiseMaxIterations(maxIterations);
+
+		int taskCount = (this.pendingPixelCount + PIXELS_PER_TASK - 1)
+				/ PIXELS_PER_TASK;
+		int[] keptPixelCounts = new int[taskCount];
+		pool.invoke(new ContinuationTask(0, taskCount, maxIterations,
+				keptPixelCounts));
+
+		// every task kept its pending pixels at the beginning of its range
+		int pendingPixelCount = 0;
+		for (int task = 0; task < taskCount; ++task) {
+			int from = task * PIXELS_PER_TASK;
+			System.arraycopy(this.pixelIndices, from, this.pixelIndices,
+					pendingPixelCount, keptPixelCounts[task]);
+			System.arraycopy(this.realParts, from, this.realParts,
+					pendingPixelCount, keptPixelCounts[task]);
+			System.arraycopy(this.imaginaryParts, from, this.imaginaryParts,
+					pendingPixelCount, keptPixelCounts[task]);
+			pendingPixelCount += keptPixelCounts[task];
+		}
+
+		int escapedPixelCount = this.pendingPixelCount - pendingPixelCount;
+		this.pendingPixelCount = pendingPixelCount;
+		this.iterations = maxIterations;
+
+		if (this.symmetry != null) {
+			this.symmetry.mirror(this.grid);
+		}
+
+		return escapedPixelCount;
+	}
+
+	private void raiseMaxIterations(int maxIterations) {
+		int[] iterations = this.grid.getIterations();
+		float[] smoothIterations = this.grid.getSmoothIterations();
+
+		for (int index = 0; index < iterations.length; ++index) {
+			if (iterations[index] == this.iterations) {
+				iterations[index] = maxIterations;
+				if (smoothIterations != null) {
+					smoothIterations[index] = maxIterations;
+				}
+			}
+		}
+
+		this.grid.setMaxIterations(maxIterations);
+	}
+
+	/**
+	 * Iterates the pending pixels of the specified range and moves the ones
+	 * that are still pending to the beginning of the range.
+	 */
+	private int continueRange(int from, int to, int maxIterations) {
+		Viewport viewport = this.grid.getViewport();
+		int width = viewport.getWidth();
+		int[] iterations = this.grid.getIterations();
+		float[] smoothIterations = this.grid.getSmoothIterations();
+
+		int kept = from;
+		for (int pixel = from; pixel < to; ++pixel) {
+			int index = this.pixelIndices[pixel];
+			double realPart = viewport.getRealPart(index % width);
+			double imaginaryPart = viewport.getImaginaryPart(index / width);
+
+			double x = this.realParts[pixel];
+			double y = this.imaginaryParts[pixel];
+			int pixelIterations = this.iterations;
+
+			// the same loop as EscapeIterationsComputer, so that the
+			// iterations do not depend on where the orbit was resumed
+			for (; pixelIterations < maxIterations
+					&& x * x + y * y <= BAILOUT_NUMBER; ++pixelIterations) {
+				double newX = x * x - y * y + realPart;
+				double newY = 2 * x * y + imaginaryPart;
+
+				x = newX;
+				y = newY;
+			}
+
+			if (pixelIterations < maxIterations) {
+				iterations[index] = pixelIterations;
+				if (smoothIterations != null) {
+					smoothIterations[index] = EscapeIterationsComputer
+							.getSmoothIterations(pixelIterations, x * x + y
+									* y, maxIterations);
+				}
+			} else {
+				this.pixelIndices[kept] = index;
+				this.realParts[kept] = x;
+				this.imaginaryParts[kept] = y;
+				++kept;
+			}
+		}
+
+		return kept - from;
+	}
+
+	/**
+	 * Writes the state to the file. The state is written to a temporary file
+	 * first and renamed, so an interrupted save keeps the previous file.
+	 */
+	public synchronized void save(File file) throws IOException {
+		File temporaryFile = new File(file.getPath() + ".tmp");
+		Viewport viewport = this.grid.getViewport();
+		int pixelCount = viewport.getPixelCount();
+
+		byte flags = 0;
+		if (this.grid.isSmooth()) {
+			flags |= FLAG_SMOOTH;
+		}
+		if (this.symmetry != null) {
+			flags |= FLAG_CONJUGATE_SYMMETRY;
+		}
+
+		try {
+			try (FileChannel channel = FileChannel.open(
+					temporaryFile.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer buffer = ByteBuffer.allocateDirect(FILE_BUFFER_SIZE);
+				buffer.putInt(FILE_SIGNATURE).putInt(FILE_VERSION);
+				viewport.writeTo(buffer);
+				buffer.putInt(this.iterations).put(flags)
+						.putInt(this.pendingPixelCount)
+						.putLong(this.resumedPixelCount);
+
+				writeInts(channel, buffer, this.grid.getIterations(),
+						pixelCount);
+				if (this.grid.isSmooth()) {
+					writeFloats(channel, buffer,
+							this.grid.getSmoothIterations(), pixelCount);
+				}
+				writeInts(channel, buffer, this.pixelIndices,
+						this.pendingPixelCount);
+				writeDoubles(channel, buffer, this.realParts,
+						this.pendingPixelCount);
+				writeDoubles(channel, buffer, this.imaginaryParts,
+						this.pendingPixelCount);
+				flush(channel, buffer);
+				channel.force(false);
+			}
+
+			Files.move(temporaryFile.toPath(), file.toPath(),
+					StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			temporaryFile.delete();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads a state written by {@link #save(File)}.
+	 *
+	 * @throws IOException
+	 *             if the file could not be read or is not a saved state
+	 */
+	public static IterationState load(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(FILE_BUFFER_SIZE);
+			buffer.limit(0);
+			fill(channel, buffer);
+
+			if (buffer.remaining() < 8 || buffer.getInt() != FILE_SIGNATURE
+					|| buffer.getInt() != FILE_VERSION) {
+				throw new IOException(file + " is not an iteration state.");
+			}
+
+			Viewport viewport = Viewport.readFrom(buffer);
+			int iterations = buffer.getInt();
+			byte flags = buffer.get();
+			boolean smooth = (flags & FLAG_SMOOTH) != 0;
+			int pendingPixelCount = buffer.getInt();
+			long resumedPixelCount = buffer.getLong();
+			if (pendingPixelCount < 0
+					|| pendingPixelCount > viewport.getPixelCount()) {
+				throw new IOException(file + " is not an iteration state.");
+			}
+
+			IterationGrid grid = new IterationGrid(viewport, iterations,
+					smooth);
+			IterationState state = new IterationState(grid, iterations,
+					pendingPixelCount, resumedPixelCount,
+					(flags & FLAG_CONJUGATE_SYMMETRY) != 0);
+
+			int pixelCount = viewport.getPixelCount();
+			readInts(channel, buffer, grid.getIterations(), pixelCount);
+			if (smooth) {
+				readFloats(channel, buffer, grid.getSmoothIterations(),
+						pixelCount);
+			}
+			readInts(channel, buffer, state.pixelIndices, pendingPixelCount);
+			readDoubles(channel, buffer, state.realParts, pendingPixelCount);
+			readDoubles(channel, buffer, state.imaginaryParts,
+					pendingPixelCount);
+
+			return state;
+		} catch (RuntimeException e) {
+			throw new IOException(file + " is not an iteration state.", e);
+		}
+	}
+
+	// the arrays are copied through the buffer, which is written whenever it
+	// is full, so the size of the state is not limited by a single mapping
+
+	private static void writeInts(FileChannel channel, ByteBuffer buffer,
+			int[] array, int length) throws IOException {
+		for (int offset = 0; offset < length;) {
+			int count = Math.min(length - offset, buffer.remaining() / 4);
+			buffer.asIntBuffer().put(array, offset, count);
+			buffer.position(buffer.position() + 4 * count);
+			offset += count;
+
+			if (offset < length) {
+				flush(channel, buffer);
+			}
+		}
+	}
+
+	private static void writeFloats(FileChannel channel, ByteBuffer buffer,
+			float[] array, int length) throws IOException {
+		for (int offset = 0; offset < length;) {
+			int count = Math.min(length - offset, buffer.remaining() / 4);
+			buffer.asFloatBuffer().put(array, offset, count);
+			buffer.position(buffer.position() + 4 * count);
+			offset += count;
+
+			if (offset < length) {
+				flush(channel, buffer);
+			}
+		}
+	}
+
+	private static void writeDoubles(FileChannel channel, ByteBuffer buffer,
+			double[] array, int length) throws IOException {
+		for (int offset = 0; offset < length;) {
+			int count = Math.min(length - offset, buffer.remaining() / 8);
+			buffer.asDoubleBuffer().put(array, offset, count);
+			buffer.position(buffer.position() + 8 * count);
+			offset += count;
+
+			if (offset < length) {
+				flush(channel, buffer);
+			}
+		}
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private static void readInts(FileChannel channel, ByteBuffer buffer,
+			int[] array, int length) throws IOException {
+		for (int offset = 0; offset < length;) {
+			if (buffer.remaining() < 4) {
+				fill(channel, buffer);
+			}
+
+			int count = Math.min(length - offset, buffer.remaining() / 4);
+			buffer.asIntBuffer().get(array, offset, count);
+			buffer.position(buffer.position() + 4 * count);
+			offset += count;
+		}
+	}
+
+	private static void readFloats(FileChannel channel, ByteBuffer buffer,
+			float[] array, int length) throws IOException {
+		for (int offset = 0; offset < length;) {
+			if (buffer.remaining() < 4) {
+				fill(channel, buffer);
+			}
+
+			int count = Math.min(length - offset, buffer.remaining() / 4);
+			buffer.asFloatBuffer().get(array, offset, count);
+			buffer.position(buffer.position() + 4 * count);
+			offset += count;
+		}
+	}
+
+	private static void readDoubles(FileChannel channel, ByteBuffer buffer,
+			double[] array, int length) throws IOException {
+		for (int offset = 0; offset < length;) {
+			if (buffer.remaining() < 8) {
+				fill(channel, buffer);
+			}
+
+			int count = Math.min(length - offset, buffer.remaining() / 8);
+			buffer.asDoubleBuffer().get(array, offset, count);
+			buffer.position(buffer.position() + 8 * count);
+			offset += count;
+		}
+	}
+
+	/**
+	 * Moves the unread bytes of the buffer to its beginning and reads as many
+	 * bytes as fit after them.
+	 */
+	private static void fill(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		int unread = buffer.remaining();
+		buffer.compact();
+		while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+			// keep reading until the buffer is full or the file ends
+		}
+		buffer.flip();
+
+		if (buffer.remaining() == unread) {
+			throw new IOException("Unexpected end of file.");
+		}
+	}
+
+	public IterationGrid getGrid() {
+		return this.grid;
+	}
+
+	/**
+	 * Returns the iterations every pending pixel has been iterated to, which
+	 * are the maximum iterations of the grid.
+	 */
+	public int getIterations() {
+		return this.iterations;
+	}
+
+	/**
+	 * Returns the number of pixels that are not known to escape or to belong
+	 * to the set.
+	 */
+	public int getPendingPixelCount() {
+		return this.pendingPixelCount;
+	}
+
+	/**
+	 * Returns the total number of pixels that were iterated on from a saved
+	 * orbit point, over all continuations after the first one.
+	 */
+	public long getResumedPixelCount() {
+		return this.resumedPixelCount;
+	}
+
+	/**
+	 * Continues the pending pixels of a range of tasks, splitting the range in
+	 * halves until a single task is left.
+	 */
+	private class ContinuationTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private int firstTask;
+		private int lastTask;
+		private int maxIterations;
+		private int[] keptPixelCounts;
+
+		private ContinuationTask(int firstTask, int lastTask,
+				int maxIterations, int[] keptPixelCounts) {
+			this.firstTask = firstTask;
+			this.lastTask = lastTask;
+			this.maxIterations = maxIterations;
+			this.keptPixelCounts = keptPixelCounts;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.lastTask - this.firstTask > 1) {
+				int middleTask = (this.firstTask + this.lastTask) / 2;
+				invokeAll(new ContinuationTask(this.firstTask, middleTask,
+						this.maxIterations, this.keptPixelCounts),
+						new ContinuationTask(middleTask, this.lastTask,
+								this.maxIterations, this.keptPixelCounts));
+				return;
+			}
+
+			if (this.lastTask > this.firstTask) {
+				int from = this.firstTask * PIXELS_PER_TASK;
+				int to = Math.min(from + PIXELS_PER_TASK, pendingPixelCount);
+				this.keptPixelCounts[this.firstTask] = continueRange(from, to,
+						this.maxIterations);
+			}
+		}
+	}
+}
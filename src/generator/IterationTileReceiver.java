@@ -0,0 +1,41 @@
+package generator;
+
+/**
+ * Receives the pixels of a generation in tiles as soon as they are computed,
+ * instead of a single grid at the end. The tiles are received one at a time
+ * by a single thread, in the order they were completed.
+ */
+public interface IterationTileReceiver {
+	/**
+	 * Receives a completed tile. The pixels of progressive generations are
+	 * computed first on coarse passes, in which a computed pixel stands for
+	 * a square of pixels of the generated viewport.
+	 *
+	 * @param tile
+	 *            - the escape iterations of the tile
+	 * @param offsetX
+	 *            - the column of the first pixel of the tile in its pass
+	 * @param offsetY
+	 *            - the row of the first pixel of the tile in its pass
+	 * @param pixelSize
+	 *            - the side of the square of generated pixels that each
+	 *            pixel of the tile stands for, 1 for the final pass
+	 */
+	public void receiveTile(IterationGrid tile, int offsetX, int offsetY,
+			int pixelSize);
+
+	/**
+	 * Called after the last tile of a generation is received.
+	 */
+	public void streamIsFinished();
+
+	/**
+	 * Called instead of streamIsFinished when the receiveTile method has
+	 * thrown an exception. The tiles of the generation that were not received
+	 * yet are dropped.
+	 *
+	 * @param failure
+	 *            - the exception thrown by receiveTile
+	 */
+	public void streamFailed(RuntimeException failure);
+}
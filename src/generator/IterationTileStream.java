@@ -0,0 +1,224 @@
+package generator;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Delivers the tiles of a single generation to an
+ * {@link IterationTileReceiver} on the thread that orchestrates the
+ * generation. The tiles wait for the receiver in a bounded queue, so the
+ * threads that compute them are blocked while the receiver is behind and no
+ * more than the capacity of the queue is held in memory. The computing
+ * threads block as managed blockers, so that a fork/join pool they run on
+ * makes up for them and other generations on the pool are not starved by a
+ * slow receiver.
+ *
+ * The tiles of every pass are delivered by {@link #deliverPass()}, until the
+ * computing threads mark the end of the pass with {@link #endPass()}.
+ *
+ * If the receiver throws a runtime exception, or a thread is interrupted
+ * while it puts a tile or delivers them, the stream fails. The tiles still in
+ * the queue are dropped, so that no computing thread stays blocked, the tiles
+ * put afterwards are refused, and the receiver is notified of the failure at
+ * the end of the stream instead of its regular end.
+ */
+class IterationTileStream {
+	private static final Object END_OF_PASS = new Object();
+
+	private BlockingQueue<Object> queue;
+
+	private IterationTileReceiver receiver;
+
+	private volatile RuntimeException failure;
+
+	/**
+	 * Creates a stream.
+	 *
+	 * @param receiver
+	 *            - the receiver of the tiles
+	 * @param capacity
+	 *            - the number of tiles that could wait for the receiver
+	 */
+	public IterationTileStream(IterationTileReceiver receiver, int capacity) {
+		this.receiver = receiver;
+		this.queue = new ArrayBlockingQueue<Object>(capacity);
+	}
+
+	/**
+	 * Puts a tile into the stream, waiting while the queue is full.
+	 *
+	 * @throws IllegalStateException
+	 *             if the stream has failed, also when the calling thread is
+	 *             interrupted while waiting
+	 */
+	public void put(IterationGrid tile, int offsetX, int offsetY,
+			int pixelSize) {
+		RuntimeException failure = this.failure;
+		if (failure != null) {
+			throw new IllegalStateException("The tile stream has failed.",
+					failure);
+		}
+
+		if (!putElement(new StreamedTile(tile, offsetX, offsetY, pixelSize))) {
+			throw new IllegalStateException("The tile stream has failed.",
+					this.failure);
+		}
+	}
+
+	/**
+	 * Marks the end of the tiles of the current pass. Called once every tile
+	 * of the pass was put, also if putting them failed.
+	 */
+	public void endPass() {
+		putElement(END_OF_PASS);
+	}
+
+	/**
+	 * Delivers the tiles of the current pass to the receiver until the end
+	 * of the pass is marked. After a failure the tiles are only drained.
+	 */
+	public void deliverPass() {
+		boolean interrupted = false;
+
+		while (true) {
+			Object element;
+			try {
+				element = this.queue.take();
+			} catch (InterruptedException e) {
+				// the queue is still drained, so that the computing threads
+				// are not left blocked
+				fail(new IllegalStateException(
+						"The tile stream was interrupted.", e));
+				interrupted = true;
+				continue;
+			}
+
+			if (element == END_OF_PASS) {
+				break;
+			}
+			if (this.failure == null) {
+				deliver((StreamedTile) element);
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Notifies the receiver of the end of the stream, or of its failure.
+	 * Called after the last pass was delivered.
+	 */
+	public void finish() {
+		try {
+			if (this.failure == null) {
+				this.receiver.streamIsFinished();
+			} else {
+				this.receiver.streamFailed(this.failure);
+			}
+		} catch (RuntimeException e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Returns whether the stream has failed, after which the tiles are not
+	 * delivered any more.
+	 */
+	public boolean hasFailed() {
+		return this.failure != null;
+	}
+
+	/**
+	 * Returns the exception the stream has failed with, or null if it has
+	 * not.
+	 */
+	public RuntimeException getFailure() {
+		return this.failure;
+	}
+
+	/**
+	 * Puts an element into the queue and returns whether it was put, or
+	 * fails the stream if the calling thread is interrupted.
+	 */
+	private boolean putElement(Object element) {
+		try {
+			ForkJoinPool.managedBlock(new ElementPut(element));
+			return true;
+		} catch (InterruptedException e) {
+			fail(new IllegalStateException(
+					"Interrupted while putting a tile into the stream.", e));
+			Thread.currentThread().interrupt();
+
+			// the end of a pass is put even so, without waiting, because the
+			// failed stream is drained
+			if (element == END_OF_PASS) {
+				while (!this.queue.offer(element)) {
+					Thread.yield();
+				}
+			}
+			return false;
+		}
+	}
+
+	private void deliver(StreamedTile tile) {
+		try {
+			this.receiver.receiveTile(tile.grid, tile.offsetX, tile.offsetY,
+					tile.pixelSize);
+		} catch (RuntimeException e) {
+			fail(e);
+		}
+	}
+
+	private synchronized void fail(RuntimeException failure) {
+		if (this.failure == null) {
+			this.failure = failure;
+		}
+	}
+
+	/**
+	 * Puts an element into the queue as a managed blocker.
+	 */
+	private class ElementPut implements ForkJoinPool.ManagedBlocker {
+		private Object element;
+		private boolean isPut;
+
+		private ElementPut(Object element) {
+			this.element = element;
+		}
+
+		@Override
+		public boolean block() throws InterruptedException {
+			if (!this.isPut) {
+				queue.put(this.element);
+				this.isPut = true;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean isReleasable() {
+			if (!this.isPut) {
+				this.isPut = queue.offer(this.element);
+			}
+			return this.isPut;
+		}
+	}
+
+	private static class StreamedTile {
+		private IterationGrid grid;
+		private int offsetX;
+		private int offsetY;
+		private int pixelSize;
+
+		private StreamedTile(IterationGrid grid, int offsetX, int offsetY,
+				int pixelSize) {
+			this.grid = grid;
+			this.offsetX = offsetX;
+			this.offsetY = offsetY;
+			this.pixelSize = pixelSize;
+		}
+	}
+}
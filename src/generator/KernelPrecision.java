@@ -0,0 +1,47 @@
+package generator;
+
+/**
+ * The arithmetic a {@link Viewport} is generated with by default, chosen
+ * from its pixel step - the cheapest one whose precision still tells its
+ * neighbouring pixels apart.
+ */
+public enum KernelPrecision {
+	/**
+	 * Single precision, for steps above
+	 * {@link MandelbrotSetGenerator#FLOAT_ZOOM_STEP}.
+	 */
+	FLOAT,
+
+	/**
+	 * Double precision, for steps down to
+	 * {@link MandelbrotSetGenerator#DEEP_ZOOM_STEP}.
+	 */
+	DOUBLE,
+
+	/**
+	 * Pairs of doubles, for steps down to
+	 * {@link MandelbrotSetGenerator#PERTURBATION_ZOOM_STEP}.
+	 */
+	DOUBLE_DOUBLE,
+
+	/**
+	 * Double offsets from an arbitrary precision reference orbit, for any
+	 * smaller step.
+	 */
+	PERTURBATION;
+
+	public static KernelPrecision forViewport(Viewport viewport) {
+		double step = Math.min(viewport.getRealPartStep(),
+				viewport.getImaginaryPartStep());
+
+		if (step > MandelbrotSetGenerator.FLOAT_ZOOM_STEP) {
+			return FLOAT;
+		} else if (step >= MandelbrotSetGenerator.DEEP_ZOOM_STEP) {
+			return DOUBLE;
+		} else if (step >= MandelbrotSetGenerator.PERTURBATION_ZOOM_STEP) {
+			return DOUBLE_DOUBLE;
+		}
+
+		return PERTURBATION;
+	}
+}
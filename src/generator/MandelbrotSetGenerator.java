@@ -1,16 +1,36 @@
 package generator;
 
+import cache.TileCache;
+import cache.TileKey;
+import distributed.TileCoordinator;
+import metrics.GeneratorMetrics;
+
+import java.io.IOException;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * A class that generates the Mandelbrot set with a given precision or for a
  * given screen resolution, if it is going to be used to draw a fractal.
+ *
+ * Generations could overlap - a generation keeps its progress in objects of
+ * its own and is delivered on its own when it is complete. The getters that
+ * describe a generation, such as getTileTimings, report the last one that
+ * finished.
  */
 public class MandelbrotSetGenerator {
 	public static final double MANDELBROT_MIN_X = -2.5;
@@ -23,19 +43,76 @@ public class MandelbrotSetGenerator {
 	public static final double MANDELBROT_Y_INTERVAL_LENGTH = MANDELBROT_MAX_Y
 			- MANDELBROT_MIN_Y;
 
-	private List<MandelbrotNumber> generatedNumbers;
-	private int finalNumberCount;
+	public static final int DEFAULT_MINIMUM_TILE_SIZE = 32;
 
-	private Map<MandelbrotNumber, Pixel> numberPixelMapping;
+	/**
+	 * The pixel step above which the grids could be generated with floats,
+	 * whose precision is still far finer than a pixel, if enabled with
+	 * {@link #setFloatPrecision(boolean)}.
+	 */
+	public static final double FLOAT_ZOOM_STEP = 1e-4;
+
+	/**
+	 * The pixel step below which neighbouring pixels could no longer be told
+	 * apart as doubles, so the grids are generated with double-double
+	 * arithmetic or perturbation.
+	 */
+	public static final double DEEP_ZOOM_STEP = 1e-13;
+
+	/**
+	 * The pixel step below which the grids are generated with perturbation
+	 * instead of double-double arithmetic.
+	 */
+	public static final double PERTURBATION_ZOOM_STEP = 1e-30;
+
+	/**
+	 * The pixel size of the first pass of progressive generations. Every next
+	 * pass halves the pixel size down to single pixels.
+	 */
+	public static final int PROGRESSIVE_FIRST_PIXEL_SIZE = 8;
+
+	/**
+	 * The number of completed tiles that could wait for a slow
+	 * {@link IterationTileReceiver} before the generation is blocked.
+	 */
+	public static final int STREAM_CAPACITY = 16;
+
+	private static final int GRID_ROWS_PER_THREAD = 8;
+
+	// the results of the last finished generation, see the getters
+	private volatile Map<MandelbrotNumber, Pixel> numberPixelMapping;
+	private volatile List<TileTiming> tileTimings;
+	private volatile long iteratedPixelCount;
+	private volatile int estimatedMaxIterations;
+	private volatile int iterationExtensionCount;
+	private volatile long resumedPixelCount;
+	private volatile int refinedPixelCount;
 
 	private MandelbrotSetReceiver receiver;
+	private IterationGridReceiver gridReceiver;
+	private IterationTileReceiver tileReceiver;
 	private int maximumActiveThreads;
 	private int maximumIterations;
+	private EscapeIterationsComputer iterationComputer;
+	private EscapeTimeKernel floatKernel;
+	private EscapeTimeKernel kernel;
+	private EscapeTimeKernel doubleDoubleKernel;
+	private EscapeTimeKernel deepZoomKernel;
+	private boolean kernelIsExplicit;
+	private boolean interiorCheck;
+	private boolean periodicityCheck;
+	private boolean smoothIterations;
+	private boolean conjugateSymmetry;
+	private boolean floatPrecision;
+
+	private TileCache tileCache;
 
-	private int numberOfExpectedThreads;
-	private int receivedThreads;
+	private ExecutionMode executionMode;
+	private ExecutorService executor;
+	private ExecutorService orchestrationExecutor;
+	private ForkJoinPool forkJoinPool;
 
-	private ThreadPoolExecutor executor;
+	private GeneratorMetrics metrics;
 
 	/**
 	 * Creates a new generator that has the specified limitations.
@@ -51,27 +128,291 @@ public class MandelbrotSetGenerator {
 	 */
 	public MandelbrotSetGenerator(int maximumThreads, int maximumIterations,
 			MandelbrotSetReceiver receiver) {
+		this(maximumThreads, maximumIterations, ExecutionMode.PLATFORM_THREADS);
+		this.receiver = receiver;
+	}
+
+	private MandelbrotSetGenerator(int maximumThreads, int maximumIterations,
+			ExecutionMode executionMode) {
 		this.maximumActiveThreads = maximumThreads;
-		this.executor = new ThreadPoolExecutor(this.maximumActiveThreads,
-				this.maximumActiveThreads, 0, TimeUnit.NANOSECONDS,
-				new LinkedBlockingQueue<Runnable>());
+		this.executionMode = executionMode;
+		this.forkJoinPool = new ForkJoinPool(this.maximumActiveThreads);
+
+		if (executionMode == ExecutionMode.VIRTUAL_THREADS) {
+			this.executor = this.forkJoinPool;
+			this.orchestrationExecutor = ExecutionMode
+					.createThreadPerTaskExecutor();
+		} else {
+			this.executor = new ThreadPoolExecutor(this.maximumActiveThreads,
+					this.maximumActiveThreads, 0, TimeUnit.NANOSECONDS,
+					new LinkedBlockingQueue<Runnable>());
+			this.orchestrationExecutor = this.executor;
+		}
+		this.metrics = new GeneratorMetrics(this.executor, this.forkJoinPool);
 
 		this.maximumIterations = maximumIterations;
-		this.receiver = receiver;
+		this.iterationComputer = new EscapeIterationsComputer(maximumIterations);
+		this.floatKernel = EscapeTimeKernels.createFloat(maximumIterations,
+				false);
+		this.kernel = EscapeTimeKernels.createBestAvailable(maximumIterations,
+				false, false);
+		this.doubleDoubleKernel = new DoubleDoubleEscapeIterationsComputer(
+				maximumIterations, false);
+		this.deepZoomKernel = new PerturbationEscapeIterationsComputer(
+				maximumIterations);
 	}
 
-	private double getScaledXPixel(int xCoordinate, int width) {
-		double scale = MANDELBROT_X_INTERVAL_LENGTH / width;
+	/**
+	 * Creates a new generator that has the specified limitations and delivers
+	 * the generated sets as {@link IterationGrid}s.
+	 * 
+	 * @param maximumThreads
+	 *            - maximum threads to be used during the generations
+	 * @param maximumIterations
+	 *            - maximum iterations that could be applied during the check
+	 *            for each number's belonging in the set
+	 * @param gridReceiver
+	 *            - the object that will receive the generated grids (should
+	 *            implement {@link IterationGridReceiver})
+	 */
+	public MandelbrotSetGenerator(int maximumThreads, int maximumIterations,
+			IterationGridReceiver gridReceiver) {
+		this(maximumThreads, maximumIterations, gridReceiver,
+				ExecutionMode.PLATFORM_THREADS);
+	}
 
-		double scaledCoordinate = xCoordinate * scale + MANDELBROT_MIN_X;
-		return scaledCoordinate;
+	/**
+	 * Creates a new generator that has the specified limitations, delivers
+	 * the generated sets as {@link IterationGrid}s and runs on the threads of
+	 * the specified execution mode.
+	 * 
+	 * @param maximumThreads
+	 *            - maximum threads to be used for computing escape iterations
+	 * @param maximumIterations
+	 *            - maximum iterations that could be applied during the check
+	 *            for each number's belonging in the set
+	 * @param gridReceiver
+	 *            - the object that will receive the generated grids (should
+	 *            implement {@link IterationGridReceiver})
+	 * @param executionMode
+	 *            - the threads the generations are run on
+	 */
+	public MandelbrotSetGenerator(int maximumThreads, int maximumIterations,
+			IterationGridReceiver gridReceiver, ExecutionMode executionMode) {
+		this(maximumThreads, maximumIterations, executionMode);
+		this.gridReceiver = gridReceiver;
 	}
 
-	private double getScaledYPixel(int yCoordinate, int height) {
-		double scale = MANDELBROT_Y_INTERVAL_LENGTH / height;
+	/**
+	 * Creates a new generator that has the specified limitations and streams
+	 * the generated pixels in tiles as soon as they are computed.
+	 * 
+	 * @param maximumThreads
+	 *            - maximum threads to be used during the generations
+	 * @param maximumIterations
+	 *            - maximum iterations that could be applied during the check
+	 *            for each number's belonging in the set
+	 * @param tileReceiver
+	 *            - the object that will receive the generated tiles (should
+	 *            implement {@link IterationTileReceiver})
+	 */
+	public MandelbrotSetGenerator(int maximumThreads, int maximumIterations,
+			IterationTileReceiver tileReceiver) {
+		this(maximumThreads, maximumIterations, tileReceiver,
+				ExecutionMode.PLATFORM_THREADS);
+	}
+
+	/**
+	 * Creates a new generator that has the specified limitations, streams the
+	 * generated pixels in tiles and runs on the threads of the specified
+	 * execution mode.
+	 * 
+	 * @param maximumThreads
+	 *            - maximum threads to be used for computing escape iterations
+	 * @param maximumIterations
+	 *            - maximum iterations that could be applied during the check
+	 *            for each number's belonging in the set
+	 * @param tileReceiver
+	 *            - the object that will receive the generated tiles (should
+	 *            implement {@link IterationTileReceiver})
+	 * @param executionMode
+	 *            - the threads the generations are run on
+	 */
+	public MandelbrotSetGenerator(int maximumThreads, int maximumIterations,
+			IterationTileReceiver tileReceiver, ExecutionMode executionMode) {
+		this(maximumThreads, maximumIterations, executionMode);
+		this.tileReceiver = tileReceiver;
+	}
+
+	/**
+	 * Specifies which numbers could be given the maximum iterations without
+	 * iterating them to the end. Both checks are disabled by default.
+	 * 
+	 * @param interiorCheck
+	 *            - whether numbers inside the main cardioid and the period-2
+	 *            bulb are recognized with their closed form
+	 * @param periodicityCheck
+	 *            - whether numbers with a periodic orbit are recognized while
+	 *            iterating
+	 */
+	public void setInteriorChecks(boolean interiorCheck,
+			boolean periodicityCheck) {
+		synchronized (this) {
+			this.iterationComputer = new EscapeIterationsComputer(
+					this.maximumIterations, interiorCheck, periodicityCheck);
+			this.floatKernel = EscapeTimeKernels.createForPrecision(
+					KernelPrecision.FLOAT, this.maximumIterations,
+					interiorCheck, periodicityCheck);
+			this.kernel = EscapeTimeKernels.createBestAvailable(
+					this.maximumIterations, interiorCheck, periodicityCheck);
+			this.doubleDoubleKernel = new DoubleDoubleEscapeIterationsComputer(
+					this.maximumIterations, interiorCheck);
+			this.kernelIsExplicit = false;
+			this.interiorCheck = interiorCheck;
+			this.periodicityCheck = periodicityCheck;
+		}
+	}
+
+	/**
+	 * Specifies whether the grids are generated with the continuous escape
+	 * values of their pixels, that are needed for smooth colouring. Disabled
+	 * by default. Tiles of the generateTile method never store them.
+	 */
+	public void setSmoothIterations(boolean smoothIterations) {
+		synchronized (this) {
+			this.smoothIterations = smoothIterations;
+		}
+	}
+
+	/**
+	 * Specifies whether the rows of a viewport that are mirror images of its
+	 * other rows about the real axis are copied from them instead of being
+	 * iterated, because the set is symmetric about the axis. Only viewports
+	 * whose pixels are placed symmetrically about the axis have such rows.
+	 * Applies to every generation method. Disabled by default.
+	 * 
+	 * The imaginary parts of a row and of its mirror row are computed
+	 * separately and could differ from exact negations of each other in the
+	 * last bit, unless the step and the bounds of the viewport are exact in
+	 * binary, such as for power-of-two heights of the whole set. A mirrored
+	 * pixel on the boundary of the set could then get other iterations than
+	 * iterating it would give.
+	 */
+	public void setConjugateSymmetry(boolean conjugateSymmetry) {
+		synchronized (this) {
+			this.conjugateSymmetry = conjugateSymmetry;
+		}
+	}
+
+	/**
+	 * Specifies whether the viewports with a step above
+	 * {@link #FLOAT_ZOOM_STEP} are generated with floats instead of doubles.
+	 * Floats are faster, but their orbits drift apart from the orbits of
+	 * doubles, so some pixels near the boundary of the set get other
+	 * iterations - about 4 percent of the pixels of the seahorse valley at
+	 * the threshold and 500 iterations. Disabled by default, so that the
+	 * grids are the same as before floats were used.
+	 */
+	public void setFloatPrecision(boolean floatPrecision) {
+		synchronized (this) {
+			this.floatPrecision = floatPrecision;
+		}
+	}
 
-		double scaledCoordinate = yCoordinate * scale + MANDELBROT_MIN_Y;
-		return scaledCoordinate;
+	/**
+	 * Returns the mirrored rows of the viewport, or null if every row has to
+	 * be computed.
+	 */
+	private ConjugateSymmetry getSymmetry(Viewport viewport) {
+		synchronized (this) {
+			return this.conjugateSymmetry ? ConjugateSymmetry
+					.forViewport(viewport) : null;
+		}
+	}
+
+	/**
+	 * Splits the rows of a viewport that are not mirrored into bands of at
+	 * most the specified number of rows.
+	 * 
+	 * @return the first row, inclusive, and the last row, exclusive, of every
+	 *         band
+	 */
+	private static List<int[]> getComputedBands(int height, int bandHeight,
+			ConjugateSymmetry symmetry) {
+		List<int[]> bands = new ArrayList<int[]>();
+
+		for (int firstRow = 0; firstRow < height;) {
+			int lastRow = Math.min(firstRow + bandHeight, height);
+			if (symmetry != null) {
+				if (symmetry.isMirrored(firstRow)) {
+					firstRow = symmetry.getLastMirroredRow();
+					continue;
+				}
+				if (firstRow < symmetry.getFirstMirroredRow()) {
+					lastRow = Math.min(lastRow,
+							symmetry.getFirstMirroredRow());
+				}
+			}
+
+			bands.add(new int[] { firstRow, lastRow });
+			firstRow = lastRow;
+		}
+
+		return bands;
+	}
+
+	/**
+	 * Replaces the kernel used by the methods that generate an
+	 * {@link IterationGrid}. By default every viewport is generated with the
+	 * fastest kernel available in the JVM for the arithmetic
+	 * {@link KernelPrecision} chooses from its step - doubles, double-doubles
+	 * or perturbation, and floats if enabled with
+	 * {@link #setFloatPrecision(boolean)}. A kernel set with this method is
+	 * used for every viewport.
+	 * 
+	 * @param kernel
+	 *            - the kernel to be used, with the same maximum iterations as
+	 *            the generator
+	 */
+	public void setKernel(EscapeTimeKernel kernel) {
+		synchronized (this) {
+			this.kernel = kernel;
+			this.kernelIsExplicit = true;
+		}
+	}
+
+	public EscapeTimeKernel getKernel() {
+		return this.kernel;
+	}
+
+	/**
+	 * Returns the kernel that generates the specified viewport.
+	 */
+	public EscapeTimeKernel getKernel(Viewport viewport) {
+		synchronized (this) {
+			if (this.kernelIsExplicit) {
+				return this.kernel;
+			}
+
+			switch (KernelPrecision.forViewport(viewport)) {
+			case FLOAT:
+				return this.floatPrecision ? this.floatKernel : this.kernel;
+			case DOUBLE_DOUBLE:
+				return this.doubleDoubleKernel;
+			case PERTURBATION:
+				return this.deepZoomKernel;
+			default:
+				return this.kernel;
+			}
+		}
+	}
+
+	/**
+	 * Returns the kernel that generates the specified viewport, recording its
+	 * work into the metrics of the generator.
+	 */
+	private EscapeTimeKernel getMeasuredKernel(Viewport viewport) {
+		return new MeasuredEscapeTimeKernel(getKernel(viewport), this.metrics);
 	}
 
 	/**
@@ -92,28 +433,683 @@ public class MandelbrotSetGenerator {
 	 *            - the width of the desired resolution
 	 */
 	public void generatePixels(int height, int width) {
+		generatePixels(Viewport.forWholeSet(width, height));
+	}
+
+	/**
+	 * Generates a Mandelbort set of numbers with a number for every pixel of
+	 * the specified viewport. After the generation is complete the receiveSet
+	 * method is called with the generated set.
+	 * 
+	 * The number pixel mapping could be received through the getPixelMapping
+	 * method.
+	 * 
+	 * This method uses a single thread to calculate escape iterations for every
+	 * examined number.
+	 * 
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 */
+	public void generatePixels(Viewport viewport) {
 		// synchronize on the object, so that this method cannot be run
 		// simultaneously with the other generation methods
 		synchronized (this) {
-			this.generatedNumbers = new ArrayList<MandelbrotNumber>();
-			this.finalNumberCount = height * width;
+			NumberGeneration generation = new NumberGeneration(
+					viewport.getPixelCount());
+			Map<MandelbrotNumber, Pixel> numberPixelMapping = new HashMap<MandelbrotNumber, Pixel>();
+			this.numberPixelMapping = numberPixelMapping;
+			ConjugateSymmetry symmetry = getSymmetry(viewport);
+
+			for (int pixelX = 0; pixelX < viewport.getWidth(); ++pixelX) {
+				for (int pixelY = 0; pixelY < viewport.getHeight(); ++pixelY) {
+					// the mirrored numbers are created with their mirror ones
+					if (symmetry != null && symmetry.isMirrored(pixelY)) {
+						continue;
+					}
+
+					MandelbrotNumber number = new MandelbrotNumber(
+							viewport.getRealPart(pixelX),
+							viewport.getImaginaryPart(pixelY));
+					MandelbrotNumber mirrorNumber = createMirrorNumber(
+							viewport, symmetry, pixelX, pixelY);
+
+					numberPixelMapping.put(number, new Pixel(pixelX, pixelY));
+					if (mirrorNumber != null) {
+						numberPixelMapping.put(mirrorNumber, new Pixel(pixelX,
+								symmetry.getMirrorRow(pixelY)));
+					}
+
+					computeBoundedIterations(number, mirrorNumber, generation);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Generates the escape iterations for every pixel in the specified
+	 * resolution directly into an {@link IterationGrid}. After the generation
+	 * is complete the receiveGrid method is called with the generated grid.
+	 * 
+	 * Unlike generatePixels this method does not create a number and a pixel
+	 * object per point, and every thread computes a band of whole rows.
+	 * 
+	 * @param height
+	 *            - the height of the desired resolution
+	 * @param width
+	 *            - the width of the desired resolution
+	 */
+	public void generatePixelGrid(int height, int width) {
+		generatePixelGrid(Viewport.forWholeSet(width, height));
+	}
+
+	/**
+	 * Generates the escape iterations for every pixel of the specified
+	 * viewport directly into an {@link IterationGrid}. After the generation is
+	 * complete the receiveGrid method is called with the generated grid.
+	 * 
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 */
+	public void generatePixelGrid(Viewport viewport) {
+		checkGridReceiver();
+
+		synchronized (this) {
+			IterationGrid grid = new IterationGrid(viewport,
+					this.maximumIterations, this.smoothIterations);
+			EscapeTimeKernel kernel = getMeasuredKernel(viewport);
+			ConjugateSymmetry symmetry = getSymmetry(viewport);
+			List<int[]> bands = getComputedBands(viewport.getHeight(),
+					GRID_ROWS_PER_THREAD, symmetry);
+
+			GridGeneration generation = new GridGeneration(grid,
+					kernel.getName(), this.metrics.generationStarted(),
+					symmetry, bands.size());
+
+			for (int[] band : bands) {
+				this.executor.execute(new PixelRowsGeneratorRunnable(
+						generation, band[0], band[1], this, kernel));
+			}
+		}
+	}
+
+	/**
+	 * Generates the escape iterations for every pixel of the specified
+	 * viewport directly into an {@link IterationGrid}. After the generation is
+	 * complete the receiveGrid method is called with the generated grid.
+	 * 
+	 * This method recursively splits the viewport into tiles on a fork/join
+	 * pool, so that idle threads steal the tiles that the busy ones have not
+	 * started yet. The time spent on every tile could be received through the
+	 * getTileTimings method.
+	 * 
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 * @param minimumTileSize
+	 *            - the size in pixels below which a tile is not split further
+	 */
+	public void generatePixelGridUsingWorkStealing(Viewport viewport,
+			int minimumTileSize) {
+		checkGridReceiver();
+
+		synchronized (this) {
+			final IterationGrid grid = new IterationGrid(viewport,
+					this.maximumIterations, this.smoothIterations);
+			final Queue<TileTiming> tileTimings = new ConcurrentLinkedQueue<TileTiming>();
+			final EscapeTimeKernel kernel = getMeasuredKernel(viewport);
+			final ConjugateSymmetry symmetry = getSymmetry(viewport);
+			final int tileSize = minimumTileSize;
+			final long startNanos = this.metrics.generationStarted();
+
+			// the fork/join workers are daemon threads, so the generation is
+			// awaited on the executor to keep the application running until
+			// the grid is received
+			this.orchestrationExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					computeUsingWorkStealing(grid, tileSize, kernel,
+							tileTimings, symmetry);
+					recordGeneration("work-stealing", grid, kernel.getName(),
+							startNanos);
+					computationIsFinished(grid, new ArrayList<TileTiming>(
+							tileTimings));
+				}
+			});
+		}
+	}
+
+	/**
+	 * Computes the rows of the grid that are not mirrored with work stealing
+	 * tasks on the fork/join pool, and copies the mirrored ones.
+	 */
+	private void computeUsingWorkStealing(IterationGrid grid,
+			int minimumTileSize, EscapeTimeKernel kernel,
+			Queue<TileTiming> tileTimings, ConjugateSymmetry symmetry) {
+		for (int[] band : getComputedBands(grid.getHeight(), grid.getHeight(),
+				symmetry)) {
+			this.forkJoinPool.invoke(new WorkStealingTileTask(grid, 0,
+					band[0], grid.getWidth(), band[1] - band[0],
+					minimumTileSize, kernel, tileTimings, this.metrics));
+		}
+
+		if (symmetry != null) {
+			symmetry.mirror(grid);
+		}
+	}
+
+	/**
+	 * Generates the escape iterations for every pixel of the specified
+	 * viewport directly into an {@link IterationGrid}. After the generation is
+	 * complete the receiveGrid method is called with the generated grid.
+	 * 
+	 * This method uses the Mariani-Silver algorithm - only the borders of
+	 * rectangles are iterated and rectangles with a uniform border are filled
+	 * without iterating their inside. The number of pixels that were actually
+	 * iterated could be received through the getIteratedPixelCount method.
+	 * 
+	 * The borders are sampled at the pixels only, so a filament of escaping
+	 * numbers thinner than a pixel could cross a border between two samples,
+	 * and the pixels it reaches inside get the iterations of the border
+	 * instead. Such pixels are rare, but the result is not guaranteed to
+	 * match generatePixelGrid pixel for pixel.
+	 * 
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 */
+	public void generatePixelGridUsingRectangleFill(Viewport viewport) {
+		checkGridReceiver();
+
+		synchronized (this) {
+			final IterationGrid grid = new IterationGrid(viewport,
+					this.maximumIterations, this.smoothIterations);
+			final AtomicLong iteratedPixels = new AtomicLong();
+			final EscapeTimeKernel kernel = getMeasuredKernel(viewport);
+			final ConjugateSymmetry symmetry = getSymmetry(viewport);
+			final long startNanos = this.metrics.generationStarted();
 
-			this.numberPixelMapping = new HashMap<MandelbrotNumber, Pixel>();
+			this.orchestrationExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					for (int[] band : getComputedBands(grid.getHeight(),
+							grid.getHeight(), symmetry)) {
+						MandelbrotSetGenerator.this.forkJoinPool
+								.invoke(new RectangleFillTask(grid, band[0],
+										band[1], kernel, iteratedPixels));
+					}
+					if (symmetry != null) {
+						symmetry.mirror(grid);
+					}
+					recordGeneration("rectangle-fill", grid, kernel.getName(),
+							startNanos);
+					computationIsFinished(grid, iteratedPixels.get());
+				}
+			});
+		}
+	}
 
-			for (int pixelX = 0; pixelX < width; ++pixelX) {
-				for (int pixelY = 0; pixelY < height; ++pixelY) {
-					double realPart = getScaledXPixel(pixelX, width);
-					double imaginaryPart = getScaledYPixel(pixelY, height);
-					MandelbrotNumber number = new MandelbrotNumber(realPart,
-							imaginaryPart);
+	/**
+	 * Generates the escape iterations for every pixel of the specified
+	 * viewport directly into an {@link IterationGrid}, and supersamples the
+	 * pixels on its edges. After the generation is complete the receiveGrid
+	 * method is called with the generated grid, whose getSupersamples method
+	 * returns the samples.
+	 * 
+	 * The grid is first computed at its own resolution with work stealing.
+	 * Every pixel whose escape iterations differ from those of a neighbour by
+	 * more than the edge threshold is then refined with jittered samples -
+	 * anti-aliasing costs only the pixels that need it, instead of generating
+	 * the whole grid at a multiple of its resolution. The number of refined
+	 * pixels could be received through the getRefinedPixelCount method.
+	 * 
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 * @param samplesPerSide
+	 *            - the number of samples along each side of a refined pixel,
+	 *            see {@link Supersamples#DEFAULT_SAMPLES_PER_SIDE}
+	 * @param edgeThreshold
+	 *            - the largest difference in escape iterations between
+	 *            neighbours that does not refine them, see
+	 *            {@link Supersamples#DEFAULT_EDGE_THRESHOLD}
+	 */
+	public void generateSupersampledPixelGrid(Viewport viewport,
+			final int samplesPerSide, final int edgeThreshold) {
+		checkGridReceiver();
 
-					this.numberPixelMapping.put(number, new Pixel(pixelX,
-							pixelY));
+		synchronized (this) {
+			final IterationGrid grid = new IterationGrid(viewport,
+					this.maximumIterations, this.smoothIterations);
+			final EscapeTimeKernel kernel = getMeasuredKernel(viewport);
+			final ConjugateSymmetry symmetry = getSymmetry(viewport);
+			final long startNanos = this.metrics.generationStarted();
+
+			this.orchestrationExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					computeUsingWorkStealing(grid, DEFAULT_MINIMUM_TILE_SIZE,
+							kernel, new ConcurrentLinkedQueue<TileTiming>(),
+							symmetry);
+
+					Supersamples supersamples = new Supersamples(grid,
+							samplesPerSide, Supersamples.findEdgePixels(grid,
+									edgeThreshold));
+					MandelbrotSetGenerator.this.forkJoinPool
+							.invoke(new SupersampleTask(grid.getViewport(),
+									supersamples, 0, supersamples
+											.getRefinedPixelCount(), kernel,
+									symmetry));
+					if (symmetry != null) {
+						supersamples.mirror(symmetry);
+					}
+					grid.setSupersamples(supersamples);
 
-					computeBoundedIterations(number);
+					recordGeneration("supersampled", grid, kernel.getName(),
+							startNanos);
+					computationIsFinished(grid, supersamples);
 				}
+			});
+		}
+	}
+
+	/**
+	 * Generates the escape iterations for every pixel of the specified
+	 * viewport directly into an {@link IterationGrid}, with maximum
+	 * iterations chosen for the viewport instead of the fixed ones of the
+	 * generator, which only limit them. After the generation is complete the
+	 * receiveGrid method is called with the generated grid, whose
+	 * getMaxIterations method returns the chosen ones.
+	 * 
+	 * The maximum iterations are first estimated by a
+	 * {@link MaxIterationsEstimator}. The grid is then generated with them
+	 * and extended by doubling them for the pixels that have not escaped,
+	 * which continue from their last orbit point, until a doubling lets too
+	 * few pixels escape. The estimate, the number of doublings and the number
+	 * of resumed pixels could be received through the
+	 * getEstimatedMaxIterations, getIterationExtensionCount and
+	 * getResumedPixelCount methods.
+	 * 
+	 * Viewports that need the perturbation kernel are generated with the
+	 * estimate, without extending it. The interior checks set with
+	 * {@link #setInteriorChecks(boolean, boolean)} apply, except for the
+	 * periodicity check of the extended grids, whose orbits are resumed.
+	 * 
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 */
+	public void generatePixelGridWithAdaptiveIterations(final Viewport viewport) {
+		checkGridReceiver();
+
+		synchronized (this) {
+			final boolean smoothIterations = this.smoothIterations;
+			final boolean interiorCheck = this.interiorCheck;
+			final boolean periodicityCheck = this.periodicityCheck;
+			final ConjugateSymmetry symmetry = getSymmetry(viewport);
+
+			this.orchestrationExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					generateWithAdaptiveIterations(viewport, smoothIterations,
+							interiorCheck, periodicityCheck, symmetry);
+				}
+			});
+		}
+	}
+
+	private void generateWithAdaptiveIterations(Viewport viewport,
+			boolean smoothIterations, boolean interiorCheck,
+			boolean periodicityCheck, ConjugateSymmetry symmetry) {
+		long startNanos = this.metrics.generationStarted();
+		int estimatedMaxIterations = new MaxIterationsEstimator(
+				this.maximumIterations).estimate(viewport, this.forkJoinPool);
+
+		if (Math.min(viewport.getRealPartStep(),
+				viewport.getImaginaryPartStep()) < DEEP_ZOOM_STEP) {
+			IterationGrid grid = new IterationGrid(viewport,
+					estimatedMaxIterations, smoothIterations);
+			EscapeTimeKernel kernel = new MeasuredEscapeTimeKernel(
+					EscapeTimeKernels.createForViewport(viewport,
+							estimatedMaxIterations, interiorCheck,
+							periodicityCheck), this.metrics);
+			computeUsingWorkStealing(grid, DEFAULT_MINIMUM_TILE_SIZE, kernel,
+					new ConcurrentLinkedQueue<TileTiming>(), symmetry);
+			recordGeneration("adaptive", grid, kernel.getName(), startNanos);
+			computationIsFinished(grid, estimatedMaxIterations, 0, 0);
+			return;
+		}
+
+		// the resumed orbits are not checked for periodicity
+		IterationState state = new IterationState(viewport, smoothIterations,
+				interiorCheck, symmetry != null);
+		state.continueTo(estimatedMaxIterations, this.forkJoinPool);
+
+		// the mirrored pixels escape with the pixels they are copied from
+		int iteratedPixelCount = viewport.getPixelCount();
+		if (symmetry != null) {
+			iteratedPixelCount -= symmetry.getMirroredRowCount()
+					* viewport.getWidth();
+		}
+
+		int extensionCount = 0;
+		while (state.getIterations() < this.maximumIterations
+				&& state.getPendingPixelCount() > 0) {
+			int escapedPixels = state.continueTo((int) Math.min(
+					2L * state.getIterations(), this.maximumIterations),
+					this.forkJoinPool);
+			++extensionCount;
+
+			if (escapedPixels <= MaxIterationsEstimator.ESCAPED_FRACTION_THRESHOLD
+					* iteratedPixelCount) {
+				break;
 			}
 		}
+
+		recordGeneration("adaptive", state.getGrid(), "resumable", startNanos);
+		computationIsFinished(state.getGrid(), estimatedMaxIterations,
+				extensionCount, state.getResumedPixelCount());
+	}
+
+	/**
+	 * Generates the escape iterations for every pixel of the specified
+	 * viewport like {@link #generatePixelGrid(Viewport)}, and keeps the orbits
+	 * of the pixels that do not escape in the returned state. After the
+	 * generation is complete the receiveGrid method is called with the grid of
+	 * the state.
+	 * 
+	 * The state could be continued to more iterations with
+	 * {@link #continuePixelGrid(IterationState, int)}, also after it was saved
+	 * and loaded by another generator.
+	 * 
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 */
+	public IterationState generateResumablePixelGrid(Viewport viewport) {
+		checkGridReceiver();
+
+		IterationState state;
+		synchronized (this) {
+			state = new IterationState(viewport, this.smoothIterations, true,
+					this.conjugateSymmetry);
+		}
+		continuePixelGrid(state, this.maximumIterations);
+		return state;
+	}
+
+	/**
+	 * Iterates the pixels of the state that have not escaped on to the
+	 * specified maximum iterations. After the continuation is complete the
+	 * receiveGrid method is called with the grid of the state, whose escape
+	 * iterations are the same as if it was generated with the new maximum.
+	 * 
+	 * @param state
+	 *            - the state returned by
+	 *            {@link #generateResumablePixelGrid(Viewport)} or loaded with
+	 *            {@link IterationState#load(java.io.File)}
+	 * @param maxIterations
+	 *            - the new maximum iterations of the grid
+	 */
+	public void continuePixelGrid(final IterationState state,
+			final int maxIterations) {
+		checkGridReceiver();
+
+		final long startNanos = this.metrics.generationStarted();
+		this.orchestrationExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				state.continueTo(maxIterations,
+						MandelbrotSetGenerator.this.forkJoinPool);
+				recordGeneration("continuation", state.getGrid(), "resumable",
+						startNanos);
+				MandelbrotSetGenerator.this.gridReceiver.receiveGrid(state
+						.getGrid());
+			}
+		});
+	}
+
+	/**
+	 * Generates the escape iterations for every pixel of the specified
+	 * viewport on the worker processes of a coordinator, instead of the
+	 * threads of the generator. After the generation is complete the
+	 * receiveGrid method is called with the generated grid. The work done by
+	 * each worker could be received through the getWorkerStatistics method of
+	 * the coordinator.
+	 * 
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 * @param coordinator
+	 *            - the coordinator of the workers
+	 */
+	public void generatePixelGridUsingWorkers(final Viewport viewport,
+			final TileCoordinator coordinator) {
+		checkGridReceiver();
+
+		final boolean smoothIterations = this.smoothIterations;
+		final long startNanos = this.metrics.generationStarted();
+		this.orchestrationExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					IterationGrid grid = coordinator.render(viewport,
+							MandelbrotSetGenerator.this.maximumIterations,
+							smoothIterations);
+					recordGeneration("workers", grid, "distributed",
+							startNanos);
+					MandelbrotSetGenerator.this.gridReceiver.receiveGrid(grid);
+				} catch (IOException e) {
+					MandelbrotSetGenerator.this.metrics
+							.generationFailed(startNanos);
+					Logger.getLogger("Generator").log(Level.WARNING,
+							"Failed to generate the grid on the workers.", e);
+				} catch (InterruptedException e) {
+					MandelbrotSetGenerator.this.metrics
+							.generationFailed(startNanos);
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Generates a single tile of the tile pyramid described in
+	 * {@link Viewport#forTile(long, long, int, int)}. After the generation is
+	 * complete the receiveGrid method is called with the generated tile.
+	 * 
+	 * If a tile cache is set, the tile is looked up in it first and is only
+	 * generated when it is missing, in which case it is put into the cache
+	 * before being received. Unlike the other generations, several tiles
+	 * could be generated at the same time.
+	 * 
+	 * @param tileX
+	 *            - the column of the tile
+	 * @param tileY
+	 *            - the row of the tile
+	 * @param zoom
+	 *            - the zoom level of the tile
+	 * @param tileSize
+	 *            - the number of pixels along each side of the tile
+	 */
+	public void generateTile(long tileX, long tileY, int zoom, int tileSize) {
+		checkGridReceiver();
+
+		final Viewport viewport = Viewport.forTile(tileX, tileY, zoom,
+				tileSize);
+		final EscapeTimeKernel kernel = getMeasuredKernel(viewport);
+		final ConjugateSymmetry symmetry = getSymmetry(viewport);
+		final TileCache tileCache = this.tileCache;
+		final long startNanos = this.metrics.generationStarted();
+		final TileKey key;
+		synchronized (this) {
+			key = new TileKey(tileX, tileY, zoom, tileSize,
+					this.maximumIterations, kernel.getName(),
+					this.interiorCheck, this.periodicityCheck, false,
+					symmetry != null);
+		}
+
+		// the cache is read and written on the orchestration threads, so
+		// that its I/O does not block the computing threads
+		this.orchestrationExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				IterationGrid cachedGrid = tileCache != null ? tileCache
+						.get(key) : null;
+				if (cachedGrid != null) {
+					recordGeneration("cached-tile", cachedGrid,
+							kernel.getName(), startNanos);
+					MandelbrotSetGenerator.this.gridReceiver
+							.receiveGrid(cachedGrid);
+					return;
+				}
+
+				IterationGrid grid = new IterationGrid(viewport, kernel
+						.getMaxIterations());
+				computeUsingWorkStealing(grid, DEFAULT_MINIMUM_TILE_SIZE,
+						kernel, new ConcurrentLinkedQueue<TileTiming>(),
+						symmetry);
+				if (tileCache != null) {
+					tileCache.put(key, grid);
+				}
+				recordGeneration("tile", grid, kernel.getName(), startNanos);
+				MandelbrotSetGenerator.this.gridReceiver.receiveGrid(grid);
+			}
+		});
+	}
+
+	/**
+	 * Sets the cache consulted by the generateTile method, or null to always
+	 * generate the tiles.
+	 */
+	public void setTileCache(TileCache tileCache) {
+		this.tileCache = tileCache;
+	}
+
+	public TileCache getTileCache() {
+		return this.tileCache;
+	}
+
+	/**
+	 * Generates the escape iterations for every pixel of the specified
+	 * viewport and streams them to the tile receiver in bands of rows, as
+	 * soon as each band is computed. The whole viewport is never held in
+	 * memory by the generator.
+	 * 
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 */
+	public void streamPixelGrid(Viewport viewport) {
+		streamPixelGrid(viewport, 1);
+	}
+
+	/**
+	 * Generates the escape iterations for every pixel of the specified
+	 * viewport and streams them to the tile receiver in progressively finer
+	 * passes. The first pass computes every {@link #PROGRESSIVE_FIRST_PIXEL_SIZE}
+	 * -th pixel along both axes and every next pass halves the pixel size.
+	 * Pixels of a pass are not iterated again in the next one, so only the
+	 * pixels of the viewport are iterated in total.
+	 * 
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 */
+	public void streamPixelGridProgressively(Viewport viewport) {
+		streamPixelGrid(viewport, PROGRESSIVE_FIRST_PIXEL_SIZE);
+	}
+
+	private void streamPixelGrid(final Viewport viewport,
+			final int firstPixelSize) {
+		if (this.tileReceiver == null) {
+			throw new IllegalStateException(
+					"The generator was not created with a tile receiver.");
+		}
+
+		final EscapeTimeKernel kernel = getMeasuredKernel(viewport);
+		final boolean smooth = this.smoothIterations;
+		final boolean conjugateSymmetry;
+		synchronized (this) {
+			conjugateSymmetry = this.conjugateSymmetry;
+		}
+		final long startNanos = this.metrics.generationStarted();
+		final IterationTileStream stream = new IterationTileStream(
+				this.tileReceiver, STREAM_CAPACITY);
+
+		// the passes are awaited on the executor, because every pass but the
+		// first one reuses the pixels of the previous pass, and the tiles are
+		// delivered on the same thread while the bands are computed
+		this.orchestrationExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				IterationGrid previousPass = null;
+
+				for (int pixelSize = firstPixelSize; pixelSize >= 1
+						&& !stream.hasFailed(); pixelSize /= 2) {
+					Viewport passViewport = viewport
+							.getSubsampledViewport(pixelSize);
+					IterationGrid pass = pixelSize > 1 ? new IterationGrid(
+							passViewport, kernel.getMaxIterations(), smooth)
+							: null;
+					ConjugateSymmetry symmetry = conjugateSymmetry ? ConjugateSymmetry
+							.forViewport(passViewport) : null;
+
+					final List<ForkJoinTask<?>> bands = new ArrayList<ForkJoinTask<?>>();
+					for (int[] band : getComputedBands(
+							passViewport.getHeight(), GRID_ROWS_PER_THREAD,
+							symmetry)) {
+						bands.add(ForkJoinTask
+								.adapt(new StreamedRowsGeneratorRunnable(
+										passViewport, band[0], band[1],
+										pixelSize, previousPass, pass, kernel,
+										smooth, stream,
+										MandelbrotSetGenerator.this.metrics,
+										symmetry)));
+					}
+
+					MandelbrotSetGenerator.this.forkJoinPool
+							.execute(new Runnable() {
+								@Override
+								public void run() {
+									computeBands(bands, stream);
+								}
+							});
+					stream.deliverPass();
+					previousPass = pass;
+				}
+
+				stream.finish();
+				if (stream.hasFailed()) {
+					MandelbrotSetGenerator.this.metrics
+							.generationFailed(startNanos);
+					Logger.getLogger("Generator").log(Level.WARNING,
+							"The tile receiver failed, the stream was aborted.",
+							stream.getFailure());
+					return;
+				}
+
+				recordGeneration(firstPixelSize > 1 ? "progressive-stream"
+						: "stream", viewport, kernel.getName(),
+						kernel.getMaxIterations(), startNanos);
+			}
+		});
+	}
+
+	/**
+	 * Computes the bands of a pass on the fork/join pool and marks the end of
+	 * the pass once all of them are done, also if some of them failed.
+	 */
+	private static void computeBands(List<ForkJoinTask<?>> bands,
+			IterationTileStream stream) {
+		try {
+			for (ForkJoinTask<?> band : bands) {
+				band.fork();
+			}
+			for (ForkJoinTask<?> band : bands) {
+				band.quietlyJoin();
+			}
+		} finally {
+			stream.endPass();
+		}
+	}
+
+	private void checkGridReceiver() {
+		if (this.gridReceiver == null) {
+			throw new IllegalStateException(
+					"The generator was not created with a grid receiver.");
+		}
 	}
 
 	/**
@@ -129,29 +1125,46 @@ public class MandelbrotSetGenerator {
 	 */
 	public void generateNumbersUsingThreadsForIterationComputing(
 			double precision) {
+		generateNumbersUsingThreadsForIterationComputing(Viewport
+				.forPrecision(precision));
+	}
+
+	/**
+	 * Generates a Mandelbrot set with a number for every pixel of the
+	 * specified viewport. After the generation is complete the receiveSet
+	 * method is called with the generated set.
+	 * 
+	 * This method of computing will use separate threads for computing escape
+	 * iterations for each number.
+	 * 
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 */
+	public void generateNumbersUsingThreadsForIterationComputing(
+			Viewport viewport) {
 		// synchronize on the executor, so that this method cannot be run
 		// simultaneously with the other generate methods
 		synchronized (this) {
-			this.generatedNumbers = new ArrayList<MandelbrotNumber>();
+			NumberGeneration generation = new NumberGeneration(
+					viewport.getPixelCount());
+			ConjugateSymmetry symmetry = getSymmetry(viewport);
 
-			generateFinalNumberCount(precision);
+			for (int pixelX = 0; pixelX < viewport.getWidth(); ++pixelX) {
+				for (int pixelY = 0; pixelY < viewport.getHeight(); ++pixelY) {
+					if (symmetry != null && symmetry.isMirrored(pixelY)) {
+						continue;
+					}
 
-			for (double realPart = MANDELBROT_MIN_X; realPart <= MANDELBROT_MAX_X; realPart += precision) {
-				for (double imaginaryPart = MANDELBROT_MIN_Y; imaginaryPart <= MANDELBROT_MAX_Y; imaginaryPart += precision) {
-					MandelbrotNumber number = new MandelbrotNumber(realPart,
-							imaginaryPart);
-					computeBoundedIterations(number);
+					MandelbrotNumber number = new MandelbrotNumber(
+							viewport.getRealPart(pixelX),
+							viewport.getImaginaryPart(pixelY));
+					computeBoundedIterations(number, createMirrorNumber(
+							viewport, symmetry, pixelX, pixelY), generation);
 				}
 			}
 		}
 	}
 
-	private void generateFinalNumberCount(double precision) {
-		double xValueCount = MANDELBROT_X_INTERVAL_LENGTH / precision + 1;
-		double yValueCount = MANDELBROT_Y_INTERVAL_LENGTH / precision + 1;
-		this.finalNumberCount = (int) (xValueCount * yValueCount);
-	}
-
 	/**
 	 * Generates a Mandelbrot set by iterating with the specified precision.
 	 * After the generation is complete the receiveSet method is called with the
@@ -170,80 +1183,219 @@ public class MandelbrotSetGenerator {
 	 */
 	public void generateNumbersUsingThreadsForGeneratingSubseths(
 			double precision, int realPartIterations) {
+		generateNumbersUsingThreadsForGeneratingSubseths(
+				Viewport.forPrecision(precision), realPartIterations);
+	}
+
+	/**
+	 * Generates a Mandelbrot set with a number for every pixel of the
+	 * specified viewport. After the generation is complete the receiveSet
+	 * method is called with the generated set.
+	 * 
+	 * This method of generating the set will use separate threads to generate
+	 * subsets of the viewport depending on the realPartIterations parameter.
+	 * 
+	 * @param viewport
+	 *            - the region and resolution to be generated
+	 * @param realPartIterations
+	 *            - specifies how many columns of the viewport will be examined
+	 *            by a single thread
+	 */
+	public void generateNumbersUsingThreadsForGeneratingSubseths(
+			Viewport viewport, int realPartIterations) {
 		// synchronize on the executor, so that this method cannot be run
 		// simultaneously with the other generate methods
 		synchronized (this) {
-			this.generatedNumbers = new ArrayList<MandelbrotNumber>();
-			generateFinalNumberCount(precision);
-
-			this.numberOfExpectedThreads = (int) (MANDELBROT_X_INTERVAL_LENGTH / (realPartIterations * precision)) + 1;
-			if (this.numberOfExpectedThreads * realPartIterations * precision < MANDELBROT_X_INTERVAL_LENGTH) {
-				this.numberOfExpectedThreads++;
-			}
-
-			this.receivedThreads = 0;
-
-			MandelbrotNumber startNumber = new MandelbrotNumber(
-					MANDELBROT_MIN_X, MANDELBROT_MIN_Y);
+			NumberGeneration generation = new NumberGeneration(
+					viewport.getPixelCount());
 
-			while (startNumber.getRealPart() <= MANDELBROT_MAX_X) {
-				computeBoundedIterations(startNumber, realPartIterations,
-						precision);
+			ConjugateSymmetry symmetry = getSymmetry(viewport);
 
-				double newRealPart = startNumber.getRealPart()
-						+ realPartIterations * precision;
-				startNumber = new MandelbrotNumber(newRealPart,
-						MANDELBROT_MIN_Y);
+			for (int firstPixelX = 0; firstPixelX < viewport.getWidth(); firstPixelX += realPartIterations) {
+				computeBoundedIterations(viewport, firstPixelX,
+						realPartIterations, generation, symmetry);
 			}
 		}
 	}
 
-	private void computeBoundedIterations(MandelbrotNumber number) {
+	/**
+	 * Returns the number of the pixel whose row is mirrored from the row of
+	 * the specified pixel, or null if the row is not a mirror row.
+	 */
+	private static MandelbrotNumber createMirrorNumber(Viewport viewport,
+			ConjugateSymmetry symmetry, int pixelX, int pixelY) {
+		if (symmetry == null || !symmetry.isMirrored(symmetry
+				.getMirrorRow(pixelY))) {
+			return null;
+		}
+
+		return new MandelbrotNumber(viewport.getRealPart(pixelX),
+				viewport.getImaginaryPart(symmetry.getMirrorRow(pixelY)));
+	}
+
+	private void computeBoundedIterations(MandelbrotNumber number,
+			MandelbrotNumber mirrorNumber, NumberGeneration generation) {
 		SingleNumberComputationRunnable computationRunnable = new SingleNumberComputationRunnable(
-				number, this.maximumIterations, this);
+				number, mirrorNumber, generation, this.iterationComputer, this);
 
 		this.executor.execute(computationRunnable);
 	}
 
-	private void computeBoundedIterations(MandelbrotNumber number,
-			int realPartIterations, double precision) {
+	private void computeBoundedIterations(Viewport viewport,
+			int firstPixelX, int realPartIterations,
+			NumberGeneration generation, ConjugateSymmetry symmetry) {
 		MandelbrotSubsetGeneratorRunnable subsetGenerator = new MandelbrotSubsetGeneratorRunnable(
-				number, realPartIterations, precision, this,
-				this.maximumIterations);
+				viewport, firstPixelX, realPartIterations, generation, this,
+				this.iterationComputer, symmetry);
 
 		this.executor.execute(subsetGenerator);
 	}
 
-	/* default */void computationIsFinished(List<MandelbrotNumber> numbers) {
-		synchronized (this.generatedNumbers) {
-			this.generatedNumbers.addAll(numbers);
-			this.receivedThreads++;
+	private void recordGeneration(String method, IterationGrid grid,
+			String kernelName, long startNanos) {
+		recordGeneration(method, grid.getViewport(), kernelName,
+				grid.getMaxIterations(), startNanos);
+	}
+
+	private void recordGeneration(String method, Viewport viewport,
+			String kernelName, int maxIterations, long startNanos) {
+		this.metrics.generationFinished(method, viewport.getWidth(),
+				viewport.getHeight(), kernelName, maxIterations, startNanos);
+	}
 
-			if (this.receivedThreads == this.numberOfExpectedThreads) {
-				this.receiver.receiveSet(this.generatedNumbers);
-			}
+	/* default */void computationIsFinished(NumberGeneration generation,
+			List<MandelbrotNumber> numbers) {
+		if (generation.addNumbers(numbers)) {
+			this.receiver.receiveSet(generation.getNumbers());
 		}
 	}
 
-	/* default */void computationIsFinished(MandelbrotNumber number) {
-		synchronized (this.generatedNumbers) {
-			this.generatedNumbers.add(number);
+	/* default */void computationIsFinished(GridGeneration generation) {
+		if (!generation.bandIsFinished()) {
+			return;
+		}
 
-			if (this.generatedNumbers.size() == this.finalNumberCount) {
-				this.receiver.receiveSet(this.generatedNumbers);
-			}
+		IterationGrid grid = generation.getGrid();
+		if (generation.getSymmetry() != null) {
+			generation.getSymmetry().mirror(grid);
+		}
+		recordGeneration("grid", grid, generation.getKernelName(),
+				generation.getStartNanos());
+		this.gridReceiver.receiveGrid(grid);
+	}
+
+	/* default */void computationIsFinished(IterationGrid grid,
+			List<TileTiming> tileTimings) {
+		this.tileTimings = tileTimings;
+		this.gridReceiver.receiveGrid(grid);
+	}
+
+	/* default */void computationIsFinished(IterationGrid grid,
+			long iteratedPixelCount) {
+		this.iteratedPixelCount = iteratedPixelCount;
+		this.gridReceiver.receiveGrid(grid);
+	}
+
+	/* default */void computationIsFinished(IterationGrid grid,
+			int estimatedMaxIterations, int iterationExtensionCount,
+			long resumedPixelCount) {
+		this.estimatedMaxIterations = estimatedMaxIterations;
+		this.iterationExtensionCount = iterationExtensionCount;
+		this.resumedPixelCount = resumedPixelCount;
+		this.gridReceiver.receiveGrid(grid);
+	}
+
+	/* default */void computationIsFinished(IterationGrid grid,
+			Supersamples supersamples) {
+		this.refinedPixelCount = supersamples.getRefinedPixelCount();
+		this.gridReceiver.receiveGrid(grid);
+	}
+
+	/* default */void computationIsFinished(NumberGeneration generation,
+			MandelbrotNumber number) {
+		if (generation.addNumber(number)) {
+			this.receiver.receiveSet(generation.getNumbers());
 		}
 	}
 
+	/**
+	 * Returns the pixels of the numbers of the last started generatePixels
+	 * generation.
+	 */
 	public Map<MandelbrotNumber, Pixel> getPixelMapping() {
 		return this.numberPixelMapping;
 	}
 
 	/**
-	 * Shuts down the executor used for parallel computation of the set. Best if
-	 * it is called after the set is received in the receiveSet method.
+	 * Returns the metrics of the generator, that are recorded by every
+	 * generation method that delivers an {@link IterationGrid} or streams
+	 * tiles. Only the pixels computed by the kernels of the generator are
+	 * counted, not the ones continued by an {@link IterationState}.
+	 */
+	public GeneratorMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Returns the time spent on every tile of the last finished generation
+	 * with work stealing.
+	 */
+	public List<TileTiming> getTileTimings() {
+		return this.tileTimings;
+	}
+
+	/**
+	 * Returns the number of pixels actually iterated by the last finished
+	 * generation with rectangle fill.
+	 */
+	public long getIteratedPixelCount() {
+		return this.iteratedPixelCount;
+	}
+
+	/**
+	 * Returns the maximum iterations estimated for the last generation with
+	 * adaptive iterations, before they were extended.
+	 */
+	public int getEstimatedMaxIterations() {
+		return this.estimatedMaxIterations;
+	}
+
+	/**
+	 * Returns the number of times the maximum iterations were doubled in the
+	 * last generation with adaptive iterations.
+	 */
+	public int getIterationExtensionCount() {
+		return this.iterationExtensionCount;
+	}
+
+	/**
+	 * Returns the number of pixels that were resumed from their last orbit
+	 * point, over all extensions of the last generation with adaptive
+	 * iterations.
+	 */
+	public long getResumedPixelCount() {
+		return this.resumedPixelCount;
+	}
+
+	/**
+	 * Returns the number of pixels that were refined with sub-samples in the
+	 * last supersampled generation.
+	 */
+	public int getRefinedPixelCount() {
+		return this.refinedPixelCount;
+	}
+
+	/**
+	 * Shuts down the executors used for parallel computation of the set. Best
+	 * if it is called after the set is received in the receiveSet method.
 	 */
 	public void shutdown() {
 		this.executor.shutdown();
+		this.orchestrationExecutor.shutdown();
+		this.forkJoinPool.shutdown();
+	}
+
+	public ExecutionMode getExecutionMode() {
+		return this.executionMode;
 	}
 }
\ No newline at end of file
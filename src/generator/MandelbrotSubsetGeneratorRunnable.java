@@ -4,50 +4,61 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class MandelbrotSubsetGeneratorRunnable implements Runnable {
-	private MandelbrotNumber startingNumber;
+	private Viewport viewport;
 
+	private int firstPixelX;
 	private int realPartIterations;
-	private double precision;
-	private int maxIterations;
+	private EscapeIterationsComputer iterationComputer;
+	private ConjugateSymmetry symmetry;
 
+	private NumberGeneration generation;
 	private MandelbrotSetGenerator receiver;
 
-	public MandelbrotSubsetGeneratorRunnable(MandelbrotNumber startingNumber,
-			int realPartIterations, double precision,
-			MandelbrotSetGenerator receiver, int maxIterations) {
-		this.startingNumber = startingNumber;
+	/* default */MandelbrotSubsetGeneratorRunnable(Viewport viewport,
+			int firstPixelX, int realPartIterations,
+			NumberGeneration generation, MandelbrotSetGenerator receiver,
+			EscapeIterationsComputer iterationComputer,
+			ConjugateSymmetry symmetry) {
+		this.viewport = viewport;
+		this.symmetry = symmetry;
+		this.generation = generation;
+		this.firstPixelX = firstPixelX;
 		this.realPartIterations = realPartIterations;
-		this.precision = precision;
-		this.maxIterations = maxIterations;
+		this.iterationComputer = iterationComputer;
 
 		this.receiver = receiver;
 	}
 
 	@Override
 	public void run() {
-		double initialRealPart = this.startingNumber.getRealPart();
-		double initialImaginaryPart = this.startingNumber.getImaginaryPart();
+		int lastPixelX = Math.min(this.firstPixelX + this.realPartIterations,
+				this.viewport.getWidth());
 
 		List<MandelbrotNumber> generatedNumbers = new ArrayList<MandelbrotNumber>();
-		EscapeIterationsComputer iterationComputer = new EscapeIterationsComputer(
-				this.maxIterations);
-		int currentRealPartIteration = 1;
+		int[] columnIterations = new int[this.viewport.getHeight()];
 
-		for (double realPart = initialRealPart; realPart <= MandelbrotSetGenerator.MANDELBROT_MAX_X; realPart += this.precision) {
-			for (double imaginaryPart = initialImaginaryPart; imaginaryPart <= MandelbrotSetGenerator.MANDELBROT_MAX_Y; imaginaryPart += this.precision) {
+		for (int pixelX = this.firstPixelX; pixelX < lastPixelX; ++pixelX) {
+			double realPart = this.viewport.getRealPart(pixelX);
+
+			for (int pixelY = 0; pixelY < this.viewport.getHeight(); ++pixelY) {
 				MandelbrotNumber number = new MandelbrotNumber(realPart,
-						imaginaryPart);
-				iterationComputer.computeEscapeIterations(number);
-				generatedNumbers.add(number);
-			}
+						this.viewport.getImaginaryPart(pixelY));
 
-			if (currentRealPartIteration == this.realPartIterations) {
-				break;
-			}
+				// the mirror rows lie above the mirrored ones, so they are
+				// computed first
+				if (this.symmetry != null && this.symmetry.isMirrored(pixelY)) {
+					number.setIterations(columnIterations[this.symmetry
+							.getMirrorRow(pixelY)]);
+				} else {
+					this.iterationComputer.computeEscapeIterations(number);
+				}
 
-			currentRealPartIteration++;
+				columnIterations[pixelY] = number.getIterations();
+				generatedNumbers.add(number);
+			}
 		}
 
-		this.receiver.computationIsFinished(generatedNumbers);
+		this.receiver.computationIsFinished(this.generation,
+				generatedNumbers);
 	}
 }
@@ -0,0 +1,131 @@
+package generator;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Chooses the maximum iterations for a viewport from the escape iterations
+ * of a sparse grid of its pixels. The samples are iterated with a doubling
+ * maximum, and the doubling stops once it lets only a small fraction of the
+ * samples escape. The samples that are still iterating after that are
+ * expected to belong to the set. Deep zooms often have no pixel that escapes
+ * early, so the doubling never stops before some sample has escaped - a
+ * viewport that lies entirely inside a bulb of the set is sampled up to the
+ * limit of the estimator.
+ */
+public class MaxIterationsEstimator {
+	public static final int MINIMUM_MAX_ITERATIONS = 256;
+
+	/**
+	 * The fraction of the samples below which a doubling of the maximum
+	 * iterations is not worth it.
+	 */
+	public static final double ESCAPED_FRACTION_THRESHOLD = 0.002;
+
+	// the samples along the longer side of the viewport
+	private static final int SAMPLES_ALONG_SIDE = 64;
+
+	private int maxIterationsLimit;
+
+	/**
+	 * Creates an estimator that never chooses more than the specified maximum
+	 * iterations.
+	 */
+	public MaxIterationsEstimator(int maxIterationsLimit) {
+		this.maxIterationsLimit = maxIterationsLimit;
+	}
+
+	/**
+	 * Returns the maximum iterations suitable for the viewport.
+	 *
+	 * @param viewport
+	 *            - the viewport to be generated
+	 * @param pool
+	 *            - the pool the samples are iterated on
+	 */
+	public int estimate(Viewport viewport, ForkJoinPool pool) {
+		int factor = Math.max(
+				Math.max(viewport.getWidth(), viewport.getHeight())
+						/ SAMPLES_ALONG_SIDE, 1);
+		Viewport samples = viewport.getSubsampledViewport(factor);
+
+		if (Math.min(viewport.getRealPartStep(),
+				viewport.getImaginaryPartStep()) < MandelbrotSetGenerator.DEEP_ZOOM_STEP) {
+			return estimateDeepZoom(samples);
+		}
+
+		IterationState state = new IterationState(samples, false, true);
+		int maxIterations = Math.min(MINIMUM_MAX_ITERATIONS,
+				this.maxIterationsLimit);
+		int escapedSamples = state.continueTo(maxIterations, pool);
+
+		while (maxIterations < this.maxIterationsLimit
+				&& state.getPendingPixelCount() > 0) {
+			maxIterations = getNextMaxIterations(maxIterations);
+			int newlyEscapedSamples = state.continueTo(maxIterations, pool);
+			escapedSamples += newlyEscapedSamples;
+
+			if (escapedSamples > 0
+					&& newlyEscapedSamples <= ESCAPED_FRACTION_THRESHOLD
+							* samples.getPixelCount()) {
+				break;
+			}
+		}
+
+		return maxIterations;
+	}
+
+	/**
+	 * Estimates the maximum iterations with the perturbation kernel, whose
+	 * orbits could not be resumed, so the samples are iterated again from
+	 * zero with every doubling. There are few of them, so this costs about as
+	 * much as iterating them once with the chosen maximum.
+	 */
+	private int estimateDeepZoom(Viewport samples) {
+		int[] iterations = new int[samples.getWidth()];
+		int maxIterations = Math.min(MINIMUM_MAX_ITERATIONS,
+				this.maxIterationsLimit);
+		boolean anySampleEscaped = false;
+
+		while (maxIterations < this.maxIterationsLimit) {
+			int nextMaxIterations = getNextMaxIterations(maxIterations);
+			EscapeTimeKernel kernel = new PerturbationEscapeIterationsComputer(
+					nextMaxIterations);
+
+			int newlyEscapedSamples = 0;
+			int pendingSamples = 0;
+			for (int pixelY = 0; pixelY < samples.getHeight(); ++pixelY) {
+				kernel.computeRow(samples, pixelY, 0, samples.getWidth(),
+						iterations, null, 0);
+
+				for (int sampleIterations : iterations) {
+					if (sampleIterations >= nextMaxIterations) {
+						++pendingSamples;
+					} else {
+						anySampleEscaped = true;
+						if (sampleIterations >= maxIterations) {
+							++newlyEscapedSamples;
+						}
+					}
+				}
+			}
+
+			maxIterations = nextMaxIterations;
+			if (pendingSamples == 0
+					|| anySampleEscaped
+					&& newlyEscapedSamples <= ESCAPED_FRACTION_THRESHOLD
+							* samples.getPixelCount()) {
+				break;
+			}
+		}
+
+		return maxIterations;
+	}
+
+	private int getNextMaxIterations(int maxIterations) {
+		return (int) Math.min(2L * maxIterations, this.maxIterationsLimit);
+	}
+
+	public int getMaxIterationsLimit() {
+		return this.maxIterationsLimit;
+	}
+}
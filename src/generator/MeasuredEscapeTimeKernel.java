@@ -0,0 +1,64 @@
+package generator;
+
+import metrics.GeneratorMetrics;
+
+/**
+ * An {@link EscapeTimeKernel} that records the pixels computed by another
+ * kernel, their escape iterations and the time spent computing them into
+ * the {@link GeneratorMetrics} of a generator.
+ */
+class MeasuredEscapeTimeKernel implements EscapeTimeKernel {
+	private EscapeTimeKernel kernel;
+	private GeneratorMetrics metrics;
+
+	public MeasuredEscapeTimeKernel(EscapeTimeKernel kernel,
+			GeneratorMetrics metrics) {
+		this.kernel = kernel;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public String getName() {
+		return this.kernel.getName();
+	}
+
+	@Override
+	public int getMaxIterations() {
+		return this.kernel.getMaxIterations();
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY) {
+		long startNanos = System.nanoTime();
+		int iterations = this.kernel.computeEscapeIterations(viewport, pixelX,
+				pixelY);
+		this.metrics.recordPixel(iterations, this.kernel.getMaxIterations(),
+				System.nanoTime() - startNanos);
+
+		return iterations;
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY, float[] smoothIterations, int index) {
+		long startNanos = System.nanoTime();
+		int iterations = this.kernel.computeEscapeIterations(viewport, pixelX,
+				pixelY, smoothIterations, index);
+		this.metrics.recordPixel(iterations, this.kernel.getMaxIterations(),
+				System.nanoTime() - startNanos);
+
+		return iterations;
+	}
+
+	@Override
+	public void computeRow(Viewport viewport, int pixelY, int fromPixelX,
+			int toPixelX, int[] iterations, float[] smoothIterations,
+			int offset) {
+		long startNanos = System.nanoTime();
+		this.kernel.computeRow(viewport, pixelY, fromPixelX, toPixelX,
+				iterations, smoothIterations, offset);
+		this.metrics.recordPixels(iterations, offset, toPixelX - fromPixelX,
+				this.kernel.getMaxIterations(), System.nanoTime() - startNanos);
+	}
+}
@@ -0,0 +1,41 @@
+package generator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The numbers of a single generation of a Mandelbrot set, collected from
+ * the threads that compute them until every pixel of the viewport has its
+ * number, so that generations that overlap do not mix their numbers.
+ */
+class NumberGeneration {
+	private List<MandelbrotNumber> numbers = new ArrayList<MandelbrotNumber>();
+	private int finalNumberCount;
+
+	/**
+	 * Creates the state of a generation of the specified number of numbers.
+	 */
+	public NumberGeneration(int finalNumberCount) {
+		this.finalNumberCount = finalNumberCount;
+	}
+
+	/**
+	 * Adds computed numbers and returns whether they were the last ones.
+	 */
+	public synchronized boolean addNumbers(List<MandelbrotNumber> numbers) {
+		this.numbers.addAll(numbers);
+		return this.numbers.size() == this.finalNumberCount;
+	}
+
+	/**
+	 * Adds a computed number and returns whether it was the last one.
+	 */
+	public synchronized boolean addNumber(MandelbrotNumber number) {
+		this.numbers.add(number);
+		return this.numbers.size() == this.finalNumberCount;
+	}
+
+	public synchronized List<MandelbrotNumber> getNumbers() {
+		return this.numbers;
+	}
+}
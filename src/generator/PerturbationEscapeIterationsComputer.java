@@ -0,0 +1,177 @@
+package generator;
+
+/**
+ * Computes escape iterations for zooms deeper than a double could resolve.
+ * Only the reference point of the viewport is iterated with arbitrary
+ * precision. Every pixel is iterated as a double offset dz from the
+ * reference orbit Z, which follows dz' = (2Z + dz)dz + dc, where dc is the
+ * offset of the pixel from the reference point. The offsets stay small, so
+ * they keep their relative precision at any depth.
+ *
+ * When the orbit of a pixel gets closer to zero than its offset from the
+ * reference orbit, the offset has lost the precision the pixel needs and the
+ * pixel is said to be glitched. A glitched pixel is rebased - its current
+ * point becomes the offset from the start of the reference orbit. The same
+ * is done when the reference orbit escapes before the pixel does.
+ *
+ * The reference orbit of the last viewport is kept, so all threads of a
+ * generation share it. Interior and periodicity checks are not applied.
+ */
+public class PerturbationEscapeIterationsComputer implements EscapeTimeKernel {
+	public static final String KERNEL_NAME = "perturbation";
+
+	private static final double BAILOUT_NUMBER = 1 << 16;
+
+	// significant digits of the reference orbit beyond those of a pixel step
+	private static final int GUARD_DIGITS = 20;
+
+	private int maxIterations;
+
+	private volatile ReferenceOrbit referenceOrbit;
+
+	public PerturbationEscapeIterationsComputer(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY) {
+		return computeEscapeIterations(getReferenceOrbit(viewport),
+				viewport.getRealPartOffset(pixelX),
+				viewport.getImaginaryPartOffset(pixelY), null);
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY, float[] smoothIterations, int index) {
+		double[] squaredModulus = smoothIterations != null ? new double[1]
+				: null;
+		int iterations = computeEscapeIterations(getReferenceOrbit(viewport),
+				viewport.getRealPartOffset(pixelX),
+				viewport.getImaginaryPartOffset(pixelY), squaredModulus);
+
+		if (smoothIterations != null) {
+			smoothIterations[index] = EscapeIterationsComputer
+					.getSmoothIterations(iterations, squaredModulus[0],
+							this.maxIterations);
+		}
+
+		return iterations;
+	}
+
+	@Override
+	public void computeRow(Viewport viewport, int pixelY, int fromPixelX,
+			int toPixelX, int[] iterations, float[] smoothIterations,
+			int offset) {
+		ReferenceOrbit orbit = getReferenceOrbit(viewport);
+		double imaginaryPartOffset = viewport.getImaginaryPartOffset(pixelY);
+		double[] squaredModulus = smoothIterations != null ? new double[1]
+				: null;
+
+		for (int pixelX = fromPixelX; pixelX < toPixelX; ++pixelX) {
+			int pixelIterations = computeEscapeIterations(orbit,
+					viewport.getRealPartOffset(pixelX), imaginaryPartOffset,
+					squaredModulus);
+			iterations[offset] = pixelIterations;
+
+			if (smoothIterations != null) {
+				smoothIterations[offset] = EscapeIterationsComputer
+						.getSmoothIterations(pixelIterations,
+								squaredModulus[0], this.maxIterations);
+			}
+			++offset;
+		}
+	}
+
+	private int computeEscapeIterations(ReferenceOrbit orbit,
+			double realPartOffset, double imaginaryPartOffset,
+			double[] escapedSquaredModulus) {
+		int lastReferenceIteration = orbit.getLength() - 1;
+
+		double dx = 0;
+		double dy = 0;
+		int referenceIteration = 0;
+
+		for (int iterations = 0; iterations < this.maxIterations; ++iterations) {
+			double referenceX = orbit.getRealPart(referenceIteration);
+			double referenceY = orbit.getImaginaryPart(referenceIteration);
+			double x = referenceX + dx;
+			double y = referenceY + dy;
+			double squaredModulus = x * x + y * y;
+
+			if (squaredModulus > BAILOUT_NUMBER) {
+				if (escapedSquaredModulus != null) {
+					escapedSquaredModulus[0] = squaredModulus;
+				}
+				return iterations;
+			}
+
+			if (squaredModulus < dx * dx + dy * dy
+					|| referenceIteration == lastReferenceIteration) {
+				dx = x;
+				dy = y;
+				referenceIteration = 0;
+				referenceX = 0;
+				referenceY = 0;
+			}
+
+			double newDx = (2 * referenceX + dx) * dx
+					- (2 * referenceY + dy) * dy + realPartOffset;
+			double newDy = (2 * referenceX + dx) * dy + (2 * referenceY + dy)
+					* dx + imaginaryPartOffset;
+
+			dx = newDx;
+			dy = newDy;
+			++referenceIteration;
+		}
+
+		return this.maxIterations;
+	}
+
+	/**
+	 * Returns the orbit of the reference point of the viewport, computing it
+	 * if the last one belongs to another point.
+	 */
+	public ReferenceOrbit getReferenceOrbit(Viewport viewport) {
+		int precision = getPrecision(viewport);
+		ReferenceOrbit orbit = this.referenceOrbit;
+
+		if (orbit == null
+				|| !orbit.matches(viewport.getReferenceRealPart(),
+						viewport.getReferenceImaginaryPart(),
+						this.maxIterations, precision)) {
+			synchronized (this) {
+				orbit = this.referenceOrbit;
+				if (orbit == null
+						|| !orbit.matches(viewport.getReferenceRealPart(),
+								viewport.getReferenceImaginaryPart(),
+								this.maxIterations, precision)) {
+					orbit = new ReferenceOrbit(
+							viewport.getReferenceRealPart(),
+							viewport.getReferenceImaginaryPart(),
+							this.maxIterations, precision);
+					this.referenceOrbit = orbit;
+				}
+			}
+		}
+
+		return orbit;
+	}
+
+	private static int getPrecision(Viewport viewport) {
+		double step = Math.min(viewport.getRealPartStep(),
+				viewport.getImaginaryPartStep());
+
+		return Math.max((int) Math.ceil(-Math.log10(step)), 0) + GUARD_DIGITS;
+	}
+
+	@Override
+	public String getName() {
+		return KERNEL_NAME;
+	}
+
+	@Override
+	public int getMaxIterations() {
+		return this.maxIterations;
+	}
+}
@@ -0,0 +1,41 @@
+package generator;
+
+public class PixelRowsGeneratorRunnable implements Runnable {
+	private GridGeneration generation;
+	private IterationGrid grid;
+
+	private int firstRow;
+	private int lastRow;
+	private EscapeTimeKernel kernel;
+
+	private MandelbrotSetGenerator receiver;
+
+	/* default */PixelRowsGeneratorRunnable(GridGeneration generation,
+			int firstRow, int lastRow, MandelbrotSetGenerator receiver,
+			EscapeTimeKernel kernel) {
+		this.generation = generation;
+		this.grid = generation.getGrid();
+		this.firstRow = firstRow;
+		this.lastRow = lastRow;
+		this.kernel = kernel;
+
+		this.receiver = receiver;
+	}
+
+	@Override
+	public void run() {
+		long startNanos = System.nanoTime();
+		Viewport viewport = this.grid.getViewport();
+
+		for (int pixelY = this.firstRow; pixelY < this.lastRow; ++pixelY) {
+			this.kernel.computeRow(viewport, pixelY, 0, viewport.getWidth(),
+					this.grid.getIterations(), this.grid.getSmoothIterations(),
+					this.grid.getIndex(0, pixelY));
+		}
+
+		this.receiver.getMetrics().recordTile(0, this.firstRow,
+				viewport.getWidth(), this.lastRow - this.firstRow,
+				System.nanoTime() - startNanos);
+		this.receiver.computationIsFinished(this.generation);
+	}
+}
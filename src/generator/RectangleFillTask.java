@@ -0,0 +1,220 @@
+package generator;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes a rectangle of an {@link IterationGrid} with the Mariani-Silver
+ * algorithm. The border of the rectangle is expected to be computed already.
+ * If every pixel of the border has the same escape iterations, the inside of
+ * the rectangle is filled with them without iterating, because the set and
+ * its escape-time bands are connected. Otherwise the rectangle is split into
+ * four by a computed cross and the quarters are processed in parallel.
+ * Connectedness holds for the continuous plane only - a filament thinner than
+ * a pixel that crosses the border between two pixels is missed, and the
+ * pixels it reaches inside are filled with the border's iterations.
+ *
+ * The continuous escape values of a grid vary inside a band, so for grids
+ * that store them only rectangles inside the set are filled.
+ */
+public class RectangleFillTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	private static final int MINIMUM_SUBDIVISION_SIZE = 8;
+
+	private IterationGrid grid;
+
+	// the coordinates of the border, inclusive
+	private int left;
+	private int top;
+	private int right;
+	private int bottom;
+
+	private boolean computeBorder;
+
+	private EscapeTimeKernel kernel;
+
+	private AtomicLong iteratedPixels;
+
+	/**
+	 * Creates a task that computes the whole grid, including its outer border.
+	 *
+	 * @param grid
+	 *            - the grid to be filled
+	 * @param kernel
+	 *            - the kernel used for the pixels that are iterated
+	 * @param iteratedPixels
+	 *            - a counter increased with the number of pixels that were
+	 *            actually iterated
+	 */
+	public RectangleFillTask(IterationGrid grid,
+			EscapeTimeKernel kernel, AtomicLong iteratedPixels) {
+		this(grid, 0, grid.getHeight(), kernel, iteratedPixels);
+	}
+
+	/**
+	 * Creates a task that computes a band of whole rows of the grid,
+	 * including the outer border of the band.
+	 *
+	 * @param grid
+	 *            - the grid to be filled
+	 * @param firstRow
+	 *            - the first row of the band, inclusive
+	 * @param lastRow
+	 *            - the last row of the band, exclusive
+	 * @param kernel
+	 *            - the kernel used for the pixels that are iterated
+	 * @param iteratedPixels
+	 *            - a counter increased with the number of pixels that were
+	 *            actually iterated
+	 */
+	public RectangleFillTask(IterationGrid grid, int firstRow, int lastRow,
+			EscapeTimeKernel kernel, AtomicLong iteratedPixels) {
+		this(grid, 0, firstRow, grid.getWidth() - 1, lastRow - 1, true,
+				kernel, iteratedPixels);
+	}
+
+	private RectangleFillTask(IterationGrid grid, int left, int top,
+			int right, int bottom, boolean computeBorder,
+			EscapeTimeKernel kernel, AtomicLong iteratedPixels) {
+		this.grid = grid;
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+		this.computeBorder = computeBorder;
+		this.kernel = kernel;
+		this.iteratedPixels = iteratedPixels;
+	}
+
+	@Override
+	protected void compute() {
+		long iterated = 0;
+
+		if (this.computeBorder) {
+			iterated += computeRow(this.top, this.left, this.right);
+			if (this.bottom > this.top) {
+				iterated += computeRow(this.bottom, this.left, this.right);
+			}
+			iterated += computeColumn(this.left, this.top + 1, this.bottom - 1);
+			if (this.right > this.left) {
+				iterated += computeColumn(this.right, this.top + 1,
+						this.bottom - 1);
+			}
+		}
+
+		int insideWidth = this.right - this.left - 1;
+		int insideHeight = this.bottom - this.top - 1;
+
+		if (insideWidth <= 0 || insideHeight <= 0) {
+			this.iteratedPixels.addAndGet(iterated);
+			return;
+		}
+
+		int borderIterations = getBorderIterations();
+		if (borderIterations >= 0
+				&& (!this.grid.isSmooth() || borderIterations == this.grid
+						.getMaxIterations())) {
+			fillInside(borderIterations);
+		} else if (insideWidth <= MINIMUM_SUBDIVISION_SIZE
+				|| insideHeight <= MINIMUM_SUBDIVISION_SIZE) {
+			for (int pixelY = this.top + 1; pixelY < this.bottom; ++pixelY) {
+				iterated += computeRow(pixelY, this.left + 1, this.right - 1);
+			}
+		} else {
+			int middleX = (this.left + this.right) / 2;
+			int middleY = (this.top + this.bottom) / 2;
+
+			iterated += computeRow(middleY, this.left + 1, this.right - 1);
+			iterated += computeColumn(middleX, this.top + 1, middleY - 1);
+			iterated += computeColumn(middleX, middleY + 1, this.bottom - 1);
+
+			this.iteratedPixels.addAndGet(iterated);
+			invokeAll(createSubtask(this.left, this.top, middleX, middleY),
+					createSubtask(middleX, this.top, this.right, middleY),
+					createSubtask(this.left, middleY, middleX, this.bottom),
+					createSubtask(middleX, middleY, this.right, this.bottom));
+			return;
+		}
+
+		this.iteratedPixels.addAndGet(iterated);
+	}
+
+	private RectangleFillTask createSubtask(int left, int top, int right,
+			int bottom) {
+		return new RectangleFillTask(this.grid, left, top, right, bottom,
+				false, this.kernel, this.iteratedPixels);
+	}
+
+	private int computeRow(int pixelY, int fromPixelX, int toPixelX) {
+		if (toPixelX < fromPixelX) {
+			return 0;
+		}
+
+		this.kernel.computeRow(this.grid.getViewport(), pixelY, fromPixelX,
+				toPixelX + 1, this.grid.getIterations(),
+				this.grid.getSmoothIterations(),
+				this.grid.getIndex(fromPixelX, pixelY));
+		return toPixelX - fromPixelX + 1;
+	}
+
+	private int computeColumn(int pixelX, int fromPixelY, int toPixelY) {
+		Viewport viewport = this.grid.getViewport();
+		int[] iterations = this.grid.getIterations();
+		float[] smoothIterations = this.grid.getSmoothIterations();
+
+		for (int pixelY = fromPixelY; pixelY <= toPixelY; ++pixelY) {
+			int index = this.grid.getIndex(pixelX, pixelY);
+
+			if (smoothIterations != null) {
+				// only rows compute the continuous escape values
+				this.kernel.computeRow(viewport, pixelY, pixelX, pixelX + 1,
+						iterations, smoothIterations, index);
+			} else {
+				iterations[index] = this.kernel.computeEscapeIterations(
+						viewport, pixelX, pixelY);
+			}
+		}
+
+		return Math.max(toPixelY - fromPixelY + 1, 0);
+	}
+
+	/**
+	 * Returns the escape iterations shared by every pixel of the border or -1
+	 * if the border is not uniform.
+	 */
+	private int getBorderIterations() {
+		int borderIterations = this.grid.getIterations(this.left, this.top);
+
+		for (int pixelX = this.left; pixelX <= this.right; ++pixelX) {
+			if (this.grid.getIterations(pixelX, this.top) != borderIterations
+					|| this.grid.getIterations(pixelX, this.bottom) != borderIterations) {
+				return -1;
+			}
+		}
+
+		for (int pixelY = this.top + 1; pixelY < this.bottom; ++pixelY) {
+			if (this.grid.getIterations(this.left, pixelY) != borderIterations
+					|| this.grid.getIterations(this.right, pixelY) != borderIterations) {
+				return -1;
+			}
+		}
+
+		return borderIterations;
+	}
+
+	private void fillInside(int borderIterations) {
+		int[] iterations = this.grid.getIterations();
+		float[] smoothIterations = this.grid.getSmoothIterations();
+
+		for (int pixelY = this.top + 1; pixelY < this.bottom; ++pixelY) {
+			int index = this.grid.getIndex(this.left + 1, pixelY);
+			for (int pixelX = this.left + 1; pixelX < this.right; ++pixelX) {
+				if (smoothIterations != null) {
+					smoothIterations[index] = borderIterations;
+				}
+				iterations[index++] = borderIterations;
+			}
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package generator;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * The orbit of a single point of the complex plane, iterated with as many
+ * significant digits as a zoom needs and stored as doubles. The orbit ends
+ * with the first point that escapes or after the maximum iterations.
+ */
+public class ReferenceOrbit {
+	private static final double BAILOUT_NUMBER = 1 << 16;
+
+	private BigDecimal realPart;
+	private BigDecimal imaginaryPart;
+	private int precision;
+
+	private double[] realParts;
+	private double[] imaginaryParts;
+	private int length;
+
+	/**
+	 * Iterates the specified point.
+	 *
+	 * @param realPart
+	 *            - the real part of the point
+	 * @param imaginaryPart
+	 *            - the imaginary part of the point
+	 * @param maxIterations
+	 *            - maximum iterations applied to the point
+	 * @param precision
+	 *            - the number of significant digits used while iterating
+	 */
+	public ReferenceOrbit(BigDecimal realPart, BigDecimal imaginaryPart,
+			int maxIterations, int precision) {
+		this.realPart = realPart;
+		this.imaginaryPart = imaginaryPart;
+		this.precision = precision;
+
+		this.realParts = new double[maxIterations + 1];
+		this.imaginaryParts = new double[maxIterations + 1];
+
+		MathContext context = new MathContext(precision);
+		BigDecimal two = BigDecimal.valueOf(2);
+		BigDecimal x = BigDecimal.ZERO;
+		BigDecimal y = BigDecimal.ZERO;
+
+		int iterations = 0;
+		while (true) {
+			double doubleX = x.doubleValue();
+			double doubleY = y.doubleValue();
+			this.realParts[iterations] = doubleX;
+			this.imaginaryParts[iterations] = doubleY;
+
+			if (iterations == maxIterations
+					|| doubleX * doubleX + doubleY * doubleY > BAILOUT_NUMBER) {
+				break;
+			}
+
+			BigDecimal newX = x.multiply(x, context)
+					.subtract(y.multiply(y, context), context)
+					.add(realPart, context);
+			BigDecimal newY = two.multiply(x, context).multiply(y, context)
+					.add(imaginaryPart, context);
+
+			x = newX;
+			y = newY;
+			++iterations;
+		}
+
+		this.length = iterations + 1;
+	}
+
+	/**
+	 * Checks whether this orbit could be used for the specified point and
+	 * precision.
+	 */
+	public boolean matches(BigDecimal realPart, BigDecimal imaginaryPart,
+			int maxIterations, int precision) {
+		return this.realPart.compareTo(realPart) == 0
+				&& this.imaginaryPart.compareTo(imaginaryPart) == 0
+				&& this.realParts.length == maxIterations + 1
+				&& this.precision >= precision;
+	}
+
+	public double getRealPart(int iteration) {
+		return this.realParts[iteration];
+	}
+
+	public double getImaginaryPart(int iteration) {
+		return this.imaginaryParts[iteration];
+	}
+
+	/**
+	 * Returns the number of stored points, including the starting zero.
+	 */
+	public int getLength() {
+		return this.length;
+	}
+}
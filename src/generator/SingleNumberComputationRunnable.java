@@ -1,27 +1,50 @@
 package generator;
 
+import java.util.Arrays;
 
 public class SingleNumberComputationRunnable implements Runnable {
 	private MandelbrotNumber number;
+	private MandelbrotNumber mirrorNumber;
+	private NumberGeneration generation;
 
-	private int maxIterations;
+	private EscapeIterationsComputer iterationComputer;
 
 	private MandelbrotSetGenerator receiver;
 
-	public SingleNumberComputationRunnable(MandelbrotNumber number,
-			int maxIterations, MandelbrotSetGenerator receiver) {
+	/* default */SingleNumberComputationRunnable(MandelbrotNumber number,
+			NumberGeneration generation,
+			EscapeIterationsComputer iterationComputer,
+			MandelbrotSetGenerator receiver) {
+		this(number, null, generation, iterationComputer, receiver);
+	}
+
+	/**
+	 * Creates a runnable that also gives the iterations of the number to the
+	 * number of the mirrored pixel, whose point is its complex conjugate.
+	 */
+	/* default */SingleNumberComputationRunnable(MandelbrotNumber number,
+			MandelbrotNumber mirrorNumber, NumberGeneration generation,
+			EscapeIterationsComputer iterationComputer,
+			MandelbrotSetGenerator receiver) {
 		this.number = number;
-		this.maxIterations = maxIterations;
+		this.mirrorNumber = mirrorNumber;
+		this.generation = generation;
+		this.iterationComputer = iterationComputer;
 
 		this.receiver = receiver;
 	}
 
 	@Override
 	public void run() {
-		EscapeIterationsComputer iterationComputer = new EscapeIterationsComputer(
-				this.maxIterations);
-		iterationComputer.computeEscapeIterations(this.number);
+		this.iterationComputer.computeEscapeIterations(this.number);
+
+		if (this.mirrorNumber == null) {
+			this.receiver.computationIsFinished(this.generation, this.number);
+			return;
+		}
 
-		this.receiver.computationIsFinished(this.number);
+		this.mirrorNumber.setIterations(this.number.getIterations());
+		this.receiver.computationIsFinished(this.generation,
+				Arrays.asList(this.number, this.mirrorNumber));
 	}
 }
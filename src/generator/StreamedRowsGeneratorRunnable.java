@@ -0,0 +1,184 @@
+package generator;
+
+import metrics.GeneratorMetrics;
+
+/**
+ * Computes a band of rows of a generation pass into a tile of its own and
+ * puts the tile into an {@link IterationTileStream}. When a coarser pass
+ * precedes the band, the pixels that pass already computed are copied from
+ * it instead of being iterated again. When rows of the pass are mirror
+ * images of the rows of the band, they are put into the stream as a second
+ * tile copied from the band.
+ */
+class StreamedRowsGeneratorRunnable implements Runnable {
+	private Viewport passViewport;
+
+	private int firstRow;
+	private int lastRow;
+	private int pixelSize;
+
+	private IterationGrid previousPass;
+	private IterationGrid pass;
+
+	private EscapeTimeKernel kernel;
+	private boolean smooth;
+	private IterationTileStream stream;
+	private GeneratorMetrics metrics;
+	private ConjugateSymmetry symmetry;
+
+	/**
+	 * Creates a runnable for the specified band of rows.
+	 *
+	 * @param passViewport
+	 *            - the viewport of the whole pass
+	 * @param firstRow
+	 *            - the first row of the band, inclusive
+	 * @param lastRow
+	 *            - the last row of the band, exclusive
+	 * @param pixelSize
+	 *            - the side of the square of generated pixels that each
+	 *            pixel of the pass stands for
+	 * @param previousPass
+	 *            - the grid of the pass with twice the pixel size, or null
+	 *            if there is none
+	 * @param pass
+	 *            - the grid of the whole pass, that the band is copied to
+	 *            for the next pass, or null if there is no next pass
+	 * @param kernel
+	 *            - the kernel used for the pixels that are iterated
+	 * @param smooth
+	 *            - whether the continuous escape values are computed too
+	 * @param stream
+	 *            - the stream that receives the band
+	 * @param metrics
+	 *            - the metrics the band is recorded into
+	 * @param symmetry
+	 *            - the mirrored rows of the pass, or null if there are none
+	 */
+	public StreamedRowsGeneratorRunnable(Viewport passViewport,
+			int firstRow, int lastRow, int pixelSize,
+			IterationGrid previousPass, IterationGrid pass,
+			EscapeTimeKernel kernel, boolean smooth,
+			IterationTileStream stream, GeneratorMetrics metrics,
+			ConjugateSymmetry symmetry) {
+		this.passViewport = passViewport;
+		this.firstRow = firstRow;
+		this.lastRow = lastRow;
+		this.pixelSize = pixelSize;
+		this.previousPass = previousPass;
+		this.pass = pass;
+		this.kernel = kernel;
+		this.smooth = smooth;
+		this.stream = stream;
+		this.metrics = metrics;
+		this.symmetry = symmetry;
+	}
+
+	@Override
+	public void run() {
+		// the tiles of a failed stream would not be received
+		if (this.stream.hasFailed()) {
+			return;
+		}
+
+		long startNanos = System.nanoTime();
+		int width = this.passViewport.getWidth();
+		IterationGrid tile = new IterationGrid(
+				this.passViewport.getSubViewport(0, this.firstRow, width,
+						this.lastRow - this.firstRow),
+				this.kernel.getMaxIterations(), this.smooth);
+		int[] iterations = tile.getIterations();
+		float[] smoothIterations = tile.getSmoothIterations();
+
+		// the odd pixels of the even rows, that the previous pass has not
+		// computed, are iterated through a viewport of their own
+		int oddPixelCount = width / 2;
+		int[] oddPixels = new int[oddPixelCount];
+		float[] smoothOddPixels = this.smooth ? new float[oddPixelCount]
+				: null;
+		Viewport oddPixelsViewport = oddPixelCount > 0 ? this.passViewport
+				.getSubsampledViewport(2, 1, 0) : null;
+
+		for (int pixelY = this.firstRow; pixelY < this.lastRow; ++pixelY) {
+			int offset = (pixelY - this.firstRow) * width;
+
+			if (this.previousPass == null || pixelY % 2 != 0) {
+				this.kernel.computeRow(this.passViewport, pixelY, 0, width,
+						iterations, smoothIterations, offset);
+				continue;
+			}
+
+			if (oddPixelCount > 0) {
+				this.kernel.computeRow(oddPixelsViewport, pixelY / 2, 0,
+						oddPixelCount, oddPixels, smoothOddPixels, 0);
+			}
+
+			for (int pixelX = 0; pixelX < width; ++pixelX) {
+				iterations[offset + pixelX] = pixelX % 2 == 0 ? this.previousPass
+						.getIterations(pixelX / 2, pixelY / 2)
+						: oddPixels[pixelX / 2];
+			}
+
+			if (this.smooth) {
+				for (int pixelX = 0; pixelX < width; ++pixelX) {
+					smoothIterations[offset + pixelX] = pixelX % 2 == 0 ? this.previousPass
+							.getSmoothIterations(pixelX / 2, pixelY / 2)
+							: smoothOddPixels[pixelX / 2];
+				}
+			}
+		}
+
+		copyToPass(tile, this.firstRow);
+		this.metrics.recordTile(0, this.firstRow, width, this.lastRow
+				- this.firstRow, System.nanoTime() - startNanos);
+		this.stream.put(tile, 0, this.firstRow, this.pixelSize);
+
+		if (this.symmetry != null) {
+			putMirroredRows(tile);
+		}
+	}
+
+	private void copyToPass(IterationGrid tile, int firstRow) {
+		if (this.pass == null) {
+			return;
+		}
+
+		int passOffset = this.pass.getIndex(0, firstRow);
+		System.arraycopy(tile.getIterations(), 0, this.pass.getIterations(),
+				passOffset, tile.getIterations().length);
+		if (this.smooth) {
+			System.arraycopy(tile.getSmoothIterations(), 0,
+					this.pass.getSmoothIterations(), passOffset,
+					tile.getSmoothIterations().length);
+		}
+	}
+
+	/**
+	 * Puts the mirrored rows whose mirror rows are in the band into the
+	 * stream, as a tile of their own.
+	 */
+	private void putMirroredRows(IterationGrid tile) {
+		// the rows of the band whose mirror rows are mirrored
+		int fromRow = Math.max(this.firstRow, this.symmetry
+				.getMirrorRow(this.symmetry.getLastMirroredRow() - 1));
+		int toRow = Math.min(this.lastRow, this.symmetry
+				.getMirrorRow(this.symmetry.getFirstMirroredRow()) + 1);
+		if (fromRow >= toRow) {
+			return;
+		}
+
+		int firstMirroredRow = this.symmetry.getMirrorRow(toRow - 1);
+		IterationGrid mirroredTile = new IterationGrid(
+				this.passViewport.getSubViewport(0, firstMirroredRow,
+						this.passViewport.getWidth(), toRow - fromRow),
+				this.kernel.getMaxIterations(), this.smooth);
+		for (int pixelY = 0; pixelY < mirroredTile.getHeight(); ++pixelY) {
+			ConjugateSymmetry.copyRow(tile, this.symmetry
+					.getMirrorRow(firstMirroredRow + pixelY) - this.firstRow,
+					mirroredTile, pixelY);
+		}
+
+		copyToPass(mirroredTile, firstMirroredRow);
+		this.stream.put(mirroredTile, 0, firstMirroredRow, this.pixelSize);
+	}
+}
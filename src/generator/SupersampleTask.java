@@ -0,0 +1,82 @@
+package generator;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the samples of a range of the refined pixels of
+ * {@link Supersamples}. Ranges of more than a few dozen pixels are split in
+ * two, so that idle workers of the pool can steal the halves. Pixels whose
+ * samples are copied from their mirror pixels afterwards are skipped.
+ */
+class SupersampleTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	private static final int MAXIMUM_PIXELS_PER_TASK = 64;
+
+	private Viewport viewport;
+	private Supersamples supersamples;
+
+	// the refined pixels, from inclusive to exclusive
+	private int fromPixel;
+	private int toPixel;
+
+	private EscapeTimeKernel kernel;
+
+	private ConjugateSymmetry symmetry;
+
+	public SupersampleTask(Viewport viewport, Supersamples supersamples,
+			int fromPixel, int toPixel, EscapeTimeKernel kernel,
+			ConjugateSymmetry symmetry) {
+		this.viewport = viewport;
+		this.supersamples = supersamples;
+		this.fromPixel = fromPixel;
+		this.toPixel = toPixel;
+		this.kernel = kernel;
+		this.symmetry = symmetry;
+	}
+
+	@Override
+	protected void compute() {
+		if (this.toPixel - this.fromPixel > MAXIMUM_PIXELS_PER_TASK) {
+			int middle = (this.fromPixel + this.toPixel) >>> 1;
+			invokeAll(new SupersampleTask(this.viewport, this.supersamples,
+					this.fromPixel, middle, this.kernel, this.symmetry),
+					new SupersampleTask(this.viewport, this.supersamples,
+							middle, this.toPixel, this.kernel, this.symmetry));
+			return;
+		}
+
+		int width = this.viewport.getWidth();
+		int samplesPerSide = this.supersamples.getSamplesPerSide();
+		int[] iterations = this.supersamples.getIterations();
+		float[] smoothIterations = this.supersamples.getSmoothIterations();
+
+		for (int refinedPixel = this.fromPixel; refinedPixel < this.toPixel; ++refinedPixel) {
+			if (this.supersamples.findMirrorPixel(refinedPixel, this.symmetry) >= 0) {
+				continue;
+			}
+
+			int pixelIndex = this.supersamples.getPixelIndex(refinedPixel);
+			int pixelX = pixelIndex % width;
+			int pixelY = pixelIndex / width;
+			int sample = refinedPixel * this.supersamples.getSamplesPerPixel();
+			SplittableRandom jitter = new SplittableRandom(pixelIndex);
+
+			// the pixel covers half a step around its point on either side
+			for (int cellY = 0; cellY < samplesPerSide; ++cellY) {
+				for (int cellX = 0; cellX < samplesPerSide; ++cellX) {
+					double sampleX = pixelX - 0.5
+							+ (cellX + jitter.nextDouble()) / samplesPerSide;
+					double sampleY = pixelY - 0.5
+							+ (cellY + jitter.nextDouble()) / samplesPerSide;
+
+					iterations[sample] = this.kernel.computeEscapeIterations(
+							this.viewport, sampleX, sampleY, smoothIterations,
+							sample);
+					++sample;
+				}
+			}
+		}
+	}
+}
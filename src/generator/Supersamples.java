@@ -0,0 +1,255 @@
+package generator;
+
+import java.util.Arrays;
+
+/**
+ * The sub-samples of the pixels of an {@link IterationGrid} that lie on an
+ * edge between escape-time bands, where a single sample per pixel aliases.
+ * Every refined pixel is split into a square of cells, and each cell is
+ * sampled at a random point inside it, so the samples cover the pixel evenly
+ * without forming a regular pattern. The points are derived from the index
+ * of the pixel, so the same grid is always refined the same way.
+ *
+ * The refined pixels are stored in row-major order. The samples of refined
+ * pixel r are stored from index r * getSamplesPerPixel() of the arrays, in
+ * row-major order of their cells.
+ */
+public class Supersamples {
+	/**
+	 * The difference in escape iterations between neighbouring pixels above
+	 * which both of them are refined by default.
+	 */
+	public static final int DEFAULT_EDGE_THRESHOLD = 1;
+
+	public static final int DEFAULT_SAMPLES_PER_SIDE = 4;
+
+	private int width;
+	private int samplesPerSide;
+
+	private int[] refinedPixels;
+	private int[] firstRefinedPixels;
+
+	private int[] iterations;
+	private float[] smoothIterations;
+
+	/**
+	 * Creates empty samples for the specified pixels of the grid.
+	 *
+	 * @param grid
+	 *            - the grid whose pixels are refined
+	 * @param samplesPerSide
+	 *            - the number of cells along each side of a refined pixel
+	 * @param refinedPixels
+	 *            - the indices of the refined pixels in the grid, ascending
+	 */
+	/* default */Supersamples(IterationGrid grid, int samplesPerSide,
+			int[] refinedPixels) {
+		this.width = grid.getWidth();
+		this.samplesPerSide = samplesPerSide;
+		this.refinedPixels = refinedPixels;
+
+		this.firstRefinedPixels = new int[grid.getHeight() + 1];
+		int refinedPixel = 0;
+		for (int pixelY = 0; pixelY <= grid.getHeight(); ++pixelY) {
+			while (refinedPixel < refinedPixels.length
+					&& refinedPixels[refinedPixel] < pixelY * this.width) {
+				++refinedPixel;
+			}
+			this.firstRefinedPixels[pixelY] = refinedPixel;
+		}
+
+		int sampleCount = refinedPixels.length * getSamplesPerPixel();
+		this.iterations = new int[sampleCount];
+		this.smoothIterations = grid.isSmooth() ? new float[sampleCount]
+				: null;
+	}
+
+	/**
+	 * Returns the indices of the pixels of the grid whose escape iterations
+	 * differ by more than the threshold from those of any of their eight
+	 * neighbours, in ascending order.
+	 *
+	 * @param grid
+	 *            - the computed grid
+	 * @param threshold
+	 *            - the largest difference that is not considered an edge
+	 */
+	public static int[] findEdgePixels(IterationGrid grid, int threshold) {
+		int width = grid.getWidth();
+		int height = grid.getHeight();
+		int[] iterations = grid.getIterations();
+		boolean[] isEdge = new boolean[iterations.length];
+		int edgePixelCount = 0;
+
+		// every pair of neighbours is compared once, from the upper or the
+		// left one of them
+		for (int pixelY = 0; pixelY < height; ++pixelY) {
+			for (int pixelX = 0; pixelX < width; ++pixelX) {
+				int index = pixelY * width + pixelX;
+
+				if (pixelX + 1 < width) {
+					edgePixelCount += markEdge(iterations, isEdge, index,
+							index + 1, threshold);
+				}
+				if (pixelY + 1 < height) {
+					int below = index + width;
+					edgePixelCount += markEdge(iterations, isEdge, index,
+							below, threshold);
+					if (pixelX > 0) {
+						edgePixelCount += markEdge(iterations, isEdge, index,
+								below - 1, threshold);
+					}
+					if (pixelX + 1 < width) {
+						edgePixelCount += markEdge(iterations, isEdge, index,
+								below + 1, threshold);
+					}
+				}
+			}
+		}
+
+		int[] edgePixels = new int[edgePixelCount];
+		int edgePixel = 0;
+		for (int index = 0; index < isEdge.length; ++index) {
+			if (isEdge[index]) {
+				edgePixels[edgePixel++] = index;
+			}
+		}
+
+		return edgePixels;
+	}
+
+	/**
+	 * Marks both pixels as edges if their iterations differ by more than the
+	 * threshold, and returns the number of pixels that were newly marked.
+	 */
+	private static int markEdge(int[] iterations, boolean[] isEdge,
+			int index, int neighbourIndex, int threshold) {
+		if (Math.abs(iterations[index] - iterations[neighbourIndex]) <= threshold) {
+			return 0;
+		}
+
+		int marked = 0;
+		if (!isEdge[index]) {
+			isEdge[index] = true;
+			++marked;
+		}
+		if (!isEdge[neighbourIndex]) {
+			isEdge[neighbourIndex] = true;
+			++marked;
+		}
+
+		return marked;
+	}
+
+	public int getSamplesPerSide() {
+		return this.samplesPerSide;
+	}
+
+	public int getSamplesPerPixel() {
+		return this.samplesPerSide * this.samplesPerSide;
+	}
+
+	public int getRefinedPixelCount() {
+		return this.refinedPixels.length;
+	}
+
+	/**
+	 * Returns the index in the grid of the specified refined pixel.
+	 */
+	public int getPixelIndex(int refinedPixel) {
+		return this.refinedPixels[refinedPixel];
+	}
+
+	public int getPixelX(int refinedPixel) {
+		return this.refinedPixels[refinedPixel] % this.width;
+	}
+
+	/**
+	 * Returns the first refined pixel of the row, inclusive.
+	 */
+	public int getFirstRefinedPixel(int pixelY) {
+		return this.firstRefinedPixels[pixelY];
+	}
+
+	/**
+	 * Returns the last refined pixel of the row, exclusive.
+	 */
+	public int getLastRefinedPixel(int pixelY) {
+		return this.firstRefinedPixels[pixelY + 1];
+	}
+
+	/**
+	 * Returns the refined pixel at the specified pixel of the grid, or a
+	 * negative number if the pixel is not refined.
+	 */
+	public int findRefinedPixel(int pixelX, int pixelY) {
+		int refinedPixel = Arrays.binarySearch(this.refinedPixels,
+				getFirstRefinedPixel(pixelY), getLastRefinedPixel(pixelY),
+				pixelY * this.width + pixelX);
+		return refinedPixel >= 0 ? refinedPixel : -1;
+	}
+
+	/**
+	 * Returns the refined pixel whose samples are the complex conjugates of
+	 * the samples of the specified one, or a negative number if the pixel is
+	 * not mirrored or its mirror pixel is not refined.
+	 */
+	/* default */int findMirrorPixel(int refinedPixel,
+			ConjugateSymmetry symmetry) {
+		int pixelY = this.refinedPixels[refinedPixel] / this.width;
+		if (symmetry == null || !symmetry.isMirrored(pixelY)) {
+			return -1;
+		}
+
+		return findRefinedPixel(getPixelX(refinedPixel),
+				symmetry.getMirrorRow(pixelY));
+	}
+
+	/**
+	 * Copies the samples of every refined pixel of the mirrored rows whose
+	 * mirror pixel is refined too. The rows of cells are copied upside down,
+	 * because the mirror pixel is flipped about the real axis.
+	 */
+	/* default */void mirror(ConjugateSymmetry symmetry) {
+		int samplesPerPixel = getSamplesPerPixel();
+		int side = this.samplesPerSide;
+
+		for (int pixelY = symmetry.getFirstMirroredRow(); pixelY < symmetry
+				.getLastMirroredRow(); ++pixelY) {
+			for (int refinedPixel = getFirstRefinedPixel(pixelY); refinedPixel < getLastRefinedPixel(pixelY); ++refinedPixel) {
+				int mirrorPixel = findMirrorPixel(refinedPixel, symmetry);
+				if (mirrorPixel < 0) {
+					continue;
+				}
+
+				for (int cellY = 0; cellY < side; ++cellY) {
+					int target = refinedPixel * samplesPerPixel + cellY * side;
+					int source = mirrorPixel * samplesPerPixel
+							+ (side - 1 - cellY) * side;
+
+					System.arraycopy(this.iterations, source,
+							this.iterations, target, side);
+					if (this.smoothIterations != null) {
+						System.arraycopy(this.smoothIterations, source,
+								this.smoothIterations, target, side);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the escape iterations of all samples.
+	 */
+	public int[] getIterations() {
+		return this.iterations;
+	}
+
+	/**
+	 * Returns the continuous escape values of all samples, or null if the
+	 * grid does not store them.
+	 */
+	public float[] getSmoothIterations() {
+		return this.smoothIterations;
+	}
+}
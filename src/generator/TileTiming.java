@@ -0,0 +1,49 @@
+package generator;
+
+/**
+ * The time a single tile of a work stealing generation took to compute and
+ * the worker thread that computed it.
+ */
+public class TileTiming {
+	private int firstPixelX;
+	private int firstPixelY;
+	private int width;
+	private int height;
+
+	private long computationNanos;
+	private String workerName;
+
+	public TileTiming(int firstPixelX, int firstPixelY, int width, int height,
+			long computationNanos, String workerName) {
+		this.firstPixelX = firstPixelX;
+		this.firstPixelY = firstPixelY;
+		this.width = width;
+		this.height = height;
+		this.computationNanos = computationNanos;
+		this.workerName = workerName;
+	}
+
+	public int getFirstPixelX() {
+		return this.firstPixelX;
+	}
+
+	public int getFirstPixelY() {
+		return this.firstPixelY;
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	public long getComputationNanos() {
+		return this.computationNanos;
+	}
+
+	public String getWorkerName() {
+		return this.workerName;
+	}
+}
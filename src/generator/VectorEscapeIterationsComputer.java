@@ -0,0 +1,146 @@
+package generator;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Computes the escape iterations of a row of pixels a whole vector of lanes
+ * at a time with the incubating Java Vector API. Lanes whose numbers have
+ * escaped are masked out, and the vector stops iterating when all of its
+ * lanes have escaped. The results are identical to the ones of
+ * {@link EscapeIterationsComputer}, because the same operations are applied
+ * in the same order.
+ * 
+ * The jdk.incubator.vector module has to be added to the running JVM, so the
+ * kernel should be created through {@link EscapeTimeKernels}, which falls
+ * back to the scalar computer when the module is not available. Periodicity
+ * checking is not supported.
+ */
+public class VectorEscapeIterationsComputer implements EscapeTimeKernel {
+	public static final String KERNEL_NAME = "vector";
+
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	private static final double BAILOUT_NUMBER = 1 << 16;
+
+	private int maxIterations;
+
+	private boolean interiorCheck;
+
+	private EscapeIterationsComputer scalarComputer;
+
+	public VectorEscapeIterationsComputer(int maxIterations,
+			boolean interiorCheck) {
+		this.maxIterations = maxIterations;
+		this.interiorCheck = interiorCheck;
+		this.scalarComputer = new EscapeIterationsComputer(maxIterations,
+				interiorCheck, false);
+	}
+
+	@Override
+	public String getName() {
+		return KERNEL_NAME;
+	}
+
+	@Override
+	public int getMaxIterations() {
+		return this.maxIterations;
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY) {
+		// a single point cannot fill a vector
+		return this.scalarComputer.computeEscapeIterations(viewport, pixelX,
+				pixelY);
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY, float[] smoothIterations, int index) {
+		return this.scalarComputer.computeEscapeIterations(viewport, pixelX,
+				pixelY, smoothIterations, index);
+	}
+
+	@Override
+	public void computeRow(Viewport viewport, int pixelY, int fromPixelX,
+			int toPixelX, int[] iterations, float[] smoothIterations,
+			int offset) {
+		int lanes = SPECIES.length();
+		double[] realParts = new double[lanes];
+		double[] laneIterations = new double[lanes];
+		double[] laneSquaredModuli = new double[lanes];
+
+		double imaginaryPart = viewport.getImaginaryPart(pixelY);
+		DoubleVector imaginaryParts = DoubleVector.broadcast(SPECIES,
+				imaginaryPart);
+
+		for (int firstPixelX = fromPixelX; firstPixelX < toPixelX; firstPixelX += lanes) {
+			int usedLanes = Math.min(lanes, toPixelX - firstPixelX);
+			VectorMask<Double> active = SPECIES.indexInRange(0, usedLanes);
+
+			for (int lane = 0; lane < usedLanes; ++lane) {
+				realParts[lane] = viewport.getRealPart(firstPixelX + lane);
+
+				if (this.interiorCheck
+						&& EscapeIterationsComputer.isInMainCardioidOrBulb(
+								realParts[lane], imaginaryPart)) {
+					active = active.andNot(VectorMask.fromLong(SPECIES,
+							1L << lane));
+				}
+			}
+
+			computeLanes(DoubleVector.fromArray(SPECIES, realParts, 0),
+					imaginaryParts, active, laneIterations, laneSquaredModuli);
+
+			for (int lane = 0; lane < usedLanes; ++lane) {
+				int index = offset + firstPixelX - fromPixelX + lane;
+				int pixelIterations = active.laneIsSet(lane) ? (int) laneIterations[lane]
+						: this.maxIterations;
+				iterations[index] = pixelIterations;
+
+				if (smoothIterations != null) {
+					smoothIterations[index] = EscapeIterationsComputer
+							.getSmoothIterations(pixelIterations,
+									laneSquaredModuli[lane], this.maxIterations);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Iterates the active lanes and stores their escape iterations and the
+	 * squared moduli of the points they escaped with into the arrays.
+	 */
+	private void computeLanes(DoubleVector realParts,
+			DoubleVector imaginaryParts, VectorMask<Double> active,
+			double[] laneIterations, double[] laneSquaredModuli) {
+		DoubleVector x = DoubleVector.zero(SPECIES);
+		DoubleVector y = DoubleVector.zero(SPECIES);
+		DoubleVector iterations = DoubleVector.zero(SPECIES);
+
+		for (int iteration = 0; iteration < this.maxIterations; ++iteration) {
+			DoubleVector xSquare = x.mul(x);
+			DoubleVector ySquare = y.mul(y);
+
+			active = active.andNot(xSquare.add(ySquare).compare(
+					VectorOperators.GT, BAILOUT_NUMBER));
+			if (!active.anyTrue()) {
+				break;
+			}
+
+			DoubleVector newX = xSquare.sub(ySquare).add(realParts);
+			DoubleVector newY = x.mul(2).mul(y).add(imaginaryParts);
+
+			x = x.blend(newX, active);
+			y = y.blend(newY, active);
+			iterations = iterations.add(1, active);
+		}
+
+		// the escaped lanes kept the points they escaped with
+		iterations.intoArray(laneIterations, 0);
+		x.mul(x).add(y.mul(y)).intoArray(laneSquaredModuli, 0);
+	}
+}
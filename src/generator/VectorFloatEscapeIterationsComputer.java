@@ -0,0 +1,152 @@
+package generator;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Computes the escape iterations of a row of pixels a whole vector of float
+ * lanes at a time with the incubating Java Vector API, which holds twice as
+ * many lanes as {@link VectorEscapeIterationsComputer}. The results are
+ * identical to the ones of {@link FloatEscapeIterationsComputer}, because the
+ * same operations are applied in the same order.
+ *
+ * Like the double vector kernel, it should be created through
+ * {@link EscapeTimeKernels}, which falls back to the scalar float computer
+ * when the module is not available. Periodicity checking is not supported.
+ */
+public class VectorFloatEscapeIterationsComputer implements EscapeTimeKernel {
+	public static final String KERNEL_NAME = "vector-float";
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	// the iterations are counted in int lanes, because a float loses
+	// increments above 2^24
+	private static final VectorSpecies<Integer> COUNT_SPECIES = SPECIES
+			.withLanes(int.class);
+
+	private static final float BAILOUT_NUMBER = 1 << 16;
+
+	private int maxIterations;
+
+	private boolean interiorCheck;
+
+	private FloatEscapeIterationsComputer scalarComputer;
+
+	public VectorFloatEscapeIterationsComputer(int maxIterations,
+			boolean interiorCheck) {
+		this.maxIterations = maxIterations;
+		this.interiorCheck = interiorCheck;
+		this.scalarComputer = new FloatEscapeIterationsComputer(maxIterations,
+				interiorCheck);
+	}
+
+	@Override
+	public String getName() {
+		return KERNEL_NAME;
+	}
+
+	@Override
+	public int getMaxIterations() {
+		return this.maxIterations;
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY) {
+		// a single point cannot fill a vector
+		return this.scalarComputer.computeEscapeIterations(viewport, pixelX,
+				pixelY);
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY, float[] smoothIterations, int index) {
+		return this.scalarComputer.computeEscapeIterations(viewport, pixelX,
+				pixelY, smoothIterations, index);
+	}
+
+	@Override
+	public void computeRow(Viewport viewport, int pixelY, int fromPixelX,
+			int toPixelX, int[] iterations, float[] smoothIterations,
+			int offset) {
+		int lanes = SPECIES.length();
+		float[] realParts = new float[lanes];
+		int[] laneIterations = new int[lanes];
+		float[] laneSquaredModuli = new float[lanes];
+
+		double imaginaryPart = viewport.getImaginaryPart(pixelY);
+		FloatVector imaginaryParts = FloatVector.broadcast(SPECIES,
+				(float) imaginaryPart);
+
+		for (int firstPixelX = fromPixelX; firstPixelX < toPixelX; firstPixelX += lanes) {
+			int usedLanes = Math.min(lanes, toPixelX - firstPixelX);
+			VectorMask<Float> active = SPECIES.indexInRange(0, usedLanes);
+
+			for (int lane = 0; lane < usedLanes; ++lane) {
+				double realPart = viewport.getRealPart(firstPixelX + lane);
+				realParts[lane] = (float) realPart;
+
+				if (this.interiorCheck
+						&& EscapeIterationsComputer.isInMainCardioidOrBulb(
+								realPart, imaginaryPart)) {
+					active = active.andNot(VectorMask.fromLong(SPECIES,
+							1L << lane));
+				}
+			}
+
+			computeLanes(FloatVector.fromArray(SPECIES, realParts, 0),
+					imaginaryParts, active, laneIterations, laneSquaredModuli);
+
+			for (int lane = 0; lane < usedLanes; ++lane) {
+				int index = offset + firstPixelX - fromPixelX + lane;
+				int pixelIterations = active.laneIsSet(lane) ? laneIterations[lane]
+						: this.maxIterations;
+				iterations[index] = pixelIterations;
+
+				if (smoothIterations != null) {
+					smoothIterations[index] = EscapeIterationsComputer
+							.getSmoothIterations(pixelIterations,
+									laneSquaredModuli[lane], this.maxIterations);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Iterates the active lanes and stores their escape iterations and the
+	 * squared moduli of the points they escaped with into the arrays.
+	 */
+	private void computeLanes(FloatVector realParts,
+			FloatVector imaginaryParts, VectorMask<Float> active,
+			int[] laneIterations, float[] laneSquaredModuli) {
+		FloatVector x = FloatVector.zero(SPECIES);
+		FloatVector y = FloatVector.zero(SPECIES);
+		FloatVector xSquare = FloatVector.zero(SPECIES);
+		FloatVector ySquare = FloatVector.zero(SPECIES);
+		IntVector iterations = IntVector.zero(COUNT_SPECIES);
+
+		for (int iteration = 0; iteration < this.maxIterations; ++iteration) {
+			active = active.andNot(xSquare.add(ySquare).compare(
+					VectorOperators.GT, BAILOUT_NUMBER));
+			if (!active.anyTrue()) {
+				break;
+			}
+
+			FloatVector newY = x.mul(2).mul(y).add(imaginaryParts);
+			FloatVector newX = xSquare.sub(ySquare).add(realParts);
+
+			x = x.blend(newX, active);
+			y = y.blend(newY, active);
+			xSquare = x.mul(x);
+			ySquare = y.mul(y);
+			iterations = iterations.add(1, active.cast(COUNT_SPECIES));
+		}
+
+		// the escaped lanes kept the points they escaped with
+		iterations.intoArray(laneIterations, 0);
+		xSquare.add(ySquare).intoArray(laneSquaredModuli, 0);
+	}
+}
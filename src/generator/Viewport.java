@@ -0,0 +1,461 @@
+package generator;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A rectangular region of the complex plane together with the resolution it
+ * is sampled with. Pixel (0, 0) is mapped to the minimal real and imaginary
+ * parts of the region and every other pixel is mapped by multiplying its
+ * index with the step between two neighbouring pixels, so no rounding error
+ * is accumulated along a row or a column.
+ *
+ * Every viewport also has a reference point stored with arbitrary precision,
+ * which is the center of the viewport it was created as. Deep zoom kernels
+ * iterate the reference point with full precision and the pixels as small
+ * offsets from it, so the offsets are exact even when the double coordinates
+ * of neighbouring pixels cannot be told apart. Sub viewports keep the
+ * reference point of their parent.
+ */
+public class Viewport {
+	// the square that is covered by the single tile of zoom level 0
+	private static final double TILE_MIN_REAL_PART = -2.5;
+	private static final double TILE_MIN_IMAGINARY_PART = -2;
+	private static final double TILE_EXTENT = 4;
+
+	private double minRealPart;
+	private double minImaginaryPart;
+
+	private double realPartStep;
+	private double imaginaryPartStep;
+
+	// fractional for subsampled viewports whose pixels lie between the
+	// pixels of the viewport they were created from
+	private double firstPixelX;
+	private double firstPixelY;
+
+	private int width;
+	private int height;
+
+	private BigDecimal referenceRealPart;
+	private BigDecimal referenceImaginaryPart;
+
+	// the pixel at which the reference point lies, relative to the pixel (0,
+	// 0) of the viewport that the sub viewports were created from
+	private double referencePixelX;
+	private double referencePixelY;
+
+	/**
+	 * Creates a viewport with square pixels around the specified center.
+	 *
+	 * @param centerRealPart
+	 *            - the real part of the center of the region
+	 * @param centerImaginaryPart
+	 *            - the imaginary part of the center of the region
+	 * @param scale
+	 *            - the distance in the complex plane between two neighbouring
+	 *            pixels
+	 * @param width
+	 *            - the number of pixels along the real axis
+	 * @param height
+	 *            - the number of pixels along the imaginary axis
+	 */
+	public Viewport(double centerRealPart, double centerImaginaryPart,
+			double scale, int width, int height) {
+		this(new BigDecimal(centerRealPart), new BigDecimal(
+				centerImaginaryPart), scale, width, height);
+	}
+
+	/**
+	 * Creates a viewport with square pixels around a center that is specified
+	 * with more precision than a double has. Such a center is needed for
+	 * zooms deeper than about 1e-13.
+	 *
+	 * @param centerRealPart
+	 *            - the real part of the center of the region
+	 * @param centerImaginaryPart
+	 *            - the imaginary part of the center of the region
+	 * @param scale
+	 *            - the distance in the complex plane between two neighbouring
+	 *            pixels
+	 * @param width
+	 *            - the number of pixels along the real axis
+	 * @param height
+	 *            - the number of pixels along the imaginary axis
+	 */
+	public Viewport(BigDecimal centerRealPart, BigDecimal centerImaginaryPart,
+			double scale, int width, int height) {
+		this(centerRealPart.doubleValue() - width / 2.0 * scale,
+				centerImaginaryPart.doubleValue() - height / 2.0 * scale,
+				scale, scale, 0, 0, width, height, centerRealPart,
+				centerImaginaryPart, width / 2.0, height / 2.0);
+	}
+
+	/**
+	 * Creates a viewport that covers the specified region with the specified
+	 * resolution.
+	 *
+	 * @param minRealPart
+	 *            - the real part of the left edge of the region
+	 * @param maxRealPart
+	 *            - the real part of the right edge of the region
+	 * @param minImaginaryPart
+	 *            - the imaginary part of the top edge of the region
+	 * @param maxImaginaryPart
+	 *            - the imaginary part of the bottom edge of the region
+	 * @param width
+	 *            - the number of pixels along the real axis
+	 * @param height
+	 *            - the number of pixels along the imaginary axis
+	 */
+	public Viewport(double minRealPart, double maxRealPart,
+			double minImaginaryPart, double maxImaginaryPart, int width,
+			int height) {
+		this(minRealPart, minImaginaryPart, (maxRealPart - minRealPart)
+				/ width, (maxImaginaryPart - minImaginaryPart) / height, 0, 0,
+				width, height, null, null, width / 2.0, height / 2.0);
+	}
+
+	private Viewport(double minRealPart, double minImaginaryPart,
+			double realPartStep, double imaginaryPartStep,
+			double firstPixelX, double firstPixelY, int width, int height,
+			BigDecimal referenceRealPart, BigDecimal referenceImaginaryPart,
+			double referencePixelX, double referencePixelY) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid viewport resolution %dx%d.", width, height));
+		}
+
+		this.minRealPart = minRealPart;
+		this.minImaginaryPart = minImaginaryPart;
+
+		this.realPartStep = realPartStep;
+		this.imaginaryPartStep = imaginaryPartStep;
+
+		this.firstPixelX = firstPixelX;
+		this.firstPixelY = firstPixelY;
+
+		this.width = width;
+		this.height = height;
+
+		this.referencePixelX = referencePixelX;
+		this.referencePixelY = referencePixelY;
+
+		// without a precise reference point the center of the viewport is used
+		this.referenceRealPart = referenceRealPart != null ? referenceRealPart
+				: new BigDecimal(referencePixelX * realPartStep + minRealPart);
+		this.referenceImaginaryPart = referenceImaginaryPart != null ? referenceImaginaryPart
+				: new BigDecimal(referencePixelY * imaginaryPartStep
+						+ minImaginaryPart);
+	}
+
+	/**
+	 * Creates a viewport that covers the whole Mandelbrot set with the
+	 * specified resolution.
+	 */
+	public static Viewport forWholeSet(int width, int height) {
+		return new Viewport(MandelbrotSetGenerator.MANDELBROT_MIN_X,
+				MandelbrotSetGenerator.MANDELBROT_MAX_X,
+				MandelbrotSetGenerator.MANDELBROT_MIN_Y,
+				MandelbrotSetGenerator.MANDELBROT_MAX_Y, width, height);
+	}
+
+	/**
+	 * Creates a viewport that covers the whole Mandelbrot set, including its
+	 * right and bottom edges, with a point at every multiple of the
+	 * specified precision.
+	 */
+	public static Viewport forPrecision(double precision) {
+		int width = getPointCount(
+				MandelbrotSetGenerator.MANDELBROT_X_INTERVAL_LENGTH, precision);
+		int height = getPointCount(
+				MandelbrotSetGenerator.MANDELBROT_Y_INTERVAL_LENGTH, precision);
+
+		return new Viewport(MandelbrotSetGenerator.MANDELBROT_MIN_X,
+				MandelbrotSetGenerator.MANDELBROT_MIN_Y, precision, precision,
+				0, 0, width, height, null, null, width / 2.0, height / 2.0);
+	}
+
+	/**
+	 * Creates the viewport of a square tile. At zoom level 0 a single tile
+	 * covers the whole set and every next level splits each tile into four,
+	 * so the tiles of zoom level z are numbered from 0 to 2^z - 1 along both
+	 * axes. The center of the tile is exact at any zoom level.
+	 *
+	 * @param tileX
+	 *            - the column of the tile, growing with the real part
+	 * @param tileY
+	 *            - the row of the tile, growing with the imaginary part
+	 * @param zoom
+	 *            - the zoom level
+	 * @param tileSize
+	 *            - the number of pixels along each side of the tile
+	 */
+	public static Viewport forTile(long tileX, long tileY, int zoom,
+			int tileSize) {
+		BigDecimal tileCount = BigDecimal.valueOf(2).pow(zoom);
+		BigDecimal extent = BigDecimal.valueOf(TILE_EXTENT);
+		BigDecimal half = BigDecimal.valueOf(0.5);
+
+		BigDecimal centerRealPart = BigDecimal.valueOf(tileX).add(half)
+				.multiply(extent).divide(tileCount)
+				.add(BigDecimal.valueOf(TILE_MIN_REAL_PART));
+		BigDecimal centerImaginaryPart = BigDecimal.valueOf(tileY).add(half)
+				.multiply(extent).divide(tileCount)
+				.add(BigDecimal.valueOf(TILE_MIN_IMAGINARY_PART));
+
+		return new Viewport(centerRealPart, centerImaginaryPart, Math.scalb(
+				TILE_EXTENT / tileSize, -zoom), tileSize, tileSize);
+	}
+
+	private static int getPointCount(double intervalLength, double precision) {
+		// tolerate the rounding error of the division, so that an interval
+		// that is a multiple of the precision keeps its last point
+		return (int) Math.floor(intervalLength / precision + 1e-9) + 1;
+	}
+
+	/**
+	 * Returns a viewport with the same resolution and center, and pixels that
+	 * are the specified number of times smaller.
+	 */
+	public Viewport zoom(double factor) {
+		return zoom(this.width / 2.0, this.height / 2.0, factor);
+	}
+
+	/**
+	 * Returns a viewport with the same resolution, and pixels that are the
+	 * specified number of times smaller, in which the point at the specified
+	 * pixel stays at the same pixel. The center of the returned viewport is
+	 * computed with the precision of the reference point.
+	 */
+	public Viewport zoom(double pixelX, double pixelY, double factor) {
+		double realPartStep = this.realPartStep / factor;
+		double imaginaryPartStep = this.imaginaryPartStep / factor;
+
+		// the offsets of the new center from the reference point
+		double centerRealPartOffset = getRealPartOffset(pixelX)
+				+ (this.width / 2.0 - pixelX) * realPartStep;
+		double centerImaginaryPartOffset = getImaginaryPartOffset(pixelY)
+				+ (this.height / 2.0 - pixelY) * imaginaryPartStep;
+
+		BigDecimal centerRealPart = this.referenceRealPart.add(new BigDecimal(
+				centerRealPartOffset), MathContext.UNLIMITED);
+		BigDecimal centerImaginaryPart = this.referenceImaginaryPart.add(
+				new BigDecimal(centerImaginaryPartOffset),
+				MathContext.UNLIMITED);
+
+		return new Viewport(centerRealPart.doubleValue() - this.width / 2.0
+				* realPartStep, centerImaginaryPart.doubleValue()
+				- this.height / 2.0 * imaginaryPartStep, realPartStep,
+				imaginaryPartStep, 0, 0, this.width, this.height,
+				centerRealPart, centerImaginaryPart, this.width / 2.0,
+				this.height / 2.0);
+	}
+
+	/**
+	 * Returns the part of this viewport that starts at the specified pixel and
+	 * has the specified resolution. The pixels of the returned viewport are
+	 * mapped to exactly the same points as in this viewport.
+	 */
+	public Viewport getSubViewport(int pixelX, int pixelY, int width,
+			int height) {
+		return new Viewport(this.minRealPart, this.minImaginaryPart,
+				this.realPartStep, this.imaginaryPartStep, this.firstPixelX
+						+ pixelX, this.firstPixelY + pixelY, width, height,
+				this.referenceRealPart, this.referenceImaginaryPart,
+				this.referencePixelX, this.referencePixelY);
+	}
+
+	/**
+	 * Returns a viewport over the same region with a pixel at every factor-th
+	 * pixel of this viewport along both axes. Pixel (x, y) of the returned
+	 * viewport is mapped to the same point as pixel (x * factor, y * factor)
+	 * of this viewport.
+	 */
+	public Viewport getSubsampledViewport(int factor) {
+		return getSubsampledViewport(factor, 0, 0);
+	}
+
+	/**
+	 * Returns a viewport with a pixel at every factor-th pixel of this
+	 * viewport along both axes, starting from the specified pixel. Pixel (x,
+	 * y) of the returned viewport is mapped to exactly the same point as pixel
+	 * (x * factor + phaseX, y * factor + phaseY) of this viewport, as long as
+	 * the factor is a power of two.
+	 */
+	public Viewport getSubsampledViewport(int factor, int phaseX, int phaseY) {
+		return new Viewport(this.minRealPart, this.minImaginaryPart,
+				this.realPartStep * factor, this.imaginaryPartStep * factor,
+				(this.firstPixelX + phaseX) / factor,
+				(this.firstPixelY + phaseY) / factor, (this.width - phaseX
+						+ factor - 1) / factor, (this.height - phaseY + factor - 1)
+						/ factor, this.referenceRealPart,
+				this.referenceImaginaryPart, this.referencePixelX / factor,
+				this.referencePixelY / factor);
+	}
+
+	/**
+	 * Writes the viewport to the buffer, so that it could be read back by
+	 * {@link #readFrom(ByteBuffer)} with exactly the same mapping of pixels.
+	 */
+	public void writeTo(ByteBuffer buffer) {
+		buffer.putDouble(this.minRealPart).putDouble(this.minImaginaryPart)
+				.putDouble(this.realPartStep)
+				.putDouble(this.imaginaryPartStep)
+				.putDouble(this.firstPixelX).putDouble(this.firstPixelY)
+				.putInt(this.width).putInt(this.height)
+				.putDouble(this.referencePixelX)
+				.putDouble(this.referencePixelY);
+		putBigDecimal(buffer, this.referenceRealPart);
+		putBigDecimal(buffer, this.referenceImaginaryPart);
+	}
+
+	private static void putBigDecimal(ByteBuffer buffer, BigDecimal number) {
+		byte[] digits = number.toString().getBytes(StandardCharsets.US_ASCII);
+		buffer.putInt(digits.length).put(digits);
+	}
+
+	/**
+	 * Reads a viewport written by {@link #writeTo(ByteBuffer)}.
+	 *
+	 * @throws IOException
+	 *             if the buffer does not contain a valid viewport
+	 */
+	public static Viewport readFrom(ByteBuffer buffer) throws IOException {
+		try {
+			double minRealPart = buffer.getDouble();
+			double minImaginaryPart = buffer.getDouble();
+			double realPartStep = buffer.getDouble();
+			double imaginaryPartStep = buffer.getDouble();
+			double firstPixelX = buffer.getDouble();
+			double firstPixelY = buffer.getDouble();
+			int width = buffer.getInt();
+			int height = buffer.getInt();
+			double referencePixelX = buffer.getDouble();
+			double referencePixelY = buffer.getDouble();
+			BigDecimal referenceRealPart = getBigDecimal(buffer);
+			BigDecimal referenceImaginaryPart = getBigDecimal(buffer);
+
+			return new Viewport(minRealPart, minImaginaryPart, realPartStep,
+					imaginaryPartStep, firstPixelX, firstPixelY, width,
+					height, referenceRealPart, referenceImaginaryPart,
+					referencePixelX, referencePixelY);
+		} catch (BufferUnderflowException | IllegalArgumentException
+				| NegativeArraySizeException e) {
+			throw new IOException("Malformed viewport.", e);
+		}
+	}
+
+	private static BigDecimal getBigDecimal(ByteBuffer buffer) {
+		byte[] digits = new byte[buffer.getInt()];
+		buffer.get(digits);
+		return new BigDecimal(new String(digits, StandardCharsets.US_ASCII));
+	}
+
+	public double getRealPart(int pixelX) {
+		return (pixelX + this.firstPixelX) * this.realPartStep
+				+ this.minRealPart;
+	}
+
+	public double getImaginaryPart(int pixelY) {
+		return (pixelY + this.firstPixelY) * this.imaginaryPartStep
+				+ this.minImaginaryPart;
+	}
+
+	/**
+	 * Returns the real part of a point between the pixels, where pixelX + 0.5
+	 * is the middle between pixelX and pixelX + 1.
+	 */
+	public double getRealPart(double pixelX) {
+		return (pixelX + this.firstPixelX) * this.realPartStep
+				+ this.minRealPart;
+	}
+
+	/**
+	 * Returns the imaginary part of a point between the pixels, where pixelY +
+	 * 0.5 is the middle between pixelY and pixelY + 1.
+	 */
+	public double getImaginaryPart(double pixelY) {
+		return (pixelY + this.firstPixelY) * this.imaginaryPartStep
+				+ this.minImaginaryPart;
+	}
+
+	/**
+	 * Returns the difference between the real part of the point at the
+	 * specified pixel and the real part of the reference point.
+	 */
+	public double getRealPartOffset(double pixelX) {
+		return (pixelX + this.firstPixelX - this.referencePixelX)
+				* this.realPartStep;
+	}
+
+	/**
+	 * Returns the difference between the imaginary part of the point at the
+	 * specified pixel and the imaginary part of the reference point.
+	 */
+	public double getImaginaryPartOffset(double pixelY) {
+		return (pixelY + this.firstPixelY - this.referencePixelY)
+				* this.imaginaryPartStep;
+	}
+
+	/**
+	 * Returns the sum of the rows of any two pixels whose points are complex
+	 * conjugates of each other, so that row y is the mirror image of row
+	 * getConjugateRowSum() - y about the real axis. The rows of the viewport
+	 * are only mirror images of each other if the sum is a whole number.
+	 */
+	public double getConjugateRowSum() {
+		// the imaginary part of row y is the reference imaginary part plus (y
+		// + firstPixelY - referencePixelY) * step, and it is negated by the
+		// mirror row
+		return this.referenceImaginaryPart
+				.multiply(BigDecimal.valueOf(-2))
+				.divide(new BigDecimal(this.imaginaryPartStep),
+						MathContext.DECIMAL128)
+				.subtract(
+						new BigDecimal(2 * (this.firstPixelY - this.referencePixelY)))
+				.doubleValue();
+	}
+
+	public BigDecimal getReferenceRealPart() {
+		return this.referenceRealPart;
+	}
+
+	public BigDecimal getReferenceImaginaryPart() {
+		return this.referenceImaginaryPart;
+	}
+
+	public double getCenterRealPart() {
+		return (this.width / 2.0 + this.firstPixelX) * this.realPartStep
+				+ this.minRealPart;
+	}
+
+	public double getCenterImaginaryPart() {
+		return (this.height / 2.0 + this.firstPixelY)
+				* this.imaginaryPartStep + this.minImaginaryPart;
+	}
+
+	public double getRealPartStep() {
+		return this.realPartStep;
+	}
+
+	public double getImaginaryPartStep() {
+		return this.imaginaryPartStep;
+	}
+
+	public int getWidth() {
+		return this.width;
+	}
+
+	public int getHeight() {
+		return this.height;
+	}
+
+	public int getPixelCount() {
+		return this.width * this.height;
+	}
+}
@@ -0,0 +1,106 @@
+package generator;
+
+import metrics.GeneratorMetrics;
+
+import java.util.Queue;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes a rectangular tile of an {@link IterationGrid}. Tiles that are
+ * larger than the minimum tile size are split in two along their longer side,
+ * so that idle workers of the pool can steal the halves that are not yet
+ * started. Every tile writes only its own pixels of the grid, so no locking is
+ * needed.
+ */
+public class WorkStealingTileTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	private IterationGrid grid;
+
+	private int firstPixelX;
+	private int firstPixelY;
+	private int width;
+	private int height;
+
+	private int minimumTileSize;
+	private EscapeTimeKernel kernel;
+
+	private Queue<TileTiming> tileTimings;
+	private GeneratorMetrics metrics;
+
+	public WorkStealingTileTask(IterationGrid grid, int firstPixelX,
+			int firstPixelY, int width, int height, int minimumTileSize,
+			EscapeTimeKernel kernel,
+			Queue<TileTiming> tileTimings) {
+		this(grid, firstPixelX, firstPixelY, width, height, minimumTileSize,
+				kernel, tileTimings, null);
+	}
+
+	/**
+	 * Creates a task that also records every computed tile into the
+	 * specified metrics, unless they are null.
+	 */
+	public WorkStealingTileTask(IterationGrid grid, int firstPixelX,
+			int firstPixelY, int width, int height, int minimumTileSize,
+			EscapeTimeKernel kernel, Queue<TileTiming> tileTimings,
+			GeneratorMetrics metrics) {
+		this.grid = grid;
+		this.firstPixelX = firstPixelX;
+		this.firstPixelY = firstPixelY;
+		this.width = width;
+		this.height = height;
+		this.minimumTileSize = minimumTileSize;
+		this.kernel = kernel;
+		this.tileTimings = tileTimings;
+		this.metrics = metrics;
+	}
+
+	@Override
+	protected void compute() {
+		if (this.width <= this.minimumTileSize
+				&& this.height <= this.minimumTileSize) {
+			computeTile();
+		} else if (this.width >= this.height) {
+			int leftWidth = this.width / 2;
+			invokeAll(createSubtask(this.firstPixelX, this.firstPixelY,
+					leftWidth, this.height), createSubtask(this.firstPixelX
+					+ leftWidth, this.firstPixelY, this.width - leftWidth,
+					this.height));
+		} else {
+			int topHeight = this.height / 2;
+			invokeAll(createSubtask(this.firstPixelX, this.firstPixelY,
+					this.width, topHeight), createSubtask(this.firstPixelX,
+					this.firstPixelY + topHeight, this.width, this.height
+							- topHeight));
+		}
+	}
+
+	private WorkStealingTileTask createSubtask(int firstPixelX,
+			int firstPixelY, int width, int height) {
+		return new WorkStealingTileTask(this.grid, firstPixelX, firstPixelY,
+				width, height, this.minimumTileSize, this.kernel,
+				this.tileTimings, this.metrics);
+	}
+
+	private void computeTile() {
+		long startNanos = System.nanoTime();
+
+		Viewport viewport = this.grid.getViewport();
+		for (int pixelY = this.firstPixelY; pixelY < this.firstPixelY
+				+ this.height; ++pixelY) {
+			this.kernel.computeRow(viewport, pixelY, this.firstPixelX,
+					this.firstPixelX + this.width, this.grid.getIterations(),
+					this.grid.getSmoothIterations(),
+					this.grid.getIndex(this.firstPixelX, pixelY));
+		}
+
+		long computationNanos = System.nanoTime() - startNanos;
+		this.tileTimings.add(new TileTiming(this.firstPixelX,
+				this.firstPixelY, this.width, this.height, computationNanos,
+				Thread.currentThread().getName()));
+		if (this.metrics != null) {
+			this.metrics.recordTile(this.firstPixelX, this.firstPixelY,
+					this.width, this.height, computationNanos);
+		}
+	}
+}
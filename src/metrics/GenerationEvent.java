@@ -0,0 +1,36 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A flight recorder event for a whole generation of the generator, from the
+ * call of the generation method to the delivery of its result.
+ */
+@Name("mandelbrot.Generation")
+@Label("Generation")
+@Category("Mandelbrot")
+@Description("A generation of a viewport by the generator")
+class GenerationEvent extends jdk.jfr.Event {
+	@Label("Method")
+	String method;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+
+	@Label("Kernel")
+	String kernel;
+
+	@Label("Maximum Iterations")
+	int maxIterations;
+
+	@Label("Generation Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long generationTime;
+}
@@ -0,0 +1,542 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The measurements of a generator - the pixels and iterations computed by
+ * every worker thread, the escape iterations of the pixels, the latency of
+ * the tiles and the throughput of the generations. The counters are
+ * {@link LongAdder}s and the latencies a {@link LatencyHistogram}, so
+ * recording a measurement neither locks nor allocates.
+ *
+ * Tiles and generations are also committed as flight recorder events, when
+ * the recording enables them, and passed to the registered
+ * {@link GeneratorMetricsListener}s. The metrics could be registered as an
+ * MXBean with {@link #registerMBean(String)}.
+ */
+public class GeneratorMetrics implements GeneratorMetricsMXBean {
+	public static final String MBEAN_DOMAIN = "mandelbrot";
+
+	// pixels that escape after up to 2^31 - 1 iterations
+	private static final int ESCAPE_BUCKET_COUNT = 32;
+
+	// virtual threads are not named, so they are counted as one worker
+	private static final String UNNAMED_WORKER = "unnamed";
+
+	private ExecutorService executor;
+	private ForkJoinPool forkJoinPool;
+
+	private ConcurrentHashMap<String, WorkerCounters> workers = new ConcurrentHashMap<String, WorkerCounters>();
+	private ThreadLocal<Recorder> recorders = new ThreadLocal<Recorder>() {
+		@Override
+		protected Recorder initialValue() {
+			return new Recorder(getWorkerCounters(Thread.currentThread()
+					.getName()));
+		}
+	};
+
+	private LongAdder[] escapeCounts = new LongAdder[ESCAPE_BUCKET_COUNT];
+	private LongAdder interiorPixelCount = new LongAdder();
+	private LongAdder tileCount = new LongAdder();
+	private LatencyHistogram tileLatencies = new LatencyHistogram();
+
+	private long generationCount;
+	private int activeGenerationCount;
+	private long busyStartNanos;
+	private long busyNanos;
+
+	private List<GeneratorMetricsListener> listeners = new CopyOnWriteArrayList<GeneratorMetricsListener>();
+
+	private ObjectName objectName;
+
+	/**
+	 * Creates empty metrics for a generator that runs on the specified
+	 * threads.
+	 *
+	 * @param executor
+	 *            - the executor of the generator, whose queue is reported
+	 * @param forkJoinPool
+	 *            - the fork/join pool of the generator, whose queue is
+	 *            reported
+	 */
+	public GeneratorMetrics(ExecutorService executor, ForkJoinPool forkJoinPool) {
+		this.executor = executor;
+		this.forkJoinPool = forkJoinPool;
+
+		for (int bucket = 0; bucket < ESCAPE_BUCKET_COUNT; ++bucket) {
+			this.escapeCounts[bucket] = new LongAdder();
+		}
+	}
+
+	private WorkerCounters getWorkerCounters(String workerName) {
+		if (workerName.isEmpty()) {
+			workerName = UNNAMED_WORKER;
+		}
+
+		WorkerCounters counters = this.workers.get(workerName);
+		if (counters == null) {
+			WorkerCounters newCounters = new WorkerCounters();
+			counters = this.workers.putIfAbsent(workerName, newCounters);
+			if (counters == null) {
+				counters = newCounters;
+			}
+		}
+
+		return counters;
+	}
+
+	/**
+	 * Records the escape iterations of consecutive pixels computed by a
+	 * kernel on the current thread.
+	 *
+	 * @param iterations
+	 *            - the array the kernel stored the escape iterations in
+	 * @param offset
+	 *            - the index of the first computed pixel
+	 * @param count
+	 *            - the number of computed pixels
+	 * @param maxIterations
+	 *            - the maximum iterations of the kernel
+	 * @param kernelNanos
+	 *            - the time the kernel took to compute the pixels
+	 */
+	public void recordPixels(int[] iterations, int offset, int count,
+			int maxIterations, long kernelNanos) {
+		Recorder recorder = this.recorders.get();
+		long[] escapeCounts = recorder.escapeCounts;
+		long iterationSum = 0;
+		int interiorPixels = 0;
+
+		for (int index = offset; index < offset + count; ++index) {
+			int pixelIterations = iterations[index];
+			iterationSum += pixelIterations;
+
+			if (pixelIterations >= maxIterations) {
+				++interiorPixels;
+			} else {
+				++escapeCounts[32 - Integer
+						.numberOfLeadingZeros(pixelIterations)];
+			}
+		}
+
+		// the buckets are collected on the thread first, so that only the
+		// few buckets the pixels fell into are added to the shared counters
+		for (int bucket = 0; bucket < ESCAPE_BUCKET_COUNT; ++bucket) {
+			if (escapeCounts[bucket] != 0) {
+				this.escapeCounts[bucket].add(escapeCounts[bucket]);
+				escapeCounts[bucket] = 0;
+			}
+		}
+		if (interiorPixels > 0) {
+			this.interiorPixelCount.add(interiorPixels);
+		}
+
+		WorkerCounters worker = recorder.worker;
+		worker.pixels.add(count);
+		worker.iterations.add(iterationSum);
+		worker.kernelNanos.add(kernelNanos);
+	}
+
+	/**
+	 * Records the escape iterations of a single pixel computed by a kernel on
+	 * the current thread.
+	 */
+	public void recordPixel(int iterations, int maxIterations,
+			long kernelNanos) {
+		WorkerCounters worker = this.recorders.get().worker;
+
+		if (iterations >= maxIterations) {
+			this.interiorPixelCount.increment();
+		} else {
+			this.escapeCounts[32 - Integer.numberOfLeadingZeros(iterations)]
+					.increment();
+		}
+
+		worker.pixels.increment();
+		worker.iterations.add(iterations);
+		worker.kernelNanos.add(kernelNanos);
+	}
+
+	/**
+	 * Records a tile, or a band of rows, completed on the current thread.
+	 *
+	 * @param firstPixelX
+	 *            - the first pixel of the tile along the real axis
+	 * @param firstPixelY
+	 *            - the first pixel of the tile along the imaginary axis
+	 * @param width
+	 *            - the width of the tile in pixels
+	 * @param height
+	 *            - the height of the tile in pixels
+	 * @param computationNanos
+	 *            - the time the tile took to compute
+	 */
+	public void recordTile(int firstPixelX, int firstPixelY, int width,
+			int height, long computationNanos) {
+		this.tileCount.increment();
+		this.tileLatencies.record(computationNanos);
+
+		TileEvent event = new TileEvent();
+		if (event.isEnabled()) {
+			event.firstPixelX = firstPixelX;
+			event.firstPixelY = firstPixelY;
+			event.width = width;
+			event.height = height;
+			event.computationTime = computationNanos;
+			event.commit();
+		}
+
+		if (!this.listeners.isEmpty()) {
+			String workerName = Thread.currentThread().getName();
+			for (GeneratorMetricsListener listener : this.listeners) {
+				listener.tileCompleted(workerName, width * height,
+						computationNanos);
+			}
+		}
+	}
+
+	/**
+	 * Records the start of a generation and returns the time it started at,
+	 * that should be passed to
+	 * {@link #generationFinished(String, int, int, String, int, long)}.
+	 */
+	public synchronized long generationStarted() {
+		long startNanos = System.nanoTime();
+
+		if (this.activeGenerationCount++ == 0) {
+			this.busyStartNanos = startNanos;
+		}
+
+		return startNanos;
+	}
+
+	/**
+	 * Records the delivery of the result of a generation.
+	 *
+	 * @param method
+	 *            - a short name of the generation method
+	 * @param width
+	 *            - the width of the generated viewport
+	 * @param height
+	 *            - the height of the generated viewport
+	 * @param kernelName
+	 *            - the name of the kernel the generation used
+	 * @param maxIterations
+	 *            - the maximum iterations of the generation
+	 * @param startNanos
+	 *            - the time returned by {@link #generationStarted()}
+	 */
+	public void generationFinished(String method, int width, int height,
+			String kernelName, int maxIterations, long startNanos) {
+		long endNanos = System.nanoTime();
+
+		synchronized (this) {
+			++this.generationCount;
+			if (--this.activeGenerationCount == 0) {
+				this.busyNanos += endNanos - this.busyStartNanos;
+			}
+		}
+
+		GenerationEvent event = new GenerationEvent();
+		if (event.isEnabled()) {
+			event.method = method;
+			event.width = width;
+			event.height = height;
+			event.kernel = kernelName;
+			event.maxIterations = maxIterations;
+			event.generationTime = endNanos - startNanos;
+			event.commit();
+		}
+
+		for (GeneratorMetricsListener listener : this.listeners) {
+			listener.generationCompleted(method, width * height, endNanos
+					- startNanos);
+		}
+	}
+
+	/**
+	 * Records a generation that ended without delivering a result.
+	 *
+	 * @param startNanos
+	 *            - the time returned by {@link #generationStarted()}
+	 */
+	public synchronized void generationFailed(long startNanos) {
+		if (--this.activeGenerationCount == 0) {
+			this.busyNanos += System.nanoTime() - this.busyStartNanos;
+		}
+	}
+
+	public void addListener(GeneratorMetricsListener listener) {
+		this.listeners.add(listener);
+	}
+
+	public void removeListener(GeneratorMetricsListener listener) {
+		this.listeners.remove(listener);
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server under the name
+	 * mandelbrot:type=GeneratorMetrics,name=[name].
+	 *
+	 * @param name
+	 *            - the name that tells the generator apart from the others
+	 * @throws JMException
+	 *             if the name is invalid or already registered
+	 */
+	public synchronized void registerMBean(String name) throws JMException {
+		ObjectName objectName = new ObjectName(MBEAN_DOMAIN
+				+ ":type=GeneratorMetrics,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+				objectName);
+		this.objectName = objectName;
+	}
+
+	/**
+	 * Unregisters the metrics from the platform MBean server, if they were
+	 * registered.
+	 */
+	public synchronized void unregisterMBean() throws JMException {
+		if (this.objectName == null) {
+			return;
+		}
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		if (server.isRegistered(this.objectName)) {
+			server.unregisterMBean(this.objectName);
+		}
+		this.objectName = null;
+	}
+
+	@Override
+	public long getPixelCount() {
+		long pixelCount = 0;
+		for (WorkerCounters worker : this.workers.values()) {
+			pixelCount += worker.pixels.sum();
+		}
+
+		return pixelCount;
+	}
+
+	@Override
+	public long getIterationCount() {
+		long iterationCount = 0;
+		for (WorkerCounters worker : this.workers.values()) {
+			iterationCount += worker.iterations.sum();
+		}
+
+		return iterationCount;
+	}
+
+	private long getKernelNanos() {
+		long kernelNanos = 0;
+		for (WorkerCounters worker : this.workers.values()) {
+			kernelNanos += worker.kernelNanos.sum();
+		}
+
+		return kernelNanos;
+	}
+
+	@Override
+	public long getTileCount() {
+		return this.tileCount.sum();
+	}
+
+	@Override
+	public synchronized long getGenerationCount() {
+		return this.generationCount;
+	}
+
+	@Override
+	public synchronized int getActiveGenerationCount() {
+		return this.activeGenerationCount;
+	}
+
+	@Override
+	public long getQueuedTaskCount() {
+		long queuedTaskCount = this.forkJoinPool.getQueuedSubmissionCount()
+				+ this.forkJoinPool.getQueuedTaskCount();
+
+		if (this.executor instanceof ThreadPoolExecutor) {
+			queuedTaskCount += ((ThreadPoolExecutor) this.executor).getQueue()
+					.size();
+		}
+
+		return queuedTaskCount;
+	}
+
+	@Override
+	public double getPixelsPerSecond() {
+		long busyNanos;
+		synchronized (this) {
+			busyNanos = this.busyNanos;
+			if (this.activeGenerationCount > 0) {
+				busyNanos += System.nanoTime() - this.busyStartNanos;
+			}
+		}
+
+		return busyNanos > 0 ? getPixelCount() * 1e9 / busyNanos : 0;
+	}
+
+	@Override
+	public double getIterationsPerKernelSecond() {
+		long kernelNanos = getKernelNanos();
+		return kernelNanos > 0 ? getIterationCount() * 1e9 / kernelNanos : 0;
+	}
+
+	@Override
+	public long[] getEscapeIterationHistogram() {
+		long[] histogram = new long[ESCAPE_BUCKET_COUNT];
+		for (int bucket = 0; bucket < ESCAPE_BUCKET_COUNT; ++bucket) {
+			histogram[bucket] = this.escapeCounts[bucket].sum();
+		}
+
+		return histogram;
+	}
+
+	@Override
+	public long getInteriorPixelCount() {
+		return this.interiorPixelCount.sum();
+	}
+
+	@Override
+	public Map<String, Long> getWorkerIterationCounts() {
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for (Map.Entry<String, WorkerCounters> worker : this.workers
+				.entrySet()) {
+			counts.put(worker.getKey(), worker.getValue().iterations.sum());
+		}
+
+		return counts;
+	}
+
+	@Override
+	public Map<String, Long> getWorkerPixelCounts() {
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for (Map.Entry<String, WorkerCounters> worker : this.workers
+				.entrySet()) {
+			counts.put(worker.getKey(), worker.getValue().pixels.sum());
+		}
+
+		return counts;
+	}
+
+	@Override
+	public Map<String, Long> getWorkerKernelNanos() {
+		Map<String, Long> nanos = new TreeMap<String, Long>();
+		for (Map.Entry<String, WorkerCounters> worker : this.workers
+				.entrySet()) {
+			nanos.put(worker.getKey(), worker.getValue().kernelNanos.sum());
+		}
+
+		return nanos;
+	}
+
+	@Override
+	public double getWorkerImbalance() {
+		long maximum = 0;
+		long total = 0;
+		int workerCount = 0;
+
+		for (WorkerCounters worker : this.workers.values()) {
+			long iterations = worker.iterations.sum();
+			if (iterations > 0) {
+				maximum = Math.max(maximum, iterations);
+				total += iterations;
+				++workerCount;
+			}
+		}
+
+		return total > 0 ? (double) maximum * workerCount / total : 1;
+	}
+
+	/**
+	 * Returns the histogram of the computation times of the tiles, in
+	 * nanoseconds.
+	 */
+	public LatencyHistogram getTileLatencies() {
+		return this.tileLatencies;
+	}
+
+	@Override
+	public long getTileLatencyMedianNanos() {
+		return this.tileLatencies.getValueAtPercentile(50);
+	}
+
+	@Override
+	public long getTileLatency90thPercentileNanos() {
+		return this.tileLatencies.getValueAtPercentile(90);
+	}
+
+	@Override
+	public long getTileLatency99thPercentileNanos() {
+		return this.tileLatencies.getValueAtPercentile(99);
+	}
+
+	@Override
+	public long getTileLatency999thPercentileNanos() {
+		return this.tileLatencies.getValueAtPercentile(99.9);
+	}
+
+	@Override
+	public long getTileLatencyMaximumNanos() {
+		return this.tileLatencies.getMaximum();
+	}
+
+	@Override
+	public void reset() {
+		// the counters are reset in place, because the threads keep the
+		// counters of their workers
+		for (WorkerCounters worker : this.workers.values()) {
+			worker.pixels.reset();
+			worker.iterations.reset();
+			worker.kernelNanos.reset();
+		}
+		for (LongAdder escapeCount : this.escapeCounts) {
+			escapeCount.reset();
+		}
+		this.interiorPixelCount.reset();
+		this.tileCount.reset();
+		this.tileLatencies.reset();
+
+		synchronized (this) {
+			this.generationCount = 0;
+			this.busyNanos = 0;
+			this.busyStartNanos = System.nanoTime();
+		}
+	}
+
+	/**
+	 * The counters of a single worker thread.
+	 */
+	private static class WorkerCounters {
+		private LongAdder pixels = new LongAdder();
+		private LongAdder iterations = new LongAdder();
+		private LongAdder kernelNanos = new LongAdder();
+	}
+
+	/**
+	 * The counters of the worker of a thread, and the escape buckets the
+	 * thread collects a row in.
+	 */
+	private static class Recorder {
+		private WorkerCounters worker;
+		private long[] escapeCounts = new long[ESCAPE_BUCKET_COUNT];
+
+		private Recorder(WorkerCounters worker) {
+			this.worker = worker;
+		}
+	}
+}
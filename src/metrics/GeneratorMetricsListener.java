@@ -0,0 +1,34 @@
+package metrics;
+
+/**
+ * Receives the measurements of a generator as they are recorded. The methods
+ * are called on the threads that compute the generation, so they should
+ * return quickly.
+ */
+public interface GeneratorMetricsListener {
+	/**
+	 * Called when a worker thread completes a tile, or a band of rows.
+	 *
+	 * @param workerName
+	 *            - the name of the thread that computed the tile
+	 * @param pixelCount
+	 *            - the number of pixels of the tile
+	 * @param computationNanos
+	 *            - the time the tile took to compute
+	 */
+	public void tileCompleted(String workerName, int pixelCount,
+			long computationNanos);
+
+	/**
+	 * Called when the result of a generation is delivered.
+	 *
+	 * @param method
+	 *            - a short name of the generation method
+	 * @param pixelCount
+	 *            - the number of pixels of the generated viewport
+	 * @param generationNanos
+	 *            - the time from the start of the generation to the delivery
+	 */
+	public void generationCompleted(String method, int pixelCount,
+			long generationNanos);
+}
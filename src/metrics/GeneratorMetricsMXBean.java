@@ -0,0 +1,75 @@
+package metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link GeneratorMetrics}, through which the
+ * metrics of a generator are exposed over JMX.
+ */
+public interface GeneratorMetricsMXBean {
+	public long getPixelCount();
+
+	public long getIterationCount();
+
+	public long getTileCount();
+
+	public long getGenerationCount();
+
+	public int getActiveGenerationCount();
+
+	/**
+	 * Returns the number of tasks that wait for a thread of the generator.
+	 */
+	public long getQueuedTaskCount();
+
+	/**
+	 * Returns the pixels computed per second of the time during which at
+	 * least one generation was running.
+	 */
+	public double getPixelsPerSecond();
+
+	/**
+	 * Returns the iterations computed per second of the time spent in the
+	 * kernels, summed over all threads - the throughput of a single thread.
+	 */
+	public double getIterationsPerKernelSecond();
+
+	/**
+	 * Returns the number of computed pixels that escaped after fewer than
+	 * 2^i iterations, but not fewer than 2^(i - 1), at every index i.
+	 */
+	public long[] getEscapeIterationHistogram();
+
+	/**
+	 * Returns the number of computed pixels that reached the maximum
+	 * iterations without escaping.
+	 */
+	public long getInteriorPixelCount();
+
+	public Map<String, Long> getWorkerIterationCounts();
+
+	public Map<String, Long> getWorkerPixelCounts();
+
+	public Map<String, Long> getWorkerKernelNanos();
+
+	/**
+	 * Returns the ratio of the most iterations computed by a single worker to
+	 * the average over all workers. 1 means a perfectly balanced load.
+	 */
+	public double getWorkerImbalance();
+
+	public long getTileLatencyMedianNanos();
+
+	public long getTileLatency90thPercentileNanos();
+
+	public long getTileLatency99thPercentileNanos();
+
+	public long getTileLatency999thPercentileNanos();
+
+	public long getTileLatencyMaximumNanos();
+
+	/**
+	 * Removes all recorded measurements.
+	 */
+	public void reset();
+}
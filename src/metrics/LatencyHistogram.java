@@ -0,0 +1,138 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations with a fixed relative precision, whose values
+ * could be recorded from several threads at the same time without allocating
+ * or locking. Every power of two is split into {@link #SUB_BUCKET_COUNT}
+ * linear buckets, so a reported percentile is at most about 3% above the
+ * recorded value, for any value from a nanosecond to days. Percentiles that
+ * fall on values from 2^47 on are reported as the maximum.
+ */
+public class LatencyHistogram {
+	public static final int SUB_BUCKET_COUNT = 32;
+
+	private static final int SUB_BUCKET_BITS = 5;
+
+	// values from 2^47 on, about 39 hours in nanoseconds, share a single
+	// bucket after the last power of two
+	private static final int MAXIMUM_MAGNITUDE = 46;
+
+	private static final int OVERFLOW_BUCKET = SUB_BUCKET_COUNT
+			+ (MAXIMUM_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+	private static final int BUCKET_COUNT = OVERFLOW_BUCKET + 1;
+
+	private AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private AtomicLong totalCount = new AtomicLong();
+	private AtomicLong totalValue = new AtomicLong();
+	private AtomicLong maximumValue = new AtomicLong();
+
+	/**
+	 * Records a single value. Negative values are recorded as 0.
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+
+		this.counts.incrementAndGet(getBucket(value));
+		this.totalCount.incrementAndGet();
+		this.totalValue.addAndGet(value);
+
+		long maximum = this.maximumValue.get();
+		while (value > maximum
+				&& !this.maximumValue.compareAndSet(maximum, value)) {
+			maximum = this.maximumValue.get();
+		}
+	}
+
+	private static int getBucket(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+
+		if (value >>> (MAXIMUM_MAGNITUDE + 1) != 0) {
+			return OVERFLOW_BUCKET;
+		}
+
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+
+		return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * Returns the largest value that is recorded into the bucket.
+	 */
+	private static long getHighestValue(int bucket) {
+		if (bucket < SUB_BUCKET_COUNT) {
+			return bucket;
+		}
+		if (bucket == OVERFLOW_BUCKET) {
+			// reported as the maximum
+			return Long.MAX_VALUE;
+		}
+
+		int shift = (bucket - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+		long subBucket = (bucket - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+
+		return ((SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+	}
+
+	/**
+	 * Returns a value that at least the specified percentage of the recorded
+	 * values do not exceed, or 0 if no values are recorded.
+	 *
+	 * @param percentile
+	 *            - the percentage, from 0 to 100
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long totalCount = this.totalCount.get();
+		if (totalCount == 0) {
+			return 0;
+		}
+
+		long requiredCount = Math.max(1,
+				(long) Math.ceil(percentile / 100 * totalCount));
+		long count = 0;
+		for (int bucket = 0; bucket < BUCKET_COUNT; ++bucket) {
+			count += this.counts.get(bucket);
+			if (count >= requiredCount) {
+				return Math.min(getHighestValue(bucket),
+						this.maximumValue.get());
+			}
+		}
+
+		return this.maximumValue.get();
+	}
+
+	public long getCount() {
+		return this.totalCount.get();
+	}
+
+	public long getMaximum() {
+		return this.maximumValue.get();
+	}
+
+	public double getMean() {
+		long totalCount = this.totalCount.get();
+		return totalCount > 0 ? (double) this.totalValue.get() / totalCount
+				: 0;
+	}
+
+	/**
+	 * Removes all recorded values. Values recorded during the reset may be
+	 * partly kept.
+	 */
+	public void reset() {
+		for (int bucket = 0; bucket < BUCKET_COUNT; ++bucket) {
+			this.counts.set(bucket, 0);
+		}
+		this.totalCount.set(0);
+		this.totalValue.set(0);
+		this.maximumValue.set(0);
+	}
+}
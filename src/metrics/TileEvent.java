@@ -0,0 +1,33 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A flight recorder event for a tile, or a band of rows, computed by a
+ * worker thread of the generator.
+ */
+@Name("mandelbrot.Tile")
+@Label("Tile")
+@Category("Mandelbrot")
+@Description("A tile computed by a worker thread of the generator")
+class TileEvent extends jdk.jfr.Event {
+	@Label("First Pixel X")
+	int firstPixelX;
+
+	@Label("First Pixel Y")
+	int firstPixelY;
+
+	@Label("Width")
+	int width;
+
+	@Label("Height")
+	int height;
+
+	@Label("Computation Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long computationTime;
+}
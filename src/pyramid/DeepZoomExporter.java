@@ -0,0 +1,170 @@
+package pyramid;
+
+import generator.EscapeTimeKernel;
+import generator.EscapeTimeKernels;
+import generator.Viewport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import visualizer.CyclicPaletteMapper;
+import visualizer.ParallelPngEncoder;
+
+/**
+ * Exports a viewport as a Deep Zoom image - a pyramid of PNG tiles that
+ * viewers load level by level as they zoom, described by a .dzi file. Level
+ * n of the pyramid has half the resolution of level n + 1, down to a single
+ * pixel at level 0, and every level is split into square tiles without
+ * overlap, written to name_files/level/column_row.png.
+ *
+ * Only the tiles of the last level are computed. Each tile of a lower level
+ * is downsampled from the four tiles below it as soon as they are done, and
+ * the tiles below are dropped once they are written, so the whole pyramid is
+ * never held in memory. The tiles are processed depth-first by a fork/join
+ * pool, which keeps at most a few tiles per level alive on every thread
+ * whatever the resolution of the viewport. The tiles are coloured with a
+ * {@link CyclicPaletteMapper}, because equalized colours would need the
+ * histogram of the whole image before the first tile is written.
+ */
+public class DeepZoomExporter {
+	public static final int DEFAULT_TILE_SIZE = 256;
+
+	private static final String DESCRIPTOR_NAMESPACE = "http://schemas.microsoft.com/deepzoom/2008";
+
+	private int threads;
+	private int tileSize;
+
+	private CyclicPaletteMapper palette = new CyclicPaletteMapper();
+
+	private AtomicLong writtenTileCount = new AtomicLong();
+	private AtomicLong computedPixelCount = new AtomicLong();
+
+	public DeepZoomExporter(int threads) {
+		this(threads, DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Creates an exporter.
+	 *
+	 * @param threads
+	 *            - the number of threads that compute, downsample and write
+	 *            the tiles
+	 * @param tileSize
+	 *            - the side of the tiles in pixels, an even number
+	 */
+	public DeepZoomExporter(int threads, int tileSize) {
+		// every tile of a lower level is made of the halves of four tiles
+		if (tileSize < 2 || tileSize % 2 != 0) {
+			throw new IllegalArgumentException("Invalid tile size "
+					+ tileSize + ".");
+		}
+
+		this.threads = threads;
+		this.tileSize = tileSize;
+	}
+
+	/**
+	 * Replaces the palette the tiles are coloured with.
+	 */
+	public void setPalette(CyclicPaletteMapper palette) {
+		this.palette = palette;
+	}
+
+	/**
+	 * Exports the viewport as the file name.dzi and the directory name_files
+	 * in the specified directory.
+	 *
+	 * @param viewport
+	 *            - the region and the resolution of the last level
+	 * @param maxIterations
+	 *            - maximum iterations applied to each number
+	 * @param directory
+	 *            - the directory the pyramid is written to, created if needed
+	 * @param name
+	 *            - the name of the descriptor and the tile directory
+	 */
+	public void export(Viewport viewport, int maxIterations, File directory,
+			String name) throws IOException {
+		int lastLevel = getLastLevel(viewport.getWidth(), viewport.getHeight());
+		File tileDirectory = new File(directory, name + "_files");
+
+		// the directories are created up front, so that the tasks do not race
+		// to create them
+		for (int level = 0; level <= lastLevel; ++level) {
+			File levelDirectory = new File(tileDirectory,
+					Integer.toString(level));
+			if (!levelDirectory.isDirectory() && !levelDirectory.mkdirs()) {
+				throw new IOException("Failed to create directory "
+						+ levelDirectory);
+			}
+		}
+
+		this.writtenTileCount.set(0);
+		this.computedPixelCount.set(0);
+
+		EscapeTimeKernel kernel = EscapeTimeKernels.createForViewport(
+				viewport, maxIterations, true, false);
+		ForkJoinPool pool = new ForkJoinPool(this.threads);
+		ParallelPngEncoder encoder = new ParallelPngEncoder(this.threads);
+
+		try {
+			pool.invoke(new PyramidTileTask(new Pyramid(viewport, kernel,
+					this.palette, this.tileSize, lastLevel, tileDirectory,
+					encoder, this.writtenTileCount, this.computedPixelCount),
+					0, 0, 0));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdown();
+			encoder.shutdown();
+		}
+
+		writeDescriptor(new File(directory, name + ".dzi"),
+				viewport.getWidth(), viewport.getHeight());
+	}
+
+	/**
+	 * Returns the level of the pyramid with the full resolution, the first
+	 * one whose both sides are not halved any more.
+	 */
+	/* default */static int getLastLevel(int width, int height) {
+		int side = Math.max(width, height);
+		return side > 1 ? 32 - Integer.numberOfLeadingZeros(side - 1) : 0;
+	}
+
+	private void writeDescriptor(File file, int width, int height)
+			throws IOException {
+		try (Writer writer = Files.newBufferedWriter(file.toPath(),
+				StandardCharsets.UTF_8)) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write(String.format("<Image xmlns=\"%s\" Format=\"png\""
+					+ " Overlap=\"0\" TileSize=\"%d\">\n",
+					DESCRIPTOR_NAMESPACE, this.tileSize));
+			writer.write(String.format(
+					"  <Size Width=\"%d\" Height=\"%d\"/>\n", width, height));
+			writer.write("</Image>\n");
+		}
+	}
+
+	/**
+	 * Returns the number of tiles written by the last export, over all
+	 * levels.
+	 */
+	public long getWrittenTileCount() {
+		return this.writtenTileCount.get();
+	}
+
+	/**
+	 * Returns the number of pixels whose escape iterations were computed by
+	 * the last export - the pixels of the last level only.
+	 */
+	public long getComputedPixelCount() {
+		return this.computedPixelCount.get();
+	}
+}
@@ -0,0 +1,152 @@
+package pyramid;
+
+import generator.EscapeTimeKernel;
+import generator.IterationGrid;
+import generator.Viewport;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import visualizer.CyclicPaletteMapper;
+import visualizer.ParallelPngEncoder;
+import visualizer.PixelRowSource;
+
+/**
+ * The layout of a Deep Zoom pyramid being exported and everything its tile
+ * tasks share - the kernel and the palette the last level is computed with,
+ * and the encoder the tiles of all levels are written with.
+ */
+class Pyramid {
+	private Viewport viewport;
+	private EscapeTimeKernel kernel;
+	private CyclicPaletteMapper palette;
+
+	private int tileSize;
+	private int lastLevel;
+
+	private File tileDirectory;
+	private ParallelPngEncoder encoder;
+
+	private AtomicLong writtenTileCount;
+	private AtomicLong computedPixelCount;
+
+	public Pyramid(Viewport viewport, EscapeTimeKernel kernel,
+			CyclicPaletteMapper palette, int tileSize, int lastLevel,
+			File tileDirectory, ParallelPngEncoder encoder,
+			AtomicLong writtenTileCount, AtomicLong computedPixelCount) {
+		this.viewport = viewport;
+		this.kernel = kernel;
+		this.palette = palette;
+		this.tileSize = tileSize;
+		this.lastLevel = lastLevel;
+		this.tileDirectory = tileDirectory;
+		this.encoder = encoder;
+		this.writtenTileCount = writtenTileCount;
+		this.computedPixelCount = computedPixelCount;
+	}
+
+	public int getTileSize() {
+		return this.tileSize;
+	}
+
+	public int getLastLevel() {
+		return this.lastLevel;
+	}
+
+	/**
+	 * Returns the width of the level, the width of the viewport halved once
+	 * for every level below the last one and rounded up.
+	 */
+	public int getLevelWidth(int level) {
+		return halve(this.viewport.getWidth(), this.lastLevel - level);
+	}
+
+	public int getLevelHeight(int level) {
+		return halve(this.viewport.getHeight(), this.lastLevel - level);
+	}
+
+	private static int halve(int side, int times) {
+		return (int) (((long) side + (1L << times) - 1) >> times);
+	}
+
+	public int getColumnCount(int level) {
+		return (getLevelWidth(level) + this.tileSize - 1) / this.tileSize;
+	}
+
+	public int getRowCount(int level) {
+		return (getLevelHeight(level) + this.tileSize - 1) / this.tileSize;
+	}
+
+	/**
+	 * Computes and colours a tile of the last level.
+	 *
+	 * @param column
+	 *            - the column of the tile
+	 * @param row
+	 *            - the row of the tile
+	 * @param width
+	 *            - the width of the tile, less than the tile size at the
+	 *            right edge
+	 * @param height
+	 *            - the height of the tile, less than the tile size at the
+	 *            bottom edge
+	 * @return the colours of the tile in row-major order
+	 */
+	public int[] renderTile(int column, int row, int width, int height) {
+		Viewport tileViewport = this.viewport.getSubViewport(column
+				* this.tileSize, row * this.tileSize, width, height);
+		IterationGrid grid = new IterationGrid(tileViewport,
+				this.kernel.getMaxIterations(), true);
+
+		for (int pixelY = 0; pixelY < height; ++pixelY) {
+			this.kernel.computeRow(tileViewport, pixelY, 0, width,
+					grid.getIterations(), grid.getSmoothIterations(), pixelY
+							* width);
+		}
+		this.computedPixelCount.addAndGet(width * height);
+
+		PixelRowSource source = this.palette.createRowSource(grid);
+		int[] colors = new int[width * height];
+		int[] rgb = new int[width];
+		for (int pixelY = 0; pixelY < height; ++pixelY) {
+			source.readRow(pixelY, rgb);
+			System.arraycopy(rgb, 0, colors, pixelY * width, width);
+		}
+
+		return colors;
+	}
+
+	/**
+	 * Writes the colours of a tile to level/column_row.png.
+	 */
+	public void writeTile(int level, int column, int row, final int[] colors,
+			final int width, final int height) throws IOException {
+		File file = new File(new File(this.tileDirectory,
+				Integer.toString(level)), column + "_" + row + ".png");
+
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			this.encoder.encode(new PixelRowSource() {
+				@Override
+				public int getWidth() {
+					return width;
+				}
+
+				@Override
+				public int getHeight() {
+					return height;
+				}
+
+				@Override
+				public void readRow(int pixelY, int[] rgb) {
+					System.arraycopy(colors, pixelY * width, rgb, 0, width);
+				}
+			}, channel);
+		}
+		this.writtenTileCount.incrementAndGet();
+	}
+}
@@ -0,0 +1,131 @@
+package pyramid;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Writes a tile of a {@link Pyramid} and all the tiles below it, and returns
+ * the colours of the tile. A tile of the last level is computed, and a tile
+ * of a lower level is downsampled from the up to four tiles that cover it on
+ * the next level, which are forked so that idle workers could steal them.
+ * The colours of the tiles below are dropped as soon as the tile is
+ * downsampled, so a worker holds at most the tiles on its path from the root.
+ *
+ * An exception thrown while writing a tile is rethrown unchecked.
+ */
+class PyramidTileTask extends RecursiveTask<int[]> {
+	private static final long serialVersionUID = 1L;
+
+	private Pyramid pyramid;
+
+	private int level;
+	private int column;
+	private int row;
+
+	public PyramidTileTask(Pyramid pyramid, int level, int column, int row) {
+		this.pyramid = pyramid;
+		this.level = level;
+		this.column = column;
+		this.row = row;
+	}
+
+	@Override
+	protected int[] compute() {
+		int tileSize = this.pyramid.getTileSize();
+		int width = Math.min(tileSize, this.pyramid.getLevelWidth(this.level)
+				- this.column * tileSize);
+		int height = Math.min(tileSize,
+				this.pyramid.getLevelHeight(this.level) - this.row * tileSize);
+
+		int[] colors;
+		if (this.level == this.pyramid.getLastLevel()) {
+			colors = this.pyramid.renderTile(this.column, this.row, width,
+					height);
+		} else {
+			colors = downsample(width, height);
+		}
+
+		try {
+			this.pyramid.writeTile(this.level, this.column, this.row, colors,
+					width, height);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return colors;
+	}
+
+	/**
+	 * Computes the tiles below this one and averages every 2x2 block of their
+	 * pixels into a pixel of this tile. The blocks at the right and the
+	 * bottom edges of the next level could lack a column or a row.
+	 */
+	private int[] downsample(int width, int height) {
+		int nextLevel = this.level + 1;
+		int half = this.pyramid.getTileSize() / 2;
+		int nextLevelWidth = this.pyramid.getLevelWidth(nextLevel);
+		int nextLevelHeight = this.pyramid.getLevelHeight(nextLevel);
+
+		List<PyramidTileTask> children = new ArrayList<PyramidTileTask>(4);
+		for (int childRow = 2 * this.row; childRow < Math.min(2 * this.row + 2,
+				this.pyramid.getRowCount(nextLevel)); ++childRow) {
+			for (int childColumn = 2 * this.column; childColumn < Math.min(
+					2 * this.column + 2,
+					this.pyramid.getColumnCount(nextLevel)); ++childColumn) {
+				children.add(new PyramidTileTask(this.pyramid, nextLevel,
+						childColumn, childRow));
+			}
+		}
+		invokeAll(children);
+
+		int[] colors = new int[width * height];
+		for (PyramidTileTask child : children) {
+			int[] childColors = child.join();
+			int childWidth = Math.min(2 * half, nextLevelWidth - child.column
+					* 2 * half);
+			int childHeight = Math.min(2 * half, nextLevelHeight - child.row
+					* 2 * half);
+			int fromX = (child.column - 2 * this.column) * half;
+			int fromY = (child.row - 2 * this.row) * half;
+
+			for (int blockY = 0; 2 * blockY < childHeight; ++blockY) {
+				int top = 2 * blockY * childWidth;
+				int bottom = 2 * blockY + 1 < childHeight ? top + childWidth
+						: top;
+
+				for (int blockX = 0; 2 * blockX < childWidth; ++blockX) {
+					int left = 2 * blockX;
+					int right = left + 1 < childWidth ? left + 1 : left;
+
+					colors[(fromY + blockY) * width + fromX + blockX] = average(
+							childColors[top + left], childColors[top + right],
+							childColors[bottom + left],
+							childColors[bottom + right]);
+				}
+			}
+		}
+
+		return colors;
+	}
+
+	/**
+	 * Returns the average of four 0xAARRGGBB colours, rounded to nearest. A
+	 * missing column or row of a block repeats the existing one, which gives
+	 * it the same weight.
+	 */
+	private static int average(int topLeft, int topRight, int bottomLeft,
+			int bottomRight) {
+		int red = ((topLeft >> 16) & 0xff) + ((topRight >> 16) & 0xff)
+				+ ((bottomLeft >> 16) & 0xff) + ((bottomRight >> 16) & 0xff);
+		int green = ((topLeft >> 8) & 0xff) + ((topRight >> 8) & 0xff)
+				+ ((bottomLeft >> 8) & 0xff) + ((bottomRight >> 8) & 0xff);
+		int blue = (topLeft & 0xff) + (topRight & 0xff) + (bottomLeft & 0xff)
+				+ (bottomRight & 0xff);
+
+		return 0xff000000 | (red + 2) / 4 << 16 | (green + 2) / 4 << 8
+				| (blue + 2) / 4;
+	}
+}
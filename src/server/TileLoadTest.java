@@ -0,0 +1,236 @@
+package server;
+
+import engine.RenderEngine;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import metrics.LatencyHistogram;
+
+/**
+ * Loads a {@link TileServer} on localhost with concurrent clients that
+ * request tiles of a single zoom level as fast as they are answered. The
+ * clients pick their tiles at random from a set of hot tiles, so that
+ * several of them request the same tile at the same time, as the viewers of
+ * a popular region would. The latencies of the served tiles and the numbers
+ * of shed and failed requests are recorded.
+ */
+public class TileLoadTest {
+	public static final int DEFAULT_CLIENTS = 16;
+	public static final int DEFAULT_REQUESTS_PER_CLIENT = 50;
+	public static final int DEFAULT_ZOOM = 4;
+	public static final int DEFAULT_HOT_TILE_COUNT = 32;
+
+	private int port;
+	private int clients = DEFAULT_CLIENTS;
+	private int requestsPerClient = DEFAULT_REQUESTS_PER_CLIENT;
+	private int zoom = DEFAULT_ZOOM;
+	private int hotTileCount = DEFAULT_HOT_TILE_COUNT;
+
+	private LatencyHistogram latencies = new LatencyHistogram();
+	private AtomicLong servedCount = new AtomicLong();
+	private AtomicLong shedCount = new AtomicLong();
+	private AtomicLong failedCount = new AtomicLong();
+	private long elapsedNanos;
+
+	/**
+	 * Creates a load test of the server on the specified port of localhost.
+	 */
+	public TileLoadTest(int port) {
+		this.port = port;
+	}
+
+	public void setClients(int clients) {
+		this.clients = clients;
+	}
+
+	public void setRequestsPerClient(int requestsPerClient) {
+		this.requestsPerClient = requestsPerClient;
+	}
+
+	/**
+	 * Sets the zoom level of the requested tiles.
+	 */
+	public void setZoom(int zoom) {
+		this.zoom = zoom;
+	}
+
+	/**
+	 * Sets the number of distinct tiles the clients request.
+	 */
+	public void setHotTileCount(int hotTileCount) {
+		this.hotTileCount = hotTileCount;
+	}
+
+	/**
+	 * Runs the clients until each of them has sent its requests and received
+	 * the responses, and records the results of this run.
+	 */
+	public void run() throws InterruptedException {
+		final HttpClient client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1).build();
+		final URI[] hotTiles = new URI[this.hotTileCount];
+		SplittableRandom random = new SplittableRandom(this.zoom);
+		long tilesPerSide = 1L << this.zoom;
+		for (int tile = 0; tile < hotTiles.length; ++tile) {
+			hotTiles[tile] = URI.create(String.format(
+					"http://localhost:%d/%d/%d/%d.png", this.port, this.zoom,
+					random.nextLong(tilesPerSide),
+					random.nextLong(tilesPerSide)));
+		}
+
+		this.latencies.reset();
+		this.servedCount.set(0);
+		this.shedCount.set(0);
+		this.failedCount.set(0);
+
+		List<Thread> threads = new ArrayList<Thread>();
+		long startNanos = System.nanoTime();
+
+		for (int clientIndex = 0; clientIndex < this.clients; ++clientIndex) {
+			final SplittableRandom clientRandom = random.split();
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					runClient(client, hotTiles, clientRandom);
+				}
+			}, "TileLoadTest-client-" + clientIndex);
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		this.elapsedNanos = System.nanoTime() - startNanos;
+	}
+
+	private void runClient(HttpClient client, URI[] hotTiles,
+			SplittableRandom random) {
+		for (int request = 0; request < this.requestsPerClient; ++request) {
+			URI tile = hotTiles[random.nextInt(hotTiles.length)];
+			long startNanos = System.nanoTime();
+
+			try {
+				HttpResponse<byte[]> response = client.send(HttpRequest
+						.newBuilder(tile).build(),
+						HttpResponse.BodyHandlers.ofByteArray());
+
+				if (response.statusCode() == 200) {
+					this.latencies.record(System.nanoTime() - startNanos);
+					this.servedCount.incrementAndGet();
+				} else if (response.statusCode() == 503) {
+					this.shedCount.incrementAndGet();
+				} else {
+					this.failedCount.incrementAndGet();
+				}
+			} catch (IOException e) {
+				this.failedCount.incrementAndGet();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the latencies of the requests of the last run that were served
+	 * a tile, in nanoseconds.
+	 */
+	public LatencyHistogram getLatencies() {
+		return this.latencies;
+	}
+
+	public long getServedCount() {
+		return this.servedCount.get();
+	}
+
+	/**
+	 * Returns the number of requests of the last run refused with 503.
+	 */
+	public long getShedCount() {
+		return this.shedCount.get();
+	}
+
+	/**
+	 * Returns the number of requests of the last run that failed otherwise.
+	 */
+	public long getFailedCount() {
+		return this.failedCount.get();
+	}
+
+	/**
+	 * Returns the tiles served per second in the last run.
+	 */
+	public double getTilesPerSecond() {
+		return this.servedCount.get() * 1e9 / this.elapsedNanos;
+	}
+
+	/**
+	 * Runs a load test with the arguments: the port of the server, and
+	 * optionally the number of clients, the requests per client and the zoom
+	 * level. A port of 0 starts a server on any free port for the duration of
+	 * the test, rendering on all processors.
+	 */
+	public static void main(String[] args) throws IOException,
+			InterruptedException {
+		if (args.length < 1) {
+			System.err.println("Usage: TileLoadTest port"
+					+ " [clients [requests per client [zoom]]]");
+			System.exit(1);
+		}
+
+		int port = Integer.parseInt(args[0]);
+		RenderEngine engine = null;
+		TileServer server = null;
+		if (port == 0) {
+			engine = new RenderEngine(Runtime.getRuntime()
+					.availableProcessors());
+			server = new TileServer(engine, 0);
+			port = server.getPort();
+		}
+
+		TileLoadTest test = new TileLoadTest(port);
+		if (args.length > 1) {
+			test.setClients(Integer.parseInt(args[1]));
+		}
+		if (args.length > 2) {
+			test.setRequestsPerClient(Integer.parseInt(args[2]));
+		}
+		if (args.length > 3) {
+			test.setZoom(Integer.parseInt(args[3]));
+		}
+
+		try {
+			test.run();
+		} finally {
+			if (server != null) {
+				server.close();
+				engine.shutdown();
+			}
+		}
+
+		LatencyHistogram latencies = test.getLatencies();
+		System.out.printf("served %d, shed %d, failed %d, %.1f tiles/s%n",
+				test.getServedCount(), test.getShedCount(),
+				test.getFailedCount(), test.getTilesPerSecond());
+		System.out.printf("latency ms: p50 %.1f, p90 %.1f, p99 %.1f, max %.1f%n",
+				latencies.getValueAtPercentile(50) / 1e6,
+				latencies.getValueAtPercentile(90) / 1e6,
+				latencies.getValueAtPercentile(99) / 1e6,
+				latencies.getMaximum() / 1e6);
+		if (server != null) {
+			System.out.printf("rendered %d, coalesced %d%n",
+					server.getRenderedTileCount(),
+					server.getCoalescedRequestCount());
+		}
+	}
+}
@@ -0,0 +1,489 @@
+package server;
+
+import cache.TileCache;
+import cache.TileKey;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import engine.RenderEngine;
+import engine.RenderJob;
+import generator.EscapeTimeKernel;
+import generator.EscapeTimeKernels;
+import generator.IterationGrid;
+import generator.Viewport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import visualizer.CyclicPaletteMapper;
+import visualizer.ParallelPngEncoder;
+
+/**
+ * Serves the tiles of the tile pyramid described in
+ * {@link Viewport#forTile(long, long, int, int)} over HTTP as
+ * /zoom/column/row.png, rendered on a {@link RenderEngine} and coloured with
+ * a {@link CyclicPaletteMapper}, so that neighbouring tiles are coloured
+ * consistently.
+ *
+ * Requests for a tile that is already being rendered wait for that render
+ * instead of starting another one. At most the queue capacity of distinct
+ * tiles are rendered or waiting for the engine at a time, and a request that
+ * would start one more is refused with 503 Service Unavailable and a
+ * Retry-After header, so that a burst of requests is shed instead of
+ * delaying every tile. The requests are never blocked on a render - the
+ * response is sent when the render completes.
+ *
+ * A tile depends on the maximum iterations and the palette, which could be
+ * changed while the server runs, so the tiles are sent with an ETag of
+ * everything they are rendered with and must be revalidated by the clients.
+ * A request whose If-None-Match has the current ETag of the tile is answered
+ * with 304 Not Modified without rendering or encoding it.
+ */
+public class TileServer implements Closeable {
+	public static final int DEFAULT_TILE_SIZE = 256;
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+	public static final int DEFAULT_MAX_ITERATIONS = 1000;
+
+	// the tile numbers of deeper levels would not fit a long
+	public static final int MAXIMUM_ZOOM = 62;
+
+	private static final long DEFAULT_RENDER_TIMEOUT_NANOS = TimeUnit.SECONDS
+			.toNanos(60);
+
+	private static final String RETRY_AFTER_SECONDS = "1";
+
+	private static final Pattern TILE_PATH = Pattern
+			.compile("/(\\d{1,2})/(\\d{1,19})/(\\d{1,19})\\.png");
+
+	private static final Logger LOGGER = Logger.getLogger("TileServer");
+
+	private HttpServer server;
+	private ExecutorService requestExecutor;
+	private ParallelPngEncoder encoder;
+
+	private RenderEngine engine;
+	private int tileSize;
+
+	// read by the request threads, which take a snapshot of them per request
+	private volatile int maxIterations = DEFAULT_MAX_ITERATIONS;
+	private long renderTimeoutNanos = DEFAULT_RENDER_TIMEOUT_NANOS;
+	private volatile CyclicPaletteMapper palette = new CyclicPaletteMapper();
+	private TileCache tileCache;
+
+	// the tiles being rendered, shared by all requests for them
+	private ConcurrentHashMap<TileKey, CompletableFuture<EncodedTile>> inFlightTiles = new ConcurrentHashMap<TileKey, CompletableFuture<EncodedTile>>();
+	private Semaphore renderPermits;
+
+	private AtomicLong servedTileCount = new AtomicLong();
+	private AtomicLong renderedTileCount = new AtomicLong();
+	private AtomicLong coalescedRequestCount = new AtomicLong();
+	private AtomicLong shedRequestCount = new AtomicLong();
+	private AtomicLong notModifiedCount = new AtomicLong();
+
+	public TileServer(RenderEngine engine, int port) throws IOException {
+		this(engine, port, DEFAULT_TILE_SIZE, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * Creates a server and starts accepting requests.
+	 *
+	 * @param engine
+	 *            - the engine the tiles are rendered on, which is not shut
+	 *            down with the server
+	 * @param port
+	 *            - the port to listen on, or 0 for any free port
+	 * @param tileSize
+	 *            - the number of pixels along each side of the tiles
+	 * @param queueCapacity
+	 *            - the maximum number of distinct tiles rendered or waiting
+	 *            to be rendered at a time
+	 */
+	public TileServer(RenderEngine engine, int port, int tileSize,
+			int queueCapacity) throws IOException {
+		this.engine = engine;
+		this.tileSize = tileSize;
+		this.renderPermits = new Semaphore(queueCapacity);
+
+		// the tiles fit a single band, which the encoder compresses on the
+		// calling thread
+		this.encoder = new ParallelPngEncoder(1);
+		this.requestExecutor = Executors.newFixedThreadPool(Runtime
+				.getRuntime().availableProcessors());
+
+		this.server = HttpServer.create(new InetSocketAddress(port), 0);
+		this.server.setExecutor(this.requestExecutor);
+		this.server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				handleRequest(exchange);
+			}
+		});
+		this.server.start();
+	}
+
+	/**
+	 * Sets the maximum iterations the tiles rendered from now on are computed
+	 * with.
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Sets the time after which a render is abandoned and its requests are
+	 * answered with 504 Gateway Timeout.
+	 */
+	public void setRenderTimeout(long timeout, TimeUnit unit) {
+		this.renderTimeoutNanos = unit.toNanos(timeout);
+	}
+
+	/**
+	 * Sets the palette the tiles sent from now on are coloured with.
+	 */
+	public void setPalette(CyclicPaletteMapper palette) {
+		this.palette = palette;
+	}
+
+	/**
+	 * Sets the cache the tiles are looked up in before they are rendered, and
+	 * put into after, or null to always render the tiles.
+	 */
+	public void setTileCache(TileCache tileCache) {
+		this.tileCache = tileCache;
+	}
+
+	/**
+	 * Returns the port the server accepts requests on.
+	 */
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	}
+
+	private void handleRequest(final HttpExchange exchange) throws IOException {
+		if (!"GET".equals(exchange.getRequestMethod())) {
+			sendError(exchange, 405);
+			return;
+		}
+
+		Matcher matcher = TILE_PATH.matcher(exchange.getRequestURI()
+				.getPath());
+		if (!matcher.matches()) {
+			sendError(exchange, 404);
+			return;
+		}
+
+		int zoom = Integer.parseInt(matcher.group(1));
+		long tileX;
+		long tileY;
+		try {
+			tileX = Long.parseLong(matcher.group(2));
+			tileY = Long.parseLong(matcher.group(3));
+		} catch (NumberFormatException e) {
+			sendError(exchange, 404);
+			return;
+		}
+
+		if (zoom > MAXIMUM_ZOOM || tileX >= 1L << zoom || tileY >= 1L << zoom) {
+			sendError(exchange, 404);
+			return;
+		}
+
+		int maxIterations = this.maxIterations;
+		CyclicPaletteMapper palette = this.palette;
+		Viewport viewport = Viewport.forTile(tileX, tileY, zoom,
+				this.tileSize);
+		EscapeTimeKernel kernel = EscapeTimeKernels.createForViewport(
+				viewport, maxIterations, true, false);
+		TileKey key = new TileKey(tileX, tileY, zoom, this.tileSize,
+				maxIterations, kernel.getName(), true, false, true, false);
+		String eTag = getETag(key, palette);
+
+		if (matchesETag(exchange.getRequestHeaders().getFirst(
+				"If-None-Match"), eTag)) {
+			setValidators(exchange, eTag);
+			this.notModifiedCount.incrementAndGet();
+			sendError(exchange, 304);
+			return;
+		}
+
+		IterationGrid cachedGrid = this.tileCache != null ? this.tileCache
+				.get(key) : null;
+		if (cachedGrid != null) {
+			sendTile(exchange, encode(cachedGrid, palette, eTag));
+			return;
+		}
+
+		CompletableFuture<EncodedTile> tile = getTile(key, viewport, kernel,
+				palette);
+		if (tile == null) {
+			this.shedRequestCount.incrementAndGet();
+			exchange.getResponseHeaders().set("Retry-After",
+					RETRY_AFTER_SECONDS);
+			sendError(exchange, 503);
+			return;
+		}
+
+		tile.whenCompleteAsync(new BiConsumer<EncodedTile, Throwable>() {
+			@Override
+			public void accept(EncodedTile encodedTile, Throwable failure) {
+				try {
+					if (failure == null) {
+						sendTile(exchange, encodedTile);
+					} else {
+						sendError(exchange, getStatus(failure));
+					}
+				} catch (IOException e) {
+					LOGGER.log(Level.FINE, "Failed to send a tile.", e);
+					exchange.close();
+				}
+			}
+		}, this.requestExecutor);
+	}
+
+	/**
+	 * Returns the render of the tile that is already in flight, or starts
+	 * one coloured with the specified palette, or returns null if the queue
+	 * is full. A render in flight is shared even if the palette was changed
+	 * since it started, and its tile carries the ETag of its own palette.
+	 */
+	private CompletableFuture<EncodedTile> getTile(TileKey key,
+			Viewport viewport, EscapeTimeKernel kernel,
+			CyclicPaletteMapper palette) {
+		CompletableFuture<EncodedTile> tile = this.inFlightTiles.get(key);
+		if (tile != null) {
+			this.coalescedRequestCount.incrementAndGet();
+			return tile;
+		}
+
+		if (!this.renderPermits.tryAcquire()) {
+			return null;
+		}
+
+		CompletableFuture<EncodedTile> newTile = new CompletableFuture<EncodedTile>();
+		tile = this.inFlightTiles.putIfAbsent(key, newTile);
+		if (tile != null) {
+			// another request started the same tile in the meantime
+			this.renderPermits.release();
+			this.coalescedRequestCount.incrementAndGet();
+			return tile;
+		}
+
+		render(key, viewport, kernel, palette, newTile);
+		return newTile;
+	}
+
+	private void render(final TileKey key, Viewport viewport,
+			EscapeTimeKernel kernel, final CyclicPaletteMapper palette,
+			final CompletableFuture<EncodedTile> tile) {
+		final TileCache tileCache = this.tileCache;
+		RenderJob job;
+		try {
+			job = this.engine.submit(viewport, kernel, true,
+					this.renderTimeoutNanos, TimeUnit.NANOSECONDS);
+		} catch (IllegalStateException e) {
+			this.inFlightTiles.remove(key, tile);
+			this.renderPermits.release();
+			tile.completeExceptionally(new CancellationException(
+					e.getMessage()));
+			return;
+		}
+
+		// the tile is encoded on the request threads, so that the workers of
+		// the engine only compute
+		job.whenCompleteAsync(new BiConsumer<IterationGrid, Throwable>() {
+			@Override
+			public void accept(IterationGrid grid, Throwable failure) {
+				try {
+					if (failure != null) {
+						tile.completeExceptionally(failure);
+						return;
+					}
+
+					if (tileCache != null) {
+						tileCache.put(key, grid);
+					}
+					tile.complete(encode(grid, palette, getETag(key, palette)));
+					TileServer.this.renderedTileCount.incrementAndGet();
+				} catch (IOException | RuntimeException e) {
+					tile.completeExceptionally(e);
+				} finally {
+					// requests that come after the tile is completed render
+					// it again or find it in the cache
+					TileServer.this.inFlightTiles.remove(key, tile);
+					TileServer.this.renderPermits.release();
+				}
+			}
+		}, this.requestExecutor);
+	}
+
+	private EncodedTile encode(IterationGrid grid,
+			CyclicPaletteMapper palette, String eTag) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		this.encoder.encode(palette.createRowSource(grid),
+				Channels.newChannel(output));
+		return new EncodedTile(output.toByteArray(), eTag);
+	}
+
+	/**
+	 * Returns the entity tag of the tile of the specified key coloured with
+	 * the specified palette. The tag is derived from the parameters of the
+	 * render and the contents of the palette only, so it is the same in
+	 * every process that would send the same image.
+	 */
+	private static String getETag(TileKey key, CyclicPaletteMapper palette) {
+		String fileName = key.getFileName();
+		return "\"" + fileName.substring(0, fileName.lastIndexOf('.')) + "_"
+				+ palette.getSignature() + "\"";
+	}
+
+	/**
+	 * Returns whether an If-None-Match header lists the specified entity tag
+	 * or is a wildcard.
+	 */
+	private static boolean matchesETag(String ifNoneMatch, String eTag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+
+		for (String tag : ifNoneMatch.split(",")) {
+			tag = tag.trim();
+			// a weak tag matches too, since the comparison is weak
+			if (tag.startsWith("W/")) {
+				tag = tag.substring(2);
+			}
+			if (tag.equals(eTag) || tag.equals("*")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int getStatus(Throwable failure) {
+		if (failure instanceof CompletionException && failure.getCause() != null) {
+			failure = failure.getCause();
+		}
+
+		if (failure instanceof TimeoutException) {
+			return 504;
+		}
+		if (failure instanceof CancellationException) {
+			return 503;
+		}
+
+		LOGGER.log(Level.WARNING, "Failed to render a tile.", failure);
+		return 500;
+	}
+
+	private void sendTile(HttpExchange exchange, EncodedTile tile)
+			throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "image/png");
+		setValidators(exchange, tile.eTag);
+		exchange.sendResponseHeaders(200, tile.png.length);
+		try (OutputStream body = exchange.getResponseBody()) {
+			body.write(tile.png);
+		}
+
+		this.servedTileCount.incrementAndGet();
+	}
+
+	private static void setValidators(HttpExchange exchange, String eTag) {
+		// the tile changes with the maximum iterations and the palette, so
+		// it is revalidated before every use
+		exchange.getResponseHeaders().set("ETag", eTag);
+		exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+	}
+
+	private static void sendError(HttpExchange exchange, int status)
+			throws IOException {
+		exchange.sendResponseHeaders(status, -1);
+		exchange.close();
+	}
+
+	/**
+	 * Returns the number of requests answered with a tile.
+	 */
+	public long getServedTileCount() {
+		return this.servedTileCount.get();
+	}
+
+	public long getRenderedTileCount() {
+		return this.renderedTileCount.get();
+	}
+
+	/**
+	 * Returns the number of requests that waited for a render started by
+	 * another request.
+	 */
+	public long getCoalescedRequestCount() {
+		return this.coalescedRequestCount.get();
+	}
+
+	/**
+	 * Returns the number of requests refused because the queue was full.
+	 */
+	public long getShedRequestCount() {
+		return this.shedRequestCount.get();
+	}
+
+	/**
+	 * Returns the number of requests answered with 304 Not Modified.
+	 */
+	public long getNotModifiedCount() {
+		return this.notModifiedCount.get();
+	}
+
+	/**
+	 * Returns the number of distinct tiles rendered or waiting to be rendered.
+	 */
+	public int getInFlightTileCount() {
+		return this.inFlightTiles.size();
+	}
+
+	/**
+	 * Stops accepting requests and closes the open exchanges. The engine is
+	 * left running.
+	 */
+	@Override
+	public void close() {
+		this.server.stop(0);
+		this.requestExecutor.shutdown();
+		this.encoder.shutdown();
+	}
+
+	/**
+	 * A tile encoded as a PNG, with the entity tag of the parameters and the
+	 * palette it was rendered with.
+	 */
+	private static class EncodedTile {
+		private byte[] png;
+		private String eTag;
+
+		private EncodedTile(byte[] png, String eTag) {
+			this.png = png;
+			this.eTag = eTag;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package storage;
+
+/**
+ * The layout of an iteration map file, written by {@link IterationMapWriter}
+ * and read by {@link IterationMapReader}. All numbers are big-endian.
+ *
+ * The file starts with a header - the signature, the format version, the
+ * offset of the chunk index, the maximum iterations, the flags, the chunk
+ * size, the number of chunks along each axis, the length and the ASCII
+ * characters of the kernel name, and the viewport as written by
+ * {@link generator.Viewport#writeTo(java.nio.ByteBuffer)}.
+ *
+ * The chunk index follows at its offset, with an entry of the file offset
+ * (a long) and the length (an int) of every chunk, in row-major order. An
+ * offset of 0 marks a chunk that was not written. The chunks follow the
+ * index in the order they were written. A chunk consists of its escape
+ * iterations followed by its continuous escape values, if the map has them,
+ * all in row-major order, and is deflated as a whole if the map is
+ * compressed.
+ */
+final class IterationMapFormat {
+	static final int SIGNATURE = 0x4d49544d;
+	static final int VERSION = 1;
+
+	static final byte FLAG_SMOOTH = 1;
+	static final byte FLAG_COMPRESSED = 2;
+
+	static final int INDEX_ENTRY_BYTES = 12;
+
+	// enough for the header of any practical viewport
+	static final int MAXIMUM_HEADER_BYTES = 64 * 1024;
+
+	private IterationMapFormat() {
+	}
+}
@@ -0,0 +1,308 @@
+package storage;
+
+import generator.IterationGrid;
+import generator.Viewport;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads an iteration map file written by {@link IterationMapWriter}. Only
+ * the header and the chunk index are read when the file is opened - the
+ * chunks are mapped into memory when they are read, so any part of a map
+ * that is much larger than the memory could be read without reading the
+ * rest of it. The reader could be used from several threads at the same
+ * time.
+ */
+public class IterationMapReader implements Closeable {
+	private File file;
+	private FileChannel channel;
+	private MappedByteBuffer index;
+
+	private Viewport viewport;
+	private int maxIterations;
+	private String kernelName;
+	private boolean smooth;
+	private boolean compressed;
+
+	private int chunkSize;
+	private int chunksAlongX;
+	private int chunksAlongY;
+
+	/**
+	 * Opens an iteration map file and reads its header.
+	 *
+	 * @param file
+	 *            - the file to be read
+	 * @throws IOException
+	 *             if the file could not be read or is not an iteration map
+	 */
+	public IterationMapReader(File file) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		try {
+			readHeader();
+		} catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	private void readHeader() throws IOException {
+		long fileSize = this.channel.size();
+		ByteBuffer header = this.channel.map(FileChannel.MapMode.READ_ONLY, 0,
+				Math.min(fileSize, IterationMapFormat.MAXIMUM_HEADER_BYTES));
+
+		int indexOffset;
+		try {
+			if (header.getInt() != IterationMapFormat.SIGNATURE) {
+				throw new IOException(this.file + " is not an iteration map.");
+			}
+			int version = header.getInt();
+			if (version != IterationMapFormat.VERSION) {
+				throw new IOException("Unsupported iteration map version "
+						+ version + ".");
+			}
+
+			indexOffset = header.getInt();
+			this.maxIterations = header.getInt();
+			byte flags = header.get();
+			this.smooth = (flags & IterationMapFormat.FLAG_SMOOTH) != 0;
+			this.compressed = (flags & IterationMapFormat.FLAG_COMPRESSED) != 0;
+			this.chunkSize = header.getInt();
+			this.chunksAlongX = header.getInt();
+			this.chunksAlongY = header.getInt();
+
+			byte[] name = new byte[header.getInt()];
+			header.get(name);
+			this.kernelName = new String(name, StandardCharsets.US_ASCII);
+		} catch (BufferUnderflowException | NegativeArraySizeException e) {
+			throw new IOException("Malformed iteration map header.", e);
+		}
+		this.viewport = Viewport.readFrom(header);
+
+		long indexBytes = (long) IterationMapFormat.INDEX_ENTRY_BYTES
+				* this.chunksAlongX * this.chunksAlongY;
+		if (this.chunkSize <= 0 || indexOffset < header.position()
+				|| indexOffset + indexBytes > fileSize) {
+			throw new IOException("Malformed iteration map header.");
+		}
+
+		this.index = this.channel.map(FileChannel.MapMode.READ_ONLY,
+				indexOffset, indexBytes);
+	}
+
+	public Viewport getViewport() {
+		return this.viewport;
+	}
+
+	public int getMaxIterations() {
+		return this.maxIterations;
+	}
+
+	public String getKernelName() {
+		return this.kernelName;
+	}
+
+	public boolean isSmooth() {
+		return this.smooth;
+	}
+
+	public boolean isCompressed() {
+		return this.compressed;
+	}
+
+	public int getChunkSize() {
+		return this.chunkSize;
+	}
+
+	public int getChunksAlongX() {
+		return this.chunksAlongX;
+	}
+
+	public int getChunksAlongY() {
+		return this.chunksAlongY;
+	}
+
+	/**
+	 * Returns whether the specified chunk was written to the map.
+	 */
+	public boolean hasChunk(int chunkX, int chunkY) {
+		return getChunkOffset(chunkX, chunkY) != 0;
+	}
+
+	private long getChunkOffset(int chunkX, int chunkY) {
+		if (chunkX < 0 || chunkX >= this.chunksAlongX || chunkY < 0
+				|| chunkY >= this.chunksAlongY) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Chunk (%d, %d) is outside of the map.", chunkX, chunkY));
+		}
+
+		return this.index.getLong((chunkY * this.chunksAlongX + chunkX)
+				* IterationMapFormat.INDEX_ENTRY_BYTES);
+	}
+
+	/**
+	 * Reads a single chunk of the map. The viewport of the returned grid is
+	 * the part of the viewport of the map that the chunk covers.
+	 *
+	 * @throws IOException
+	 *             if the chunk was not written or could not be read
+	 */
+	public IterationGrid readChunk(int chunkX, int chunkY) throws IOException {
+		long offset = getChunkOffset(chunkX, chunkY);
+		if (offset == 0) {
+			throw new IOException(String.format(
+					"Chunk (%d, %d) was not written to %s.", chunkX, chunkY,
+					this.file));
+		}
+		int length = this.index.getInt((chunkY * this.chunksAlongX + chunkX)
+				* IterationMapFormat.INDEX_ENTRY_BYTES + 8);
+
+		int pixelX = chunkX * this.chunkSize;
+		int pixelY = chunkY * this.chunkSize;
+		Viewport chunkViewport = this.viewport.getSubViewport(pixelX, pixelY,
+				Math.min(this.chunkSize, this.viewport.getWidth() - pixelX),
+				Math.min(this.chunkSize, this.viewport.getHeight() - pixelY));
+		IterationGrid chunk = new IterationGrid(chunkViewport,
+				this.maxIterations, this.smooth);
+		int pixelCount = chunkViewport.getPixelCount();
+
+		ByteBuffer bytes = this.channel.map(FileChannel.MapMode.READ_ONLY,
+				offset, length);
+		if (this.compressed) {
+			bytes = ByteBuffer.wrap(inflate(bytes, pixelCount
+					* (this.smooth ? 8 : 4)));
+		}
+
+		try {
+			bytes.asIntBuffer().get(chunk.getIterations());
+			if (this.smooth) {
+				bytes.position(4 * pixelCount);
+				bytes.asFloatBuffer().get(chunk.getSmoothIterations());
+			}
+		} catch (BufferUnderflowException e) {
+			throw new IOException(String.format(
+					"Chunk (%d, %d) of %s is truncated.", chunkX, chunkY,
+					this.file), e);
+		}
+
+		return chunk;
+	}
+
+	private static byte[] inflate(ByteBuffer input, int length)
+			throws IOException {
+		Inflater inflater = new Inflater();
+		byte[] output = new byte[length];
+
+		try {
+			inflater.setInput(input);
+			int inflated = 0;
+			while (inflated < length && !inflater.finished()) {
+				int count = inflater.inflate(output, inflated, length
+						- inflated);
+				if (count == 0 && inflater.needsInput()) {
+					break;
+				}
+				inflated += count;
+			}
+
+			if (inflated != length) {
+				throw new IOException("Truncated iteration map chunk.");
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Malformed iteration map chunk.", e);
+		} finally {
+			inflater.end();
+		}
+
+		return output;
+	}
+
+	/**
+	 * Reads a rectangular region of the map, reading only the chunks that
+	 * overlap it.
+	 *
+	 * @param pixelX
+	 *            - the first pixel of the region along the real axis
+	 * @param pixelY
+	 *            - the first pixel of the region along the imaginary axis
+	 * @param width
+	 *            - the width of the region in pixels
+	 * @param height
+	 *            - the height of the region in pixels
+	 * @throws IOException
+	 *             if a chunk of the region was not written or could not be
+	 *             read
+	 */
+	public IterationGrid readRegion(int pixelX, int pixelY, int width,
+			int height) throws IOException {
+		if (pixelX < 0 || pixelY < 0 || width <= 0 || height <= 0
+				|| pixelX + width > this.viewport.getWidth()
+				|| pixelY + height > this.viewport.getHeight()) {
+			throw new IndexOutOfBoundsException(String.format(
+					"Region %dx%d at (%d, %d) is outside of the map.", width,
+					height, pixelX, pixelY));
+		}
+
+		IterationGrid region = new IterationGrid(this.viewport.getSubViewport(
+				pixelX, pixelY, width, height), this.maxIterations,
+				this.smooth);
+
+		for (int chunkY = pixelY / this.chunkSize; chunkY <= (pixelY
+				+ height - 1)
+				/ this.chunkSize; ++chunkY) {
+			for (int chunkX = pixelX / this.chunkSize; chunkX <= (pixelX
+					+ width - 1)
+					/ this.chunkSize; ++chunkX) {
+				copyChunk(readChunk(chunkX, chunkY), chunkX * this.chunkSize
+						- pixelX, chunkY * this.chunkSize - pixelY, region);
+			}
+		}
+
+		return region;
+	}
+
+	/**
+	 * Reads the whole map.
+	 */
+	public IterationGrid readGrid() throws IOException {
+		return readRegion(0, 0, this.viewport.getWidth(),
+				this.viewport.getHeight());
+	}
+
+	private static void copyChunk(IterationGrid chunk, int offsetX,
+			int offsetY, IterationGrid region) {
+		int fromX = Math.max(0, offsetX);
+		int toX = Math.min(region.getWidth(), offsetX + chunk.getWidth());
+		int fromY = Math.max(0, offsetY);
+		int toY = Math.min(region.getHeight(), offsetY + chunk.getHeight());
+
+		for (int pixelY = fromY; pixelY < toY; ++pixelY) {
+			int chunkIndex = chunk.getIndex(fromX - offsetX, pixelY - offsetY);
+			int regionIndex = region.getIndex(fromX, pixelY);
+
+			System.arraycopy(chunk.getIterations(), chunkIndex,
+					region.getIterations(), regionIndex, toX - fromX);
+			if (region.isSmooth()) {
+				System.arraycopy(chunk.getSmoothIterations(), chunkIndex,
+						region.getSmoothIterations(), regionIndex, toX - fromX);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+}
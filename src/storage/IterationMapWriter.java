@@ -0,0 +1,332 @@
+package storage;
+
+import generator.IterationGrid;
+import generator.IterationTileReceiver;
+import generator.Viewport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the escape iterations of a viewport to an iteration map file, in
+ * the format described by {@link IterationMapFormat}. The pixels could be
+ * written in tiles of any shape and in any order - they are collected into
+ * square chunks, and every chunk is written as soon as all of its pixels are
+ * received, so only the incomplete chunks are kept in memory.
+ *
+ * The writer is also an {@link IterationTileReceiver}, so a generation
+ * could be streamed into the file directly. Tiles of coarse progressive
+ * passes are ignored, and the file is closed when the stream is finished.
+ */
+public class IterationMapWriter implements IterationTileReceiver, Closeable {
+	public static final int DEFAULT_CHUNK_SIZE = 256;
+
+	private static final Logger LOGGER = Logger.getLogger("IterationMap");
+
+	private File file;
+	private FileChannel channel;
+	private MappedByteBuffer index;
+
+	private Viewport viewport;
+	private int maxIterations;
+	private boolean smooth;
+	private boolean compressed;
+
+	private int chunkSize;
+	private int chunksAlongX;
+	private int chunksAlongY;
+
+	private long dataEnd;
+
+	private Map<Integer, Chunk> incompleteChunks = new HashMap<Integer, Chunk>();
+	private int writtenChunkCount;
+
+	public IterationMapWriter(File file, Viewport viewport, int maxIterations,
+			String kernelName, boolean smooth, boolean compressed)
+			throws IOException {
+		this(file, viewport, maxIterations, kernelName, smooth, compressed,
+				DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates the file and writes its header and an empty chunk index.
+	 *
+	 * @param file
+	 *            - the file to be written, replaced if it exists
+	 * @param viewport
+	 *            - the viewport whose pixels are written
+	 * @param maxIterations
+	 *            - the maximum iterations the pixels are computed with
+	 * @param kernelName
+	 *            - the name of the kernel the pixels are computed with
+	 * @param smooth
+	 *            - whether the continuous escape values are written too
+	 * @param compressed
+	 *            - whether the chunks are deflated
+	 * @param chunkSize
+	 *            - the side of the square chunks
+	 */
+	public IterationMapWriter(File file, Viewport viewport, int maxIterations,
+			String kernelName, boolean smooth, boolean compressed,
+			int chunkSize) throws IOException {
+		this.file = file;
+		this.viewport = viewport;
+		this.maxIterations = maxIterations;
+		this.smooth = smooth;
+		this.compressed = compressed;
+
+		this.chunkSize = chunkSize;
+		this.chunksAlongX = (viewport.getWidth() + chunkSize - 1) / chunkSize;
+		this.chunksAlongY = (viewport.getHeight() + chunkSize - 1)
+				/ chunkSize;
+
+		byte flags = 0;
+		if (smooth) {
+			flags |= IterationMapFormat.FLAG_SMOOTH;
+		}
+		if (compressed) {
+			flags |= IterationMapFormat.FLAG_COMPRESSED;
+		}
+
+		ByteBuffer header = ByteBuffer
+				.allocate(IterationMapFormat.MAXIMUM_HEADER_BYTES);
+		header.putInt(IterationMapFormat.SIGNATURE)
+				.putInt(IterationMapFormat.VERSION).putInt(0)
+				.putInt(maxIterations).put(flags).putInt(chunkSize)
+				.putInt(this.chunksAlongX).putInt(this.chunksAlongY);
+		byte[] name = kernelName.getBytes(StandardCharsets.US_ASCII);
+		header.putInt(name.length).put(name);
+		viewport.writeTo(header);
+
+		int indexOffset = header.position();
+		header.putInt(8, indexOffset);
+		header.flip();
+
+		long indexBytes = (long) IterationMapFormat.INDEX_ENTRY_BYTES
+				* this.chunksAlongX * this.chunksAlongY;
+		this.dataEnd = indexOffset + indexBytes;
+
+		this.channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			while (header.hasRemaining()) {
+				this.channel.write(header);
+			}
+
+			// the index is mapped, so that the entry of a chunk is a single
+			// store after the chunk is written, and is zeroed by the mapping
+			this.index = this.channel.map(FileChannel.MapMode.READ_WRITE,
+					indexOffset, indexBytes);
+		} catch (IOException e) {
+			this.channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes the pixels of a tile, whose first pixel is at the specified
+	 * pixel of the viewport of the map.
+	 */
+	public synchronized void writeTile(IterationGrid tile, int offsetX,
+			int offsetY) throws IOException {
+		int firstChunkX = offsetX / this.chunkSize;
+		int firstChunkY = offsetY / this.chunkSize;
+		int lastChunkX = (offsetX + tile.getWidth() - 1) / this.chunkSize;
+		int lastChunkY = (offsetY + tile.getHeight() - 1) / this.chunkSize;
+
+		for (int chunkY = firstChunkY; chunkY <= lastChunkY; ++chunkY) {
+			for (int chunkX = firstChunkX; chunkX <= lastChunkX; ++chunkX) {
+				int chunkIndex = chunkY * this.chunksAlongX + chunkX;
+				Chunk chunk = this.incompleteChunks.get(chunkIndex);
+				if (chunk == null) {
+					chunk = new Chunk(chunkX, chunkY);
+					this.incompleteChunks.put(chunkIndex, chunk);
+				}
+
+				if (chunk.copyFrom(tile, offsetX, offsetY)) {
+					this.incompleteChunks.remove(chunkIndex);
+					writeChunk(chunkIndex, chunk.grid);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes every pixel of a grid of the whole viewport.
+	 */
+	public void writeGrid(IterationGrid grid) throws IOException {
+		writeTile(grid, 0, 0);
+	}
+
+	private void writeChunk(int chunkIndex, IterationGrid chunk)
+			throws IOException {
+		int[] iterations = chunk.getIterations();
+		ByteBuffer bytes = ByteBuffer.allocate(iterations.length
+				* (this.smooth ? 8 : 4));
+		bytes.asIntBuffer().put(iterations);
+		if (this.smooth) {
+			bytes.position(4 * iterations.length);
+			bytes.asFloatBuffer().put(chunk.getSmoothIterations());
+		}
+		bytes.clear();
+
+		if (this.compressed) {
+			bytes = ByteBuffer.wrap(deflate(bytes.array()));
+		}
+
+		long offset = this.dataEnd;
+		int length = bytes.remaining();
+		while (bytes.hasRemaining()) {
+			this.channel.write(bytes, offset + bytes.position());
+		}
+		this.dataEnd += length;
+
+		this.index.putLong(chunkIndex * IterationMapFormat.INDEX_ENTRY_BYTES,
+				offset);
+		this.index.putInt(chunkIndex * IterationMapFormat.INDEX_ENTRY_BYTES
+				+ 8, length);
+		++this.writtenChunkCount;
+	}
+
+	private static byte[] deflate(byte[] bytes) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		ByteArrayOutputStream output = new ByteArrayOutputStream(
+				bytes.length / 4);
+		byte[] buffer = new byte[64 * 1024];
+
+		try {
+			deflater.setInput(bytes);
+			deflater.finish();
+			while (!deflater.finished()) {
+				output.write(buffer, 0, deflater.deflate(buffer));
+			}
+		} finally {
+			deflater.end();
+		}
+
+		return output.toByteArray();
+	}
+
+	@Override
+	public void receiveTile(IterationGrid tile, int offsetX, int offsetY,
+			int pixelSize) {
+		if (pixelSize != 1) {
+			return;
+		}
+
+		try {
+			writeTile(tile, offsetX, offsetY);
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to write a tile to " + this.file
+					+ ".", e);
+		}
+	}
+
+	@Override
+	public void streamIsFinished() {
+		try {
+			close();
+		} catch (IOException e) {
+			LOGGER.log(Level.WARNING, "Failed to close " + this.file + ".", e);
+		}
+	}
+
+	/**
+	 * Closes the file with the chunks that were completed before the failure.
+	 */
+	@Override
+	public void streamFailed(RuntimeException failure) {
+		LOGGER.log(Level.WARNING, "Failed to write a tile to " + this.file
+				+ ".", failure);
+		streamIsFinished();
+	}
+
+	/**
+	 * Flushes the file to the storage device and closes it. Chunks that were
+	 * not completed are left out of the file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!this.channel.isOpen()) {
+			return;
+		}
+
+		this.index.force();
+		this.channel.force(true);
+		this.channel.close();
+	}
+
+	public int getWrittenChunkCount() {
+		return this.writtenChunkCount;
+	}
+
+	public int getChunkCount() {
+		return this.chunksAlongX * this.chunksAlongY;
+	}
+
+	/**
+	 * The pixels of a chunk received so far.
+	 */
+	private class Chunk {
+		private IterationGrid grid;
+		private int firstPixelX;
+		private int firstPixelY;
+		private int receivedPixelCount;
+
+		private Chunk(int chunkX, int chunkY) {
+			this.firstPixelX = chunkX * chunkSize;
+			this.firstPixelY = chunkY * chunkSize;
+			this.grid = new IterationGrid(viewport.getSubViewport(
+					this.firstPixelX, this.firstPixelY,
+					Math.min(chunkSize, viewport.getWidth() - this.firstPixelX),
+					Math.min(chunkSize, viewport.getHeight()
+							- this.firstPixelY)), maxIterations, smooth);
+		}
+
+		/**
+		 * Copies the part of the tile that lies in the chunk and returns
+		 * whether the chunk is complete.
+		 */
+		private boolean copyFrom(IterationGrid tile, int offsetX, int offsetY) {
+			int fromX = Math.max(offsetX, this.firstPixelX);
+			int toX = Math.min(offsetX + tile.getWidth(), this.firstPixelX
+					+ this.grid.getWidth());
+			int fromY = Math.max(offsetY, this.firstPixelY);
+			int toY = Math.min(offsetY + tile.getHeight(), this.firstPixelY
+					+ this.grid.getHeight());
+			float[] tileSmoothIterations = tile.getSmoothIterations();
+
+			for (int pixelY = fromY; pixelY < toY; ++pixelY) {
+				int tileIndex = tile.getIndex(fromX - offsetX, pixelY
+						- offsetY);
+				int chunkIndex = this.grid.getIndex(fromX - this.firstPixelX,
+						pixelY - this.firstPixelY);
+
+				System.arraycopy(tile.getIterations(), tileIndex,
+						this.grid.getIterations(), chunkIndex, toX - fromX);
+				if (smooth && tileSmoothIterations != null) {
+					System.arraycopy(tileSmoothIterations, tileIndex,
+							this.grid.getSmoothIterations(), chunkIndex, toX
+									- fromX);
+				}
+			}
+
+			this.receivedPixelCount += (toX - fromX) * (toY - fromY);
+			return this.receivedPixelCount >= this.grid.getViewport()
+					.getPixelCount();
+		}
+	}
+}
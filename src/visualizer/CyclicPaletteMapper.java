@@ -0,0 +1,107 @@
+package visualizer;
+
+import generator.IterationGrid;
+
+import java.util.Arrays;
+
+/**
+ * Colours escape values by cycling through the gradient of
+ * {@link HistogramPaletteMapper} every fixed number of iterations. Unlike the
+ * equalized colours, the colour of an escape value does not depend on the
+ * rest of the image, so consecutive frames of an animation are coloured
+ * consistently.
+ */
+public class CyclicPaletteMapper {
+	public static final double DEFAULT_CYCLE_LENGTH = 64;
+
+	// the colours are the same for every mapper, and hashed once
+	private static final int COLORS_HASH = 31
+			* Arrays.hashCode(HistogramPaletteMapper.GRADIENT_TABLE)
+			+ HistogramPaletteMapper.INTERIOR_COLOR;
+
+	private final double cycleLength;
+	private final String signature;
+
+	public CyclicPaletteMapper() {
+		this(DEFAULT_CYCLE_LENGTH);
+	}
+
+	/**
+	 * Creates a mapper that goes through the whole gradient and back every
+	 * cycleLength iterations.
+	 */
+	public CyclicPaletteMapper(double cycleLength) {
+		this.cycleLength = cycleLength;
+		this.signature = Long.toHexString(Double
+				.doubleToLongBits(cycleLength))
+				+ "-" + Integer.toHexString(COLORS_HASH);
+	}
+
+	/**
+	 * Returns a string derived from the cycle length and the colours of the
+	 * mapper, which is equal for mappers that colour every escape value
+	 * alike, also in other processes.
+	 */
+	public String getSignature() {
+		return this.signature;
+	}
+
+	/**
+	 * Returns the colour of a continuous escape value as a 0xAARRGGBB value.
+	 */
+	public int getColor(int iterations, float smoothIterations,
+			int maxIterations) {
+		if (iterations >= maxIterations) {
+			return HistogramPaletteMapper.INTERIOR_COLOR;
+		}
+
+		// the gradient is mirrored, so that the cycles join without a seam
+		double phase = Math.max(smoothIterations, 0) / this.cycleLength % 1;
+		double position = phase < 0.5 ? 2 * phase : 2 - 2 * phase;
+
+		return HistogramPaletteMapper.GRADIENT_TABLE[(int) (position * (HistogramPaletteMapper.GRADIENT_TABLE_SIZE - 1))];
+	}
+
+	/**
+	 * Returns a source of the colours of the grid. Grids without continuous
+	 * escape values are coloured in bands. The refined pixels of supersampled
+	 * grids are given the average colours of their samples.
+	 */
+	public PixelRowSource createRowSource(final IterationGrid grid) {
+		final SupersampleAverager.Coloring coloring = new SupersampleAverager.Coloring() {
+			@Override
+			public int getColor(int iterations, float smoothIterations) {
+				return CyclicPaletteMapper.this.getColor(iterations,
+						smoothIterations, grid.getMaxIterations());
+			}
+		};
+
+		return new PixelRowSource() {
+			@Override
+			public int getWidth() {
+				return grid.getWidth();
+			}
+
+			@Override
+			public int getHeight() {
+				return grid.getHeight();
+			}
+
+			@Override
+			public void readRow(int pixelY, int[] rgb) {
+				int[] iterations = grid.getIterations();
+				float[] smoothIterations = grid.getSmoothIterations();
+				int index = grid.getIndex(0, pixelY);
+
+				for (int pixelX = 0; pixelX < rgb.length; ++pixelX, ++index) {
+					rgb[pixelX] = getColor(iterations[index],
+							smoothIterations != null ? smoothIterations[index]
+									: iterations[index],
+							grid.getMaxIterations());
+				}
+
+				SupersampleAverager.averageRow(grid, pixelY, rgb, coloring);
+			}
+		};
+	}
+}
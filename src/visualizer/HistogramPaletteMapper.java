@@ -0,0 +1,236 @@
+package visualizer;
+
+import generator.IterationGrid;
+
+import java.awt.Color;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Colours escape values with histogram equalization - every colour of the
+ * gradient is given to about the same number of pixels, whatever the
+ * distribution of the escape iterations. The histogram is built while the
+ * tiles of a generation are received, and tiles could be added from several
+ * threads at once, so the colours are mapped in a single pass once the
+ * generation is complete.
+ */
+public class HistogramPaletteMapper {
+	private static final Color[] GRADIENT = { new Color(0, 7, 100),
+			new Color(32, 107, 203), new Color(237, 255, 255),
+			new Color(255, 170, 0), new Color(100, 7, 0) };
+
+	/* default */static final int GRADIENT_TABLE_SIZE = 4096;
+
+	/* default */static final int INTERIOR_COLOR = Color.black.getRGB();
+
+	/* default */static final int[] GRADIENT_TABLE = createGradientTable();
+
+	/**
+	 * The maximum number of buckets of the histogram. Above as many maximum
+	 * iterations, every bucket counts a power of two of consecutive escape
+	 * iterations, and the pixels of a bucket are taken as evenly spread over
+	 * its iterations.
+	 */
+	/* default */static final int MAXIMUM_BUCKET_COUNT = 1 << 16;
+
+	private int maxIterations;
+
+	// the escape iterations of a bucket are those with the same bits above
+	// the shift
+	private int bucketShift;
+
+	// the number of escaped pixels in each bucket. Every range of pixels is
+	// counted locally first and added at once, so that concurrent tiles
+	// contend only once per bucket they touch
+	private AtomicLongArray buckets;
+
+	public HistogramPaletteMapper(int maxIterations) {
+		this.maxIterations = maxIterations;
+		while ((maxIterations - 1) >> this.bucketShift
+				>= MAXIMUM_BUCKET_COUNT) {
+			++this.bucketShift;
+		}
+		this.buckets = new AtomicLongArray(
+				((maxIterations - 1) >> this.bucketShift) + 1);
+	}
+
+	/**
+	 * Adds the escaped pixels of the tile to the histogram.
+	 */
+	public void addTile(IterationGrid tile) {
+		addIterations(tile.getIterations(), 0, tile.getIterations().length);
+	}
+
+	/**
+	 * Adds the escaped pixels from the specified range of the array to the
+	 * histogram.
+	 *
+	 * @param iterations
+	 *            - the escape iterations of the pixels
+	 * @param from
+	 *            - the first index of the range, inclusive
+	 * @param to
+	 *            - the last index of the range, exclusive
+	 */
+	public void addIterations(int[] iterations, int from, int to) {
+		// the pixels of a tile mostly escape within a narrow range, so only
+		// the buckets between the lowest and the highest are counted
+		int firstBucket = Integer.MAX_VALUE;
+		int lastBucket = -1;
+		for (int index = from; index < to; ++index) {
+			int pixelIterations = iterations[index];
+			if (pixelIterations < this.maxIterations) {
+				int bucket = pixelIterations >> this.bucketShift;
+				firstBucket = Math.min(firstBucket, bucket);
+				lastBucket = Math.max(lastBucket, bucket);
+			}
+		}
+		if (lastBucket < 0) {
+			return;
+		}
+
+		int[] counts = new int[lastBucket - firstBucket + 1];
+		for (int index = from; index < to; ++index) {
+			int pixelIterations = iterations[index];
+			if (pixelIterations < this.maxIterations) {
+				++counts[(pixelIterations >> this.bucketShift) - firstBucket];
+			}
+		}
+
+		for (int bucket = 0; bucket < counts.length; ++bucket) {
+			if (counts[bucket] > 0) {
+				this.buckets.addAndGet(firstBucket + bucket, counts[bucket]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the cumulative distribution of the escaped pixels. Element i is
+	 * the fraction of the escaped pixels with less than i escape iterations.
+	 */
+	public double[] getCumulativeDistribution() {
+		double[] distribution = new double[this.maxIterations + 1];
+
+		long total = 0;
+		for (int bucket = 0; bucket < this.buckets.length(); ++bucket) {
+			long count = this.buckets.get(bucket);
+			int firstIterations = bucket << this.bucketShift;
+			int lastIterations = Math.min(firstIterations
+					+ (1 << this.bucketShift), this.maxIterations);
+
+			for (int iterations = firstIterations; iterations < lastIterations; ++iterations) {
+				distribution[iterations] = total + (double) count
+						* (iterations - firstIterations)
+						/ (lastIterations - firstIterations);
+			}
+			total += count;
+		}
+		distribution[this.maxIterations] = total;
+
+		for (int iterations = 0; iterations <= this.maxIterations; ++iterations) {
+			distribution[iterations] = total > 0 ? distribution[iterations]
+					/ total : 0;
+		}
+
+		return distribution;
+	}
+
+	/**
+	 * Returns a source of the equalized colours of the grid. The histogram is
+	 * read once, when the source is created. Grids with continuous escape
+	 * values are coloured without bands. The refined pixels of supersampled
+	 * grids are given the average colours of their samples.
+	 */
+	public PixelRowSource createRowSource(final IterationGrid grid) {
+		final double[] distribution = getCumulativeDistribution();
+		final int maxIterations = this.maxIterations;
+		final SupersampleAverager.Coloring coloring = new SupersampleAverager.Coloring() {
+			@Override
+			public int getColor(int iterations, float smoothIterations) {
+				return HistogramPaletteMapper.getColor(distribution,
+						iterations, smoothIterations, maxIterations);
+			}
+		};
+
+		return new PixelRowSource() {
+			@Override
+			public int getWidth() {
+				return grid.getWidth();
+			}
+
+			@Override
+			public int getHeight() {
+				return grid.getHeight();
+			}
+
+			@Override
+			public void readRow(int pixelY, int[] rgb) {
+				int[] iterations = grid.getIterations();
+				float[] smoothIterations = grid.getSmoothIterations();
+				int index = grid.getIndex(0, pixelY);
+
+				for (int pixelX = 0; pixelX < rgb.length; ++pixelX, ++index) {
+					rgb[pixelX] = getColor(distribution, iterations[index],
+							smoothIterations != null ? smoothIterations[index]
+									: iterations[index], maxIterations);
+				}
+
+				SupersampleAverager.averageRow(grid, pixelY, rgb, coloring);
+			}
+		};
+	}
+
+	/**
+	 * Returns the equalized colour of an escape value. The continuous escape
+	 * value of a number without one is its escape iterations.
+	 */
+	private static int getColor(double[] distribution, int iterations,
+			float smoothIterations, int maxIterations) {
+		if (iterations >= maxIterations) {
+			return INTERIOR_COLOR;
+		}
+
+		double position = getPosition(distribution, smoothIterations,
+				maxIterations);
+		return GRADIENT_TABLE[(int) (position * (GRADIENT_TABLE_SIZE - 1))];
+	}
+
+	/**
+	 * Interpolates the cumulative distribution between the escape iterations
+	 * around a continuous escape value.
+	 */
+	private static double getPosition(double[] distribution,
+			float smoothIterations, int maxIterations) {
+		double value = Math.min(Math.max(smoothIterations, 0),
+				maxIterations - 1);
+		int iterations = (int) value;
+		double fraction = value - iterations;
+
+		return distribution[iterations] + fraction
+				* (distribution[iterations + 1] - distribution[iterations]);
+	}
+
+	private static int[] createGradientTable() {
+		int[] table = new int[GRADIENT_TABLE_SIZE];
+		int segments = GRADIENT.length - 1;
+
+		for (int index = 0; index < GRADIENT_TABLE_SIZE; ++index) {
+			double position = (double) index / (GRADIENT_TABLE_SIZE - 1)
+					* segments;
+			int segment = Math.min((int) position, segments - 1);
+			double fraction = position - segment;
+
+			Color from = GRADIENT[segment];
+			Color to = GRADIENT[segment + 1];
+			table[index] = new Color(interpolate(from.getRed(), to.getRed(),
+					fraction), interpolate(from.getGreen(), to.getGreen(),
+					fraction), interpolate(from.getBlue(), to.getBlue(),
+					fraction)).getRGB();
+		}
+
+		return table;
+	}
+
+	private static int interpolate(int from, int to, double fraction) {
+		return (int) Math.round(from + (to - from) * fraction);
+	}
+}
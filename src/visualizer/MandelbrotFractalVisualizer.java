@@ -1,22 +1,29 @@
 package visualizer;
 
-import generator.MandelbrotNumber;
+import generator.IterationGrid;
+import generator.IterationGridReceiver;
+import generator.IterationTileReceiver;
 import generator.MandelbrotSetGenerator;
-import generator.MandelbrotSetReceiver;
-import generator.Pixel;
+import generator.Supersamples;
+import generator.Viewport;
+import storage.IterationMapReader;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
-import java.util.Map;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.imageio.ImageIO;
-
-public class MandelbrotFractalVisualizer implements MandelbrotSetReceiver {
+public class MandelbrotFractalVisualizer implements IterationGridReceiver,
+		IterationTileReceiver {
 	private static final int WIDTH = 1280;
 	private static final int HEIGHT = 1024;
 
@@ -27,48 +34,344 @@ public class MandelbrotFractalVisualizer implements MandelbrotSetReceiver {
 
 	private static final int MAX_THREADS = 8;
 
-	private BufferedImage canvas = new BufferedImage(WIDTH, HEIGHT,
-			BufferedImage.TYPE_INT_ARGB);
+	private BufferedImage canvas;
 
 	private MandelbrotSetGenerator generator;
 
+	private int lastPixelSize;
+
+	// replaced whole by the threads that colour grids of other maximum
+	// iterations
+	private volatile int[] colorTable;
+
+	// shared by all images, so that its threads are started only once
+	private ParallelPngEncoder encoder = new ParallelPngEncoder(MAX_THREADS);
+
+	private HistogramPaletteMapper histogram;
+	private IterationGrid smoothGrid;
+
 	public void drawFractal() {
 		this.generator = new MandelbrotSetGenerator(MAX_THREADS,
-				MAX_ITERATIONS, this);
-		this.generator.generatePixels(HEIGHT, WIDTH);
+				MAX_ITERATIONS, (IterationGridReceiver) this);
+		this.generator.generatePixelGrid(HEIGHT, WIDTH);
+	}
+
+	/**
+	 * Draws the fractal anti-aliased - the pixels on the edges of the bands
+	 * are supersampled and given the average colours of their samples.
+	 */
+	public void drawFractalAntialiased() {
+		this.generator = new MandelbrotSetGenerator(MAX_THREADS,
+				MAX_ITERATIONS, (IterationGridReceiver) this);
+		this.generator.generateSupersampledPixelGrid(
+				Viewport.forWholeSet(WIDTH, HEIGHT),
+				Supersamples.DEFAULT_SAMPLES_PER_SIDE,
+				Supersamples.DEFAULT_EDGE_THRESHOLD);
+	}
+
+	/**
+	 * Draws the fractal in progressively finer passes. A preview is written
+	 * to preview.png as soon as the first pass is received.
+	 */
+	public void drawFractalProgressively() {
+		this.canvas = new BufferedImage(WIDTH, HEIGHT,
+				BufferedImage.TYPE_INT_ARGB);
+		this.lastPixelSize = 0;
+		this.histogram = null;
+
+		this.generator = new MandelbrotSetGenerator(MAX_THREADS,
+				MAX_ITERATIONS, (IterationTileReceiver) this);
+		this.generator.streamPixelGridProgressively(Viewport.forWholeSet(
+				WIDTH, HEIGHT));
+	}
+
+	/**
+	 * Draws the fractal with smooth histogram-equalized colours instead of the
+	 * bands of the palette. The histogram is built while the rows of the
+	 * fractal are received.
+	 */
+	public void drawFractalSmoothly() {
+		Viewport viewport = Viewport.forWholeSet(WIDTH, HEIGHT);
+		this.histogram = new HistogramPaletteMapper(MAX_ITERATIONS);
+		this.smoothGrid = new IterationGrid(viewport, MAX_ITERATIONS, true);
+
+		this.generator = new MandelbrotSetGenerator(MAX_THREADS,
+				MAX_ITERATIONS, (IterationTileReceiver) this);
+		this.generator.setSmoothIterations(true);
+		this.generator.streamPixelGrid(viewport);
+	}
+
+	/**
+	 * Draws the fractal from an iteration map file, without computing it
+	 * again. Maps with continuous escape values are coloured smoothly.
+	 *
+	 * @param mapFileName
+	 *            - the iteration map file to be read
+	 * @param imageFileName
+	 *            - the PNG file to be written
+	 */
+	public void drawIterationMap(String mapFileName, String imageFileName) {
+		try (IterationMapReader reader = new IterationMapReader(new File(
+				mapFileName))) {
+			writeImageFile(imageFileName, createMapRowSource(reader.readGrid()));
+		} catch (IOException e) {
+			Logger.getLogger("Visualizer").log(Level.WARNING,
+					"Failed to read an iteration map.", e);
+		}
+	}
+
+	/**
+	 * Draws a region of the fractal from an iteration map file, reading only
+	 * the chunks of the map that overlap the region.
+	 *
+	 * @param mapFileName
+	 *            - the iteration map file to be read
+	 * @param pixelX
+	 *            - the first pixel of the region along the real axis
+	 * @param pixelY
+	 *            - the first pixel of the region along the imaginary axis
+	 * @param width
+	 *            - the width of the region in pixels
+	 * @param height
+	 *            - the height of the region in pixels
+	 * @param imageFileName
+	 *            - the PNG file to be written
+	 */
+	public void drawIterationMapRegion(String mapFileName, int pixelX,
+			int pixelY, int width, int height, String imageFileName) {
+		try (IterationMapReader reader = new IterationMapReader(new File(
+				mapFileName))) {
+			writeImageFile(imageFileName, createMapRowSource(reader
+					.readRegion(pixelX, pixelY, width, height)));
+		} catch (IOException e) {
+			Logger.getLogger("Visualizer").log(Level.WARNING,
+					"Failed to read an iteration map.", e);
+		}
+	}
+
+	private PixelRowSource createMapRowSource(IterationGrid grid) {
+		if (!grid.isSmooth()) {
+			return createRowSource(grid);
+		}
+
+		HistogramPaletteMapper histogram = new HistogramPaletteMapper(
+				grid.getMaxIterations());
+		histogram.addTile(grid);
+		return histogram.createRowSource(grid);
 	}
 
-	private Color getColorForIterations(int iterations) {
-		return PALETTE[iterations % PALETTE.length];
+	/**
+	 * Returns the colours of all possible escape iterations of a grid as
+	 * 0xAARRGGBB values, indexed by the iterations.
+	 */
+	private int[] getColorTable(int maxIterations) {
+		int[] colorTable = this.colorTable;
+		if (colorTable == null || colorTable.length != maxIterations + 1) {
+			colorTable = new int[maxIterations + 1];
+			for (int iterations = 0; iterations <= maxIterations; ++iterations) {
+				colorTable[iterations] = PALETTE[iterations % PALETTE.length]
+						.getRGB();
+			}
+			this.colorTable = colorTable;
+		}
+
+		return colorTable;
 	}
 
 	@Override
-	public void receiveSet(List<MandelbrotNumber> numbers) {
+	public void receiveGrid(IterationGrid grid) {
 		this.generator.shutdown();
-		Map<MandelbrotNumber, Pixel> pixelMapping = this.generator
-				.getPixelMapping();
+		writeImageFile("image.png", createRowSource(grid));
+	}
 
-		for (MandelbrotNumber number : numbers) {
-			Color currentColor = getColorForIterations(number.getIterations());
-			Pixel pixel = pixelMapping.get(number);
+	@Override
+	public void receiveTile(IterationGrid tile, int offsetX, int offsetY,
+			int pixelSize) {
+		if (this.histogram != null) {
+			receiveSmoothTile(tile, offsetX, offsetY);
+			return;
+		}
 
-			this.canvas.setRGB(pixel.getX(), pixel.getY(),
-					currentColor.getRGB());
+		// the passes are streamed one after another, so a finer tile means
+		// that the coarser pass is complete
+		if (this.lastPixelSize == MandelbrotSetGenerator.PROGRESSIVE_FIRST_PIXEL_SIZE
+				&& pixelSize < this.lastPixelSize) {
+			writeImageFile("preview.png", createRowSource(this.canvas));
 		}
+		this.lastPixelSize = pixelSize;
 
-		File outputfile = new File("image.png");
-		try {
-			outputfile.createNewFile();
-		} catch (IOException e1) {
-			Logger.getLogger("Visualizer").log(Level.WARNING,
-					"Failed to create output image file.", e1);
+		int[] colorTable = getColorTable(tile.getMaxIterations());
+		int[] pixels = getCanvasPixels();
+		int canvasWidth = this.canvas.getWidth();
+		int canvasHeight = this.canvas.getHeight();
+
+		for (int pixelY = 0; pixelY < tile.getHeight(); ++pixelY) {
+			for (int pixelX = 0; pixelX < tile.getWidth(); ++pixelX) {
+				int color = colorTable[tile.getIterations(pixelX, pixelY)];
+				int canvasX = (offsetX + pixelX) * pixelSize;
+				int canvasY = (offsetY + pixelY) * pixelSize;
+				int blockWidth = Math.min(pixelSize, canvasWidth - canvasX);
+				int blockHeight = Math.min(pixelSize, canvasHeight - canvasY);
+
+				for (int y = canvasY; y < canvasY + blockHeight; ++y) {
+					int index = y * canvasWidth + canvasX;
+					Arrays.fill(pixels, index, index + blockWidth, color);
+				}
+			}
 		}
+	}
+
+	private void receiveSmoothTile(IterationGrid tile, int offsetX,
+			int offsetY) {
+		this.histogram.addTile(tile);
 
-		try {
-			ImageIO.write(this.canvas, "png", outputfile);
+		// the tiles are bands of whole rows
+		int index = this.smoothGrid.getIndex(offsetX, offsetY);
+		System.arraycopy(tile.getIterations(), 0,
+				this.smoothGrid.getIterations(), index,
+				tile.getIterations().length);
+		System.arraycopy(tile.getSmoothIterations(), 0,
+				this.smoothGrid.getSmoothIterations(), index,
+				tile.getSmoothIterations().length);
+	}
+
+	@Override
+	public void streamIsFinished() {
+		this.generator.shutdown();
+
+		if (this.histogram != null) {
+			writeImageFile("image.png",
+					this.histogram.createRowSource(this.smoothGrid));
+		} else {
+			writeImageFile("image.png", createRowSource(this.canvas));
+		}
+	}
+
+	@Override
+	public void streamFailed(RuntimeException failure) {
+		this.generator.shutdown();
+
+		Logger.getLogger("Visualizer").log(Level.WARNING,
+				"Failed to draw the streamed tiles, no image was written.",
+				failure);
+	}
+
+	private void writeImageFile(String fileName, PixelRowSource source) {
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			this.encoder.encode(source, channel);
 		} catch (IOException e) {
 			Logger.getLogger("Visualizer").log(Level.WARNING,
 					"Failed to dump image to a file.", e);
 		}
 	}
+
+	/**
+	 * Returns a source of the colours of the grid, that are computed while
+	 * the rows are read. The refined pixels of supersampled grids are given
+	 * the average colours of their samples.
+	 */
+	public PixelRowSource createRowSource(final IterationGrid grid) {
+		final int[] colorTable = getColorTable(grid.getMaxIterations());
+		final SupersampleAverager.Coloring coloring = new SupersampleAverager.Coloring() {
+			@Override
+			public int getColor(int iterations, float smoothIterations) {
+				return colorTable[iterations];
+			}
+		};
+
+		return new PixelRowSource() {
+			@Override
+			public int getWidth() {
+				return grid.getWidth();
+			}
+
+			@Override
+			public int getHeight() {
+				return grid.getHeight();
+			}
+
+			@Override
+			public void readRow(int pixelY, int[] rgb) {
+				int[] iterations = grid.getIterations();
+				int index = grid.getIndex(0, pixelY);
+
+				for (int pixelX = 0; pixelX < rgb.length; ++pixelX) {
+					rgb[pixelX] = colorTable[iterations[index++]];
+				}
+
+				SupersampleAverager.averageRow(grid, pixelY, rgb, coloring);
+			}
+		};
+	}
+
+	private PixelRowSource createRowSource(final BufferedImage image) {
+		final int[] pixels = ((DataBufferInt) image.getRaster()
+				.getDataBuffer()).getData();
+
+		return new PixelRowSource() {
+			@Override
+			public int getWidth() {
+				return image.getWidth();
+			}
+
+			@Override
+			public int getHeight() {
+				return image.getHeight();
+			}
+
+			@Override
+			public void readRow(int pixelY, int[] rgb) {
+				System.arraycopy(pixels, pixelY * rgb.length, rgb, 0,
+						rgb.length);
+			}
+		};
+	}
+
+	private int[] getCanvasPixels() {
+		return ((DataBufferInt) this.canvas.getRaster().getDataBuffer())
+				.getData();
+	}
+
+	/**
+	 * Colours the canvas with the escape iterations of the grid. The canvas is
+	 * resized to the resolution of the grid if needed.
+	 */
+	public void paintGrid(IterationGrid grid) {
+		if (this.canvas == null || this.canvas.getWidth() != grid.getWidth()
+				|| this.canvas.getHeight() != grid.getHeight()) {
+			this.canvas = new BufferedImage(grid.getWidth(), grid.getHeight(),
+					BufferedImage.TYPE_INT_ARGB);
+		}
+
+		PixelRowSource source = createRowSource(grid);
+		int[] pixels = getCanvasPixels();
+		int[] row = new int[grid.getWidth()];
+
+		for (int pixelY = 0; pixelY < grid.getHeight(); ++pixelY) {
+			source.readRow(pixelY, row);
+			System.arraycopy(row, 0, pixels, pixelY * row.length, row.length);
+		}
+	}
+
+	/**
+	 * Encodes the last painted canvas as a PNG image to the stream.
+	 */
+	public void writeImage(OutputStream output) throws IOException {
+		this.encoder.encode(createRowSource(this.canvas),
+				Channels.newChannel(output));
+	}
+
+	public BufferedImage getCanvas() {
+		return this.canvas;
+	}
+
+	/**
+	 * Shuts down the threads that encode the images. No image could be
+	 * written afterwards.
+	 */
+	public void shutdown() {
+		this.encoder.shutdown();
+	}
 }
@@ -0,0 +1,280 @@
+package visualizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encodes 8-bit RGB PNG images by compressing bands of rows in parallel.
+ * Every band is deflated independently and ended with a sync flush, so the
+ * compressed bands could simply be concatenated into a single zlib stream,
+ * whose checksum is combined from the checksums of the bands. The bands are
+ * written in order as soon as they are compressed and only a few of them are
+ * in memory at a time, so the size of the image is not limited by memory.
+ */
+public class ParallelPngEncoder {
+	private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G',
+			'\r', '\n', 0x1a, '\n' };
+
+	// deflate with a 32K window and the default compression level
+	private static final byte[] ZLIB_HEADER = { 0x78, (byte) 0x9c };
+
+	private static final int BYTES_PER_PIXEL = 3;
+	private static final int COLOR_TYPE_RGB = 2;
+	private static final int FILTER_SUB = 1;
+
+	private static final int BAND_BYTES = 256 * 1024;
+	private static final int BANDS_IN_FLIGHT_PER_THREAD = 2;
+
+	private static final int ADLER_BASE = 65521;
+
+	private ForkJoinPool pool;
+	private int threads;
+
+	/**
+	 * Creates an encoder that compresses on the specified number of threads.
+	 */
+	public ParallelPngEncoder(int threads) {
+		this.threads = threads;
+		this.pool = new ForkJoinPool(threads);
+	}
+
+	/**
+	 * Encodes the rows of the source as a PNG image to the channel.
+	 *
+	 * @param source
+	 *            - the colours of the image
+	 * @param channel
+	 *            - the channel the image is written to, for example a
+	 *            FileChannel
+	 */
+	public void encode(PixelRowSource source, WritableByteChannel channel)
+			throws IOException {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int rowBytes = 1 + width * BYTES_PER_PIXEL;
+		int rowsPerBand = Math.max(BAND_BYTES / rowBytes, 1);
+		int bandCount = (height + rowsPerBand - 1) / rowsPerBand;
+
+		channel.write(ByteBuffer.wrap(PNG_SIGNATURE));
+		ByteBuffer header = ByteBuffer.allocate(13);
+		header.putInt(width).putInt(height).put((byte) 8)
+				.put((byte) COLOR_TYPE_RGB).put((byte) 0).put((byte) 0)
+				.put((byte) 0);
+		writeChunk(channel, "IHDR", header.array(), header.position());
+		writeChunk(channel, "IDAT", ZLIB_HEADER, ZLIB_HEADER.length);
+
+		Queue<Future<CompressedBand>> pendingBands = new ArrayDeque<Future<CompressedBand>>();
+		int submittedBands = 0;
+		long adler = 1;
+
+		for (int band = 0; band < bandCount; ++band) {
+			while (bandCount > 1
+					&& submittedBands < bandCount
+					&& submittedBands < band + this.threads
+							* BANDS_IN_FLIGHT_PER_THREAD) {
+				int firstRow = submittedBands * rowsPerBand;
+				pendingBands.add(this.pool.submit(new BandCompression(source,
+						firstRow, Math.min(firstRow + rowsPerBand, height),
+						submittedBands == bandCount - 1)));
+				++submittedBands;
+			}
+
+			// an image of a single band, such as a tile, is compressed on the
+			// calling thread, because there is nothing to compress alongside
+			// it, and so that threads of other pools never wait for this one
+			CompressedBand compressedBand = bandCount > 1 ? awaitBand(pendingBands
+					.remove()) : new BandCompression(source, 0, height, true)
+					.call();
+			adler = combineAdler32(adler, compressedBand.adler,
+					compressedBand.uncompressedLength);
+			writeChunk(channel, "IDAT", compressedBand.data,
+					compressedBand.length);
+		}
+
+		ByteBuffer trailer = ByteBuffer.allocate(4);
+		trailer.putInt((int) adler);
+		writeChunk(channel, "IDAT", trailer.array(), 4);
+		writeChunk(channel, "IEND", new byte[0], 0);
+	}
+
+	private CompressedBand awaitBand(Future<CompressedBand> band)
+			throws IOException {
+		try {
+			return band.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while encoding.", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to compress a band of rows.",
+					e.getCause());
+		}
+	}
+
+	private static void writeChunk(WritableByteChannel channel, String type,
+			byte[] data, int length) throws IOException {
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+
+		ByteBuffer prefix = ByteBuffer.allocate(8);
+		prefix.putInt(length).put(typeBytes).flip();
+		ByteBuffer suffix = ByteBuffer.allocate(4);
+		suffix.putInt((int) crc.getValue()).flip();
+
+		writeFully(channel, prefix);
+		writeFully(channel, ByteBuffer.wrap(data, 0, length));
+		writeFully(channel, suffix);
+	}
+
+	private static void writeFully(WritableByteChannel channel,
+			ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Returns the Adler-32 checksum of two concatenated sequences from their
+	 * checksums and the length of the second one, the same way as zlib's
+	 * adler32_combine.
+	 */
+	/* default */static long combineAdler32(long firstAdler,
+			long secondAdler, long secondLength) {
+		long remainder = secondLength % ADLER_BASE;
+		long sum1 = firstAdler & 0xffff;
+		long sum2 = (remainder * sum1) % ADLER_BASE;
+
+		sum1 += (secondAdler & 0xffff) + ADLER_BASE - 1;
+		sum2 += ((firstAdler >>> 16) & 0xffff)
+				+ ((secondAdler >>> 16) & 0xffff) + ADLER_BASE - remainder;
+
+		if (sum1 >= ADLER_BASE) {
+			sum1 -= ADLER_BASE;
+		}
+		if (sum1 >= ADLER_BASE) {
+			sum1 -= ADLER_BASE;
+		}
+		if (sum2 >= ADLER_BASE << 1) {
+			sum2 -= ADLER_BASE << 1;
+		}
+		if (sum2 >= ADLER_BASE) {
+			sum2 -= ADLER_BASE;
+		}
+
+		return sum1 | (sum2 << 16);
+	}
+
+	/**
+	 * Shuts down the threads of the encoder.
+	 */
+	public void shutdown() {
+		this.pool.shutdown();
+	}
+
+	private static class CompressedBand {
+		private byte[] data;
+		private int length;
+		private long adler;
+		private long uncompressedLength;
+	}
+
+	private static class BandCompression implements Callable<CompressedBand> {
+		private PixelRowSource source;
+		private int firstRow;
+		private int lastRow;
+		private boolean lastBand;
+
+		private BandCompression(PixelRowSource source, int firstRow,
+				int lastRow, boolean lastBand) {
+			this.source = source;
+			this.firstRow = firstRow;
+			this.lastRow = lastRow;
+			this.lastBand = lastBand;
+		}
+
+		@Override
+		public CompressedBand call() {
+			int width = this.source.getWidth();
+			int[] rgb = new int[width];
+			byte[] scanline = new byte[1 + width * BYTES_PER_PIXEL];
+			byte[] buffer = new byte[64 * 1024];
+
+			Adler32 adler = new Adler32();
+			Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+			try {
+				for (int pixelY = this.firstRow; pixelY < this.lastRow; ++pixelY) {
+					this.source.readRow(pixelY, rgb);
+					fillScanline(rgb, scanline);
+					adler.update(scanline);
+
+					deflater.setInput(scanline);
+					while (!deflater.needsInput()) {
+						int length = deflater.deflate(buffer, 0,
+								buffer.length, Deflater.NO_FLUSH);
+						output.write(buffer, 0, length);
+					}
+				}
+
+				if (this.lastBand) {
+					deflater.finish();
+					while (!deflater.finished()) {
+						int length = deflater.deflate(buffer);
+						output.write(buffer, 0, length);
+					}
+				} else {
+					// a sync flush ends the band on a byte boundary, so the
+					// next band could be appended to it
+					int length;
+					do {
+						length = deflater.deflate(buffer, 0, buffer.length,
+								Deflater.SYNC_FLUSH);
+						output.write(buffer, 0, length);
+					} while (length == buffer.length);
+				}
+			} finally {
+				deflater.end();
+			}
+
+			CompressedBand band = new CompressedBand();
+			band.data = output.toByteArray();
+			band.length = band.data.length;
+			band.adler = adler.getValue();
+			band.uncompressedLength = (long) scanline.length
+					* (this.lastRow - this.firstRow);
+			return band;
+		}
+
+		/**
+		 * Stores the colours with the Sub filter, that replaces every byte
+		 * with its difference from the same byte of the previous pixel.
+		 */
+		private static void fillScanline(int[] rgb, byte[] scanline) {
+			scanline[0] = FILTER_SUB;
+
+			int previous = 0;
+			int index = 1;
+			for (int pixel = 0; pixel < rgb.length; ++pixel) {
+				int color = rgb[pixel];
+				scanline[index++] = (byte) ((color >> 16) - (previous >> 16));
+				scanline[index++] = (byte) ((color >> 8) - (previous >> 8));
+				scanline[index++] = (byte) (color - previous);
+				previous = color;
+			}
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package visualizer;
+
+/**
+ * Supplies the colours of an image one row at a time, so that the image could
+ * be encoded without being held in memory as a whole. Rows could be read by
+ * several threads at once.
+ */
+public interface PixelRowSource {
+	public int getWidth();
+
+	public int getHeight();
+
+	/**
+	 * Reads the colours of a row as 0xRRGGBB values. The alpha bits are
+	 * ignored.
+	 *
+	 * @param pixelY
+	 *            - the row to be read
+	 * @param rgb
+	 *            - the array that receives the colours, as long as the width
+	 */
+	public void readRow(int pixelY, int[] rgb);
+}
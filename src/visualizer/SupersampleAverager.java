@@ -0,0 +1,71 @@
+package visualizer;
+
+import generator.IterationGrid;
+import generator.Supersamples;
+
+/**
+ * Replaces the colours of the refined pixels of a supersampled
+ * {@link IterationGrid} with the averages of the colours of their samples.
+ * The samples are coloured one by one before they are averaged, so the edge
+ * between two bands is blended instead of being given the colour of an
+ * averaged escape value.
+ */
+class SupersampleAverager {
+	/**
+	 * Colours a single escape value as a 0xAARRGGBB value.
+	 */
+	public interface Coloring {
+		public int getColor(int iterations, float smoothIterations);
+	}
+
+	private SupersampleAverager() {
+	}
+
+	/**
+	 * Averages the refined pixels of a row whose colours are already read,
+	 * if the grid is supersampled.
+	 *
+	 * @param grid
+	 *            - the grid the row belongs to
+	 * @param pixelY
+	 *            - the row
+	 * @param rgb
+	 *            - the colours of the row
+	 * @param coloring
+	 *            - the colouring of the samples
+	 */
+	public static void averageRow(IterationGrid grid, int pixelY, int[] rgb,
+			Coloring coloring) {
+		Supersamples supersamples = grid.getSupersamples();
+		if (supersamples == null) {
+			return;
+		}
+
+		int samplesPerPixel = supersamples.getSamplesPerPixel();
+		int[] iterations = supersamples.getIterations();
+		float[] smoothIterations = supersamples.getSmoothIterations();
+
+		for (int refinedPixel = supersamples.getFirstRefinedPixel(pixelY); refinedPixel < supersamples
+				.getLastRefinedPixel(pixelY); ++refinedPixel) {
+			int red = 0;
+			int green = 0;
+			int blue = 0;
+
+			int sample = refinedPixel * samplesPerPixel;
+			for (int end = sample + samplesPerPixel; sample < end; ++sample) {
+				int color = coloring.getColor(iterations[sample],
+						smoothIterations != null ? smoothIterations[sample]
+								: iterations[sample]);
+				red += (color >> 16) & 0xff;
+				green += (color >> 8) & 0xff;
+				blue += color & 0xff;
+			}
+
+			int half = samplesPerPixel / 2;
+			rgb[supersamples.getPixelX(refinedPixel)] = 0xff000000
+					| (red + half) / samplesPerPixel << 16
+					| (green + half) / samplesPerPixel << 8
+					| (blue + half) / samplesPerPixel;
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package animation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import engine.RenderEngine;
+import generator.EscapeTimeKernels;
+import generator.KernelGrids;
+import generator.Viewport;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import visualizer.CyclicPaletteMapper;
+import visualizer.PixelRowSource;
+
+/**
+ * Checks that the frames resampled from keyframes look like the frames
+ * rendered directly, and that the keyframes iterate fewer pixels than the
+ * frames show.
+ */
+class ZoomAnimationTest {
+	private static final int WIDTH = 96;
+	private static final int HEIGHT = 72;
+	private static final int FRAME_COUNT = 24;
+	private static final int MAX_ITERATIONS = 500;
+
+	// a hundredfold zoom into a region outside the set, whose colours change
+	// smoothly apart from a few filaments
+	private static final double CENTER_REAL_PART = 0.5;
+	private static final double CENTER_IMAGINARY_PART = 0.66;
+	private static final double START_STEP = 2e-3;
+	private static final double END_STEP = 2e-5;
+
+	// the channel difference up to which a resampled pixel matches
+	private static final int COLOR_TOLERANCE = 16;
+
+	// the fraction of the pixels of a frame that may differ more, where
+	// details finer than the pixels are sampled differently
+	private static final double DIFFERING_PIXEL_FRACTION = 0.01;
+
+	private RenderEngine engine;
+	private ZoomAnimation animation;
+
+	@BeforeEach
+	void createAnimation() {
+		this.engine = new RenderEngine(2);
+		this.animation = new ZoomAnimation(new Viewport(CENTER_REAL_PART,
+				CENTER_IMAGINARY_PART, START_STEP, WIDTH, HEIGHT),
+				new Viewport(CENTER_REAL_PART, CENTER_IMAGINARY_PART,
+						END_STEP, WIDTH, HEIGHT), FRAME_COUNT, Easing.LINEAR);
+	}
+
+	@AfterEach
+	void shutdownEngine() {
+		this.engine.shutdown();
+	}
+
+	@Test
+	void resampledFramesMatchDirectFrames() throws IOException,
+			InterruptedException, ExecutionException {
+		final CyclicPaletteMapper palette = new CyclicPaletteMapper();
+		final int[] writtenFrames = new int[1];
+
+		this.animation.render(this.engine, MAX_ITERATIONS, new FrameWriter() {
+			@Override
+			public void writeFrame(int frame, PixelRowSource source) {
+				Viewport viewport = ZoomAnimationTest.this.animation
+						.getFrameViewport(frame);
+				PixelRowSource directSource = palette
+						.createRowSource(KernelGrids.compute(viewport,
+								EscapeTimeKernels.createForViewport(viewport,
+										MAX_ITERATIONS, true, false), true));
+
+				assertEquals(frame, writtenFrames[0]++);
+				assertFrameMatches(frame, source, directSource);
+			}
+
+			@Override
+			public void close() {
+			}
+		});
+
+		assertEquals(FRAME_COUNT, writtenFrames[0]);
+	}
+
+	@Test
+	void keyframesComputeFewerPixels() throws IOException,
+			InterruptedException, ExecutionException {
+		this.animation.render(this.engine, MAX_ITERATIONS, new FrameWriter() {
+			@Override
+			public void writeFrame(int frame, PixelRowSource source) {
+			}
+
+			@Override
+			public void close() {
+			}
+		});
+
+		assertTrue(this.animation.getKeyframeCount() < FRAME_COUNT);
+		assertTrue(this.animation.getComputedPixelCount() < (long) FRAME_COUNT
+				* WIDTH * HEIGHT);
+	}
+
+	private static void assertFrameMatches(int frame,
+			PixelRowSource source, PixelRowSource directSource) {
+		int[] rgb = new int[WIDTH];
+		int[] directRgb = new int[WIDTH];
+		int differingPixels = 0;
+
+		for (int pixelY = 0; pixelY < HEIGHT; ++pixelY) {
+			source.readRow(pixelY, rgb);
+			directSource.readRow(pixelY, directRgb);
+
+			for (int pixelX = 0; pixelX < WIDTH; ++pixelX) {
+				if (getChannelDifference(rgb[pixelX], directRgb[pixelX])
+						> COLOR_TOLERANCE) {
+					++differingPixels;
+				}
+			}
+		}
+
+		assertTrue(differingPixels <= DIFFERING_PIXEL_FRACTION * WIDTH
+				* HEIGHT, differingPixels + " pixels of frame " + frame
+				+ " differ.");
+	}
+
+	/**
+	 * Returns the largest difference between the channels of two colours.
+	 */
+	private static int getChannelDifference(int color, int otherColor) {
+		int difference = 0;
+		for (int shift = 0; shift < 24; shift += 8) {
+			difference = Math.max(difference, Math.abs((color >> shift & 0xff)
+					- (otherColor >> shift & 0xff)));
+		}
+		return difference;
+	}
+}
@@ -0,0 +1,151 @@
+package cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import generator.EscapeIterationsComputer;
+import generator.IterationGrid;
+import generator.KernelGrids;
+import generator.Viewport;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that tiles read back from the disk tier of a {@link TileCache} are
+ * the tiles that were put into it, and only under the same key, and that the
+ * disk tier is kept within its capacity by deleting the least recently used
+ * tiles.
+ */
+class TileCacheTest {
+	private static final int TILE_SIZE = 32;
+	private static final int MAX_ITERATIONS = 200;
+
+	// the header and the iterations of a tile without continuous values
+	private static final long TILE_FILE_BYTES = 4 * (2 + TILE_SIZE
+			* TILE_SIZE);
+
+	@TempDir
+	File directory;
+
+	@Test
+	void diskTierKeepsIterations() {
+		assertDiskRoundTrip(createKey(TILE_SIZE, false));
+	}
+
+	@Test
+	void diskTierKeepsSmoothIterations() {
+		assertDiskRoundTrip(createKey(TILE_SIZE, true));
+	}
+
+	@Test
+	void keysDifferInTileSizeAndOptions() {
+		TileKey key = createKey(TILE_SIZE, false);
+
+		assertEquals(key, createKey(TILE_SIZE, false));
+		assertNotEquals(key, createKey(2 * TILE_SIZE, false));
+		assertNotEquals(key, createKey(TILE_SIZE, true));
+		assertNotEquals(key.getFileName(), createKey(TILE_SIZE, true)
+				.getFileName());
+		assertNotEquals(key, new TileKey(1, 2, 3, TILE_SIZE, MAX_ITERATIONS,
+				EscapeIterationsComputer.KERNEL_NAME, false, true, false,
+				false));
+	}
+
+	@Test
+	void tileOfAnotherSizeIsNotRead() {
+		TileKey key = createKey(TILE_SIZE, false);
+		new TileCache(1, this.directory).put(key, computeTile(key));
+
+		assertNull(new TileCache(1, this.directory).get(createKey(
+				2 * TILE_SIZE, false)));
+	}
+
+	@Test
+	void leastRecentlyUsedTileIsEvicted() {
+		long capacity = 2 * TILE_FILE_BYTES + TILE_FILE_BYTES / 2;
+		TileKey firstKey = createKey(1);
+		TileKey secondKey = createKey(2);
+		TileKey thirdKey = createKey(3);
+
+		TileCache cache = new TileCache(1, this.directory, capacity);
+		cache.put(firstKey, computeTile(firstKey));
+		cache.put(secondKey, computeTile(secondKey));
+		long now = System.currentTimeMillis();
+		getFile(firstKey).setLastModified(now - 20000);
+		getFile(secondKey).setLastModified(now - 10000);
+
+		// reading the first tile from disk makes the second the eldest
+		cache.clearMemory();
+		assertNotNull(cache.get(firstKey));
+		cache.put(thirdKey, computeTile(thirdKey));
+
+		assertEquals(1, cache.getDiskEvictionCount());
+		assertEquals(2 * TILE_FILE_BYTES, cache.getDiskBytes());
+		assertTrue(getFile(firstKey).isFile());
+		assertFalse(getFile(secondKey).isFile());
+		assertTrue(getFile(thirdKey).isFile());
+	}
+
+	@Test
+	void existingTilesCountTowardsCapacity() {
+		TileCache cache = new TileCache(1, this.directory);
+		for (int tileX = 0; tileX < 3; ++tileX) {
+			TileKey key = createKey(tileX);
+			cache.put(key, computeTile(key));
+		}
+		assertEquals(3 * TILE_FILE_BYTES, cache.getDiskBytes());
+
+		TileCache smallerCache = new TileCache(1, this.directory,
+				2 * TILE_FILE_BYTES);
+		assertEquals(1, smallerCache.getDiskEvictionCount());
+		assertEquals(2 * TILE_FILE_BYTES, smallerCache.getDiskBytes());
+	}
+
+	private void assertDiskRoundTrip(TileKey key) {
+		IterationGrid tile = computeTile(key);
+		new TileCache(1, this.directory).put(key, tile);
+
+		// a new cache has an empty memory tier
+		TileCache cache = new TileCache(1, this.directory);
+		IterationGrid cachedTile = cache.get(key);
+
+		assertNotNull(cachedTile);
+		assertEquals(1, cache.getDiskHitCount());
+		assertEquals(tile.getViewport().getRealPart(0), cachedTile
+				.getViewport().getRealPart(0));
+		assertArrayEquals(tile.getIterations(), cachedTile.getIterations());
+		assertArrayEquals(tile.getSmoothIterations(),
+				cachedTile.getSmoothIterations());
+	}
+
+	private File getFile(TileKey key) {
+		return new File(this.directory, key.getFileName());
+	}
+
+	private static TileKey createKey(int tileX) {
+		return new TileKey(tileX, 2, 3, TILE_SIZE, MAX_ITERATIONS,
+				EscapeIterationsComputer.KERNEL_NAME, false, false, false,
+				false);
+	}
+
+	private static TileKey createKey(int tileSize, boolean smooth) {
+		return new TileKey(1, 2, 3, tileSize, MAX_ITERATIONS,
+				EscapeIterationsComputer.KERNEL_NAME, false, false, smooth,
+				false);
+	}
+
+	private static IterationGrid computeTile(TileKey key) {
+		return KernelGrids.compute(Viewport.forTile(key.getTileX(),
+				key.getTileY(), key.getZoom(), key.getTileSize()),
+				new EscapeIterationsComputer(key.getMaxIterations()),
+				key.isSmooth());
+	}
+}
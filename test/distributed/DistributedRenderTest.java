@@ -0,0 +1,174 @@
+package distributed;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import generator.EscapeTimeKernels;
+import generator.IterationGrid;
+import generator.KernelGrids;
+import generator.Viewport;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Renders on worker processes started on this machine, and checks that the
+ * grid is the grid rendered locally, that the tiles of a worker killed
+ * during a render are given to the others, and that the statistics of the
+ * workers add up to the render.
+ */
+class DistributedRenderTest {
+	private static final int WORKERS = 3;
+	private static final int THREADS_PER_WORKER = 1;
+	private static final int TILE_SIZE = 16;
+	private static final long TIMEOUT_MILLIS = 60000;
+
+	private static final int MAX_ITERATIONS = 1000;
+	private static final Viewport VIEWPORT = new Viewport(-0.745, 0.1, 1e-4,
+			160, 128);
+
+	// enough iterations for the render to be in progress for a while
+	private static final int SLOW_MAX_ITERATIONS = 300000;
+
+	private TileCoordinator coordinator;
+	private LocalWorkerLauncher launcher;
+
+	@BeforeEach
+	void startWorkers() throws IOException, InterruptedException {
+		this.coordinator = new TileCoordinator(0, TILE_SIZE);
+		this.launcher = new LocalWorkerLauncher(WORKERS, THREADS_PER_WORKER,
+				this.coordinator.getPort());
+
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (this.coordinator.getWorkerCount() < WORKERS) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new AssertionError("Only "
+						+ this.coordinator.getWorkerCount()
+						+ " workers connected.");
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	@AfterEach
+	void stopWorkers() throws IOException {
+		this.coordinator.close();
+		this.launcher.close();
+	}
+
+	@Test
+	void gridMatchesLocalRender() throws IOException, InterruptedException {
+		IterationGrid grid = this.coordinator.render(VIEWPORT,
+				MAX_ITERATIONS, true);
+
+		IterationGrid localGrid = renderLocally(VIEWPORT, MAX_ITERATIONS);
+		assertArrayEquals(localGrid.getIterations(), grid.getIterations());
+		assertArrayEquals(localGrid.getSmoothIterations(),
+				grid.getSmoothIterations());
+		assertStatisticsAddUp(0);
+	}
+
+	@Test
+	void tilesOfKilledWorkerAreRetried() throws IOException,
+			InterruptedException, ExecutionException {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<IterationGrid> render = executor
+					.submit(new Callable<IterationGrid>() {
+						@Override
+						public IterationGrid call() throws IOException,
+								InterruptedException {
+							return DistributedRenderTest.this.coordinator
+									.render(VIEWPORT, SLOW_MAX_ITERATIONS,
+											false);
+						}
+					});
+
+			// the worker is killed once the render is under way, while it
+			// has tiles in progress
+			awaitCompletedTiles(WORKERS);
+			assertFalse(render.isDone());
+			this.launcher.killWorker(0);
+
+			IterationGrid grid = render.get();
+			assertArrayEquals(renderLocally(VIEWPORT, SLOW_MAX_ITERATIONS)
+					.getIterations(), grid.getIterations());
+			assertEquals(WORKERS - 1, this.coordinator.getWorkerCount());
+			assertStatisticsAddUp(1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Checks that every tile and pixel was computed by exactly one worker,
+	 * and that at least the specified number of tiles were lost.
+	 */
+	private void assertStatisticsAddUp(int minimumLostTiles) {
+		List<WorkerStatistics> statistics = this.coordinator
+				.getWorkerStatistics();
+		assertEquals(WORKERS, statistics.size());
+
+		int tileCount = 0;
+		long pixelCount = 0;
+		int lostTileCount = 0;
+		for (WorkerStatistics worker : statistics) {
+			assertEquals(THREADS_PER_WORKER, worker.getThreads());
+			tileCount += worker.getCompletedTileCount();
+			pixelCount += worker.getPixelCount();
+			lostTileCount += worker.getLostTileCount();
+		}
+
+		assertEquals(getTileCount(VIEWPORT), tileCount);
+		assertEquals(VIEWPORT.getPixelCount(), pixelCount);
+		assertTrue(lostTileCount >= minimumLostTiles);
+	}
+
+	/**
+	 * Waits until the workers of the render in progress have completed the
+	 * specified number of tiles.
+	 */
+	private void awaitCompletedTiles(int tiles) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (true) {
+			int completedTiles = 0;
+			for (WorkerStatistics worker : this.coordinator
+					.getWorkerStatistics()) {
+				completedTiles += worker.getCompletedTileCount();
+			}
+			if (completedTiles >= tiles) {
+				return;
+			}
+
+			if (System.currentTimeMillis() > deadline) {
+				throw new AssertionError("Only " + completedTiles
+						+ " tiles were completed.");
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	private static IterationGrid renderLocally(Viewport viewport,
+			int maxIterations) {
+		// the kernel and the options the workers use
+		return KernelGrids.compute(viewport, EscapeTimeKernels
+				.createForViewport(viewport, maxIterations, true, false),
+				true);
+	}
+
+	private static int getTileCount(Viewport viewport) {
+		return ((viewport.getWidth() + TILE_SIZE - 1) / TILE_SIZE)
+				* ((viewport.getHeight() + TILE_SIZE - 1) / TILE_SIZE);
+	}
+}
@@ -0,0 +1,77 @@
+package distributed;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import generator.EscapeIterationsComputer;
+import generator.IterationGrid;
+import generator.KernelGrids;
+import generator.Viewport;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * Checks that decoding an encoded tile gives back every pixel of the tile.
+ */
+class TileCodecTest {
+	private static final int MAX_ITERATIONS = 1000;
+
+	private static final Viewport VIEWPORT = Viewport.forTile(3, 2, 3, 64);
+
+	@Test
+	void computedTileRoundTrips() throws IOException {
+		assertRoundTrip(computeTile(false));
+	}
+
+	@Test
+	void smoothTileRoundTrips() throws IOException {
+		assertRoundTrip(computeTile(true));
+	}
+
+	@Test
+	void extremeDifferencesRoundTrip() throws IOException {
+		IterationGrid grid = new IterationGrid(VIEWPORT, Integer.MAX_VALUE);
+		int[] iterations = grid.getIterations();
+		SplittableRandom random = new SplittableRandom(18);
+		for (int index = 0; index < iterations.length; ++index) {
+			iterations[index] = index % 3 == 0 ? Integer.MAX_VALUE : random
+					.nextInt(Integer.MAX_VALUE);
+		}
+
+		assertRoundTrip(grid);
+	}
+
+	@Test
+	void truncatedTileIsRejected() throws IOException {
+		byte[] encoded = TileCodec.encode(computeTile(false));
+		final byte[] truncated = Arrays.copyOf(encoded, encoded.length / 2);
+		final IterationGrid grid = new IterationGrid(VIEWPORT, MAX_ITERATIONS);
+
+		assertThrows(IOException.class, new Executable() {
+			@Override
+			public void execute() throws IOException {
+				TileCodec.decode(truncated, grid);
+			}
+		});
+	}
+
+	private static void assertRoundTrip(IterationGrid tile) throws IOException {
+		IterationGrid decoded = new IterationGrid(tile.getViewport(),
+				tile.getMaxIterations(), tile.isSmooth());
+		TileCodec.decode(TileCodec.encode(tile), decoded);
+
+		assertArrayEquals(tile.getIterations(), decoded.getIterations());
+		assertArrayEquals(tile.getSmoothIterations(),
+				decoded.getSmoothIterations());
+	}
+
+	private static IterationGrid computeTile(boolean smooth) {
+		return KernelGrids.compute(VIEWPORT, new EscapeIterationsComputer(
+				MAX_ITERATIONS), smooth);
+	}
+}
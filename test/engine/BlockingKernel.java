@@ -0,0 +1,75 @@
+package engine;
+
+import generator.EscapeTimeKernel;
+import generator.Viewport;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A kernel whose rows wait until the kernel is released, so that tests could
+ * hold the workers of an engine busy. Every pixel escapes at once.
+ */
+public class BlockingKernel implements EscapeTimeKernel {
+	private static final long TIMEOUT_SECONDS = 60;
+
+	private CountDownLatch started = new CountDownLatch(1);
+	private CountDownLatch released = new CountDownLatch(1);
+
+	/**
+	 * Submits a job of a single pixel with the kernel to the engine, and
+	 * waits until a worker of the engine is blocked in it.
+	 */
+	public static BlockingKernel occupyWorker(RenderEngine engine)
+			throws InterruptedException {
+		BlockingKernel kernel = new BlockingKernel();
+		engine.submit(new Viewport(0, 0, 1, 1, 1), kernel, false, 0,
+				TimeUnit.NANOSECONDS);
+		kernel.awaitStarted();
+		return kernel;
+	}
+
+	public void awaitStarted() throws InterruptedException {
+		if (!this.started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+			throw new AssertionError("The kernel was not started.");
+		}
+	}
+
+	public void release() {
+		this.released.countDown();
+	}
+
+	@Override
+	public String getName() {
+		return "blocking";
+	}
+
+	@Override
+	public int getMaxIterations() {
+		return 1;
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY) {
+		return 0;
+	}
+
+	@Override
+	public int computeEscapeIterations(Viewport viewport, double pixelX,
+			double pixelY, float[] smoothIterations, int index) {
+		return 0;
+	}
+
+	@Override
+	public void computeRow(Viewport viewport, int pixelY, int fromPixelX,
+			int toPixelX, int[] iterations, float[] smoothIterations,
+			int offset) {
+		this.started.countDown();
+		try {
+			this.released.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import generator.EscapeTimeKernel;
+import generator.Viewport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * Checks that the workers of an engine take the tiles of the active jobs in
+ * turns, and that cancelled and expired jobs give up the tiles that are not
+ * started yet. The single worker of the engine is held busy while the jobs
+ * are queued, so that their tiles are taken in a known order.
+ */
+class RenderEngineTest {
+	private static final long TIMEOUT_MILLIS = 60000;
+
+	// tiles of a single pixel, computed by a single row each
+	private static final int TILE_SIZE = 1;
+
+	private RenderEngine engine;
+	private BlockingKernel blocker;
+
+	@BeforeEach
+	void startEngine() throws InterruptedException {
+		this.engine = new RenderEngine(1, TILE_SIZE);
+		this.blocker = BlockingKernel.occupyWorker(this.engine);
+	}
+
+	@AfterEach
+	void stopEngine() {
+		this.blocker.release();
+		this.engine.shutdown();
+	}
+
+	@Test
+	void jobsTakeTilesInTurns() throws InterruptedException,
+			ExecutionException {
+		List<String> computedTiles = Collections
+				.synchronizedList(new ArrayList<String>());
+		RenderJob largeJob = submit(new RecordingKernel("large",
+				computedTiles), 4, 2);
+		RenderJob smallJob = submit(new RecordingKernel("small",
+				computedTiles), 2, 1);
+		assertEquals(2, this.engine.getQueuedJobCount());
+
+		this.blocker.release();
+		smallJob.get();
+		largeJob.get();
+
+		assertEquals(Arrays.asList("large", "small", "large", "small",
+				"large", "large", "large", "large", "large", "large"),
+				computedTiles);
+	}
+
+	@Test
+	void cancelRemovesQueuedTiles() throws InterruptedException,
+			ExecutionException {
+		List<String> computedTiles = Collections
+				.synchronizedList(new ArrayList<String>());
+		RenderJob job = submit(
+				new RecordingKernel("cancelled", computedTiles), 2, 2);
+		assertEquals(1, this.engine.getQueuedJobCount());
+
+		assertTrue(job.cancel(false));
+		assertEquals(0, this.engine.getQueuedJobCount());
+
+		this.blocker.release();
+		submit(new RecordingKernel("later", computedTiles), 1, 1).get();
+		assertEquals(Arrays.asList("later"), computedTiles);
+		assertEquals(0, job.getCompletedTileCount());
+	}
+
+	@Test
+	void expiredJobReleasesTiles() throws InterruptedException,
+			ExecutionException {
+		List<String> computedTiles = Collections
+				.synchronizedList(new ArrayList<String>());
+		final RenderJob job = this.engine.submit(
+				new Viewport(0, 0, 1, 2, 2), new RecordingKernel("expired",
+						computedTiles), false, 50, TimeUnit.MILLISECONDS);
+
+		ExecutionException failure = assertThrows(ExecutionException.class,
+				new Executable() {
+					@Override
+					public void execute() throws Throwable {
+						job.get();
+					}
+				});
+		assertInstanceOf(TimeoutException.class, failure.getCause());
+		awaitNoQueuedJobs();
+
+		this.blocker.release();
+		submit(new RecordingKernel("later", computedTiles), 1, 1).get();
+		assertEquals(Arrays.asList("later"), computedTiles);
+	}
+
+	private RenderJob submit(EscapeTimeKernel kernel, int width, int height) {
+		return this.engine.submit(new Viewport(0, 0, 1, width, height),
+				kernel, false, 0, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Waits until the jobs are removed from the queue of the engine, which
+	 * happens once they complete.
+	 */
+	private void awaitNoQueuedJobs() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (this.engine.getQueuedJobCount() > 0) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new AssertionError("The jobs stayed queued.");
+			}
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * A kernel that records its name for every row it computes. Every pixel
+	 * escapes at once.
+	 */
+	private static class RecordingKernel implements EscapeTimeKernel {
+		private String name;
+		private List<String> computedRows;
+
+		private RecordingKernel(String name, List<String> computedRows) {
+			this.name = name;
+			this.computedRows = computedRows;
+		}
+
+		@Override
+		public String getName() {
+			return this.name;
+		}
+
+		@Override
+		public int getMaxIterations() {
+			return 1;
+		}
+
+		@Override
+		public int computeEscapeIterations(Viewport viewport, double pixelX,
+				double pixelY) {
+			return 0;
+		}
+
+		@Override
+		public int computeEscapeIterations(Viewport viewport, double pixelX,
+				double pixelY, float[] smoothIterations, int index) {
+			return 0;
+		}
+
+		@Override
+		public void computeRow(Viewport viewport, int pixelY, int fromPixelX,
+				int toPixelX, int[] iterations, float[] smoothIterations,
+				int offset) {
+			this.computedRows.add(this.name);
+		}
+	}
+}
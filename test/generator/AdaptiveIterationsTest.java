@@ -0,0 +1,124 @@
+package generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the estimator stops doubling the maximum iterations at the
+ * first doubling that lets too few samples escape, and that a grid extended
+ * past the estimate equals a grid iterated to the final maximum directly.
+ */
+class AdaptiveIterationsTest {
+	private static final int THREADS = 4;
+	private static final int MAX_ITERATIONS_LIMIT = 1 << 16;
+
+	// a view of the seahorse valley that needs thousands of iterations,
+	// small enough to be sampled at every pixel
+	private static final Viewport VIEWPORT = new Viewport(-0.745, 0.1, 5e-5,
+			64, 48);
+
+	private static ForkJoinPool pool;
+
+	@BeforeAll
+	static void createPool() {
+		pool = new ForkJoinPool(THREADS);
+	}
+
+	@AfterAll
+	static void shutdownPool() {
+		pool.shutdown();
+	}
+
+	@Test
+	void estimatorStopsBelowThreshold() {
+		int estimate = new MaxIterationsEstimator(MAX_ITERATIONS_LIMIT)
+				.estimate(VIEWPORT, pool);
+
+		int[] iterations = computeDirectly(MAX_ITERATIONS_LIMIT);
+		double threshold = MaxIterationsEstimator.ESCAPED_FRACTION_THRESHOLD
+				* VIEWPORT.getPixelCount();
+
+		assertTrue(estimate > MaxIterationsEstimator.MINIMUM_MAX_ITERATIONS);
+		assertTrue(estimate < MAX_ITERATIONS_LIMIT);
+
+		// every doubling before the estimate let enough samples escape, and
+		// the last one did not
+		for (int maxIterations = MaxIterationsEstimator.MINIMUM_MAX_ITERATIONS * 2; maxIterations < estimate; maxIterations *= 2) {
+			assertTrue(countEscaped(iterations, maxIterations / 2,
+					maxIterations) > threshold);
+		}
+		assertTrue(countEscaped(iterations, estimate / 2, estimate) <= threshold);
+	}
+
+	@Test
+	void estimatorKeepsToLimit() {
+		assertEquals(MaxIterationsEstimator.MINIMUM_MAX_ITERATIONS * 2,
+				new MaxIterationsEstimator(
+						MaxIterationsEstimator.MINIMUM_MAX_ITERATIONS * 2)
+						.estimate(VIEWPORT, pool));
+	}
+
+	@Test
+	void extendedGridMatchesDirectGrid() throws InterruptedException {
+		assertMatchesDirectGrid(false);
+	}
+
+	@Test
+	void extendedGridWithInteriorCheckMatchesDirectGrid()
+			throws InterruptedException {
+		assertMatchesDirectGrid(true);
+	}
+
+	private static void assertMatchesDirectGrid(boolean interiorCheck)
+			throws InterruptedException {
+		GridCollector collector = new GridCollector();
+		MandelbrotSetGenerator generator = new MandelbrotSetGenerator(THREADS,
+				MAX_ITERATIONS_LIMIT, (IterationGridReceiver) collector);
+		generator.setInteriorChecks(interiorCheck, false);
+		try {
+			generator.generatePixelGridWithAdaptiveIterations(VIEWPORT);
+			IterationGrid grid = collector.awaitGrid();
+
+			assertTrue(generator.getIterationExtensionCount() > 0);
+			assertEquals(generator.getEstimatedMaxIterations()
+					<< generator.getIterationExtensionCount(),
+					grid.getMaxIterations());
+			assertArrayEquals(computeDirectly(grid.getMaxIterations()),
+					grid.getIterations());
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	private static int[] computeDirectly(int maxIterations) {
+		int[] iterations = new int[VIEWPORT.getPixelCount()];
+		EscapeIterationsComputer kernel = new EscapeIterationsComputer(
+				maxIterations);
+		for (int pixelY = 0; pixelY < VIEWPORT.getHeight(); ++pixelY) {
+			kernel.computeRow(VIEWPORT, pixelY, 0, VIEWPORT.getWidth(),
+					iterations, null, pixelY * VIEWPORT.getWidth());
+		}
+		return iterations;
+	}
+
+	/**
+	 * Returns the number of pixels that escape after at least from and less
+	 * than to iterations.
+	 */
+	private static int countEscaped(int[] iterations, int from, int to) {
+		int count = 0;
+		for (int pixelIterations : iterations) {
+			if (pixelIterations >= from && pixelIterations < to) {
+				++count;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,125 @@
+package generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that copying the mirrored rows of a viewport gives the escape
+ * iterations that iterating them gives, for the grid and the number
+ * generations.
+ */
+class ConjugateSymmetryTest {
+	private static final int THREADS = 4;
+	private static final int MAX_ITERATIONS = 500;
+
+	// a step that is exact in binary, so the imaginary parts of the mirror
+	// rows are exact negations of each other
+	private static final Viewport VIEWPORT = new Viewport(-0.75, 0, 0x1p-7,
+			160, 120);
+
+	private static int[] directIterations;
+
+	@BeforeAll
+	static void generateDirectly() throws InterruptedException {
+		assertNotNull(ConjugateSymmetry.forViewport(VIEWPORT));
+
+		GridCollector collector = new GridCollector();
+		MandelbrotSetGenerator generator = new MandelbrotSetGenerator(THREADS,
+				MAX_ITERATIONS, (MandelbrotSetReceiver) collector);
+		try {
+			generator.generateNumbersUsingThreadsForIterationComputing(VIEWPORT);
+			directIterations = toIterations(collector.awaitNumbers());
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	@Test
+	void mirroredPixelGridMatchesDirectGrid() throws InterruptedException {
+		assertArrayEquals(generatePixelGrid(false), generatePixelGrid(true));
+	}
+
+	@Test
+	void mirroredPixelsMatchDirectIteration() throws InterruptedException {
+		GridCollector collector = new GridCollector();
+		MandelbrotSetGenerator generator = createGenerator(collector);
+		try {
+			generator.generatePixels(VIEWPORT);
+			assertArrayEquals(directIterations,
+					toIterations(collector.awaitNumbers()));
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	@Test
+	void mirroredNumbersMatchDirectIteration() throws InterruptedException {
+		GridCollector collector = new GridCollector();
+		MandelbrotSetGenerator generator = createGenerator(collector);
+		try {
+			generator.generateNumbersUsingThreadsForIterationComputing(VIEWPORT);
+			assertArrayEquals(directIterations,
+					toIterations(collector.awaitNumbers()));
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	@Test
+	void mirroredSubsetsMatchDirectIteration() throws InterruptedException {
+		GridCollector collector = new GridCollector();
+		MandelbrotSetGenerator generator = createGenerator(collector);
+		try {
+			generator.generateNumbersUsingThreadsForGeneratingSubseths(
+					VIEWPORT, 7);
+			assertArrayEquals(directIterations,
+					toIterations(collector.awaitNumbers()));
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	private static int[] generatePixelGrid(boolean conjugateSymmetry)
+			throws InterruptedException {
+		GridCollector collector = new GridCollector();
+		MandelbrotSetGenerator generator = new MandelbrotSetGenerator(THREADS,
+				MAX_ITERATIONS, (IterationGridReceiver) collector);
+		generator.setConjugateSymmetry(conjugateSymmetry);
+		try {
+			generator.generatePixelGrid(VIEWPORT);
+			return collector.awaitGrid().getIterations();
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	private static MandelbrotSetGenerator createGenerator(
+			GridCollector collector) {
+		MandelbrotSetGenerator generator = new MandelbrotSetGenerator(THREADS,
+				MAX_ITERATIONS, (MandelbrotSetReceiver) collector);
+		generator.setConjugateSymmetry(true);
+		return generator;
+	}
+
+	/**
+	 * Places the iterations of every number at the pixel of the viewport it
+	 * belongs to.
+	 */
+	private static int[] toIterations(List<MandelbrotNumber> numbers) {
+		int[] iterations = new int[VIEWPORT.getPixelCount()];
+		for (MandelbrotNumber number : numbers) {
+			int pixelX = (int) Math.round((number.getRealPart() - VIEWPORT
+					.getRealPart(0)) / VIEWPORT.getRealPartStep());
+			int pixelY = (int) Math.round((number.getImaginaryPart() - VIEWPORT
+					.getImaginaryPart(0)) / VIEWPORT.getImaginaryPartStep());
+			iterations[pixelY * VIEWPORT.getWidth() + pixelX] = number
+					.getIterations();
+		}
+		return iterations;
+	}
+}
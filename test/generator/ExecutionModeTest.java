@@ -0,0 +1,69 @@
+package generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks which threads the orchestration of
+ * {@link ExecutionMode#VIRTUAL_THREADS} runs on in the running JVM: virtual
+ * threads from Java 21 on, and the bounded pool of platform threads before.
+ */
+class ExecutionModeTest {
+	private static final int FIRST_VIRTUAL_THREADS_VERSION = 21;
+
+	@Test
+	void fallbackMatchesRuntime() {
+		boolean expected = Runtime.version().feature()
+				>= FIRST_VIRTUAL_THREADS_VERSION;
+
+		assertEquals(expected, ExecutionMode.areVirtualThreadsAvailable());
+		assertEquals(!expected,
+				ExecutionMode.VIRTUAL_THREADS.usesPlatformThreadFallback());
+		assertFalse(ExecutionMode.PLATFORM_THREADS.usesPlatformThreadFallback());
+	}
+
+	@Test
+	void executorMatchesRuntime() throws InterruptedException,
+			ExecutionException {
+		ExecutorService executor = ExecutionMode.createThreadPerTaskExecutor();
+		try {
+			boolean isVirtual = executor.submit(new IsVirtualThread()).get();
+
+			if (ExecutionMode.areVirtualThreadsAvailable()) {
+				assertTrue(isVirtual);
+				assertFalse(executor instanceof ThreadPoolExecutor);
+			} else {
+				assertFalse(isVirtual);
+				assertTrue(executor instanceof ThreadPoolExecutor);
+				assertEquals(ExecutionMode.FALLBACK_MAXIMUM_THREADS,
+						((ThreadPoolExecutor) executor).getMaximumPoolSize());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Tells whether the thread that calls it is virtual, looked up
+	 * reflectively as the sources compile for 17.
+	 */
+	private static class IsVirtualThread implements Callable<Boolean> {
+		@Override
+		public Boolean call() throws ReflectiveOperationException {
+			try {
+				return (Boolean) Thread.class.getMethod("isVirtual").invoke(
+						Thread.currentThread());
+			} catch (NoSuchMethodException e) {
+				return false;
+			}
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that every generation mode gives the same escape iterations as
+ * generatePixels, which iterates every number on its own.
+ */
+class GeneratorModeEquivalenceTest {
+	private static final int THREADS = 4;
+	private static final int MAX_ITERATIONS = 500;
+
+	// a view of the seahorse valley with a step in the range of doubles
+	private static final Viewport VIEWPORT = new Viewport(-0.745, 0.1, 5e-5,
+			160, 120);
+
+	private static int[] expectedIterations;
+
+	@BeforeAll
+	static void generatePixels() throws InterruptedException {
+		GridCollector collector = new GridCollector();
+		MandelbrotSetGenerator generator = new MandelbrotSetGenerator(THREADS,
+				MAX_ITERATIONS, (MandelbrotSetReceiver) collector);
+		try {
+			generator.generatePixels(VIEWPORT);
+			List<MandelbrotNumber> numbers = collector.awaitNumbers();
+			Map<MandelbrotNumber, Pixel> pixels = generator.getPixelMapping();
+
+			expectedIterations = new int[VIEWPORT.getPixelCount()];
+			for (MandelbrotNumber number : numbers) {
+				Pixel pixel = pixels.get(number);
+				expectedIterations[pixel.getY() * VIEWPORT.getWidth()
+						+ pixel.getX()] = number.getIterations();
+			}
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	@Test
+	void pixelGridMatchesPixels() throws InterruptedException {
+		GridCollector collector = new GridCollector();
+		MandelbrotSetGenerator generator = createGenerator(collector);
+		try {
+			generator.generatePixelGrid(VIEWPORT);
+			assertArrayEquals(expectedIterations, collector.awaitGrid()
+					.getIterations());
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	@Test
+	void overlappingPixelGridsMatchPixels() throws InterruptedException {
+		final List<IterationGrid> grids = new CopyOnWriteArrayList<IterationGrid>();
+		final CountDownLatch latch = new CountDownLatch(2);
+		MandelbrotSetGenerator generator = new MandelbrotSetGenerator(THREADS,
+				MAX_ITERATIONS, new IterationGridReceiver() {
+					@Override
+					public void receiveGrid(IterationGrid grid) {
+						grids.add(grid);
+						latch.countDown();
+					}
+				});
+		try {
+			// the second generation starts while the bands of the first one
+			// are still being computed
+			generator.generatePixelGrid(VIEWPORT);
+			generator.generatePixelGrid(VIEWPORT);
+			assertTrue(latch.await(60, TimeUnit.SECONDS));
+			for (IterationGrid grid : grids) {
+				assertArrayEquals(expectedIterations, grid.getIterations());
+			}
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	@Test
+	void workStealingMatchesPixels() throws InterruptedException {
+		GridCollector collector = new GridCollector();
+		MandelbrotSetGenerator generator = createGenerator(collector);
+		try {
+			generator.generatePixelGridUsingWorkStealing(VIEWPORT, 16);
+			assertArrayEquals(expectedIterations, collector.awaitGrid()
+					.getIterations());
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	@Test
+	void rectangleFillNearlyMatchesPixels() throws InterruptedException {
+		GridCollector collector = new GridCollector();
+		MandelbrotSetGenerator generator = createGenerator(collector);
+		try {
+			generator.generatePixelGridUsingRectangleFill(VIEWPORT);
+			int[] iterations = collector.awaitGrid().getIterations();
+
+			// filaments thinner than a pixel could slip between the samples
+			// of a border, so a few pixels are allowed to differ
+			int differingPixels = 0;
+			for (int pixel = 0; pixel < iterations.length; ++pixel) {
+				if (iterations[pixel] != expectedIterations[pixel]) {
+					++differingPixels;
+				}
+			}
+			assertTrue(differingPixels <= iterations.length / 1000,
+					differingPixels + " pixels differ");
+			assertTrue(generator.getIteratedPixelCount() < VIEWPORT
+					.getPixelCount());
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	@Test
+	void streamMatchesPixels() throws InterruptedException {
+		GridCollector collector = new GridCollector(VIEWPORT, MAX_ITERATIONS);
+		MandelbrotSetGenerator generator = new MandelbrotSetGenerator(THREADS,
+				MAX_ITERATIONS, (IterationTileReceiver) collector);
+		try {
+			generator.streamPixelGrid(VIEWPORT);
+			assertArrayEquals(expectedIterations, collector.awaitGrid()
+					.getIterations());
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	@Test
+	void progressiveStreamMatchesPixels() throws InterruptedException {
+		GridCollector collector = new GridCollector(VIEWPORT, MAX_ITERATIONS);
+		MandelbrotSetGenerator generator = new MandelbrotSetGenerator(THREADS,
+				MAX_ITERATIONS, (IterationTileReceiver) collector);
+		try {
+			generator.streamPixelGridProgressively(VIEWPORT);
+			assertArrayEquals(expectedIterations, collector.awaitGrid()
+					.getIterations());
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	private static MandelbrotSetGenerator createGenerator(
+			GridCollector collector) {
+		return new MandelbrotSetGenerator(THREADS, MAX_ITERATIONS,
+				(IterationGridReceiver) collector);
+	}
+}
@@ -0,0 +1,102 @@
+package generator;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives the results of generations in tests, and assembles streamed tiles
+ * into a grid of the viewport they belong to.
+ */
+class GridCollector implements IterationGridReceiver, MandelbrotSetReceiver,
+		IterationTileReceiver {
+	private static final long TIMEOUT_SECONDS = 60;
+
+	private CountDownLatch latch = new CountDownLatch(1);
+	private volatile IterationGrid grid;
+	private volatile List<MandelbrotNumber> numbers;
+	private volatile RuntimeException failure;
+
+	private IterationGrid streamedGrid;
+
+	public GridCollector() {
+	}
+
+	/**
+	 * Creates a collector of the streamed tiles of the specified viewport.
+	 */
+	public GridCollector(Viewport viewport, int maxIterations) {
+		this.streamedGrid = new IterationGrid(viewport, maxIterations);
+	}
+
+	@Override
+	public void receiveGrid(IterationGrid grid) {
+		this.grid = grid;
+		this.latch.countDown();
+	}
+
+	@Override
+	public void receiveSet(List<MandelbrotNumber> numbers) {
+		this.numbers = numbers;
+		this.latch.countDown();
+	}
+
+	@Override
+	public void receiveTile(IterationGrid tile, int offsetX, int offsetY,
+			int pixelSize) {
+		// only the final pass covers the viewport
+		if (pixelSize > 1) {
+			return;
+		}
+
+		for (int pixelY = 0; pixelY < tile.getHeight(); ++pixelY) {
+			System.arraycopy(tile.getIterations(), tile.getIndex(0, pixelY),
+					this.streamedGrid.getIterations(),
+					this.streamedGrid.getIndex(offsetX, offsetY + pixelY),
+					tile.getWidth());
+		}
+	}
+
+	@Override
+	public void streamIsFinished() {
+		this.grid = this.streamedGrid;
+		this.latch.countDown();
+	}
+
+	@Override
+	public void streamFailed(RuntimeException failure) {
+		this.failure = failure;
+		this.latch.countDown();
+	}
+
+	/**
+	 * Waits for the grid of the generation.
+	 */
+	public IterationGrid awaitGrid() throws InterruptedException {
+		await();
+		return this.grid;
+	}
+
+	/**
+	 * Waits for the numbers of the generation.
+	 */
+	public List<MandelbrotNumber> awaitNumbers() throws InterruptedException {
+		await();
+		return this.numbers;
+	}
+
+	/**
+	 * Waits for the end of a stream and returns the exception it failed
+	 * with, or null if it did not fail.
+	 */
+	public RuntimeException awaitFailure() throws InterruptedException {
+		await();
+		return this.failure;
+	}
+
+	private void await() throws InterruptedException {
+		if (!this.latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+			throw new AssertionError("The generation did not finish.");
+		}
+	}
+}
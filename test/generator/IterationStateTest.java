@@ -0,0 +1,117 @@
+package generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a state continued to more iterations, also after it was saved
+ * and loaded, gives the grid that iterating every pixel to the final
+ * maximum gives.
+ */
+class IterationStateTest {
+	private static final int FIRST_MAX_ITERATIONS = 100;
+	private static final int FINAL_MAX_ITERATIONS = 1000;
+
+	// a view of the seahorse valley with a step in the range of doubles
+	private static final Viewport VIEWPORT = new Viewport(-0.745, 0.1, 5e-5,
+			96, 64);
+
+	private static ForkJoinPool pool;
+
+	@TempDir
+	File directory;
+
+	@BeforeAll
+	static void createPool() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@AfterAll
+	static void shutdownPool() {
+		pool.shutdown();
+	}
+
+	@Test
+	void continuationMatchesDirectIteration() {
+		IterationState state = new IterationState(VIEWPORT, true, true);
+		state.continueTo(FIRST_MAX_ITERATIONS, pool);
+		state.continueTo(FINAL_MAX_ITERATIONS, pool);
+
+		assertMatchesDirectIteration(state.getGrid());
+	}
+
+	@Test
+	void loadedStateMatchesSavedState() throws IOException {
+		IterationState state = new IterationState(VIEWPORT, true, false);
+		state.continueTo(FIRST_MAX_ITERATIONS, pool);
+		File file = new File(this.directory, "state.iter");
+		state.save(file);
+
+		IterationState loadedState = IterationState.load(file);
+
+		assertEquals(state.getIterations(), loadedState.getIterations());
+		assertEquals(state.getPendingPixelCount(),
+				loadedState.getPendingPixelCount());
+		assertEquals(VIEWPORT.getRealPart(0), loadedState.getGrid()
+				.getViewport().getRealPart(0));
+		assertArrayEquals(state.getGrid().getIterations(), loadedState
+				.getGrid().getIterations());
+		assertArrayEquals(state.getGrid().getSmoothIterations(), loadedState
+				.getGrid().getSmoothIterations());
+	}
+
+	@Test
+	void loadedStateContinuesFromItsOrbits() throws IOException {
+		IterationState state = new IterationState(VIEWPORT, true, false);
+		state.continueTo(FIRST_MAX_ITERATIONS, pool);
+		File file = new File(this.directory, "state.iter");
+		state.save(file);
+
+		IterationState loadedState = IterationState.load(file);
+		loadedState.continueTo(FINAL_MAX_ITERATIONS, pool);
+
+		assertMatchesDirectIteration(loadedState.getGrid());
+	}
+
+	@Test
+	void otherFileIsRejected() throws IOException {
+		final File file = new File(this.directory, "other.iter");
+		Files.write(file.toPath(), new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+
+		assertThrows(IOException.class, new Executable() {
+			@Override
+			public void execute() throws IOException {
+				IterationState.load(file);
+			}
+		});
+	}
+
+	private static void assertMatchesDirectIteration(IterationGrid grid) {
+		IterationGrid expected = new IterationGrid(VIEWPORT,
+				FINAL_MAX_ITERATIONS, true);
+		EscapeIterationsComputer kernel = new EscapeIterationsComputer(
+				FINAL_MAX_ITERATIONS);
+		for (int pixelY = 0; pixelY < expected.getHeight(); ++pixelY) {
+			kernel.computeRow(VIEWPORT, pixelY, 0, expected.getWidth(),
+					expected.getIterations(), expected.getSmoothIterations(),
+					expected.getIndex(0, pixelY));
+		}
+
+		assertEquals(FINAL_MAX_ITERATIONS, grid.getMaxIterations());
+		assertArrayEquals(expected.getIterations(), grid.getIterations());
+		assertArrayEquals(expected.getSmoothIterations(),
+				grid.getSmoothIterations());
+	}
+}
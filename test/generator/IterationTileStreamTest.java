@@ -0,0 +1,131 @@
+package generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+/**
+ * Checks that a stream whose receiver throws, or whose computing thread is
+ * interrupted, ends with the failure instead of leaving the generation
+ * blocked on the full queue or dropping tiles silently.
+ */
+class IterationTileStreamTest {
+	private static final int MAX_ITERATIONS = 200;
+
+	// many more bands than the capacity of the stream
+	private static final Viewport VIEWPORT = new Viewport(-0.745, 0.1, 5e-5,
+			64, 1024);
+
+	@Test
+	void failingReceiverEndsTheStream() throws InterruptedException {
+		final RuntimeException failure = new IllegalStateException("test");
+		final AtomicInteger receivedTiles = new AtomicInteger();
+		GridCollector collector = new GridCollector(VIEWPORT, MAX_ITERATIONS) {
+			@Override
+			public void receiveTile(IterationGrid tile, int offsetX,
+					int offsetY, int pixelSize) {
+				receivedTiles.incrementAndGet();
+				throw failure;
+			}
+		};
+
+		MandelbrotSetGenerator generator = new MandelbrotSetGenerator(2,
+				MAX_ITERATIONS, (IterationTileReceiver) collector);
+		try {
+			generator.streamPixelGrid(VIEWPORT);
+			assertSame(failure, collector.awaitFailure());
+			assertEquals(1, receivedTiles.get());
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	@Test
+	void interruptedPutFailsTheStream() throws InterruptedException {
+		GridCollector collector = new GridCollector(VIEWPORT, MAX_ITERATIONS);
+		final IterationTileStream stream = new IterationTileStream(collector,
+				1);
+		final IterationGrid tile = new IterationGrid(
+				VIEWPORT.getSubViewport(0, 0, VIEWPORT.getWidth(), 1),
+				MAX_ITERATIONS);
+
+		// the queue is full, so the second tile waits until it is
+		// interrupted
+		stream.put(tile, 0, 0, 1);
+		Thread.currentThread().interrupt();
+		assertThrows(IllegalStateException.class, new Executable() {
+			@Override
+			public void execute() {
+				stream.put(tile, 0, 1, 1);
+			}
+		});
+		assertTrue(Thread.interrupted());
+		assertTrue(stream.hasFailed());
+
+		// the failed stream is drained by the delivering thread
+		Thread deliveringThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				stream.deliverPass();
+				stream.finish();
+			}
+		});
+		deliveringThread.start();
+		stream.endPass();
+		deliveringThread.join();
+		assertInstanceOf(InterruptedException.class, collector.awaitFailure()
+				.getCause());
+	}
+
+	@Test
+	void slowReceiverDoesNotStarveOtherStreams() throws InterruptedException {
+		final Viewport fastViewport = VIEWPORT.getSubViewport(0, 0,
+				VIEWPORT.getWidth() / 2, VIEWPORT.getHeight());
+		final CountDownLatch released = new CountDownLatch(1);
+		final CountDownLatch finished = new CountDownLatch(1);
+		IterationTileReceiver receiver = new IterationTileReceiver() {
+			@Override
+			public void receiveTile(IterationGrid tile, int offsetX,
+					int offsetY, int pixelSize) {
+				// the tiles of the slow stream wait until the fast stream
+				// is finished, filling the queue of their stream
+				if (tile.getWidth() == VIEWPORT.getWidth()) {
+					try {
+						released.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+
+			@Override
+			public void streamIsFinished() {
+				finished.countDown();
+			}
+
+			@Override
+			public void streamFailed(RuntimeException failure) {
+			}
+		};
+
+		MandelbrotSetGenerator generator = new MandelbrotSetGenerator(2,
+				MAX_ITERATIONS, receiver);
+		try {
+			generator.streamPixelGrid(VIEWPORT);
+			generator.streamPixelGrid(fastViewport);
+			assertTrue(finished.await(60, TimeUnit.SECONDS));
+		} finally {
+			released.countDown();
+			generator.shutdown();
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package generator;
+
+/**
+ * Computes grids directly with a kernel, on the calling thread, as the
+ * expected results of the tests of other packages.
+ */
+public class KernelGrids {
+	private KernelGrids() {
+	}
+
+	/**
+	 * Computes every row of the viewport with the kernel.
+	 *
+	 * @param viewport
+	 *            - the region and resolution to be computed
+	 * @param kernel
+	 *            - the kernel the rows are computed with
+	 * @param smooth
+	 *            - whether the grid stores continuous escape values
+	 */
+	public static IterationGrid compute(Viewport viewport,
+			EscapeTimeKernel kernel, boolean smooth) {
+		IterationGrid grid = new IterationGrid(viewport,
+				kernel.getMaxIterations(), smooth);
+		for (int pixelY = 0; pixelY < grid.getHeight(); ++pixelY) {
+			kernel.computeRow(viewport, pixelY, 0, grid.getWidth(),
+					grid.getIterations(), grid.getSmoothIterations(),
+					grid.getIndex(0, pixelY));
+		}
+		return grid;
+	}
+}
@@ -0,0 +1,128 @@
+package generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the steps at which the arithmetic of the kernels changes, that
+ * floats stay close to doubles above their threshold, and that double-double
+ * arithmetic is exact where doubles are not.
+ */
+class KernelPrecisionTest {
+	private static final int MAX_ITERATIONS = 500;
+
+	// at the float threshold, the seahorse valley has the most pixels whose
+	// float orbits escape at other iterations, about 4 percent of them
+	private static final double FLOAT_DIFFERING_PIXEL_FRACTION = 0.05;
+
+	private static final int DEEP_MAX_ITERATIONS = 5000;
+
+	// a point on the boundary of the set, with structure at any zoom
+	private static final BigDecimal DEEP_REAL_PART = new BigDecimal(
+			"-0.743643887037158704752191506114774");
+	private static final BigDecimal DEEP_IMAGINARY_PART = new BigDecimal(
+			"0.131825904205311970493132056385139");
+
+	@Test
+	void precisionChangesAtThresholds() {
+		assertPrecision(KernelPrecision.FLOAT,
+				Math.nextUp(MandelbrotSetGenerator.FLOAT_ZOOM_STEP));
+		assertPrecision(KernelPrecision.DOUBLE,
+				MandelbrotSetGenerator.FLOAT_ZOOM_STEP);
+		assertPrecision(KernelPrecision.DOUBLE,
+				MandelbrotSetGenerator.DEEP_ZOOM_STEP);
+		assertPrecision(KernelPrecision.DOUBLE_DOUBLE,
+				Math.nextDown(MandelbrotSetGenerator.DEEP_ZOOM_STEP));
+		assertPrecision(KernelPrecision.DOUBLE_DOUBLE,
+				MandelbrotSetGenerator.PERTURBATION_ZOOM_STEP);
+		assertPrecision(KernelPrecision.PERTURBATION,
+				Math.nextDown(MandelbrotSetGenerator.PERTURBATION_ZOOM_STEP));
+	}
+
+	@Test
+	void narrowerSideChoosesPrecision() {
+		// a step above the float threshold along the real axis only
+		Viewport viewport = new Viewport(-0.75, -0.7, 0.1, 0.1004, 100, 100);
+		assertEquals(KernelPrecision.DOUBLE,
+				KernelPrecision.forViewport(viewport));
+	}
+
+	@Test
+	void floatsAreOptInForGenerator() {
+		Viewport viewport = Viewport.forWholeSet(160, 120);
+		MandelbrotSetGenerator generator = new MandelbrotSetGenerator(1,
+				MAX_ITERATIONS, (IterationGridReceiver) new GridCollector());
+		try {
+			assertTrue(!generator.getKernel(viewport).getName()
+					.contains(FloatEscapeIterationsComputer.KERNEL_NAME));
+
+			generator.setFloatPrecision(true);
+			assertTrue(generator.getKernel(viewport).getName()
+					.contains(FloatEscapeIterationsComputer.KERNEL_NAME));
+		} finally {
+			generator.shutdown();
+		}
+	}
+
+	@Test
+	void floatsStayCloseToDoublesAtThreshold() {
+		Viewport viewport = new Viewport(-0.745, 0.1,
+				Math.nextUp(MandelbrotSetGenerator.FLOAT_ZOOM_STEP), 160, 120);
+		int[] floatIterations = computeGrid(viewport,
+				new FloatEscapeIterationsComputer(MAX_ITERATIONS, false));
+		int[] doubleIterations = computeGrid(viewport,
+				new EscapeIterationsComputer(MAX_ITERATIONS));
+
+		int differingPixels = 0;
+		for (int pixel = 0; pixel < floatIterations.length; ++pixel) {
+			if (floatIterations[pixel] != doubleIterations[pixel]) {
+				++differingPixels;
+			}
+		}
+		assertTrue(differingPixels <= FLOAT_DIFFERING_PIXEL_FRACTION
+				* viewport.getPixelCount(), differingPixels
+				+ " pixels differ.");
+	}
+
+	@Test
+	void doubleDoubleMatchesReferenceBelowDeepZoomStep() {
+		Viewport viewport = new Viewport(DEEP_REAL_PART, DEEP_IMAGINARY_PART,
+				MandelbrotSetGenerator.DEEP_ZOOM_STEP / 10, 16, 12);
+		int[] expectedIterations = ReferenceIterations.computeGrid(viewport,
+				DEEP_MAX_ITERATIONS);
+
+		assertArrayEquals(expectedIterations, computeGrid(viewport,
+				new DoubleDoubleEscapeIterationsComputer(DEEP_MAX_ITERATIONS,
+						false)));
+
+		// doubles can no longer tell the pixels apart
+		int[] doubleIterations = computeGrid(viewport,
+				new EscapeIterationsComputer(DEEP_MAX_ITERATIONS));
+		int differingPixels = 0;
+		for (int pixel = 0; pixel < doubleIterations.length; ++pixel) {
+			if (doubleIterations[pixel] != expectedIterations[pixel]) {
+				++differingPixels;
+			}
+		}
+		assertTrue(differingPixels > 0);
+	}
+
+	private static void assertPrecision(KernelPrecision expected, double step) {
+		assertEquals(expected, KernelPrecision.forViewport(new Viewport(-0.75,
+				0.1, step, 64, 48)));
+	}
+
+	private static int[] computeGrid(Viewport viewport, EscapeTimeKernel kernel) {
+		int[] iterations = new int[viewport.getPixelCount()];
+		for (int pixelY = 0; pixelY < viewport.getHeight(); ++pixelY) {
+			kernel.computeRow(viewport, pixelY, 0, viewport.getWidth(),
+					iterations, null, pixelY * viewport.getWidth());
+		}
+		return iterations;
+	}
+}
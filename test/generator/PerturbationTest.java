@@ -0,0 +1,74 @@
+package generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the perturbation kernel against direct iteration with BigDecimal
+ * arithmetic below the step at which it is selected, where the pixels are
+ * glitched and where the reference orbit escapes before the pixels do, so
+ * that both ways of rebasing the pixels are taken.
+ */
+class PerturbationTest {
+	// around i, whose orbit is bounded, the orbits of the pixels pass closer
+	// to zero than to the reference orbit before they escape
+	private static final Viewport GLITCHED_VIEWPORT = new Viewport(
+			BigDecimal.ZERO, BigDecimal.ONE, 1e-31, 16, 12);
+	private static final int GLITCHED_MAX_ITERATIONS = 1000;
+
+	// just left of -2 the reference escapes, while the pixels on the right
+	// of it are iterated on after its orbit ends
+	private static final Viewport EARLY_ESCAPE_VIEWPORT = new Viewport(
+			new BigDecimal("-2.0000000000000000000000000000000003"),
+			new BigDecimal("0.00000000000000000000000000000000005"), 1e-34,
+			16, 12);
+	private static final int EARLY_ESCAPE_MAX_ITERATIONS = 500;
+
+	@Test
+	void glitchedPixelsMatchReference() {
+		assertMatchesReference(GLITCHED_VIEWPORT, GLITCHED_MAX_ITERATIONS);
+	}
+
+	@Test
+	void pixelsOutlivingReferenceMatchReference() {
+		int[] expectedIterations = assertMatchesReference(
+				EARLY_ESCAPE_VIEWPORT, EARLY_ESCAPE_MAX_ITERATIONS);
+
+		int referenceIterations = new PerturbationEscapeIterationsComputer(
+				EARLY_ESCAPE_MAX_ITERATIONS).getReferenceOrbit(
+				EARLY_ESCAPE_VIEWPORT).getLength() - 1;
+		assertTrue(referenceIterations < EARLY_ESCAPE_MAX_ITERATIONS);
+
+		int outlivingPixels = 0;
+		for (int iterations : expectedIterations) {
+			if (iterations > referenceIterations) {
+				++outlivingPixels;
+			}
+		}
+		assertTrue(outlivingPixels > 0);
+	}
+
+	private static int[] assertMatchesReference(Viewport viewport,
+			int maxIterations) {
+		assertEquals(KernelPrecision.PERTURBATION,
+				KernelPrecision.forViewport(viewport));
+
+		int[] expectedIterations = ReferenceIterations.computeGrid(viewport,
+				maxIterations);
+		EscapeTimeKernel kernel = new PerturbationEscapeIterationsComputer(
+				maxIterations);
+		int[] iterations = new int[viewport.getPixelCount()];
+		for (int pixelY = 0; pixelY < viewport.getHeight(); ++pixelY) {
+			kernel.computeRow(viewport, pixelY, 0, viewport.getWidth(),
+					iterations, null, pixelY * viewport.getWidth());
+		}
+
+		assertArrayEquals(expectedIterations, iterations);
+		return expectedIterations;
+	}
+}
@@ -0,0 +1,66 @@
+package generator;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * Iterates the points of a viewport with BigDecimal arithmetic, whose
+ * precision is far beyond any kernel, as the reference the kernels of deep
+ * zooms are checked against.
+ */
+class ReferenceIterations {
+	private static final MathContext PRECISION = new MathContext(60);
+
+	private static final BigDecimal BAILOUT_NUMBER = BigDecimal
+			.valueOf(1 << 16);
+
+	private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+	private ReferenceIterations() {
+	}
+
+	/**
+	 * Returns the escape iterations of the point at the specified pixel,
+	 * which is the reference point of the viewport plus the offset of the
+	 * pixel, both taken exactly.
+	 */
+	public static int computeEscapeIterations(Viewport viewport, int pixelX,
+			int pixelY, int maxIterations) {
+		BigDecimal cx = viewport.getReferenceRealPart().add(
+				new BigDecimal(viewport.getRealPartOffset(pixelX)));
+		BigDecimal cy = viewport.getReferenceImaginaryPart().add(
+				new BigDecimal(viewport.getImaginaryPartOffset(pixelY)));
+		BigDecimal x = BigDecimal.ZERO;
+		BigDecimal y = BigDecimal.ZERO;
+
+		int iterations = 0;
+		for (; iterations < maxIterations; ++iterations) {
+			BigDecimal xSquare = x.multiply(x, PRECISION);
+			BigDecimal ySquare = y.multiply(y, PRECISION);
+			if (xSquare.add(ySquare).compareTo(BAILOUT_NUMBER) > 0) {
+				break;
+			}
+
+			BigDecimal newX = xSquare.subtract(ySquare).add(cx, PRECISION);
+			y = x.multiply(y, PRECISION).multiply(TWO).add(cy, PRECISION);
+			x = newX;
+		}
+
+		return iterations;
+	}
+
+	/**
+	 * Returns the escape iterations of every pixel of the viewport, row by
+	 * row.
+	 */
+	public static int[] computeGrid(Viewport viewport, int maxIterations) {
+		int[] iterations = new int[viewport.getPixelCount()];
+		for (int pixelY = 0; pixelY < viewport.getHeight(); ++pixelY) {
+			for (int pixelX = 0; pixelX < viewport.getWidth(); ++pixelX) {
+				iterations[pixelY * viewport.getWidth() + pixelX] = computeEscapeIterations(
+						viewport, pixelX, pixelY, maxIterations);
+			}
+		}
+		return iterations;
+	}
+}
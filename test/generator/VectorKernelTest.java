@@ -0,0 +1,80 @@
+package generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the vectorized kernels give the same escape iterations as the
+ * scalar kernels of the same precision, with and without interior checking.
+ */
+class VectorKernelTest {
+	private static final int MAX_ITERATIONS = 300;
+
+	// the whole set covers the main cardioid and the period-2 bulb, and a
+	// width of 301 leaves a partial vector at the end of every row
+	private static final Viewport VIEWPORT = Viewport.forWholeSet(301, 201);
+
+	@BeforeAll
+	static void checkVectorKernelIsAvailable() {
+		assumeTrue(EscapeTimeKernels.isVectorKernelAvailable(),
+				"the jdk.incubator.vector module is not available");
+	}
+
+	@Test
+	void vectorMatchesScalarWithoutInteriorCheck() {
+		assertSameGrids(new EscapeIterationsComputer(MAX_ITERATIONS, false,
+				false), new VectorEscapeIterationsComputer(MAX_ITERATIONS,
+				false));
+	}
+
+	@Test
+	void vectorMatchesScalarWithInteriorCheck() {
+		assertSameGrids(new EscapeIterationsComputer(MAX_ITERATIONS, true,
+				false), new VectorEscapeIterationsComputer(MAX_ITERATIONS,
+				true));
+	}
+
+	@Test
+	void vectorFloatMatchesFloatWithoutInteriorCheck() {
+		assertSameGrids(new FloatEscapeIterationsComputer(MAX_ITERATIONS,
+				false), new VectorFloatEscapeIterationsComputer(MAX_ITERATIONS,
+				false));
+	}
+
+	@Test
+	void vectorFloatMatchesFloatWithInteriorCheck() {
+		assertSameGrids(new FloatEscapeIterationsComputer(MAX_ITERATIONS,
+				true), new VectorFloatEscapeIterationsComputer(MAX_ITERATIONS,
+				true));
+	}
+
+	@Test
+	void interiorCheckDoesNotChangeIterations() {
+		assertSameGrids(new VectorEscapeIterationsComputer(MAX_ITERATIONS,
+				false), new VectorEscapeIterationsComputer(MAX_ITERATIONS,
+				true));
+	}
+
+	private static void assertSameGrids(EscapeTimeKernel expectedKernel,
+			EscapeTimeKernel actualKernel) {
+		IterationGrid expected = computeGrid(expectedKernel);
+		IterationGrid actual = computeGrid(actualKernel);
+
+		assertArrayEquals(expected.getIterations(), actual.getIterations());
+		assertArrayEquals(expected.getSmoothIterations(),
+				actual.getSmoothIterations());
+	}
+
+	private static IterationGrid computeGrid(EscapeTimeKernel kernel) {
+		IterationGrid grid = new IterationGrid(VIEWPORT, MAX_ITERATIONS, true);
+		for (int pixelY = 0; pixelY < grid.getHeight(); ++pixelY) {
+			kernel.computeRow(VIEWPORT, pixelY, 0, grid.getWidth(),
+					grid.getIterations(), grid.getSmoothIterations(), pixelY
+							* grid.getWidth());
+		}
+		return grid;
+	}
+}
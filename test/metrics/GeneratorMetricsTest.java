@@ -0,0 +1,116 @@
+package metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import generator.IterationGrid;
+import generator.IterationGridReceiver;
+import generator.MandelbrotSetGenerator;
+import generator.Viewport;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the counters of the workers add up to the pixels and
+ * iterations of the generated grids, and that every pixel is counted in the
+ * escape histogram or as interior.
+ */
+class GeneratorMetricsTest {
+	private static final int THREADS = 4;
+	private static final int MAX_ITERATIONS = 500;
+	private static final long TIMEOUT_SECONDS = 60;
+
+	// a view of the seahorse valley, with pixels inside and outside the set
+	private static final Viewport VIEWPORT = new Viewport(-0.745, 0.1, 5e-5,
+			160, 120);
+
+	private BlockingQueue<IterationGrid> grids;
+	private MandelbrotSetGenerator generator;
+
+	@BeforeEach
+	void createGenerator() {
+		this.grids = new LinkedBlockingQueue<IterationGrid>();
+		this.generator = new MandelbrotSetGenerator(THREADS, MAX_ITERATIONS,
+				new IterationGridReceiver() {
+					@Override
+					public void receiveGrid(IterationGrid grid) {
+						GeneratorMetricsTest.this.grids.add(grid);
+					}
+				});
+	}
+
+	@AfterEach
+	void shutdownGenerator() {
+		this.generator.shutdown();
+	}
+
+	@Test
+	void workerCountersAddUpToGrids() throws InterruptedException {
+		this.generator.generatePixelGrid(VIEWPORT);
+		long iterationCount = getIterationSum(awaitGrid());
+		this.generator.generatePixelGridUsingWorkStealing(VIEWPORT, 16);
+		iterationCount += getIterationSum(awaitGrid());
+
+		assertCountersAddUp(2L * VIEWPORT.getPixelCount(), iterationCount);
+		assertEquals(2, this.generator.getMetrics().getGenerationCount());
+	}
+
+	@Test
+	void resetClearsWorkerCounters() throws InterruptedException {
+		this.generator.generatePixelGrid(VIEWPORT);
+		awaitGrid();
+		this.generator.getMetrics().reset();
+		assertCountersAddUp(0, 0);
+
+		// the threads keep recording into the counters they had
+		this.generator.generatePixelGrid(VIEWPORT);
+		assertCountersAddUp(VIEWPORT.getPixelCount(),
+				getIterationSum(awaitGrid()));
+	}
+
+	private void assertCountersAddUp(long pixelCount, long iterationCount) {
+		GeneratorMetrics metrics = this.generator.getMetrics();
+
+		assertEquals(pixelCount, getSum(metrics.getWorkerPixelCounts()));
+		assertEquals(pixelCount, metrics.getPixelCount());
+		assertEquals(iterationCount,
+				getSum(metrics.getWorkerIterationCounts()));
+		assertEquals(iterationCount, metrics.getIterationCount());
+
+		long histogramCount = metrics.getInteriorPixelCount();
+		for (long escapeCount : metrics.getEscapeIterationHistogram()) {
+			histogramCount += escapeCount;
+		}
+		assertEquals(pixelCount, histogramCount);
+	}
+
+	private IterationGrid awaitGrid() throws InterruptedException {
+		IterationGrid grid = this.grids.poll(TIMEOUT_SECONDS,
+				TimeUnit.SECONDS);
+		assertNotNull(grid);
+		return grid;
+	}
+
+	private static long getIterationSum(IterationGrid grid) {
+		long sum = 0;
+		for (int iterations : grid.getIterations()) {
+			sum += iterations;
+		}
+		return sum;
+	}
+
+	private static long getSum(Map<String, Long> counts) {
+		long sum = 0;
+		for (long count : counts.values()) {
+			sum += count;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,150 @@
+package metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the percentiles of the histogram against distributions whose
+ * percentiles are known, and that they are at most 1/32 above the exact
+ * value below 2^47 and never below it from there on.
+ */
+class LatencyHistogramTest {
+	private static final double[] PERCENTILES = { 0, 1, 10, 50, 90, 99, 99.9,
+			100 };
+
+	// the width of a bucket relative to the smallest value it holds
+	private static final double RELATIVE_ERROR = 1.0
+			/ LatencyHistogram.SUB_BUCKET_COUNT;
+
+	private static final long LAST_PRECISE_VALUE = (1L << 47) - 1;
+
+	@Test
+	void emptyHistogramReportsZero() {
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMaximum());
+	}
+
+	@Test
+	void uniformPercentilesAreWithinErrorBound() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] values = new long[100000];
+		for (int index = 0; index < values.length; ++index) {
+			values[index] = index + 1;
+			histogram.record(values[index]);
+		}
+
+		assertPercentilesWithinErrorBound(histogram, values);
+		assertEquals(values.length, histogram.getCount());
+		assertEquals(values.length, histogram.getMaximum());
+		assertEquals((values.length + 1) / 2.0, histogram.getMean());
+	}
+
+	@Test
+	void outlierPercentilesAreWithinErrorBound() {
+		// mostly fast tiles and a few that take a second
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] values = new long[1010];
+		for (int index = 0; index < values.length; ++index) {
+			values[index] = index < 1000 ? 1000 + index : 1000000000;
+			histogram.record(values[index]);
+		}
+
+		assertPercentilesWithinErrorBound(histogram, values);
+		assertTrue(histogram.getValueAtPercentile(99) < 1000000000);
+		assertEquals(1000000000, histogram.getValueAtPercentile(99.9));
+	}
+
+	@Test
+	void singleValuesAreWithinErrorBound() {
+		Random random = new Random(42);
+		for (int magnitude = 0; magnitude < 47; ++magnitude) {
+			long powerOfTwo = 1L << magnitude;
+			assertValueWithinErrorBound(powerOfTwo);
+			assertValueWithinErrorBound(powerOfTwo + (powerOfTwo >> 1));
+			assertValueWithinErrorBound(2 * powerOfTwo - 1);
+			assertValueWithinErrorBound(powerOfTwo
+					+ (long) (random.nextDouble() * powerOfTwo));
+		}
+	}
+
+	@Test
+	void valuesFromLastBucketAreNotUnderstated() {
+		long[] values = { LAST_PRECISE_VALUE, 1L << 47, 1L << 50,
+				(1L << 60) + 12345, Long.MAX_VALUE };
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long value : values) {
+			histogram.record(value);
+		}
+
+		for (double percentile : PERCENTILES) {
+			long value = histogram.getValueAtPercentile(percentile);
+			assertTrue(value >= getExactPercentile(values, percentile),
+					percentile + "th percentile " + value);
+		}
+		assertEquals(Long.MAX_VALUE, histogram.getMaximum());
+
+		// a single large value among small ones
+		histogram.reset();
+		histogram.record(1000);
+		histogram.record(1L << 48);
+		assertEquals(1L << 48, histogram.getValueAtPercentile(100));
+		assertEquals(1L << 48, histogram.getValueAtPercentile(51));
+		assertTrue(histogram.getValueAtPercentile(50) < 1000 * (1
+				+ RELATIVE_ERROR));
+	}
+
+	@Test
+	void negativeValuesAreRecordedAsZero() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(-5);
+		histogram.record(10);
+
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		assertEquals(10, histogram.getValueAtPercentile(100));
+	}
+
+	/**
+	 * Records the value and a larger one, so that the bucket of the value is
+	 * not capped at the maximum, and checks the reported median.
+	 */
+	private static void assertValueWithinErrorBound(long value) {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(value);
+		histogram.record(4 * value + 4);
+
+		long median = histogram.getValueAtPercentile(50);
+		assertTrue(median >= value && median <= value + value
+				* RELATIVE_ERROR, "Median " + median + " of " + value);
+	}
+
+	private static void assertPercentilesWithinErrorBound(
+			LatencyHistogram histogram, long[] sortedValues) {
+		for (double percentile : PERCENTILES) {
+			long exact = getExactPercentile(sortedValues, percentile);
+			long value = histogram.getValueAtPercentile(percentile);
+
+			assertTrue(value >= exact && value <= exact + exact
+					* RELATIVE_ERROR, percentile + "th percentile " + value
+					+ " of " + exact);
+		}
+	}
+
+	/**
+	 * Returns the smallest value that at least the specified percentage of
+	 * the sorted values do not exceed.
+	 */
+	private static long getExactPercentile(long[] sortedValues,
+			double percentile) {
+		int count = (int) Math.max(1,
+				Math.ceil(percentile / 100 * sortedValues.length));
+		return sortedValues[count - 1];
+	}
+}
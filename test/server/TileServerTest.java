@@ -0,0 +1,178 @@
+package server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import engine.BlockingKernel;
+import engine.RenderEngine;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import visualizer.CyclicPaletteMapper;
+
+/**
+ * Drives a server on localhost with an HTTP client, and checks the
+ * revalidation of tiles, the sharing of renders and the shedding of
+ * requests. The single worker of the engine is held busy where a render
+ * has to stay in flight.
+ */
+class TileServerTest {
+	private static final int TILE_SIZE = 64;
+	private static final long TIMEOUT_MILLIS = 60000;
+
+	private RenderEngine engine;
+	private TileServer server;
+	private HttpClient client;
+	private BlockingKernel blocker;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		this.engine = new RenderEngine(1);
+		this.server = new TileServer(this.engine, 0, TILE_SIZE, 1);
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1).build();
+	}
+
+	@AfterEach
+	void stopServer() {
+		if (this.blocker != null) {
+			this.blocker.release();
+		}
+		this.server.close();
+		this.engine.shutdown();
+	}
+
+	@Test
+	void unchangedTileIsNotModified() throws IOException,
+			InterruptedException {
+		HttpResponse<byte[]> response = get("/1/0/1.png", null);
+		assertEquals(200, response.statusCode());
+		assertEquals("no-cache",
+				response.headers().firstValue("Cache-Control").orElse(null));
+		String eTag = response.headers().firstValue("ETag").orElse(null);
+		assertNotNull(eTag);
+
+		assertEquals(304, get("/1/0/1.png", eTag).statusCode());
+		assertEquals(1, this.server.getRenderedTileCount());
+		assertEquals(1, this.server.getNotModifiedCount());
+
+		// a palette with the same colours gives the same tag
+		this.server.setPalette(new CyclicPaletteMapper(
+				CyclicPaletteMapper.DEFAULT_CYCLE_LENGTH));
+		assertEquals(304, get("/1/0/1.png", eTag).statusCode());
+	}
+
+	@Test
+	void changedParametersGiveNewTile() throws IOException,
+			InterruptedException {
+		String eTag = get("/1/0/1.png", null).headers().firstValue("ETag")
+				.orElse(null);
+
+		this.server.setMaxIterations(TileServer.DEFAULT_MAX_ITERATIONS * 2);
+		HttpResponse<byte[]> response = get("/1/0/1.png", eTag);
+		assertEquals(200, response.statusCode());
+		String deeperETag = response.headers().firstValue("ETag")
+				.orElse(null);
+		assertNotEquals(eTag, deeperETag);
+
+		this.server.setPalette(new CyclicPaletteMapper(
+				CyclicPaletteMapper.DEFAULT_CYCLE_LENGTH / 2));
+		response = get("/1/0/1.png", deeperETag);
+		assertEquals(200, response.statusCode());
+		assertNotEquals(deeperETag,
+				response.headers().firstValue("ETag").orElse(null));
+	}
+
+	@Test
+	void concurrentRequestsShareRender() throws Exception {
+		this.blocker = BlockingKernel.occupyWorker(this.engine);
+
+		List<CompletableFuture<HttpResponse<byte[]>>> responses = new ArrayList<CompletableFuture<HttpResponse<byte[]>>>();
+		for (int request = 0; request < 3; ++request) {
+			responses.add(getAsync("/2/1/1.png"));
+		}
+		awaitCount(2, new LongSupplier() {
+			@Override
+			public long getAsLong() {
+				return TileServerTest.this.server.getCoalescedRequestCount();
+			}
+		});
+		assertEquals(1, this.server.getInFlightTileCount());
+
+		this.blocker.release();
+		for (CompletableFuture<HttpResponse<byte[]>> response : responses) {
+			assertEquals(200, response.get().statusCode());
+		}
+		assertEquals(1, this.server.getRenderedTileCount());
+		assertEquals(3, this.server.getServedTileCount());
+	}
+
+	@Test
+	void requestBeyondQueueIsShed() throws Exception {
+		this.blocker = BlockingKernel.occupyWorker(this.engine);
+
+		CompletableFuture<HttpResponse<byte[]>> queuedResponse = getAsync("/2/1/1.png");
+		awaitCount(1, new LongSupplier() {
+			@Override
+			public long getAsLong() {
+				return TileServerTest.this.server.getInFlightTileCount();
+			}
+		});
+
+		HttpResponse<byte[]> shedResponse = get("/2/2/1.png", null);
+		assertEquals(503, shedResponse.statusCode());
+		assertNotNull(shedResponse.headers().firstValue("Retry-After")
+				.orElse(null));
+		assertEquals(1, this.server.getShedRequestCount());
+
+		this.blocker.release();
+		assertEquals(200, queuedResponse.get().statusCode());
+	}
+
+	private HttpResponse<byte[]> get(String path, String ifNoneMatch)
+			throws IOException, InterruptedException {
+		HttpRequest.Builder request = HttpRequest.newBuilder(getUri(path));
+		if (ifNoneMatch != null) {
+			request.header("If-None-Match", ifNoneMatch);
+		}
+		return this.client.send(request.build(),
+				HttpResponse.BodyHandlers.ofByteArray());
+	}
+
+	private CompletableFuture<HttpResponse<byte[]>> getAsync(String path) {
+		return this.client.sendAsync(HttpRequest.newBuilder(getUri(path))
+				.build(), HttpResponse.BodyHandlers.ofByteArray());
+	}
+
+	private URI getUri(String path) {
+		return URI.create("http://localhost:" + this.server.getPort() + path);
+	}
+
+	/**
+	 * Waits until a counter of the server reaches the specified value.
+	 */
+	private static void awaitCount(long count, LongSupplier counter)
+			throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (counter.getAsLong() < count) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new AssertionError("The count stayed at "
+						+ counter.getAsLong() + " instead of " + count + ".");
+			}
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import generator.EscapeIterationsComputer;
+import generator.IterationGrid;
+import generator.Viewport;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that the pixels written to an iteration map in tiles are read back
+ * unchanged, whole or by region, with and without compression and
+ * continuous escape values.
+ */
+class IterationMapTest {
+	private static final int MAX_ITERATIONS = 500;
+	private static final int CHUNK_SIZE = 32;
+	private static final int ROWS_PER_TILE = 7;
+
+	// neither side is a multiple of the chunk size or of the tile height
+	private static final Viewport VIEWPORT = new Viewport(-0.745, 0.1, 5e-5,
+			100, 70);
+
+	@TempDir
+	File directory;
+
+	@Test
+	void plainMapRoundTrips() throws IOException {
+		assertRoundTrip(false, false);
+	}
+
+	@Test
+	void compressedMapRoundTrips() throws IOException {
+		assertRoundTrip(false, true);
+	}
+
+	@Test
+	void smoothCompressedMapRoundTrips() throws IOException {
+		assertRoundTrip(true, true);
+	}
+
+	@Test
+	void missingChunkIsReported() throws IOException {
+		File file = new File(this.directory, "partial.imap");
+		IterationGrid grid = computeGrid(false);
+		try (IterationMapWriter writer = new IterationMapWriter(file,
+				VIEWPORT, MAX_ITERATIONS, EscapeIterationsComputer.KERNEL_NAME,
+				false, false, CHUNK_SIZE)) {
+			// only the first row of chunks is complete
+			writer.writeTile(copyRegion(grid, 0, 0, VIEWPORT.getWidth(),
+					CHUNK_SIZE), 0, 0);
+		}
+
+		try (final IterationMapReader reader = new IterationMapReader(file)) {
+			assertTrue(reader.hasChunk(0, 0));
+			assertFalse(reader.hasChunk(0, 1));
+			assertThrows(IOException.class, new Executable() {
+				@Override
+				public void execute() throws IOException {
+					reader.readGrid();
+				}
+			});
+		}
+	}
+
+	private void assertRoundTrip(boolean smooth, boolean compressed)
+			throws IOException {
+		File file = new File(this.directory, "map.imap");
+		IterationGrid grid = computeGrid(smooth);
+
+		try (IterationMapWriter writer = new IterationMapWriter(file,
+				VIEWPORT, MAX_ITERATIONS, EscapeIterationsComputer.KERNEL_NAME,
+				smooth, compressed, CHUNK_SIZE)) {
+			for (int pixelY = 0; pixelY < VIEWPORT.getHeight(); pixelY += ROWS_PER_TILE) {
+				writer.writeTile(copyRegion(grid, 0, pixelY, VIEWPORT
+						.getWidth(), Math.min(ROWS_PER_TILE, VIEWPORT
+						.getHeight() - pixelY)), 0, pixelY);
+			}
+			assertEquals(writer.getChunkCount(), writer.getWrittenChunkCount());
+		}
+
+		try (IterationMapReader reader = new IterationMapReader(file)) {
+			assertEquals(MAX_ITERATIONS, reader.getMaxIterations());
+			assertEquals(EscapeIterationsComputer.KERNEL_NAME,
+					reader.getKernelName());
+			assertEquals(smooth, reader.isSmooth());
+			assertEquals(compressed, reader.isCompressed());
+			assertEquals(VIEWPORT.getWidth(), reader.getViewport().getWidth());
+
+			assertSameGrids(grid, reader.readGrid());
+			assertSameGrids(copyRegion(grid, 30, 20, 45, 40),
+					reader.readRegion(30, 20, 45, 40));
+		}
+	}
+
+	private static void assertSameGrids(IterationGrid expected,
+			IterationGrid actual) {
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		assertArrayEquals(expected.getIterations(), actual.getIterations());
+		assertArrayEquals(expected.getSmoothIterations(),
+				actual.getSmoothIterations());
+	}
+
+	private static IterationGrid copyRegion(IterationGrid grid, int pixelX,
+			int pixelY, int width, int height) {
+		IterationGrid region = new IterationGrid(grid.getViewport()
+				.getSubViewport(pixelX, pixelY, width, height),
+				grid.getMaxIterations(), grid.isSmooth());
+		for (int regionY = 0; regionY < height; ++regionY) {
+			int index = grid.getIndex(pixelX, pixelY + regionY);
+			System.arraycopy(grid.getIterations(), index,
+					region.getIterations(), region.getIndex(0, regionY), width);
+			if (grid.isSmooth()) {
+				System.arraycopy(grid.getSmoothIterations(), index,
+						region.getSmoothIterations(),
+						region.getIndex(0, regionY), width);
+			}
+		}
+		return region;
+	}
+
+	private static IterationGrid computeGrid(boolean smooth) {
+		IterationGrid grid = new IterationGrid(VIEWPORT, MAX_ITERATIONS,
+				smooth);
+		EscapeIterationsComputer kernel = new EscapeIterationsComputer(
+				MAX_ITERATIONS);
+		for (int pixelY = 0; pixelY < grid.getHeight(); ++pixelY) {
+			kernel.computeRow(VIEWPORT, pixelY, 0, grid.getWidth(),
+					grid.getIterations(), grid.getSmoothIterations(),
+					grid.getIndex(0, pixelY));
+		}
+		return grid;
+	}
+}
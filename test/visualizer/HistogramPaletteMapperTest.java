@@ -0,0 +1,46 @@
+package visualizer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the cumulative distribution of the histogram, with a bucket for
+ * every escape iterations and with buckets bounded in number.
+ */
+class HistogramPaletteMapperTest {
+	private static final double TOLERANCE = 1e-12;
+
+	@Test
+	void distributionCountsEveryIterations() {
+		HistogramPaletteMapper histogram = new HistogramPaletteMapper(8);
+		int[] iterations = { 8, 0, 1, 1, 3, 8, 7 };
+
+		// the pixels are added in ranges, as rows of tiles are
+		histogram.addIterations(iterations, 0, 3);
+		histogram.addIterations(iterations, 3, iterations.length);
+
+		assertArrayEquals(new double[] { 0, 0.2, 0.6, 0.6, 0.8, 0.8, 0.8,
+				0.8, 1 }, histogram.getCumulativeDistribution(), TOLERANCE);
+	}
+
+	@Test
+	void bucketsSpreadTheirPixels() {
+		// every bucket counts four escape iterations
+		int maxIterations = HistogramPaletteMapper.MAXIMUM_BUCKET_COUNT * 4;
+		HistogramPaletteMapper histogram = new HistogramPaletteMapper(
+				maxIterations);
+		histogram.addIterations(new int[] { 0, 4, 5, maxIterations - 1,
+				maxIterations }, 0, 5);
+
+		double[] distribution = histogram.getCumulativeDistribution();
+		assertEquals(0, distribution[0], TOLERANCE);
+		assertEquals(0.0625, distribution[1], TOLERANCE);
+		assertEquals(0.25, distribution[4], TOLERANCE);
+		assertEquals(0.5, distribution[6], TOLERANCE);
+		assertEquals(0.75, distribution[8], TOLERANCE);
+		assertEquals(0.9375, distribution[maxIterations - 1], TOLERANCE);
+		assertEquals(1, distribution[maxIterations], TOLERANCE);
+	}
+}
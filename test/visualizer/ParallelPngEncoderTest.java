@@ -0,0 +1,107 @@
+package visualizer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Decodes the images of the encoder with ImageIO and compares their pixels
+ * with the colours they were encoded from, for an image of a single band and
+ * for one of several bands, the last of which is shorter than the others.
+ */
+class ParallelPngEncoderTest {
+	private static final int THREADS = 4;
+
+	// rows of 3001 bytes, 87 of which fit into a band
+	private static final int WIDTH = 1000;
+	private static final int ROWS_PER_BAND = 87;
+
+	private static ParallelPngEncoder encoder;
+
+	@BeforeAll
+	static void createEncoder() {
+		encoder = new ParallelPngEncoder(THREADS);
+	}
+
+	@AfterAll
+	static void shutdownEncoder() {
+		encoder.shutdown();
+	}
+
+	@Test
+	void singleBandImageDecodes() throws IOException {
+		assertDecodesToSource(new PatternSource(64, 48));
+	}
+
+	@Test
+	void imageOfManyBandsDecodes() throws IOException {
+		// more bands than are compressed at a time, with a partial last one
+		assertDecodesToSource(new PatternSource(WIDTH, ROWS_PER_BAND * THREADS
+				* 3 + ROWS_PER_BAND / 2));
+	}
+
+	private static void assertDecodesToSource(PixelRowSource source)
+			throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		encoder.encode(source, Channels.newChannel(output));
+
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(output
+				.toByteArray()));
+		assertNotNull(image);
+		assertEquals(source.getWidth(), image.getWidth());
+		assertEquals(source.getHeight(), image.getHeight());
+
+		int[] rgb = new int[source.getWidth()];
+		for (int pixelY = 0; pixelY < source.getHeight(); ++pixelY) {
+			source.readRow(pixelY, rgb);
+			for (int pixelX = 0; pixelX < rgb.length; ++pixelX) {
+				assertEquals(rgb[pixelX] & 0xffffff,
+						image.getRGB(pixelX, pixelY) & 0xffffff, "Pixel "
+								+ pixelX + ", " + pixelY);
+			}
+		}
+	}
+
+	/**
+	 * Colours that change from pixel to pixel in all channels, so that every
+	 * byte of the filtered rows varies.
+	 */
+	private static class PatternSource implements PixelRowSource {
+		private int width;
+		private int height;
+
+		private PatternSource(int width, int height) {
+			this.width = width;
+			this.height = height;
+		}
+
+		@Override
+		public int getWidth() {
+			return this.width;
+		}
+
+		@Override
+		public int getHeight() {
+			return this.height;
+		}
+
+		@Override
+		public void readRow(int pixelY, int[] rgb) {
+			for (int pixelX = 0; pixelX < rgb.length; ++pixelX) {
+				rgb[pixelX] = (pixelX * 7 + pixelY) << 16
+						| (pixelX * pixelY) << 8 | (pixelX ^ pixelY * 31);
+			}
+		}
+	}
+}